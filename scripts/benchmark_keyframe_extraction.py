@@ -0,0 +1,111 @@
+"""
+Keyframe extraction benchmark: per-scene download vs single multi-seek ffmpeg run.
+
+Serves a local video over a Range-capable HTTP server (stands in for a signed OSS URL),
+counts the bytes actually served, and compares:
+  old: for each scene -> download full video, ffmpeg -i file -ss t -vframes 1
+  new: one ffmpeg with -ss t_i -i URL per scene (HTTP range reads), one JPEG per input
+
+Usage: python3 scripts/benchmark_keyframe_extraction.py <video.mp4> <start_sec> [<start_sec> ...]
+"""
+import os
+import sys
+import shutil
+import tempfile
+import threading
+import subprocess
+import time
+import urllib.request
+from http.server import ThreadingHTTPServer, SimpleHTTPRequestHandler
+
+bytes_served = 0
+lock = threading.Lock()
+
+
+class RangeHandler(SimpleHTTPRequestHandler):
+    def log_message(self, *args):
+        pass
+
+    def do_GET(self):
+        global bytes_served
+        path = self.translate_path(self.path)
+        size = os.path.getsize(path)
+        start, end = 0, size - 1
+        rng = self.headers.get('Range')
+        if rng and rng.startswith('bytes='):
+            s, _, e = rng[6:].partition('-')
+            start = int(s) if s else 0
+            end = int(e) if e else size - 1
+            self.send_response(206)
+            self.send_header('Content-Range', f'bytes {start}-{end}/{size}')
+        else:
+            self.send_response(200)
+        length = end - start + 1
+        self.send_header('Content-Type', 'video/mp4')
+        self.send_header('Accept-Ranges', 'bytes')
+        self.send_header('Content-Length', str(length))
+        self.end_headers()
+        sent = 0
+        with open(path, 'rb') as f:
+            f.seek(start)
+            while sent < length:
+                chunk = f.read(min(64 * 1024, length - sent))
+                if not chunk:
+                    break
+                try:
+                    self.wfile.write(chunk)
+                except (BrokenPipeError, ConnectionResetError):
+                    break
+                sent += len(chunk)
+        with lock:
+            bytes_served += sent
+
+
+def reset():
+    global bytes_served
+    with lock:
+        bytes_served = 0
+
+
+def old_path(url, starts, out_dir):
+    for i, t in enumerate(starts):
+        local = os.path.join(out_dir, f'video_{i}.mp4')
+        urllib.request.urlretrieve(url, local)
+        subprocess.run(['ffmpeg', '-i', local, '-ss', str(t + 1), '-vframes', '1', '-q:v', '2', '-y',
+                        os.path.join(out_dir, f'old_{i}.jpg')], capture_output=True, check=True)
+        os.remove(local)
+
+
+def new_path(url, starts, out_dir):
+    cmd = ['ffmpeg', '-y']
+    for t in starts:
+        cmd += ['-ss', str(t + 1), '-i', url]
+    for i in range(len(starts)):
+        cmd += ['-map', f'{i}:v:0', '-frames:v', '1', '-q:v', '2', os.path.join(out_dir, f'new_{i}.jpg')]
+    subprocess.run(cmd, capture_output=True, check=True)
+
+
+if len(sys.argv) < 3:
+    print(__doc__)
+    sys.exit(1)
+
+video = os.path.abspath(sys.argv[1])
+starts = [float(s) for s in sys.argv[2:]]
+
+os.chdir(os.path.dirname(video))
+server = ThreadingHTTPServer(('127.0.0.1', 0), RangeHandler)
+threading.Thread(target=server.serve_forever, daemon=True).start()
+url = f'http://127.0.0.1:{server.server_address[1]}/{os.path.basename(video)}'
+
+out_dir = tempfile.mkdtemp(prefix='kf_bench_')
+try:
+    print(f"Video: {video} ({os.path.getsize(video)} bytes), scenes: {len(starts)}")
+    for name, fn in (('old (download per scene)', old_path), ('new (single multi-seek)', new_path)):
+        reset()
+        t0 = time.time()
+        fn(url, starts, out_dir)
+        elapsed = time.time() - t0
+        print(f"{name:28s} wall={elapsed * 1000:8.0f}ms  bytes={bytes_served}")
+finally:
+    server.shutdown()
+    shutil.rmtree(out_dir, ignore_errors=True)
@@ -1,54 +1,38 @@
 package com.example.demo.ai.label.qwen;
 
 import com.example.demo.ai.label.ObjectLabelService;
-import com.example.demo.ai.util.LabelCache;
+import com.example.demo.ai.services.QwenChatClient;
+import com.example.demo.service.KeyframeImageCache;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.*;
-// no custom request factory to avoid Spring version API mismatch
 
 import java.nio.charset.StandardCharsets;
 import java.io.InputStream;
 import java.io.ByteArrayOutputStream;
-import java.security.MessageDigest;
 import java.util.*;
 import java.util.regex.Pattern;
 
 @Service
 public class QwenVLPlusLabeler implements ObjectLabelService {
     
-    private final RestTemplate restTemplate;
+    private final QwenChatClient qwenChatClient;
+    private final KeyframeImageCache keyframeImageCache;
     private final ObjectMapper objectMapper;
-    private final LabelCache labelCache;
-    
-    @Value("${AI_QWEN_ENDPOINT:${qwen.api.base:}}")
-    private String qwenApiBase;
-    
-    @Value("${AI_QWEN_API_KEY:${qwen.api.key:}}")
-    private String qwenApiKey;
     
     @Value("${AI_QWEN_MODEL:${qwen.model:qwen-vl-plus}}")
     private String qwenModel;
     
-    @Value("${qwen.timeout.ms:15000}")
-    private int qwenTimeout;
-    
     private static final Pattern CHINESE_PATTERN = Pattern.compile("^[\\u4e00-\\u9fa5]{1,4}$");
     private static final String DEFAULT_LABEL = "未知";
     
-    public QwenVLPlusLabeler() {
-        // Configure RestTemplate with timeouts
-        org.springframework.http.client.SimpleClientHttpRequestFactory factory = 
-            new org.springframework.http.client.SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(10000);  // 10 seconds connect timeout
-        factory.setReadTimeout(60000);     // 60 seconds read timeout (VL can be slow)
-        this.restTemplate = new RestTemplate(factory);
+    public QwenVLPlusLabeler(QwenChatClient qwenChatClient, KeyframeImageCache keyframeImageCache) {
+        // Shared pooled client; timeouts are configured per model (qwen.client.*)
+        this.qwenChatClient = qwenChatClient;
+        this.keyframeImageCache = keyframeImageCache;
         this.objectMapper = new ObjectMapper();
-        this.labelCache = new LabelCache(256);
     }
 
     @Override
@@ -100,23 +84,11 @@ public class QwenVLPlusLabeler implements ObjectLabelService {
             messages.add(message);
             request.put("messages", messages);
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + qwenApiKey);
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
-
-            String endpoint = normalizeChatEndpoint(qwenApiBase);
-            ResponseEntity<String> response = restTemplate.exchange(
-                endpoint,
-                HttpMethod.POST,
-                entity,
-                String.class
-            );
-            String body = response.getBody();
-            System.out.println("[QWEN] cleanSingleScriptLine status=" + response.getStatusCodeValue());
+            QwenChatClient.ChatResponse response = qwenChatClient.chat("cleanSingleScriptLine", request);
+            System.out.println("[QWEN] cleanSingleScriptLine status=" + response.status);
             
-            if (!response.getStatusCode().is2xxSuccessful()) return "";
-            String contentStr = extractContent(body);
+            if (!response.isSuccessful()) return "";
+            String contentStr = response.content;
             if (contentStr == null || contentStr.isBlank()) return "";
 
             return contentStr.trim();
@@ -215,27 +187,14 @@ public class QwenVLPlusLabeler implements ObjectLabelService {
             messages.add(message);
             request.put("messages", messages);
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + qwenApiKey);
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
-
-            String endpoint = normalizeChatEndpoint(qwenApiBase);
+            QwenChatClient.ChatResponse response = qwenChatClient.chat("cleanScriptLines", request, true);
             
-            ResponseEntity<String> response = restTemplate.exchange(
-                endpoint,
-                HttpMethod.POST,
-                entity,
-                String.class
-            );
-            String body = response.getBody();
-            
-            if (!response.getStatusCode().is2xxSuccessful()) {
-                System.err.println("[QWEN] cleanScriptLines failed: " + response.getStatusCodeValue());
+            if (!response.isSuccessful()) {
+                System.err.println("[QWEN] cleanScriptLines failed: " + response.status);
                 return null;
             }
             
-            String contentStr = extractContent(body);
+            String contentStr = response.content;
             
             if (contentStr == null || contentStr.isBlank()) {
                 System.err.println("[QWEN] cleanScriptLines: empty response");
@@ -246,6 +205,7 @@ public class QwenVLPlusLabeler implements ObjectLabelService {
             Map<String, Object> aiResult = com.example.demo.ai.util.AIResponseFixer.parseToMap(contentStr, objectMapper);
             if (aiResult == null) {
                 System.err.println("[QWEN] cleanScriptLines: All parsing strategies failed");
+                qwenChatClient.evictCached(request);
                 return null;
             }
             
@@ -348,27 +308,16 @@ public class QwenVLPlusLabeler implements ObjectLabelService {
             messages.add(message);
             request.put("messages", messages);
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + qwenApiKey);
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
-
-            String endpointG = normalizeChatEndpoint(qwenApiBase);
-            ResponseEntity<String> response = restTemplate.exchange(
-                endpointG,
-                HttpMethod.POST,
-                entity,
-                String.class
-            );
-            String bodyG = response.getBody();
-            System.out.println("[QWEN] guidance host=" + safeHost(endpointG) + " model=" + qwenModel +
-                " status=" + response.getStatusCodeValue() + " bodyLen=" + (bodyG == null ? 0 : bodyG.length()));
+            QwenChatClient.ChatResponse response = qwenChatClient.chat("generateTemplateGuidance", request, true);
+            String bodyG = response.body;
+            System.out.println("[QWEN] guidance host=" + safeHost(qwenChatClient.getEndpoint()) + " model=" + qwenModel +
+                " status=" + response.status + " bodyLen=" + (bodyG == null ? 0 : bodyG.length()) + " latencyMs=" + response.latencyMs);
             if (bodyG != null) {
                 String head = bodyG.substring(0, Math.min(200, bodyG.length()));
                 System.out.println("[QWEN] guidance body head=" + head.replaceAll("\n", " "));
             }
-            if (!response.getStatusCode().is2xxSuccessful()) return null;
-            String contentStr = extractContent(bodyG);
+            if (!response.isSuccessful()) return null;
+            String contentStr = response.content;
             if (contentStr == null || contentStr.isBlank()) return null;
 
             // Use centralized AI response fixer with multiple parsing strategies
@@ -377,6 +326,7 @@ public class QwenVLPlusLabeler implements ObjectLabelService {
                 System.err.println("[QWEN] generateTemplateGuidance: All parsing strategies failed");
                 System.err.println("[QWEN] Original content (first 500 chars): " + 
                     (contentStr.length() > 500 ? contentStr.substring(0, 500) + "..." : contentStr));
+                qwenChatClient.evictCached(request);
                 return null;
             }
             
@@ -605,7 +555,7 @@ public class QwenVLPlusLabeler implements ObjectLabelService {
             Map<String, Object> imageContent = new HashMap<>();
             imageContent.put("type", "image_url");
             Map<String, Object> imageUrl = new HashMap<>();
-            String dataUrl = toDataUrlSafe(keyframeUrl);
+            String dataUrl = keyframeImageCache.toDataUrl(keyframeUrl);
             imageUrl.put("url", dataUrl);
             imageContent.put("image_url", imageUrl);
             content.add(imageContent);
@@ -614,21 +564,10 @@ public class QwenVLPlusLabeler implements ObjectLabelService {
             messages.add(message);
             request.put("messages", messages);
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + qwenApiKey);
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
-
-            String endpointR = normalizeChatEndpoint(qwenApiBase);
-            ResponseEntity<String> response = restTemplate.exchange(
-                endpointR,
-                HttpMethod.POST,
-                entity,
-                String.class
-            );
-            String bodyR = response.getBody();
-            System.out.println("[QWEN] regions host=" + safeHost(endpointR) + " model=" + qwenModel +
-                " status=" + response.getStatusCodeValue() + " bodyLen=" + (bodyR == null ? 0 : bodyR.length()));
+            QwenChatClient.ChatResponse response = qwenChatClient.chat("labelRegions", request, true);
+            String bodyR = response.body;
+            System.out.println("[QWEN] regions host=" + safeHost(qwenChatClient.getEndpoint()) + " model=" + qwenModel +
+                " status=" + response.status + " bodyLen=" + (bodyR == null ? 0 : bodyR.length()) + " latencyMs=" + response.latencyMs);
             if (bodyR != null) {
                 String head = bodyR.substring(0, Math.min(200, bodyR.length()));
                 System.out.println("[QWEN] regions body head=" + head.replaceAll("\n", " "));
@@ -637,11 +576,11 @@ public class QwenVLPlusLabeler implements ObjectLabelService {
                 System.out.println("[QWEN] ========== END RAW RESPONSE ==========");
             }
 
-            if (!response.getStatusCode().is2xxSuccessful()) {
-                System.err.println("[QWEN] ❌ Non-successful status code: " + response.getStatusCodeValue());
+            if (!response.isSuccessful()) {
+                System.err.println("[QWEN] ❌ Non-successful status code: " + response.status);
                 return out;
             }
-            String contentStr = extractContent(bodyR);
+            String contentStr = response.content;
             System.out.println("[QWEN] Extracted content length: " + (contentStr != null ? contentStr.length() : 0));
             System.out.println("[QWEN] Extracted content: " + (contentStr != null ? contentStr.substring(0, Math.min(500, contentStr.length())) : "null"));
             
@@ -668,6 +607,7 @@ public class QwenVLPlusLabeler implements ObjectLabelService {
                 System.err.println("[QWEN] JSON parse error: " + jsonEx.getMessage());
                 isValidJson = false;
                 root = null;
+                qwenChatClient.evictCached(request); // Don't replay the fallback on the next run
                 // Store the entire response as scene analysis for later comparison
                 sceneAnalysis = contentStr;
                 System.out.println("[QWEN] Stored raw response as scene analysis (" + sceneAnalysis.length() + " chars)");
@@ -864,93 +804,6 @@ public class QwenVLPlusLabeler implements ObjectLabelService {
         }
     }
 
-
-    private String extractContent(String responseBody) throws Exception {
-        if (responseBody == null || responseBody.isBlank()) return null;
-        JsonNode root = objectMapper.readTree(responseBody);
-        JsonNode choices = root.path("choices");
-        if (choices.isArray() && choices.size() > 0) {
-            JsonNode message = choices.get(0).path("message");
-            JsonNode contentNode = message.path("content");
-
-            // A) Array of parts
-            if (contentNode.isArray()) {
-                StringBuilder sb = new StringBuilder();
-                for (JsonNode part : contentNode) {
-                    String type = part.path("type").asText("");
-                    if ("text".equals(type) || "output_text".equals(type)) {
-                        String t = part.path("text").asText("");
-                        if (t != null) sb.append(t);
-                    }
-                }
-                String s = stripCodeFences(sb.toString().trim());
-                if (!s.isEmpty()) return s;
-            }
-
-            // B) Plain string
-            if (contentNode.isTextual()) {
-                String s = stripCodeFences(contentNode.asText("").trim());
-                if (!s.isEmpty()) return s;
-            }
-
-            // C) message.output_text
-            String mo = stripCodeFences(message.path("output_text").asText("").trim());
-            if (!mo.isEmpty()) return mo;
-        }
-        // D) Top-level fallbacks
-        String alt = stripCodeFences(root.path("output_text").asText("").trim());
-        if (!alt.isEmpty()) return alt;
-        String plain = stripCodeFences(choices.path(0).path("text").asText("").trim());
-        return plain.isEmpty() ? null : plain;
-    }
-
-    private String stripCodeFences(String s) {
-        if (s == null) return null;
-        s = s.replaceAll("(?s)```json\\s*(.*?)\\s*```", "$1");
-        s = s.replaceAll("(?s)```\\s*(.*?)\\s*```", "$1");
-        return s.trim();
-    }
-    private String normalizeChatEndpoint(String base) {
-        String def = "https://dashscope.aliyuncs.com/compatible-mode/v1/chat/completions";
-        if (base == null || base.isBlank()) return def;
-
-        if (base.startsWith("http")) {
-            if (base.endsWith("/chat/completions")) return base;
-            if (base.contains("/compatible-mode/") && base.endsWith("/v1")) return base + "/chat/completions";
-            try {
-                var u = java.net.URI.create(base);
-                if (u.getHost() != null && u.getHost().contains("dashscope.aliyuncs.com")) {
-                    return def;
-                }
-            } catch (Exception ignored) {}
-            return base; // assume already a full chat URL
-        }
-        return def;
-    }
-
-    /**
-     * Convert remote image URL to data:image/jpeg;base64,.... If download fails, return original URL.
-     */
-    private String toDataUrlSafe(String imageUrl) {
-        try {
-            java.net.URL url = new java.net.URL(imageUrl);
-            java.net.HttpURLConnection conn = (java.net.HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setConnectTimeout(5000);
-            conn.setReadTimeout(15000);
-            try (InputStream in = conn.getInputStream(); ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-                byte[] buf = new byte[8192];
-                int n;
-                while ((n = in.read(buf)) > 0) bos.write(buf, 0, n);
-                String b64 = Base64.getEncoder().encodeToString(bos.toByteArray());
-                return "data:image/jpeg;base64," + b64;
-            }
-        } catch (Exception e) {
-            // Fallback to original URL if we cannot embed
-            return imageUrl;
-        }
-    }
-
     private String safeHost(String endpoint) {
         try {
             java.net.URI u = java.net.URI.create(endpoint);
@@ -976,14 +829,7 @@ public class QwenVLPlusLabeler implements ObjectLabelService {
             return DEFAULT_LABEL;
         }
         
-        // Check cache
-        String cacheKey = sha1(imageBytes);
-        String cached = labelCache.get(cacheKey);
-        if (cached != null) {
-            return cached;
-        }
-        
-        // Call Qwen API
+        // Call Qwen API (responses are cached by image content in QwenResponseCache)
         String label = callQwenAPI(imageBytes);
         
         // Validate and retry if needed
@@ -994,9 +840,6 @@ public class QwenVLPlusLabeler implements ObjectLabelService {
             }
         }
         
-        // Cache the result
-        labelCache.put(cacheKey, label);
-        
         return label;
     }
     
@@ -1026,21 +869,10 @@ public class QwenVLPlusLabeler implements ObjectLabelService {
             messages.add(message);
             request.put("messages", messages);
             
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + qwenApiKey);
-            
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
-            
-            ResponseEntity<String> response = restTemplate.exchange(
-                normalizeChatEndpoint(qwenApiBase),
-                HttpMethod.POST,
-                entity,
-                String.class
-            );
+            QwenChatClient.ChatResponse response = qwenChatClient.chat("labelObject", request, true);
             
-            if (response.getStatusCode() == HttpStatus.OK) {
-                return parseQwenResponse(response.getBody());
+            if (response.isSuccessful()) {
+                return parseQwenResponse(response.content);
             }
         } catch (Exception e) {
             System.err.println("Qwen API call failed: " + e.getMessage());
@@ -1075,21 +907,10 @@ public class QwenVLPlusLabeler implements ObjectLabelService {
             messages.add(message);
             request.put("messages", messages);
             
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + qwenApiKey);
+            QwenChatClient.ChatResponse response = qwenChatClient.chat("labelObjectStrict", request, true);
             
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
-            
-            ResponseEntity<String> response = restTemplate.exchange(
-                qwenApiBase + "/chat/completions",
-                HttpMethod.POST,
-                entity,
-                String.class
-            );
-            
-            if (response.getStatusCode() == HttpStatus.OK) {
-                return parseQwenResponse(response.getBody());
+            if (response.isSuccessful()) {
+                return parseQwenResponse(response.content);
             }
         } catch (Exception e) {
             System.err.println("Qwen API stricter call failed: " + e.getMessage());
@@ -1098,48 +919,19 @@ public class QwenVLPlusLabeler implements ObjectLabelService {
         return DEFAULT_LABEL;
     }
     
-    private String parseQwenResponse(String responseBody) {
-        try {
-            JsonNode root = objectMapper.readTree(responseBody);
-            JsonNode choices = root.path("choices");
-            
-            if (choices.isArray() && choices.size() > 0) {
-                String content = choices.get(0)
-                    .path("message")
-                    .path("content")
-                    .asText("")
-                    .trim();
-                
-                // Clean up common issues
-                content = content.replaceAll("[\\s\\p{Punct}]", "");
-                
-                return content.isEmpty() ? DEFAULT_LABEL : content;
-            }
-        } catch (Exception e) {
-            System.err.println("Failed to parse Qwen response: " + e.getMessage());
+    private String parseQwenResponse(String content) {
+        if (content == null) {
+            return DEFAULT_LABEL;
         }
-        
-        return DEFAULT_LABEL;
+        // Clean up common issues
+        content = content.replaceAll("[\\s\\p{Punct}]", "");
+        return content.isEmpty() ? DEFAULT_LABEL : content;
     }
     
     private boolean isValidChineseLabel(String label) {
         return label != null && CHINESE_PATTERN.matcher(label).matches();
     }
     
-    private String sha1(byte[] data) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            byte[] hash = md.digest(data);
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                hexString.append(String.format("%02x", b));
-            }
-            return hexString.toString();
-        } catch (Exception e) {
-            return UUID.randomUUID().toString();
-        }
-    }
-
     /**
      * Get bounding box for a single object name
      * Used when user edits keyElement and we need to find its bounding box
@@ -1187,7 +979,7 @@ public class QwenVLPlusLabeler implements ObjectLabelService {
             Map<String, Object> imageContent = new HashMap<>();
             imageContent.put("type", "image_url");
             Map<String, Object> imageUrl = new HashMap<>();
-            String dataUrl = toDataUrlSafe(keyframeUrl);  // Convert to base64 data URL
+            String dataUrl = keyframeImageCache.toDataUrl(keyframeUrl);  // Cached base64 data URL
             imageUrl.put("url", dataUrl);
             imageContent.put("image_url", imageUrl);
             content.add(imageContent);
@@ -1197,31 +989,19 @@ public class QwenVLPlusLabeler implements ObjectLabelService {
             request.put("messages", messages);
             
             // Call Qwen API
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + qwenApiKey);
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
-            
-            ResponseEntity<String> response = restTemplate.exchange(
-                qwenApiBase + "/chat/completions",
-                HttpMethod.POST,
-                entity,
-                String.class
-            );
+            QwenChatClient.ChatResponse response = qwenChatClient.chat("boundingBox", request);
             
-            if (!response.getStatusCode().is2xxSuccessful()) {
-                System.err.println("[QWEN-SINGLE-BOX] API returned non-success status: " + response.getStatusCodeValue());
+            if (!response.isSuccessful()) {
+                System.err.println("[QWEN-SINGLE-BOX] API returned non-success status: " + response.status);
                 return null;
             }
             
-            String responseBody = response.getBody();
-            if (responseBody == null || responseBody.isBlank()) {
+            if (response.body == null || response.body.isBlank()) {
                 System.err.println("[QWEN-SINGLE-BOX] Empty response body");
                 return null;
             }
             
-            // Extract content
-            String contentStr = extractContentFromResponse(responseBody);
+            String contentStr = response.content;
             if (contentStr == null) {
                 System.err.println("[QWEN-SINGLE-BOX] Failed to extract content");
                 return null;
@@ -1280,22 +1060,4 @@ public class QwenVLPlusLabeler implements ObjectLabelService {
             return null;
         }
     }
-    
-    private String extractContentFromResponse(String responseBody) {
-        try {
-            JsonNode response = objectMapper.readTree(responseBody);
-            JsonNode choices = response.get("choices");
-            if (choices == null || !choices.isArray() || choices.size() == 0) {
-                return null;
-            }
-            JsonNode message = choices.get(0).get("message");
-            if (message == null) {
-                return null;
-            }
-            JsonNode content = message.get("content");
-            return content != null ? content.asText() : null;
-        } catch (Exception e) {
-            return null;
-        }
-    }
 }
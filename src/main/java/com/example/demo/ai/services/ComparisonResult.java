@@ -13,6 +13,7 @@ public class ComparisonResult {
     private List<String> suggestions;  // Improvement suggestions
     private List<String> matchedObjects;  // Matched key elements
     private List<String> missingObjects;  // Missing key elements
+    private boolean failed;  // No real score: the comparison could not be run or parsed
     
     public ComparisonResult() {
         this.suggestions = new ArrayList<>();
@@ -33,11 +34,16 @@ public class ComparisonResult {
         result.setScore(0);
         result.setSimilarityScore(0);
         result.setSuggestions(List.of(errorMessage));
+        result.failed = true;
         return result;
     }
     
     // Getters and Setters
     
+    public boolean isFailed() {
+        return failed;
+    }
+    
     public int getScore() {
         return score;
     }
@@ -1,7 +1,17 @@
 package com.example.demo.ai.services;
 
 import java.time.Duration;
+import java.util.List;
 
 public interface KeyframeExtractionService {
     String extractKeyframe(String videoUrl, Duration startTime, Duration endTime);
-}
\ No newline at end of file
+
+    /**
+     * Extract one keyframe per scene start time from the same video.
+     * The video is read once (ffmpeg input seeking over HTTP range reads) and all
+     * frames come out of a single ffmpeg invocation.
+     *
+     * @return signed keyframe URLs in the same order as startTimes (null where extraction failed)
+     */
+    List<String> extractKeyframes(String videoUrl, List<Duration> startTimes);
+}
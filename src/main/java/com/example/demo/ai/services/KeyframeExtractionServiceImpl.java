@@ -1,105 +1,253 @@
 package com.example.demo.ai.services;
 
 import com.example.demo.service.AlibabaOssStorageService;
+import com.example.demo.service.MediaProbeService;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Service
 public class KeyframeExtractionServiceImpl implements KeyframeExtractionService {
-    
+
     @Autowired(required = false)
     private AlibabaOssStorageService ossStorageService;
 
+    @Autowired(required = false)
+    private MediaProbeService mediaProbeService;
+
     @Value("${alibaba.oss.bucket-name}")
     private String bucketName;
-    
+
     private static final String KEYFRAMES_FOLDER = "keyframes/";
 
+    // Seeks are clamped this far before the end so the last scene still decodes a frame
+    private static final double EOF_MARGIN_SECONDS = 0.25;
+
+    // Keyframe JPEGs are small; a few parallel uploads hide per-request latency to OSS
+    private final ExecutorService uploadExecutor = Executors.newFixedThreadPool(4, r -> {
+        Thread t = new Thread(r, "keyframe-upload");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        uploadExecutor.shutdownNow();
+    }
+
     @Override
     public String extractKeyframe(String videoUrl, Duration startTime, Duration endTime) {
-        System.out.printf("Extracting keyframe from video: %s (start: %s, end: %s)%n", 
+        System.out.printf("Extracting keyframe from video: %s (start: %s, end: %s)%n",
                          videoUrl, startTime, endTime);
-        
+        return extractKeyframes(videoUrl, Collections.singletonList(startTime)).get(0);
+    }
+
+    @Override
+    public List<String> extractKeyframes(String videoUrl, List<Duration> startTimes) {
+        List<String> results = new ArrayList<>(Collections.nCopies(startTimes.size(), (String) null));
+        if (startTimes.isEmpty()) {
+            return results;
+        }
+
+        long startMs = System.currentTimeMillis();
+        System.out.printf("[KEYFRAME] Extracting %d keyframe(s) from video: %s%n", startTimes.size(), videoUrl);
+
+        Path tempDir = null;
+        Path tempVideoPath = null;
         try {
             // Extract keyframe at 1 second into the scene for consistency with submission thumbnails
             // This ensures template examples and user submissions have aligned thumbnails for comparison
-            Duration target = startTime != null ? startTime.plusSeconds(1) : Duration.ofSeconds(1);
-            double targetSeconds = target.getSeconds() + target.getNano() / 1_000_000_000.0;
-            
-            // Generate signed URL for video download (7 days for processing)
+            List<Double> targetSeconds = new ArrayList<>();
+            for (Duration startTime : startTimes) {
+                Duration target = startTime != null ? startTime.plusSeconds(1) : Duration.ofSeconds(1);
+                targetSeconds.add(target.getSeconds() + target.getNano() / 1_000_000_000.0);
+            }
+
+            // Generate signed URL for video access (7 days for processing)
             String signedVideoUrl = ossStorageService.generateSignedUrl(videoUrl, 7, java.util.concurrent.TimeUnit.DAYS);
-            
-            // Create temporary files
-            Path tempVideoPath = Files.createTempFile("video_", ".mp4");
-            Path tempKeyframePath = Files.createTempFile("keyframe_", ".jpg");
-            
-            try {
-                // Download video from OSS using signed URL
-                System.out.printf("Downloading video from OSS: %s%n", videoUrl);
-                java.net.URL url = new java.net.URL(signedVideoUrl);
-                try (java.io.InputStream in = url.openStream()) {
-                    Files.copy(in, tempVideoPath, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            clampToDuration(videoUrl, signedVideoUrl, targetSeconds);
+
+            tempDir = Files.createTempDirectory("keyframes_");
+            List<File> frameFiles = new ArrayList<>();
+            for (int i = 0; i < startTimes.size(); i++) {
+                frameFiles.add(tempDir.resolve("keyframe_" + i + ".jpg").toFile());
+            }
+
+            // Preferred path: ffmpeg seeks each input on the signed URL via HTTP range reads,
+            // so only the bytes around each timestamp (plus the moov atom) are fetched
+            long bytesDownloaded = 0;
+            List<Integer> all = new ArrayList<>();
+            for (int i = 0; i < frameFiles.size(); i++) {
+                all.add(i);
+            }
+            List<Integer> missing = runFfmpegMultiSeek(signedVideoUrl, all, targetSeconds, frameFiles);
+            String mode = "range-read";
+            if (missing.size() == all.size()) {
+                // Nothing came back, so the source read failed: download the video ONCE and seek locally
+                System.out.printf("[KEYFRAME] Range-read extraction failed, downloading video once: %s%n", videoUrl);
+                tempVideoPath = Files.createTempFile("video_", ".mp4");
+                try (java.io.InputStream in = new java.net.URL(signedVideoUrl).openStream()) {
+                    bytesDownloaded = Files.copy(in, tempVideoPath, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
                 }
-                
-                // Build FFmpeg command (seek to scene start)
-                ProcessBuilder processBuilder = new ProcessBuilder(
-                    "ffmpeg",
-                    "-i", tempVideoPath.toString(),
-                    "-ss", String.valueOf(targetSeconds),
-                    "-vframes", "1",
-                    "-q:v", "2",
-                    "-y",
-                    tempKeyframePath.toString()
-                );
-                
-                System.out.printf("Running FFmpeg command: %s%n", String.join(" ", processBuilder.command()));
-                
-                Process process = processBuilder.start();
-                int exitCode = process.waitFor();
-                
-                if (exitCode != 0) {
-                    throw new RuntimeException("FFmpeg failed with exit code: " + exitCode);
+                mode = "single-download";
+                missing = runFfmpegMultiSeek(tempVideoPath.toString(), missing, targetSeconds, frameFiles);
+            }
+            if (!missing.isEmpty()) {
+                // Keep the frames that were produced; callers extract the missing ones on their own
+                System.err.printf("[KEYFRAME] No frame for %d of %d timestamp(s) %s in %s%n",
+                                  missing.size(), frameFiles.size(), missing, videoUrl);
+            }
+            long extractedMs = System.currentTimeMillis() - startMs;
+
+            // Upload the produced JPEGs in parallel
+            List<CompletableFuture<String>> uploads = new ArrayList<>();
+            for (int i = 0; i < frameFiles.size(); i++) {
+                File frameFile = frameFiles.get(i);
+                uploads.add(missing.contains(i) ? CompletableFuture.completedFuture(null)
+                    : CompletableFuture.supplyAsync(() -> uploadKeyframe(frameFile), uploadExecutor));
+            }
+            for (int i = 0; i < uploads.size(); i++) {
+                try {
+                    results.set(i, uploads.get(i).join());
+                } catch (Exception e) {
+                    System.err.printf("[KEYFRAME] Failed to upload keyframe %d: %s%n", i, e.getMessage());
                 }
-                
-                // Upload keyframe to OSS
-                String keyframeObjectName = KEYFRAMES_FOLDER + UUID.randomUUID().toString() + ".jpg";
-                
-                // Upload using OSS service
-                String keyframeUrl = ossStorageService.uploadFile(
-                    new java.io.FileInputStream(tempKeyframePath.toFile()),
-                    keyframeObjectName,
-                    "image/jpeg"
-                );
-                
-                // Generate long-lived signed URL for AI services (7 days)
-                // Qwen and other AI services need direct access to the image
-                String signedUrl = ossStorageService.generateSignedUrl(keyframeUrl, 7, java.util.concurrent.TimeUnit.DAYS);
-                
-                System.out.printf("✅ Keyframe extracted and uploaded successfully:%n");
-                System.out.printf("   Object name: %s%n", keyframeObjectName);
-                System.out.printf("   OSS URL: %s%n", keyframeUrl);
-                System.out.printf("   Signed URL (7 days): %s%n", signedUrl);
-                System.out.printf("   Generated at: %s%n", java.time.Instant.now());
-                
-                return signedUrl;
-                
-            } finally {
-                // Clean up temporary files
-                Files.deleteIfExists(tempVideoPath);
-                Files.deleteIfExists(tempKeyframePath);
             }
-            
-        } catch (IOException | InterruptedException e) {
-            System.err.printf("Error extracting keyframe from video %s: %s%n", videoUrl, e.getMessage());
+
+            System.out.printf("[KEYFRAME] ✅ %d/%d keyframes in %dms (mode=%s, ffmpeg=%dms, bytesDownloaded=%d)%n",
+                             results.stream().filter(r -> r != null).count(), startTimes.size(),
+                             System.currentTimeMillis() - startMs, mode, extractedMs, bytesDownloaded);
+
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            System.err.printf("Error extracting keyframes from video %s: %s%n", videoUrl, e.getMessage());
             e.printStackTrace();
-            return null;
+        } finally {
+            // Clean up temporary files
+            try {
+                if (tempVideoPath != null) Files.deleteIfExists(tempVideoPath);
+                if (tempDir != null) {
+                    File[] leftovers = tempDir.toFile().listFiles();
+                    if (leftovers != null) {
+                        for (File f : leftovers) f.delete();
+                    }
+                    Files.deleteIfExists(tempDir);
+                }
+            } catch (IOException ignored) {}
+        }
+
+        return results;
+    }
+
+    /**
+     * Pull seek targets back inside the video, so a scene starting in the last second (start
+     * + 1s lands at or past EOF) still gets a frame. Without a probe the targets are unchanged.
+     */
+    private void clampToDuration(String videoUrl, String signedVideoUrl, List<Double> targetSeconds) {
+        if (mediaProbeService == null) {
+            return;
+        }
+        try {
+            double duration = mediaProbeService.getDurationSeconds(videoUrl, signedVideoUrl);
+            double last = Math.max(0, duration - EOF_MARGIN_SECONDS);
+            for (int i = 0; i < targetSeconds.size(); i++) {
+                targetSeconds.set(i, Math.min(targetSeconds.get(i), last));
+            }
+        } catch (Exception e) {
+            System.err.printf("[KEYFRAME] Duration probe failed, seeking unclamped: %s%n", e.getMessage());
+        }
+    }
+
+    /**
+     * One ffmpeg process, one input per timestamp (input seeking), one JPEG output per input.
+     * Example for two scenes:
+     * ffmpeg -y -ss 1.0 -i SRC -ss 6.5 -i SRC -map 0:v:0 -frames:v 1 -q:v 2 k0.jpg -map 1:v:0 -frames:v 1 -q:v 2 k1.jpg
+     *
+     * @param indices positions in targetSeconds/frameFiles to extract
+     * @return the indices that produced no frame (empty when all succeeded)
+     */
+    private List<Integer> runFfmpegMultiSeek(String source, List<Integer> indices, List<Double> targetSeconds,
+                                             List<File> frameFiles) throws IOException, InterruptedException {
+        List<String> cmd = new ArrayList<>();
+        cmd.add("ffmpeg");
+        cmd.add("-y");
+        for (int index : indices) {
+            cmd.add("-ss");
+            cmd.add(String.valueOf(targetSeconds.get(index)));
+            cmd.add("-i");
+            cmd.add(source);
+        }
+        for (int input = 0; input < indices.size(); input++) {
+            cmd.add("-map");
+            cmd.add(input + ":v:0");
+            cmd.add("-frames:v");
+            cmd.add("1");
+            cmd.add("-q:v");
+            cmd.add("2");
+            cmd.add(frameFiles.get(indices.get(input)).getAbsolutePath());
+        }
+
+        System.out.printf("Running FFmpeg multi-seek for %d keyframe(s)%n", indices.size());
+        ProcessBuilder processBuilder = new ProcessBuilder(cmd);
+        processBuilder.redirectErrorStream(true);
+        Process process = processBuilder.start();
+
+        // Drain output so ffmpeg never blocks on a full pipe
+        StringBuilder output = new StringBuilder();
+        try (java.io.BufferedReader reader = new java.io.BufferedReader(
+                new java.io.InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.append(line).append("\n");
+            }
+        }
+
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            // Other outputs may still have been written; they are checked below
+            System.err.printf("[KEYFRAME] FFmpeg failed with exit code %d:%n%s%n", exitCode, output);
+        }
+        List<Integer> missing = new ArrayList<>();
+        for (int index : indices) {
+            File frameFile = frameFiles.get(index);
+            if (!frameFile.exists() || frameFile.length() == 0) {
+                System.err.printf("[KEYFRAME] FFmpeg produced no frame for %s%n", frameFile.getName());
+                missing.add(index);
+            }
+        }
+        return missing;
+    }
+
+    private String uploadKeyframe(File frameFile) {
+        try {
+            // Upload keyframe to OSS
+            String keyframeObjectName = KEYFRAMES_FOLDER + UUID.randomUUID().toString() + ".jpg";
+            String keyframeUrl = ossStorageService.uploadFile(frameFile, keyframeObjectName, "image/jpeg");
+
+            // Generate long-lived signed URL for AI services (7 days)
+            // Qwen and other AI services need direct access to the image
+            String signedUrl = ossStorageService.generateSignedUrl(keyframeUrl, 7, java.util.concurrent.TimeUnit.DAYS);
+
+            System.out.printf("✅ Keyframe uploaded: %s%n", keyframeObjectName);
+            return signedUrl;
+        } catch (IOException e) {
+            throw new RuntimeException("Keyframe upload failed: " + e.getMessage(), e);
         }
     }
 }
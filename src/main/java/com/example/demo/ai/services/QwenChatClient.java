@@ -0,0 +1,515 @@
+package com.example.demo.ai.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared client for the DashScope OpenAI-compatible chat completions endpoint.
+ *
+ * All Qwen callers (labeling, scene comparison, subtitle alignment, script segmentation)
+ * go through one pooled async HttpClient, so connections and TLS sessions are reused
+ * across calls instead of being set up per request. HTTP/2 is negotiated via ALPN where
+ * the endpoint supports it (many requests multiplexed over one connection), otherwise
+ * keep-alive HTTP/1.1 connections are pooled.
+ *
+ * Response timeouts default to qwen.client.read-timeout-ms and can be set per model with
+ * qwen.client.model-timeout-ms.{model}. Metrics: qwen.chat.latency (tagged by operation,
+ * model and outcome, so the error rate is the share of non-success outcomes) and
+ * qwen.chat.tokens (prompt/completion tokens from the response usage block).
+ *
+ * Callers of deterministic prompts can opt in to QwenResponseCache per call. Identical
+ * requests that are in flight at the same time (same content fingerprint) are coalesced:
+ * the first caller sends it and the others wait for and share its response
+ * (qwen.chat.coalesced counts the requests that were saved).
+ *
+ * Every attempt first takes a permit from QwenRateLimiter (per-model token bucket and
+ * circuit breaker). Operations listed in qwen.client.interactive-operations use the
+ * interactive lane, everything else the background lane. 429s, 5xx and transport failures
+ * are retried up to qwen.client.retry.max-attempts times with exponential backoff and full
+ * jitter; a Retry-After from the server pauses the whole model in the limiter.
+ */
+@Component
+public class QwenChatClient {
+
+    private static final Logger log = LoggerFactory.getLogger(QwenChatClient.class);
+
+    private static final String DEFAULT_ENDPOINT = "https://dashscope.aliyuncs.com/compatible-mode/v1/chat/completions";
+
+    @Value("${AI_QWEN_ENDPOINT:${qwen.api.base:}}")
+    private String qwenApiBase;
+
+    @Value("${AI_QWEN_API_KEY:${qwen.api.key:}}")
+    private String qwenApiKey;
+
+    @Value("${qwen.client.max-connections:32}")
+    private int maxConnections;
+
+    @Value("${qwen.client.connect-timeout-ms:10000}")
+    private long connectTimeoutMs;
+
+    @Value("${qwen.client.read-timeout-ms:60000}")
+    private long readTimeoutMs;
+
+    @Value("${qwen.client.http2.enabled:true}")
+    private boolean http2Enabled;
+
+    @Value("${qwen.client.coalesce.enabled:true}")
+    private boolean coalesceEnabled;
+
+    // Requests tracked for coalescing at once; past this, requests are sent uncoalesced
+    @Value("${qwen.client.coalesce.max-in-flight:1000}")
+    private int maxInFlight;
+
+    // Creator-facing calls, served ahead of background work by QwenRateLimiter
+    @Value("${qwen.client.interactive-operations:sceneComparison}")
+    private Set<String> interactiveOperations;
+
+    @Value("${qwen.client.retry.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${qwen.client.retry.base-backoff-ms:500}")
+    private long baseBackoffMs;
+
+    @Value("${qwen.client.retry.max-backoff-ms:10000}")
+    private long maxBackoffMs;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired(required = false)
+    private io.micrometer.core.instrument.MeterRegistry meterRegistry;
+
+    @Autowired
+    private QwenResponseCache responseCache;
+
+    @Autowired
+    private QwenRateLimiter rateLimiter;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private CloseableHttpAsyncClient httpClient;
+    private String endpoint;
+
+    // Fingerprint -> response of the request currently being sent
+    private final Map<String, CompletableFuture<ChatResponse>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Result of one chat completion call. Non-2xx responses are returned, not thrown.
+     */
+    public static class ChatResponse {
+        public final int status;
+        public final String body;
+        /** Message text (code fences stripped), null for errors or empty replies */
+        public final String content;
+        public final long latencyMs;
+
+        public ChatResponse(int status, String body, String content, long latencyMs) {
+            this.status = status;
+            this.body = body;
+            this.content = content;
+            this.latencyMs = latencyMs;
+        }
+
+        public boolean isSuccessful() {
+            return status >= 200 && status < 300;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        endpoint = normalizeChatEndpoint(qwenApiBase);
+        PoolingAsyncClientConnectionManager connectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(Math.max(1, maxConnections))
+            .setMaxConnPerRoute(Math.max(1, maxConnections)) // one route: the DashScope host
+            .setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                .setTimeToLive(TimeValue.ofMinutes(5))
+                .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                .build())
+            .setDefaultTlsConfig(TlsConfig.custom()
+                .setVersionPolicy(http2Enabled ? HttpVersionPolicy.NEGOTIATE : HttpVersionPolicy.FORCE_HTTP_1)
+                .build())
+            .build();
+        httpClient = HttpAsyncClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .build())
+            .evictExpiredConnections()
+            .evictIdleConnections(TimeValue.ofSeconds(30))
+            .build();
+        httpClient.start();
+        if (meterRegistry != null) {
+            io.micrometer.core.instrument.Gauge.builder("qwen.chat.in_flight", inFlight, Map::size)
+                .register(meterRegistry);
+        }
+        log.info("[QWEN-CLIENT] {} (max {} connections, http2 {})", endpoint, maxConnections, http2Enabled ? "negotiated" : "off");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (httpClient != null) {
+            httpClient.close(CloseMode.GRACEFUL);
+        }
+    }
+
+    public boolean isConfigured() {
+        return qwenApiKey != null && !qwenApiKey.isBlank();
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * POST a chat completion request
+     * @param operation caller name, used as a metric tag and in logs
+     * @param request OpenAI-style request body (model, messages, ...)
+     * @throws IOException on connection failures and timeouts (after retries), or when the
+     *                     rate limiter sheds the call
+     */
+    public ChatResponse chat(String operation, Map<String, Object> request) throws IOException, InterruptedException {
+        return chat(operation, request, false);
+    }
+
+    /**
+     * @param cacheable serve the response from, and store it in, QwenResponseCache. Only
+     *                  successful replies with content are stored; cache hits have latencyMs 0.
+     */
+    public ChatResponse chat(String operation, Map<String, Object> request, boolean cacheable)
+            throws IOException, InterruptedException {
+        boolean useCache = cacheable && responseCache.isEnabled();
+        String fingerprint = useCache || coalesceEnabled ? responseCache.key(request) : null;
+        if (useCache && fingerprint != null) {
+            String cachedBody = responseCache.get(operation, fingerprint);
+            if (cachedBody != null) {
+                return new ChatResponse(200, cachedBody, extractContent(cachedBody), 0);
+            }
+        }
+
+        if (!coalesceEnabled || fingerprint == null || inFlight.size() >= maxInFlight) {
+            return sendAndStore(operation, request, useCache ? fingerprint : null);
+        }
+        CompletableFuture<ChatResponse> own = new CompletableFuture<>();
+        CompletableFuture<ChatResponse> leader = inFlight.putIfAbsent(fingerprint, own);
+        if (leader != null) {
+            coalesced.incrementAndGet();
+            if (meterRegistry != null) {
+                meterRegistry.counter("qwen.chat.coalesced", "operation", operation).increment();
+            }
+            try {
+                return leader.get(); // The leader's call is bounded by its own timeouts
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                throw cause instanceof IOException ? (IOException) cause : new IOException("Qwen call failed: " + cause, cause);
+            }
+        }
+
+        try {
+            ChatResponse response = sendAndStore(operation, request, useCache ? fingerprint : null);
+            own.complete(response);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            own.completeExceptionally(e);
+            throw e;
+        } catch (InterruptedException e) {
+            own.completeExceptionally(new IOException("Qwen call interrupted (" + operation + ")", e));
+            throw e;
+        } finally {
+            inFlight.remove(fingerprint, own);
+        }
+    }
+
+    /**
+     * Drop a cached reply the caller could not use, so the next identical request goes to the API
+     */
+    public void evictCached(Map<String, Object> request) {
+        if (responseCache.isEnabled()) {
+            responseCache.evict(responseCache.key(request));
+        }
+    }
+
+    /**
+     * @param cacheKey store a usable reply under this key, or null
+     */
+    private ChatResponse sendAndStore(String operation, Map<String, Object> request, String cacheKey)
+            throws IOException, InterruptedException {
+        ChatResponse response = send(operation, request);
+        if (cacheKey != null && response.isSuccessful() && response.content != null) {
+            responseCache.put(operation, String.valueOf(request.get("model")), cacheKey, response.body);
+        }
+        return response;
+    }
+
+    /**
+     * One call with rate limiting and retries; the last response or failure is returned/thrown
+     */
+    private ChatResponse send(String operation, Map<String, Object> request) throws IOException, InterruptedException {
+        String model = String.valueOf(request.get("model"));
+        QwenRateLimiter.Priority priority = interactiveOperations.contains(operation)
+            ? QwenRateLimiter.Priority.INTERACTIVE : QwenRateLimiter.Priority.BACKGROUND;
+        // Serialized before taking a permit, so a bad request can't hold the breaker's probe slot
+        byte[] requestBody = objectMapper.writeValueAsBytes(request);
+        int attempts = Math.max(1, maxAttempts);
+        for (int attempt = 1; ; attempt++) {
+            // Breaker and lane rejections are not retried
+            QwenRateLimiter.Permit permit = rateLimiter.acquire(model, priority);
+            String retryReason;
+            boolean outcomeReported = false;
+            try {
+                ChatResponse response = sendOnce(operation, permit, requestBody);
+                outcomeReported = true;
+                if (!isRetryable(response.status) || attempt >= attempts) {
+                    return response;
+                }
+                retryReason = String.valueOf(response.status);
+            } catch (IOException e) {
+                outcomeReported = true; // Transport failures are reported by sendOnce
+                if (attempt >= attempts) {
+                    throw e;
+                }
+                retryReason = "error";
+            } finally {
+                if (!outcomeReported) {
+                    // Interrupted or failed locally: free the probe slot without judging the model
+                    rateLimiter.onAbandoned(permit);
+                }
+            }
+            long ceilingMs = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempt - 1, 20));
+            long sleepMs = ThreadLocalRandom.current().nextLong(Math.max(1, ceilingMs) + 1);
+            log.info("[QWEN-CLIENT] {} model={} attempt {}/{} failed ({}), retrying in {}ms",
+                operation, model, attempt, attempts, retryReason, sleepMs);
+            if (meterRegistry != null) {
+                meterRegistry.counter("qwen.chat.retries", "operation", operation, "reason", retryReason).increment();
+            }
+            Thread.sleep(sleepMs);
+        }
+    }
+
+    /**
+     * Exactly one HTTP exchange. Every response and transport failure is reported to the
+     * rate limiter; interruptions are left to the caller.
+     */
+    private ChatResponse sendOnce(String operation, QwenRateLimiter.Permit permit, byte[] requestBody)
+            throws IOException, InterruptedException {
+        String model = permit.getModel();
+        long timeoutMs = environment.getProperty("qwen.client.model-timeout-ms." + model, Long.class, readTimeoutMs);
+
+        SimpleHttpRequest httpRequest = SimpleRequestBuilder.post(endpoint)
+            .setHeader("Authorization", "Bearer " + qwenApiKey)
+            .setBody(requestBody, ContentType.APPLICATION_JSON)
+            .setRequestConfig(RequestConfig.custom().setResponseTimeout(Timeout.ofMilliseconds(timeoutMs)).build())
+            .build();
+
+        long start = System.nanoTime();
+        Future<SimpleHttpResponse> future = httpClient.execute(httpRequest, null);
+        SimpleHttpResponse response;
+        try {
+            // The response timeout covers socket inactivity; this bounds the whole exchange
+            response = future.get(timeoutMs + connectTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            record(operation, model, "error", start);
+            rateLimiter.onFailure(permit);
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw cause instanceof IOException ? (IOException) cause : new IOException("Qwen call failed: " + cause, cause);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            record(operation, model, "error", start);
+            rateLimiter.onFailure(permit);
+            throw new IOException("Qwen call timed out after " + timeoutMs + "ms (" + operation + ")", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        }
+
+        byte[] bytes = response.getBodyBytes();
+        String body = bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+        boolean success = response.getCode() >= 200 && response.getCode() < 300;
+        long latencyMs = record(operation, model, success ? "success" : "http_error", start);
+        if (response.getCode() == 429) {
+            rateLimiter.onThrottled(permit, retryAfterMs(response));
+        } else if (response.getCode() >= 500) {
+            rateLimiter.onFailure(permit);
+        } else {
+            rateLimiter.onSuccess(permit);
+        }
+        if (!success) {
+            log.warn("[QWEN-CLIENT] {} model={} status={} in {}ms", operation, model, response.getCode(), latencyMs);
+            return new ChatResponse(response.getCode(), body, null, latencyMs);
+        }
+        recordTokens(model, body);
+        return new ChatResponse(response.getCode(), body, extractContent(body), latencyMs);
+    }
+
+    private static boolean isRetryable(int status) {
+        return status == 429 || status == 500 || status == 502 || status == 503 || status == 504;
+    }
+
+    /**
+     * Retry-After of a response in ms (delta-seconds or HTTP-date), 0 if absent or unparseable
+     */
+    private static long retryAfterMs(SimpleHttpResponse response) {
+        org.apache.hc.core5.http.Header header = response.getFirstHeader("Retry-After");
+        if (header == null || header.getValue() == null) {
+            return 0;
+        }
+        String value = header.getValue().trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                long at = java.time.ZonedDateTime.parse(value, java.time.format.DateTimeFormatter.RFC_1123_DATE_TIME)
+                    .toInstant().toEpochMilli();
+                return Math.max(0, at - System.currentTimeMillis());
+            } catch (Exception ignored) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Message text of a chat completion response: content parts, plain content, or the
+     * output_text fallbacks, with markdown code fences removed
+     */
+    public String extractContent(String responseBody) {
+        if (responseBody == null || responseBody.isBlank()) return null;
+        try {
+            JsonNode root = objectMapper.readTree(responseBody);
+            JsonNode choices = root.path("choices");
+            if (choices.isArray() && choices.size() > 0) {
+                JsonNode message = choices.get(0).path("message");
+                JsonNode contentNode = message.path("content");
+
+                // A) Array of parts
+                if (contentNode.isArray()) {
+                    StringBuilder sb = new StringBuilder();
+                    for (JsonNode part : contentNode) {
+                        String type = part.path("type").asText("");
+                        if ("text".equals(type) || "output_text".equals(type)) {
+                            sb.append(part.path("text").asText(""));
+                        }
+                    }
+                    String s = stripCodeFences(sb.toString().trim());
+                    if (!s.isEmpty()) return s;
+                }
+
+                // B) Plain string
+                if (contentNode.isTextual()) {
+                    String s = stripCodeFences(contentNode.asText("").trim());
+                    if (!s.isEmpty()) return s;
+                }
+
+                // C) message.output_text
+                String mo = stripCodeFences(message.path("output_text").asText("").trim());
+                if (!mo.isEmpty()) return mo;
+            }
+            // D) Top-level fallbacks
+            String alt = stripCodeFences(root.path("output_text").asText("").trim());
+            if (!alt.isEmpty()) return alt;
+            String plain = stripCodeFences(choices.path(0).path("text").asText("").trim());
+            return plain.isEmpty() ? null : plain;
+        } catch (Exception e) {
+            log.warn("[QWEN-CLIENT] Failed to extract content: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private String stripCodeFences(String s) {
+        if (s == null) return null;
+        s = s.replaceAll("(?s)```json\\s*(.*?)\\s*```", "$1");
+        s = s.replaceAll("(?s)```\\s*(.*?)\\s*```", "$1");
+        return s.trim();
+    }
+
+    /**
+     * Accepts a full chat URL, a compatible-mode base ending in /v1, or nothing (DashScope default)
+     */
+    private String normalizeChatEndpoint(String base) {
+        if (base == null || base.isBlank()) return DEFAULT_ENDPOINT;
+        base = base.trim();
+        while (base.endsWith("/")) {
+            base = base.substring(0, base.length() - 1);
+        }
+
+        if (base.startsWith("http")) {
+            if (base.endsWith("/chat/completions")) return base;
+            if (base.endsWith("/v1")) return base + "/chat/completions";
+            try {
+                java.net.URI u = java.net.URI.create(base);
+                if (u.getHost() != null && u.getHost().contains("dashscope.aliyuncs.com")) {
+                    return DEFAULT_ENDPOINT;
+                }
+            } catch (Exception ignored) {}
+            return base; // assume already a full chat URL
+        }
+        return DEFAULT_ENDPOINT;
+    }
+
+    private long record(String operation, String model, String outcome, long startNanos) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        if (meterRegistry != null) {
+            meterRegistry.timer("qwen.chat.latency", "operation", operation, "model", model, "outcome", outcome)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    private void recordTokens(String model, String body) {
+        if (meterRegistry == null || body == null) {
+            return;
+        }
+        try {
+            JsonNode usage = objectMapper.readTree(body).path("usage");
+            if (usage.has("prompt_tokens")) {
+                meterRegistry.counter("qwen.chat.tokens", "model", model, "type", "prompt")
+                    .increment(usage.path("prompt_tokens").asLong());
+            }
+            if (usage.has("completion_tokens")) {
+                meterRegistry.counter("qwen.chat.tokens", "model", model, "type", "completion")
+                    .increment(usage.path("completion_tokens").asLong());
+            }
+        } catch (Exception ignored) {
+            // Usage is informational only
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package com.example.demo.ai.services;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side throttling for DashScope, one token bucket and one circuit breaker per model.
+ *
+ * Buckets refill at qwen.client.rate.{model}.requests-per-second (falling back to
+ * qwen.client.rate.requests-per-second) and adapt to the server: a 429 halves the rate and
+ * pauses the model for the Retry-After period, and each success adds back a small step
+ * until the configured rate is reached again (AIMD).
+ *
+ * Callers are in one of two lanes. Interactive calls (creator scene comparisons) always
+ * take the next token; background calls (template generation, labeling) only get one when
+ * no interactive call is waiting. A caller whose wait would exceed its lane's max-wait is
+ * rejected straight away instead of queueing.
+ *
+ * The breaker opens after circuit.failure-threshold consecutive failures (transport errors,
+ * timeouts, 5xx) and rejects calls for circuit.open-ms; then a single probe is let through,
+ * and its outcome closes or re-opens it. Rejections are IOExceptions, like other transport
+ * failures, so callers need no extra handling. acquire hands out a Permit that records
+ * whether it holds the probe slot; outcomes are reported with it, so only the probe's own
+ * outcome (or abandonment) can free that slot.
+ */
+@Component
+public class QwenRateLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(QwenRateLimiter.class);
+
+    public enum Priority { INTERACTIVE, BACKGROUND }
+
+    /**
+     * Leave to call a model once; report the call's outcome with it
+     */
+    public static final class Permit {
+        private final String model;
+        private final boolean probe;
+
+        private Permit(String model, boolean probe) {
+            this.model = model;
+            this.probe = probe;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        /**
+         * Whether this call is the half-open breaker's single probe
+         */
+        public boolean isProbe() {
+            return probe;
+        }
+    }
+
+    @Value("${qwen.client.rate.enabled:true}")
+    private boolean enabled;
+
+    @Value("${qwen.client.rate.requests-per-second:5}")
+    private double defaultRequestsPerSecond;
+
+    // Tokens a bucket can hold, i.e. the largest burst sent without waiting
+    @Value("${qwen.client.rate.burst:5}")
+    private int burst;
+
+    // Floor for the adapted rate, so a model is never throttled to a standstill
+    @Value("${qwen.client.rate.min-requests-per-second:0.2}")
+    private double minRequestsPerSecond;
+
+    @Value("${qwen.client.rate.max-wait-ms.interactive:30000}")
+    private long interactiveMaxWaitMs;
+
+    @Value("${qwen.client.rate.max-wait-ms.background:120000}")
+    private long backgroundMaxWaitMs;
+
+    @Value("${qwen.client.circuit.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${qwen.client.circuit.open-ms:30000}")
+    private long openMs;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired(required = false)
+    private io.micrometer.core.instrument.MeterRegistry meterRegistry;
+
+    private final Map<String, ModelState> models = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        log.info("[QWEN-LIMITER] {} ({} req/s default, burst {}, breaker after {} failures for {}ms)",
+            enabled ? "enabled" : "disabled", defaultRequestsPerSecond, burst, failureThreshold, openMs);
+    }
+
+    /**
+     * Block until the model may be called
+     * @throws IOException if the breaker is open or the wait would exceed the lane's max-wait
+     */
+    public Permit acquire(String model, Priority priority) throws IOException, InterruptedException {
+        if (!enabled) {
+            return new Permit(model, false);
+        }
+        ModelState state = state(model);
+        Permit permit = state.admit();
+        if (permit == null) {
+            count("qwen.circuit.rejected", model, priority);
+            throw new IOException("Qwen circuit open for " + model + ", failing fast");
+        }
+        long start = System.nanoTime();
+        boolean acquired = false;
+        try {
+            state.takeToken(priority, priority == Priority.INTERACTIVE ? interactiveMaxWaitMs : backgroundMaxWaitMs);
+            acquired = true;
+        } finally {
+            if (!acquired && permit.probe) {
+                // The probe slot must not stay taken
+                state.releaseProbe();
+            }
+            if (meterRegistry != null) {
+                meterRegistry.timer("qwen.rate_limit.wait", "model", model, "priority", lane(priority), "outcome",
+                        acquired ? "acquired" : "rejected")
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+        return permit;
+    }
+
+    public void onSuccess(Permit permit) {
+        if (enabled) {
+            state(permit.model).onSuccess();
+        }
+    }
+
+    /**
+     * The server answered 429
+     * @param retryAfterMs pause requested by the server, or 0 if none was given
+     */
+    public void onThrottled(Permit permit, long retryAfterMs) {
+        if (enabled) {
+            state(permit.model).onThrottled(permit.probe, retryAfterMs);
+            if (meterRegistry != null) {
+                meterRegistry.counter("qwen.rate_limit.throttled", "model", permit.model).increment();
+            }
+        }
+    }
+
+    /**
+     * Transport failure, timeout or 5xx
+     */
+    public void onFailure(Permit permit) {
+        if (enabled) {
+            state(permit.model).onFailure(permit.probe);
+        }
+    }
+
+    /**
+     * A permitted call ended without an outcome (interrupted, or failed before it was sent)
+     */
+    public void onAbandoned(Permit permit) {
+        if (enabled && permit.probe) {
+            state(permit.model).releaseProbe();
+        }
+    }
+
+    private ModelState state(String model) {
+        return models.computeIfAbsent(model, m -> {
+            double rate = environment.getProperty("qwen.client.rate." + m + ".requests-per-second",
+                Double.class, defaultRequestsPerSecond);
+            ModelState state = new ModelState(m, Math.max(minRequestsPerSecond, rate));
+            if (meterRegistry != null) {
+                io.micrometer.core.instrument.Gauge.builder("qwen.rate_limit.rate", state, ModelState::currentRate)
+                    .tag("model", m)
+                    .register(meterRegistry);
+                io.micrometer.core.instrument.Gauge.builder("qwen.circuit.state", state, ModelState::circuitLevel)
+                    .tag("model", m)
+                    .description("0 closed, 1 half-open, 2 open")
+                    .register(meterRegistry);
+            }
+            return state;
+        });
+    }
+
+    private void count(String name, String model, Priority priority) {
+        if (meterRegistry != null) {
+            meterRegistry.counter(name, "model", model, "priority", lane(priority)).increment();
+        }
+    }
+
+    private static String lane(Priority priority) {
+        return priority == Priority.INTERACTIVE ? "interactive" : "background";
+    }
+
+    /**
+     * Bucket and breaker of one model; all state is guarded by the instance monitor
+     */
+    private class ModelState {
+        final String model;
+        final double configuredRate;
+
+        double rate;
+        double tokens;
+        long lastRefillNanos = System.nanoTime();
+        long pausedUntilMillis;
+        int interactiveWaiting;
+
+        int consecutiveFailures;
+        long openUntilMillis;
+        boolean halfOpen;
+        boolean probeInFlight;
+
+        ModelState(String model, double configuredRate) {
+            this.model = model;
+            this.configuredRate = configuredRate;
+            this.rate = configuredRate;
+            this.tokens = Math.max(1, burst);
+        }
+
+        /**
+         * @return a permit, or null while the breaker rejects calls
+         */
+        synchronized Permit admit() {
+            long now = System.currentTimeMillis();
+            if (openUntilMillis == 0) {
+                return new Permit(model, false);
+            }
+            if (now < openUntilMillis) {
+                return null;
+            }
+            // Open period over: let exactly one probe through
+            halfOpen = true;
+            if (probeInFlight) {
+                return null;
+            }
+            probeInFlight = true;
+            return new Permit(model, true);
+        }
+
+        synchronized void releaseProbe() {
+            probeInFlight = false;
+        }
+
+        synchronized void takeToken(Priority priority, long maxWaitMs) throws IOException, InterruptedException {
+            boolean interactive = priority == Priority.INTERACTIVE;
+            long deadline = System.currentTimeMillis() + maxWaitMs;
+            if (interactive) {
+                interactiveWaiting++;
+            }
+            try {
+                while (true) {
+                    refill();
+                    long now = System.currentTimeMillis();
+                    long waitMs;
+                    if (now < pausedUntilMillis) {
+                        waitMs = pausedUntilMillis - now;
+                    } else if (!interactive && interactiveWaiting > 0) {
+                        waitMs = 100; // woken early when an interactive caller leaves
+                    } else if (tokens >= 1) {
+                        tokens -= 1;
+                        return;
+                    } else {
+                        waitMs = (long) Math.ceil((1 - tokens) * 1000 / rate);
+                    }
+                    long remaining = deadline - now;
+                    if (waitMs > remaining) {
+                        throw new IOException("Qwen rate limit for " + model + ": no capacity within " + maxWaitMs + "ms");
+                    }
+                    wait(Math.max(1, waitMs));
+                }
+            } finally {
+                if (interactive) {
+                    interactiveWaiting--;
+                    notifyAll();
+                }
+            }
+        }
+
+        synchronized void onSuccess() {
+            consecutiveFailures = 0;
+            if (halfOpen || openUntilMillis != 0) {
+                log.info("[QWEN-LIMITER] Circuit for {} closed", model);
+            }
+            openUntilMillis = 0;
+            halfOpen = false;
+            probeInFlight = false;
+            // Additive increase back towards the configured rate
+            rate = Math.min(configuredRate, rate + configuredRate * 0.05);
+        }
+
+        synchronized void onThrottled(boolean probe, long retryAfterMs) {
+            refill();
+            rate = Math.max(minRequestsPerSecond, rate / 2);
+            tokens = Math.min(tokens, 0);
+            if (retryAfterMs > 0) {
+                pausedUntilMillis = Math.max(pausedUntilMillis, System.currentTimeMillis() + retryAfterMs);
+            }
+            // A throttled probe neither closes nor re-opens the breaker
+            if (probe) {
+                probeInFlight = false;
+            }
+            log.warn("[QWEN-LIMITER] {} throttled (retry-after {}ms), rate now {} req/s",
+                model, retryAfterMs, String.format("%.2f", rate));
+        }
+
+        synchronized void onFailure(boolean probe) {
+            consecutiveFailures++;
+            if (probe) {
+                probeInFlight = false;
+            }
+            if (halfOpen || consecutiveFailures >= Math.max(1, failureThreshold)) {
+                if (openUntilMillis == 0 || halfOpen) {
+                    log.warn("[QWEN-LIMITER] Circuit for {} opened after {} consecutive failures", model, consecutiveFailures);
+                }
+                openUntilMillis = System.currentTimeMillis() + openMs;
+                halfOpen = false;
+            }
+        }
+
+        synchronized double currentRate() {
+            return rate;
+        }
+
+        synchronized double circuitLevel() {
+            if (openUntilMillis == 0) {
+                return 0;
+            }
+            return halfOpen || System.currentTimeMillis() >= openUntilMillis ? 1 : 2;
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(Math.max(1, burst), tokens + (now - lastRefillNanos) / 1e9 * rate);
+            lastRefillNanos = now;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.demo.ai.services;
+
+import com.example.demo.dao.QwenResponseCacheDao;
+import com.example.demo.model.QwenResponseCacheEntry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Two-tier cache of Qwen chat completion responses (see QwenChatClient.chat(..., cacheable)).
+ *
+ * Keys are content addresses: SHA-256 of the request serialized with sorted map keys, so the
+ * model, prompt and every embedded image (data URLs carry the image bytes) are all part of
+ * the key, and any change to them is a miss. Tier 1 is an in-memory LRU bounded by entries
+ * and bytes; tier 2 is the qwenResponseCache collection, which survives restarts and is
+ * shared by all instances. Both tiers expire entries after ttl-hours.
+ *
+ * Only deterministic calls should opt in; callers that find a cached reply unusable
+ * (e.g. unparseable JSON) evict it so the next run asks again.
+ */
+@Component
+public class QwenResponseCache {
+
+    private static final Logger log = LoggerFactory.getLogger(QwenResponseCache.class);
+
+    // Firestore documents are limited to 1 MiB
+    private static final int MAX_PERSISTED_CHARS = 900_000;
+
+    @Autowired(required = false)
+    private QwenResponseCacheDao responseCacheDao;
+
+    @Autowired(required = false)
+    private io.micrometer.core.instrument.MeterRegistry meterRegistry;
+
+    @Value("${qwen.response-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${qwen.response-cache.firestore.enabled:true}")
+    private boolean firestoreEnabled;
+
+    @Value("${qwen.response-cache.memory.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${qwen.response-cache.memory.max-bytes:33554432}")
+    private long maxBytes;
+
+    @Value("${qwen.response-cache.ttl-hours:168}")
+    private long ttlHours;
+
+    private final ObjectMapper canonicalMapper = new ObjectMapper()
+        .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private long totalChars; // guarded by entries
+
+    // Access-ordered LRU; guarded by its own monitor
+    private final Map<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    private static class Entry {
+        final String body;
+        final long expiresAt;
+
+        Entry(String body, long expiresAt) {
+            this.body = body;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Content address of a request, or null if it can't be serialized. Also used by
+     * QwenChatClient as the fingerprint for coalescing concurrent identical requests.
+     */
+    public String key(Map<String, Object> request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonicalMapper.writeValueAsBytes(request));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Cached response body, or null on a miss
+     */
+    public String get(String operation, String key) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                count(operation, "memory_hit");
+                return entry.body;
+            }
+            if (entry != null) {
+                removeLocked(key);
+            }
+        }
+
+        if (firestoreEnabled && responseCacheDao != null) {
+            try {
+                QwenResponseCacheEntry persisted = responseCacheDao.findByKey(key);
+                if (persisted != null && persisted.getBody() != null
+                        && persisted.getExpiresAt() != null && persisted.getExpiresAt().getTime() > now) {
+                    storeInMemory(key, persisted.getBody(), persisted.getExpiresAt().getTime());
+                    count(operation, "firestore_hit");
+                    return persisted.getBody();
+                }
+            } catch (Exception e) {
+                log.warn("[QWEN-CACHE] Firestore lookup failed: {}", e.getMessage());
+            }
+        }
+        count(operation, "miss");
+        return null;
+    }
+
+    public void put(String operation, String model, String key, String body) {
+        long expiresAt = System.currentTimeMillis() + ttlHours * 3_600_000;
+        storeInMemory(key, body, expiresAt);
+
+        if (firestoreEnabled && responseCacheDao != null && body.length() <= MAX_PERSISTED_CHARS) {
+            try {
+                QwenResponseCacheEntry entry = new QwenResponseCacheEntry();
+                entry.setId(key);
+                entry.setOperation(operation);
+                entry.setModel(model);
+                entry.setBody(body);
+                entry.setExpiresAt(new Date(expiresAt));
+                responseCacheDao.save(entry);
+            } catch (Exception e) {
+                log.warn("[QWEN-CACHE] Firestore write failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    public void evict(String key) {
+        if (key == null) {
+            return;
+        }
+        synchronized (entries) {
+            removeLocked(key);
+        }
+        if (firestoreEnabled && responseCacheDao != null) {
+            try {
+                responseCacheDao.delete(key);
+            } catch (Exception e) {
+                log.warn("[QWEN-CACHE] Firestore delete failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void storeInMemory(String key, String body, long expiresAt) {
+        if (body.length() > maxBytes) {
+            return;
+        }
+        synchronized (entries) {
+            removeLocked(key);
+            entries.put(key, new Entry(body, expiresAt));
+            totalChars += body.length();
+            Iterator<Entry> eldest = entries.values().iterator();
+            while ((totalChars > maxBytes || entries.size() > Math.max(1, maxEntries)) && eldest.hasNext()) {
+                totalChars -= eldest.next().body.length();
+                eldest.remove();
+            }
+        }
+    }
+
+    private void removeLocked(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            totalChars -= removed.body.length();
+        }
+    }
+
+    private void count(String operation, String result) {
+        if (meterRegistry != null) {
+            meterRegistry.counter("qwen.response_cache.requests", "operation", operation, "result", result).increment();
+        }
+    }
+}
@@ -33,21 +33,16 @@ public class QwenSceneComparisonService {
     private KeyframeExtractionService keyframeExtractionService;
     
     @Autowired
-    private com.example.demo.service.AlibabaOssStorageService ossStorageService;
+    private QwenChatClient qwenChatClient;
     
-    private final ObjectMapper objectMapper = new ObjectMapper();
-    
-    @Value("${AI_QWEN_ENDPOINT:${qwen.api.base:}}")
-    private String qwenApiBase;
+    @Autowired
+    private com.example.demo.service.KeyframeImageCache keyframeImageCache;
     
-    @Value("${AI_QWEN_API_KEY:${qwen.api.key:}}")
-    private String qwenApiKey;
+    private final ObjectMapper objectMapper = new ObjectMapper();
     
     @Value("${AI_QWEN_MODEL:${qwen.model:qwen-plus}}")
     private String qwenModel;
     
-    private final org.springframework.web.client.RestTemplate restTemplate = new org.springframework.web.client.RestTemplate();
-    
     /**
      * Direct 2-image comparison with purpose-driven evaluation
      * Skips separate user video analysis - compares images directly with context
@@ -281,11 +276,11 @@ public class QwenSceneComparisonService {
         // Content with 2 images + text
         List<Map<String, Object>> content = new ArrayList<>();
         
-        // Image 1: Template (convert to data URL to avoid download timeout)
+        // Image 1: Template (data URL to avoid download timeout; cached, the same template image recurs)
         Map<String, Object> img1 = new HashMap<>();
         img1.put("type", "image_url");
         Map<String, String> img1Url = new HashMap<>();
-        String templateDataUrl = toDataUrlSafe(templateImageUrl);
+        String templateDataUrl = keyframeImageCache.toDataUrl(templateImageUrl);
         img1Url.put("url", templateDataUrl);
         img1.put("image_url", img1Url);
         content.add(img1);
@@ -294,7 +289,7 @@ public class QwenSceneComparisonService {
         Map<String, Object> img2 = new HashMap<>();
         img2.put("type", "image_url");
         Map<String, String> img2Url = new HashMap<>();
-        String userDataUrl = toDataUrlSafe(userImageUrl);
+        String userDataUrl = keyframeImageCache.toDataUrl(userImageUrl);
         img2Url.put("url", userDataUrl);
         img2.put("image_url", img2Url);
         content.add(img2);
@@ -310,27 +305,13 @@ public class QwenSceneComparisonService {
         request.put("messages", messages);
         
         // Call API
-        String requestJson = objectMapper.writeValueAsString(request);
-        
-        org.springframework.http.HttpHeaders headers = new org.springframework.http.HttpHeaders();
-        headers.setContentType(org.springframework.http.MediaType.APPLICATION_JSON);
-        headers.set("Authorization", "Bearer " + qwenApiKey);
-        
-        org.springframework.http.HttpEntity<String> entity = new org.springframework.http.HttpEntity<>(requestJson, headers);
-        
-        // Normalize endpoint to ensure it ends with /chat/completions
-        String endpoint = normalizeChatEndpoint(qwenApiBase);
-        log.info("[DIRECT-COMPARISON] Calling Qwen API endpoint: {}", endpoint);
-        
-        org.springframework.http.ResponseEntity<String> response = restTemplate.exchange(
-            endpoint,
-            org.springframework.http.HttpMethod.POST,
-            entity,
-            String.class
-        );
+        log.info("[DIRECT-COMPARISON] Calling Qwen API endpoint: {}", qwenChatClient.getEndpoint());
+        QwenChatClient.ChatResponse response = qwenChatClient.chat("sceneComparison", request);
+        if (!response.isSuccessful()) {
+            throw new Exception("Qwen VL returned status " + response.status);
+        }
         
-        // Extract content from response
-        String responseContent = extractContent(response.getBody());
+        String responseContent = response.content;
         if (responseContent == null) {
             throw new Exception("Could not extract content from Qwen VL response");
         }
@@ -432,67 +413,4 @@ public class QwenSceneComparisonService {
         log.info("[DIRECT-COMPARISON] Fallback result created with score=50");
         return result;
     }
-    
-    /**
-     * Extract content from Qwen API response
-     */
-    private String extractContent(String responseBody) {
-        try {
-            com.fasterxml.jackson.databind.JsonNode root = objectMapper.readTree(responseBody);
-            com.fasterxml.jackson.databind.JsonNode choices = root.get("choices");
-            if (choices != null && choices.isArray() && choices.size() > 0) {
-                com.fasterxml.jackson.databind.JsonNode message = choices.get(0).get("message");
-                if (message != null) {
-                    com.fasterxml.jackson.databind.JsonNode content = message.get("content");
-                    if (content != null) {
-                        String text = content.asText();
-                        // Strip markdown code fences
-                        text = text.replaceAll("(?s)```json\\s*", "").replaceAll("(?s)```\\s*$", "").trim();
-                        return text;
-                    }
-                }
-            }
-        } catch (Exception e) {
-            log.warn("[DIRECT-COMPARISON] Failed to extract content: {}", e.getMessage());
-        }
-        return null;
-    }
-    
-    /**
-     * Normalize Qwen API endpoint to ensure it ends with /chat/completions
-     */
-    private String normalizeChatEndpoint(String base) {
-        String def = "https://dashscope.aliyuncs.com/compatible-mode/v1/chat/completions";
-        if (base == null || base.isBlank()) return def;
-
-        if (base.startsWith("http")) {
-            if (base.endsWith("/chat/completions")) return base;
-            if (base.contains("/compatible-mode/") && base.endsWith("/v1")) return base + "/chat/completions";
-            try {
-                java.net.URI u = java.net.URI.create(base);
-                if (u.getHost() != null && u.getHost().contains("dashscope.aliyuncs.com")) {
-                    return def;
-                }
-            } catch (Exception ignored) {}
-            return base; // assume already a full chat URL
-        }
-        return def;
-    }
-    
-    /**
-     * Convert remote image URL to data:image/jpeg;base64,.... If download fails, return original URL.
-     * Uses OSS service for authenticated downloads.
-     */
-    private String toDataUrlSafe(String imageUrl) {
-        try {
-            // Use OSS service for authenticated download
-            byte[] imageBytes = ossStorageService.downloadToByteArray(imageUrl);
-            String b64 = java.util.Base64.getEncoder().encodeToString(imageBytes);
-            return "data:image/jpeg;base64," + b64;
-        } catch (Exception e) {
-            log.warn("[DIRECT-COMPARISON] Failed to convert image to data URL: {}", e.getMessage());
-            // Fallback to original URL if we cannot embed
-            return imageUrl;
-        }
-    }
 }
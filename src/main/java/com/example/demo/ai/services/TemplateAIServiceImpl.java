@@ -72,6 +72,29 @@ public class TemplateAIServiceImpl implements TemplateAIService {
     @Autowired
     private UnifiedSceneAnalysisService sceneAnalysisService;
     
+    @Autowired
+    private KeyframeExtractionService keyframeExtractionService;
+    
+    @org.springframework.beans.factory.annotation.Value("${ai.scenes.analysis.parallelism:4}")
+    private int sceneAnalysisParallelism;
+    
+    private java.util.concurrent.ExecutorService sceneAnalysisExecutor;
+    
+    @jakarta.annotation.PostConstruct
+    public void initSceneAnalysisExecutor() {
+        java.util.concurrent.atomic.AtomicInteger threadCount = new java.util.concurrent.atomic.AtomicInteger();
+        sceneAnalysisExecutor = java.util.concurrent.Executors.newFixedThreadPool(Math.max(1, sceneAnalysisParallelism), r -> {
+            Thread t = new Thread(r, "scene-analysis-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+    
+    @jakarta.annotation.PreDestroy
+    public void shutdownSceneAnalysisExecutor() {
+        sceneAnalysisExecutor.shutdownNow();
+    }
+    
     @Autowired
     private ObjectLabelService objectLabelService;
     
@@ -395,7 +418,8 @@ public class TemplateAIServiceImpl implements TemplateAIService {
     /**
      * Analyze each scene with Qwen VL
      * 
-     * For each scene:
+     * Keyframes are batch-extracted first, then scenes are analyzed in parallel on the
+     * scene-analysis pool and merged back in scene order. For each scene:
      * 1. Extract keyframe (from Azure shots or video)
      * 2. Get Azure detected objects for this scene
      * 3. Qwen VL grounding: Ground objects with bounding boxes
@@ -416,49 +440,31 @@ public class TemplateAIServiceImpl implements TemplateAIService {
         log.info("✅ Combined scriptLines from all scenes: \"{}\"", 
             combinedScriptLines.length() > 100 ? combinedScriptLines.substring(0, 100) + "..." : combinedScriptLines);
         
+        // Extract all keyframes up front: one read of the video + one ffmpeg run
+        // instead of a full download per scene
+        List<Duration> keyframeStarts = new ArrayList<>();
         for (Scene scene : scenes) {
+            keyframeStarts.add(Duration.ofMillis(scene.getStartTimeMs()));
+        }
+        List<String> keyframeUrls = keyframeExtractionService.extractKeyframes(videoUrl, keyframeStarts);
+        
+        // Fan out: each scene is analyzed on the scene-analysis pool. Qwen VL calls are
+        // additionally capped inside UnifiedSceneAnalysisService (ai.providers.qwen.max-concurrent)
+        long fanOutStart = System.currentTimeMillis();
+        List<java.util.concurrent.CompletableFuture<SceneAnalysisResult>> futures = new ArrayList<>();
+        for (int i = 0; i < scenes.size(); i++) {
+            Scene scene = scenes.get(i);
+            String keyframeUrl = keyframeUrls.get(i);
+            futures.add(java.util.concurrent.CompletableFuture.supplyAsync(
+                () -> analyzeSingleScene(scene, scenes.size(), videoUrl, azureResult, language, combinedScriptLines, keyframeUrl),
+                sceneAnalysisExecutor));
+        }
+        
+        // Merge back in scene order; a failed scene keeps its previous state (isolated failure)
+        for (int i = 0; i < scenes.size(); i++) {
+            Scene scene = scenes.get(i);
             try {
-                log.info("Analyzing scene {}/{}", scene.getSceneNumber(), scenes.size());
-                
-                // Get scene timing
-                Duration startTime = Duration.ofMillis(scene.getStartTimeMs());
-                Duration endTime = Duration.ofMillis(scene.getEndTimeMs());
-                
-                // Filter Azure detected objects for this scene's time range
-                List<String> azureObjectHints = filterAzureObjectsForScene(
-                    azureResult.detectedObjects, 
-                    scene.getStartTimeMs(), 
-                    scene.getEndTimeMs()
-                );
-                
-                if (!azureObjectHints.isEmpty()) {
-                    log.info("🎯 Scene {} has {} Azure object hints: {}", 
-                        scene.getSceneNumber(), azureObjectHints.size(), azureObjectHints);
-                } else {
-                    log.info("⚠️ Scene {} has no Azure object hints", scene.getSceneNumber());
-                }
-                
-                // Analyze with UnifiedSceneAnalysisService
-                // This will:
-                // - Extract keyframe
-                // - Use Azure object hints for targeted Qwen VL grounding
-                // - Qwen VL analysis
-                String scriptLine = scene.getScriptLine();
-                log.info("🎬 Analyzing scene {} - ScriptLine: \"{}\"", 
-                    scene.getSceneNumber(),
-                    scriptLine != null && !scriptLine.isEmpty() 
-                        ? (scriptLine.length() > 80 ? scriptLine.substring(0, 80) + "..." : scriptLine)
-                        : "(empty)");
-                
-                SceneAnalysisResult analysis = sceneAnalysisService.analyzeScene(
-                    videoUrl,
-                    language,
-                    startTime,
-                    endTime,
-                    scriptLine, // Pass scriptLine for this scene
-                    azureObjectHints, // Pass Azure detected objects as hints
-                    combinedScriptLines // Pass combined scriptLines from all scenes for full context
-                );
+                SceneAnalysisResult analysis = futures.get(i).join();
                 
                 // Apply analysis results to scene
                 scene.setKeyframeUrl(analysis.getKeyframeUrl());
@@ -473,9 +479,69 @@ public class TemplateAIServiceImpl implements TemplateAIService {
                     scene.getKeyElementsWithBoxes() != null ? scene.getKeyElementsWithBoxes().size() : 0);
                 
             } catch (Exception e) {
-                log.error("Failed to analyze scene {}", scene.getSceneNumber(), e);
+                Throwable cause = e instanceof java.util.concurrent.CompletionException && e.getCause() != null ? e.getCause() : e;
+                log.error("Failed to analyze scene {}", scene.getSceneNumber(), cause);
             }
         }
+        
+        log.info("Analyzed {} scenes in {}ms (parallelism={})",
+            scenes.size(), System.currentTimeMillis() - fanOutStart, Math.max(1, sceneAnalysisParallelism));
+    }
+    
+    /**
+     * Analyze one scene (runs on the scene-analysis pool)
+     */
+    private SceneAnalysisResult analyzeSingleScene(
+        Scene scene,
+        int totalScenes,
+        String videoUrl,
+        com.example.demo.ai.subtitle.AzureVideoIndexerExtractor.AzureVideoIndexerResult azureResult,
+        String language,
+        String combinedScriptLines,
+        String keyframeUrl
+    ) {
+        log.info("Analyzing scene {}/{}", scene.getSceneNumber(), totalScenes);
+        
+        // Get scene timing
+        Duration startTime = Duration.ofMillis(scene.getStartTimeMs());
+        Duration endTime = Duration.ofMillis(scene.getEndTimeMs());
+        
+        // Filter Azure detected objects for this scene's time range
+        List<String> azureObjectHints = filterAzureObjectsForScene(
+            azureResult.detectedObjects, 
+            scene.getStartTimeMs(), 
+            scene.getEndTimeMs()
+        );
+        
+        if (!azureObjectHints.isEmpty()) {
+            log.info("🎯 Scene {} has {} Azure object hints: {}", 
+                scene.getSceneNumber(), azureObjectHints.size(), azureObjectHints);
+        } else {
+            log.info("⚠️ Scene {} has no Azure object hints", scene.getSceneNumber());
+        }
+        
+        // Analyze with UnifiedSceneAnalysisService
+        // This will:
+        // - Reuse the batch-extracted keyframe (or extract it if the batch missed this scene)
+        // - Use Azure object hints for targeted Qwen VL grounding
+        // - Qwen VL analysis
+        String scriptLine = scene.getScriptLine();
+        log.info("🎬 Analyzing scene {} - ScriptLine: \"{}\"", 
+            scene.getSceneNumber(),
+            scriptLine != null && !scriptLine.isEmpty() 
+                ? (scriptLine.length() > 80 ? scriptLine.substring(0, 80) + "..." : scriptLine)
+                : "(empty)");
+        
+        return sceneAnalysisService.analyzeScene(
+            videoUrl,
+            language,
+            startTime,
+            endTime,
+            scriptLine, // Pass scriptLine for this scene
+            azureObjectHints, // Pass Azure detected objects as hints
+            combinedScriptLines, // Pass combined scriptLines from all scenes for full context
+            keyframeUrl
+        );
     }
     
     /**
@@ -41,6 +41,20 @@ public class UnifiedSceneAnalysisService {
     @Value("${ai.regions.minConf:0.8}")
     private double regionsMinConf;
     
+    // Cap on concurrent Qwen VL (DashScope) calls across all callers, so parallel
+    // scene analysis does not trip provider rate limits. QwenRateLimiter bounds the
+    // request rate; this bounds how many slow VL calls are in flight at once
+    @Value("${ai.providers.qwen.max-concurrent:3}")
+    private int qwenMaxConcurrent;
+    
+    private java.util.concurrent.Semaphore qwenPermits;
+    
+    @jakarta.annotation.PostConstruct
+    public void init() {
+        qwenPermits = new java.util.concurrent.Semaphore(Math.max(1, qwenMaxConcurrent), true);
+        log.info("[UNIFIED] Qwen VL concurrency cap: {}", Math.max(1, qwenMaxConcurrent));
+    }
+    
     /**
      * Analyze a scene video with auto-detection
      * 
@@ -113,6 +127,25 @@ public class UnifiedSceneAnalysisService {
         String subtitleText,
         List<String> azureObjectHints,
         String combinedScriptLines
+    ) {
+        return analyzeScene(videoUrl, language, startTime, endTime, subtitleText, azureObjectHints, combinedScriptLines, null);
+    }
+    
+    /**
+     * Same as above, but reuses a keyframe that was already extracted (e.g. by a batch
+     * KeyframeExtractionService.extractKeyframes call over all scenes of one video).
+     * 
+     * @param keyframeUrl Pre-extracted keyframe URL; if null the keyframe is extracted here
+     */
+    public SceneAnalysisResult analyzeScene(
+        String videoUrl,
+        String language,
+        Duration startTime,
+        Duration endTime,
+        String subtitleText,
+        List<String> azureObjectHints,
+        String combinedScriptLines,
+        String keyframeUrl
     ) {
         log.info("[UNIFIED] Analyzing scene: videoUrl={}, language={}, hasSubtitles={}, azureHints={}", 
             videoUrl != null ? videoUrl.substring(0, Math.min(50, videoUrl.length())) + "..." : "null",
@@ -123,8 +156,10 @@ public class UnifiedSceneAnalysisService {
         SceneAnalysisResult result = new SceneAnalysisResult();
         
         try {
-            // Step 1: Extract keyframe
-            String keyframeUrl = keyframeService.extractKeyframe(videoUrl, startTime, endTime);
+            // Step 1: Extract keyframe (unless the caller already batch-extracted it)
+            if (keyframeUrl == null) {
+                keyframeUrl = keyframeService.extractKeyframe(videoUrl, startTime, endTime);
+            }
             result.setKeyframeUrl(keyframeUrl);
             log.info("[UNIFIED] Keyframe extracted: {}", keyframeUrl != null ? "success" : "failed");
             
@@ -173,14 +208,19 @@ public class UnifiedSceneAnalysisService {
             try {
                 // Call Qwen VL - it will detect objects and return bounding boxes
                 // Pass Azure object hints for targeted grounding and combined scriptLines for full context
-                vlResults = objectLabelService.labelRegions(
-                    keyframeUrl, 
-                    dummyRegion,
-                    language != null ? language : "zh-CN",
-                    subtitleText,  // Pass subtitle context to VL
-                    azureObjectHints,  // Pass Azure detected objects as hints
-                    combinedScriptLines  // Pass combined scriptLines from all scenes
-                );
+                qwenPermits.acquire();
+                try {
+                    vlResults = objectLabelService.labelRegions(
+                        keyframeUrl, 
+                        dummyRegion,
+                        language != null ? language : "zh-CN",
+                        subtitleText,  // Pass subtitle context to VL
+                        azureObjectHints,  // Pass Azure detected objects as hints
+                        combinedScriptLines  // Pass combined scriptLines from all scenes
+                    );
+                } finally {
+                    qwenPermits.release();
+                }
                 
                 // Step 4: Extract VL data
                 if (!vlResults.isEmpty()) {
@@ -211,6 +251,9 @@ public class UnifiedSceneAnalysisService {
                     log.warn("[UNIFIED] VL returned empty results");
                 }
             } catch (Exception vlEx) {
+                if (vlEx instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
                 log.error("[UNIFIED] VL analysis failed: {} - {}", vlEx.getClass().getSimpleName(), vlEx.getMessage());
                 // Continue without VL data - will default to grid overlay below
             }
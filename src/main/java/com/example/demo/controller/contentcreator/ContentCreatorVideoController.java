@@ -36,6 +36,12 @@ public class ContentCreatorVideoController {
     @Autowired
     private com.example.demo.dao.ManagerSubmissionDao managerSubmissionDao;
     
+    @Autowired
+    private com.example.demo.dao.UserDao userDao;
+    
+    @Autowired(required = false)
+    private io.micrometer.core.instrument.MeterRegistry meterRegistry;
+    
     /**
      * Get user's pending assignments (待录制)
      * Returns templates that need recording:
@@ -47,10 +53,12 @@ public class ContentCreatorVideoController {
             @PathVariable String userId) {
         
         log.info("Getting assignments for user: {}", userId);
+        long startTime = System.nanoTime();
         
         try {
             // Get user's groupId
-            String groupId = db.collection("users").document(userId).get().get().getString("groupId");
+            com.example.demo.dao.UserDao.UserPrincipal user = userDao.findPrincipal(userId);
+            String groupId = user != null ? user.groupId : null;
             if (groupId == null) {
                 return ResponseEntity.ok(ApiResponse.ok("No group assigned", Collections.emptyList()));
             }
@@ -66,26 +74,36 @@ public class ContentCreatorVideoController {
         
             List<Map<String, Object>> pendingAssignments = new ArrayList<>();
             
+            // Check expiry (filter in code since we removed from query)
+            List<QueryDocumentSnapshot> activeAssignments = new ArrayList<>();
+            List<String> compositeVideoIds = new ArrayList<>();
             for (QueryDocumentSnapshot assignmentDoc : assignmentsSnapshot.getDocuments()) {
-                String assignmentId = assignmentDoc.getId();
-                String compositeVideoId = userId + "_" + assignmentId;
-                
-                // Check expiry (filter in code since we removed from query)
                 com.google.cloud.Timestamp expiresAt = assignmentDoc.getTimestamp("expiresAt");
                 if (expiresAt != null && expiresAt.getSeconds() < System.currentTimeMillis() / 1000) {
                     continue; // Skip expired assignments
                 }
+                activeAssignments.add(assignmentDoc);
+                compositeVideoIds.add(userId + "_" + assignmentDoc.getId());
+            }
+            
+            // Fetch all of the user's submittedVideos for these assignments in batched reads
+            Map<String, com.google.cloud.firestore.DocumentSnapshot> submittedVideos = new HashMap<>();
+            for (var doc : com.example.demo.dao.FirestoreBatchReads.getAll(db, db.collection("submittedVideos"), compositeVideoIds)) {
+                submittedVideos.put(doc.getId(), doc);
+            }
+            
+            for (QueryDocumentSnapshot assignmentDoc : activeAssignments) {
+                String assignmentId = assignmentDoc.getId();
+                String compositeVideoId = userId + "_" + assignmentId;
+                com.google.cloud.Timestamp expiresAt = assignmentDoc.getTimestamp("expiresAt");
                 
                 // Check if submittedVideo exists
-                var submittedVideoDoc = db.collection("submittedVideos")
-                        .document(compositeVideoId)
-                        .get()
-                        .get();
+                var submittedVideoDoc = submittedVideos.get(compositeVideoId);
                 
                 boolean shouldInclude = false;
                 Map<String, Object> progress = null;
                 
-                if (!submittedVideoDoc.exists()) {
+                if (submittedVideoDoc == null) {
                     // No submission yet - include
                     shouldInclude = true;
                 } else {
@@ -144,6 +162,8 @@ public class ContentCreatorVideoController {
         } catch (Exception e) {
             log.error("Error getting assignments for user {}: {}", userId, e.getMessage(), e);
             return ResponseEntity.status(500).body(ApiResponse.fail("Failed to get assignments: " + e.getMessage()));
+        } finally {
+            recordLatency("assignments", startTime);
         }
     }
     
@@ -156,6 +176,7 @@ public class ContentCreatorVideoController {
             @PathVariable String userId) {
         
         log.info("Getting to-download videos for user: {}", userId);
+        long startTime = System.nanoTime();
         
         try {
             // Get all submittedVideos for this user (filter by document ID pattern)
@@ -167,13 +188,18 @@ public class ContentCreatorVideoController {
                     .get();
         
             List<Map<String, Object>> toDownloadVideos = new ArrayList<>();
-        
+            
+            // Filter for published status
+            List<QueryDocumentSnapshot> videoDocs = new ArrayList<>();
             for (QueryDocumentSnapshot videoDoc : videosSnapshot.getDocuments()) {
-                // Filter for published status
-                String status = videoDoc.getString("publishStatus");
-                if (!"published".equals(status)) {
-                    continue;
+                if ("published".equals(videoDoc.getString("publishStatus"))) {
+                    videoDocs.add(videoDoc);
                 }
+            }
+            Map<String, com.example.demo.model.TemplateAssignment> assignments = getAssignmentsFor(videoDocs);
+            Map<String, String> compiledVideoUrls = getCompiledVideoUrls(userId);
+        
+            for (QueryDocumentSnapshot videoDoc : videoDocs) {
             Map<String, Object> video = new HashMap<>();
             video.put("id", videoDoc.getId());
             video.put("videoId", videoDoc.getId());  // For status update
@@ -182,22 +208,18 @@ public class ContentCreatorVideoController {
             // Get template info from assignment
             String assignmentId = videoDoc.getString("assignmentId");
             if (assignmentId != null) {
-                try {
-                    var assignment = templateAssignmentDao.getAssignment(assignmentId);
-                    if (assignment != null && assignment.getTemplateSnapshot() != null) {
-                        video.put("templateTitle", assignment.getTemplateSnapshot().getTemplateTitle());
-                        video.put("thumbnailUrl", assignment.getTemplateSnapshot().getThumbnailUrl());
-                        video.put("sceneCount", assignment.getTemplateSnapshot().getScenes() != null ? 
-                                assignment.getTemplateSnapshot().getScenes().size() : 0);
-                        video.put("duration", assignment.getTemplateSnapshot().getTotalVideoLength());
-                    }
-                } catch (Exception e) {
-                    log.warn("Failed to get assignment info: {}", e.getMessage());
+                var assignment = assignments.get(assignmentId);
+                if (assignment != null && assignment.getTemplateSnapshot() != null) {
+                    video.put("templateTitle", assignment.getTemplateSnapshot().getTemplateTitle());
+                    video.put("thumbnailUrl", assignment.getTemplateSnapshot().getThumbnailUrl());
+                    video.put("sceneCount", assignment.getTemplateSnapshot().getScenes() != null ? 
+                            assignment.getTemplateSnapshot().getScenes().size() : 0);
+                    video.put("duration", assignment.getTemplateSnapshot().getTotalVideoLength());
                 }
             }
             
             // Get compiled video URL from compiledVideos collection
-            String compiledVideoUrl = getCompiledVideoUrl(videoDoc.getId());
+            String compiledVideoUrl = compiledVideoUrls.get(videoDoc.getId());
             if (compiledVideoUrl != null) {
                 video.put("videoUrl", compiledVideoUrl);
                 // Generate signed URL for download
@@ -222,6 +244,8 @@ public class ContentCreatorVideoController {
         } catch (Exception e) {
             log.error("Error getting to-download videos for user {}: {}", userId, e.getMessage(), e);
             return ResponseEntity.status(500).body(ApiResponse.fail("Failed to get videos: " + e.getMessage()));
+        } finally {
+            recordLatency("to-download", startTime);
         }
     }
     
@@ -234,6 +258,7 @@ public class ContentCreatorVideoController {
             @PathVariable String userId) {
         
         log.info("Getting downloaded videos for user: {}", userId);
+        long startTime = System.nanoTime();
         
         try {
             // Get all submittedVideos for this user (filter by status in code)
@@ -244,13 +269,18 @@ public class ContentCreatorVideoController {
                     .get();
         
             List<Map<String, Object>> downloadedVideos = new ArrayList<>();
-        
+            
+            // Filter for downloaded status
+            List<QueryDocumentSnapshot> videoDocs = new ArrayList<>();
             for (QueryDocumentSnapshot videoDoc : videosSnapshot.getDocuments()) {
-                // Filter for downloaded status
-                String status = videoDoc.getString("publishStatus");
-                if (!"downloaded".equals(status)) {
-                    continue;
+                if ("downloaded".equals(videoDoc.getString("publishStatus"))) {
+                    videoDocs.add(videoDoc);
                 }
+            }
+            Map<String, com.example.demo.model.TemplateAssignment> assignments = getAssignmentsFor(videoDocs);
+            Map<String, String> compiledVideoUrls = getCompiledVideoUrls(userId);
+        
+            for (QueryDocumentSnapshot videoDoc : videoDocs) {
             Map<String, Object> video = new HashMap<>();
             video.put("id", videoDoc.getId());
             video.put("videoId", videoDoc.getId());
@@ -259,22 +289,18 @@ public class ContentCreatorVideoController {
             // Get template info from assignment
             String assignmentId = videoDoc.getString("assignmentId");
             if (assignmentId != null) {
-                try {
-                    var assignment = templateAssignmentDao.getAssignment(assignmentId);
-                    if (assignment != null && assignment.getTemplateSnapshot() != null) {
-                        video.put("templateTitle", assignment.getTemplateSnapshot().getTemplateTitle());
-                        video.put("thumbnailUrl", assignment.getTemplateSnapshot().getThumbnailUrl());
-                        video.put("sceneCount", assignment.getTemplateSnapshot().getScenes() != null ? 
-                                assignment.getTemplateSnapshot().getScenes().size() : 0);
-                        video.put("duration", assignment.getTemplateSnapshot().getTotalVideoLength());
-                    }
-                } catch (Exception e) {
-                    log.warn("Failed to get assignment info: {}", e.getMessage());
+                var assignment = assignments.get(assignmentId);
+                if (assignment != null && assignment.getTemplateSnapshot() != null) {
+                    video.put("templateTitle", assignment.getTemplateSnapshot().getTemplateTitle());
+                    video.put("thumbnailUrl", assignment.getTemplateSnapshot().getThumbnailUrl());
+                    video.put("sceneCount", assignment.getTemplateSnapshot().getScenes() != null ? 
+                            assignment.getTemplateSnapshot().getScenes().size() : 0);
+                    video.put("duration", assignment.getTemplateSnapshot().getTotalVideoLength());
                 }
             }
             
             // Get compiled video URL from compiledVideos collection (for re-download)
-            String compiledVideoUrl = getCompiledVideoUrl(videoDoc.getId());
+            String compiledVideoUrl = compiledVideoUrls.get(videoDoc.getId());
             if (compiledVideoUrl != null) {
                 video.put("videoUrl", compiledVideoUrl);
                 // Generate signed URL for download
@@ -301,6 +327,8 @@ public class ContentCreatorVideoController {
         } catch (Exception e) {
             log.error("Error getting downloaded videos for user {}: {}", userId, e.getMessage(), e);
             return ResponseEntity.status(500).body(ApiResponse.fail("Failed to get videos: " + e.getMessage()));
+        } finally {
+            recordLatency("downloaded", startTime);
         }
     }
     
@@ -365,24 +393,60 @@ public class ContentCreatorVideoController {
     }
     
     /**
-     * Get compiled video URL from compiledVideos collection
+     * Assignments referenced by these submittedVideos, keyed by ID (one batched read)
      */
-    private String getCompiledVideoUrl(String submittedVideoId) {
+    private Map<String, com.example.demo.model.TemplateAssignment> getAssignmentsFor(List<QueryDocumentSnapshot> videoDocs) {
+        List<String> assignmentIds = new ArrayList<>();
+        for (QueryDocumentSnapshot videoDoc : videoDocs) {
+            assignmentIds.add(videoDoc.getString("assignmentId"));
+        }
+        Map<String, com.example.demo.model.TemplateAssignment> assignments = new HashMap<>();
+        try {
+            for (var assignment : templateAssignmentDao.getAssignmentsByIds(assignmentIds)) {
+                assignments.put(assignment.getId(), assignment);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to get assignment info: {}", e.getMessage());
+        }
+        return assignments;
+    }
+    
+    /**
+     * Compiled video URLs for all of a user's compiledVideos, keyed by submittedVideo ID
+     * ({userId}_{templateId}) - one query instead of one per video
+     */
+    private Map<String, String> getCompiledVideoUrls(String userId) {
+        Map<String, String> urls = new HashMap<>();
         try {
             QuerySnapshot compiledSnapshot = db.collection("compiledVideos")
-                    .whereEqualTo("userId", submittedVideoId.split("_")[0])
-                    .whereEqualTo("templateId", submittedVideoId.split("_")[1])
-                    .limit(1)
+                    .whereEqualTo("userId", userId)
                     .get()
                     .get();
             
-            if (!compiledSnapshot.isEmpty()) {
-                return compiledSnapshot.getDocuments().get(0).getString("videoUrl");
+            for (QueryDocumentSnapshot doc : compiledSnapshot.getDocuments()) {
+                String templateId = doc.getString("templateId");
+                String videoUrl = doc.getString("videoUrl");
+                if (templateId != null && videoUrl != null) {
+                    urls.putIfAbsent(userId + "_" + templateId, videoUrl);
+                }
             }
         } catch (Exception e) {
-            log.warn("Failed to get compiled video URL: {}", e.getMessage());
+            log.warn("Failed to get compiled video URLs: {}", e.getMessage());
+        }
+        return urls;
+    }
+    
+    /**
+     * Per-endpoint latency histogram (creator.listing.latency{endpoint=...})
+     */
+    private void recordLatency(String endpoint, long startNanos) {
+        if (meterRegistry != null) {
+            io.micrometer.core.instrument.Timer.builder("creator.listing.latency")
+                    .tag("endpoint", endpoint)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - startNanos, java.util.concurrent.TimeUnit.NANOSECONDS);
         }
-        return null;
     }
     
     /**
@@ -9,9 +9,7 @@ import com.example.demo.model.ManualTemplate;
 import com.example.demo.model.Video;
 // ComparisonAIService removed - using QwenSceneComparisonService
 import com.google.cloud.firestore.Firestore;
-import com.google.cloud.firestore.DocumentReference;
 import com.google.cloud.firestore.DocumentSnapshot;
-import com.google.cloud.firestore.FieldValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -55,6 +53,12 @@ public class SceneSubmissionController {
     
     @Autowired
     private com.example.demo.dao.UserDao userDao;
+    
+    @Autowired
+    private com.example.demo.dao.SubmittedVideoDao submittedVideoDao;
+    
+    @Autowired
+    private com.example.demo.service.SubmissionEventService submissionEventService;
 
     
     @PostMapping("/upload")
@@ -129,6 +133,7 @@ public class SceneSubmissionController {
                         errorSuggestions.add("模板场景缺少关键帧图片，无法进行AI对比。请联系管理员。");
                         errorSubmission.setAiSuggestions(errorSuggestions);
                         sceneSubmissionDao.update(errorSubmission);
+                        submissionEventService.publishSceneUpdate(assignmentId, compositeVideoId, errorSubmission, null);
                     }
                     return;
                 }
@@ -145,6 +150,10 @@ public class SceneSubmissionController {
                 // Pass user thumbnail URL to avoid re-extracting keyframe
                 com.example.demo.ai.services.ComparisonResult comparisonResult = qwenComparisonService.compareWithDirectVL(
                     templateScene, userVideoUrl, userThumbnailUrl, "zh");
+                if (comparisonResult.isFailed()) {
+                    // Score 0 is not a real result; don't let it auto-reject
+                    throw new IllegalStateException(String.join("; ", comparisonResult.getSuggestions()));
+                }
                 
                 // Update the scene submission with AI results
                 SceneSubmission updatedSubmission = sceneSubmissionDao.findById(finalSceneId);
@@ -179,16 +188,18 @@ public class SceneSubmissionController {
                 
             } catch (Exception e) {
                 log.error("Async AI comparison failed for scene {}: {}", sceneNumber, e.getMessage());
-                // Update with fallback scores
+                // No score: the scene stays pending for manual review instead of being
+                // auto-approved or auto-rejected on a made-up number
                 try {
                     SceneSubmission fallbackSubmission = sceneSubmissionDao.findById(finalSceneId);
                     if (fallbackSubmission != null) {
-                        fallbackSubmission.setSimilarityScore(0.75);
-                        fallbackSubmission.setAiSuggestions(Arrays.asList("AI分析暂时不可用", "请检查视频质量"));
+                        fallbackSubmission.setSimilarityScore(null);
+                        fallbackSubmission.setAiSuggestions(Arrays.asList("AI分析暂时不可用", "等待人工审核"));
                         sceneSubmissionDao.update(fallbackSubmission);
+                        submissionEventService.publishSceneUpdate(assignmentId, compositeVideoId, fallbackSubmission, null);
                     }
                 } catch (Exception updateError) {
-                    log.error("Failed to update with fallback scores: {}", updateError.getMessage());
+                    log.error("Failed to mark scene for manual review: {}", updateError.getMessage());
                 }
             }
         });
@@ -267,6 +278,23 @@ public class SceneSubmissionController {
         return ResponseEntity.ok(ApiResponse.ok("Submitted video retrieved successfully", response));
     }
 
+    /**
+     * Live scene status and progress for one submitted video (Server-Sent Events), instead of
+     * polling the endpoint above. Sends a "progress" event on connect, then a "scene" event
+     * whenever a scene is uploaded, scored or reviewed.
+     * GET /content-creator/scenes/submitted-videos/{compositeVideoId}/events
+     */
+    @GetMapping(value = "/submitted-videos/{compositeVideoId}/events", produces = org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<org.springframework.web.servlet.mvc.method.annotation.SseEmitter> streamSubmittedVideo(
+            @PathVariable String compositeVideoId) {
+        org.springframework.web.servlet.mvc.method.annotation.SseEmitter emitter =
+            submissionEventService.subscribeToVideo(compositeVideoId);
+        if (emitter == null) {
+            return ResponseEntity.status(org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
     /**
      * Get single scene submission by ID with playback URLs
      */
@@ -296,77 +324,20 @@ public class SceneSubmissionController {
         return ResponseEntity.ok(ApiResponse.ok("Scene retrieved", data));
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Record the scene on the parent submittedVideos document. Runs as a transaction with a
+     * field-path write for this scene only, so concurrent uploads and AI callbacks don't
+     * overwrite each other's scene entries
+     */
     private void updateSubmittedVideoWithScene(String compositeVideoId, String assignmentId, String userId, SceneSubmission sceneSubmission) throws Exception {
-        DocumentReference videoDocRef = db.collection("submittedVideos").document(compositeVideoId);
-        DocumentSnapshot videoDoc = videoDocRef.get().get();
-        
-        Map<String, Object> sceneData = new HashMap<>();
-        sceneData.put("sceneId", sceneSubmission.getId());
-        sceneData.put("status", sceneSubmission.getStatus());
+        int templateTotalScenes = getTemplateTotalScenes(assignmentId);
+        com.example.demo.dao.SubmittedVideoDao.SceneProgressUpdate progress = submittedVideoDao.recordScene(
+            compositeVideoId, assignmentId, userId, sceneSubmission.getSceneNumber(),
+            sceneSubmission.getId(), sceneSubmission.getStatus(), templateTotalScenes);
+        submissionEventService.publishSceneUpdate(assignmentId, compositeVideoId, sceneSubmission, progress);
         
-        boolean isNewSubmission = !videoDoc.exists();
-        String publishStatus = "pending";
-        
-        if (videoDoc.exists()) {
-            Map<String, Object> currentScenes = (Map<String, Object>) videoDoc.get("scenes");
-            if (currentScenes == null) currentScenes = new HashMap<>();
-            
-            currentScenes.put(String.valueOf(sceneSubmission.getSceneNumber()), sceneData);
-            
-            int templateTotalScenes = getTemplateTotalScenes(assignmentId);
-            int approvedScenes = 0;
-            int pendingScenes = 0;
-            
-            for (Object sceneObj : currentScenes.values()) {
-                if (sceneObj instanceof Map) {
-                    String status = (String) ((Map<String, Object>) sceneObj).get("status");
-                    if ("approved".equals(status)) approvedScenes++;
-                    else if ("pending".equals(status)) pendingScenes++;
-                }
-            }
-            
-            Map<String, Object> updates = new HashMap<>();
-            updates.put("scenes", currentScenes);
-            updates.put("lastUpdated", FieldValue.serverTimestamp());
-            updates.put("progress", Map.of(
-                "totalScenes", templateTotalScenes,
-                "approved", approvedScenes,
-                "pending", pendingScenes,
-                "completionPercentage", templateTotalScenes > 0 ? (double) approvedScenes / templateTotalScenes * 100 : 0
-            ));
-            
-            // Auto-update publishStatus if all scenes approved
-            if (approvedScenes == templateTotalScenes && templateTotalScenes > 0) {
-                updates.put("publishStatus", "approved");
-                updates.put("approvedAt", FieldValue.serverTimestamp());
-                publishStatus = "approved";
-            }
-            
-            videoDocRef.update(updates);
-        } else {
-            Map<String, Object> videoData = new HashMap<>();
-            videoData.put("videoId", compositeVideoId);
-            videoData.put("assignmentId", assignmentId);
-            videoData.put("uploadedBy", userId);
-            videoData.put("publishStatus", "pending");
-            videoData.put("createdAt", FieldValue.serverTimestamp());
-            videoData.put("lastUpdated", FieldValue.serverTimestamp());
-            
-            Map<String, Object> scenes = new HashMap<>();
-            scenes.put(String.valueOf(sceneSubmission.getSceneNumber()), sceneData);
-            videoData.put("scenes", scenes);
-            
-            int templateTotalScenes = getTemplateTotalScenes(assignmentId);
-            videoData.put("progress", Map.of(
-                "totalScenes", templateTotalScenes,
-                "approved", 0,
-                "pending", 1,
-                "completionPercentage", 0.0
-            ));
-            
-            videoDocRef.set(videoData);
-        }
+        boolean isNewSubmission = progress.created;
+        String publishStatus = progress.allApproved ? "approved" : "pending";
         
         // Save to managerSubmissions for fast manager page loading
         try {
@@ -393,9 +364,8 @@ public class SceneSubmissionController {
         // If pushedBy is an employee, use their manager's ID (createdBy)
         String managerId = assignment.getPushedBy();
         try {
-            com.example.demo.model.User pusher = userDao.findById(managerId);
-            if (pusher != null && "employee".equals(pusher.getRole()) && pusher.getCreatedBy() != null) {
-                managerId = pusher.getCreatedBy();
+            managerId = userDao.resolveManagerId(managerId);
+            if (!managerId.equals(assignment.getPushedBy())) {
                 log.info("Resolved employee {} to manager {} for managerSubmissions", assignment.getPushedBy(), managerId);
             }
         } catch (Exception e) {
@@ -470,10 +440,10 @@ public class SceneSubmissionController {
     private boolean checkGroupAIThreshold(String userId, double similarityScore) {
         try {
             // Get user's group
-            DocumentSnapshot userDoc = db.collection("users").document(userId).get().get();
-            if (!userDoc.exists()) return false;
+            com.example.demo.dao.UserDao.UserPrincipal user = userDao.findPrincipal(userId);
+            if (user == null) return false;
             
-            String groupId = userDoc.getString("groupId");
+            String groupId = user.groupId;
             if (groupId == null) return false;
             
             // Get group's AI threshold
@@ -502,9 +472,9 @@ public class SceneSubmissionController {
      */
     private String determineAutoStatus(String userId, double similarityScore) {
         try {
-            DocumentSnapshot userDoc = db.collection("users").document(userId).get().get();
-            if (!userDoc.exists()) return null;
-            String groupId = userDoc.getString("groupId");
+            com.example.demo.dao.UserDao.UserPrincipal user = userDao.findPrincipal(userId);
+            if (user == null) return null;
+            String groupId = user.groupId;
             if (groupId == null) return null;
 
             DocumentSnapshot groupDoc = db.collection("groups").document(groupId).get().get();
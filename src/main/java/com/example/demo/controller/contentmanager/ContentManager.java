@@ -73,11 +73,7 @@ public class ContentManager {
         try {
             // Determine the actual manager ID to use
             // If user is an employee, use their manager's ID (createdBy)
-            String actualManagerId = managerId;
-            com.example.demo.model.User user = userDao.findById(managerId);
-            if (user != null && "employee".equals(user.getRole()) && user.getCreatedBy() != null) {
-                actualManagerId = user.getCreatedBy();
-            }
+            String actualManagerId = userDao.resolveManagerId(managerId);
             
             List<com.example.demo.model.Group> groups = groupDao.findByManagerId(actualManagerId);
             
@@ -109,16 +105,18 @@ public class ContentManager {
         
         // Determine the actual manager ID to use
         // If user is an employee, use their manager's ID (createdBy)
-        String actualManagerId = managerId;
-        com.example.demo.model.User user = userDao.findById(managerId);
-        if (user != null && "employee".equals(user.getRole()) && user.getCreatedBy() != null) {
-            actualManagerId = user.getCreatedBy();
-        }
+        String actualManagerId = userDao.resolveManagerId(managerId);
         
-        // OPTIMIZED: Get pre-aggregated submissions from managerSubmissions collection
-        // This is a single query to managerSubmissions/{managerId}/submissions
+        // Compatibility wrapper over the paginated feed (GET /submissions/page): walks every page.
         // Data is already enriched with user info and template title at write time
-        List<Map<String, Object>> allSubmissions = managerSubmissionDao.getSubmissions(actualManagerId);
+        List<Map<String, Object>> allSubmissions = new ArrayList<>();
+        String cursor = null;
+        do {
+            com.example.demo.dao.ManagerSubmissionDao.SubmissionPage page =
+                managerSubmissionDao.getSubmissionsPage(actualManagerId, null, 500, cursor);
+            allSubmissions.addAll(page.items);
+            cursor = page.nextCursor;
+        } while (cursor != null);
         
         // Group submissions by status
         List<Map<String, Object>> pending = new ArrayList<>();
@@ -149,6 +147,36 @@ public class ContentManager {
         return ResponseEntity.ok(ApiResponse.ok(message, result));
     }
 
+    // --- Paginated submissions feed: one status bucket per request, newest first ---
+    @GetMapping("/submissions/page")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getSubmissionsPage(
+            @RequestParam String managerId,
+            @RequestParam(required = false) String status,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeCounts,
+            @RequestHeader(value = "Accept-Language", required = false) String acceptLanguage) throws Exception {
+        String language = i18nService.detectLanguageFromHeader(acceptLanguage);
+        
+        // If user is an employee, use their manager's ID (createdBy)
+        String actualManagerId = userDao.resolveManagerId(managerId);
+        
+        int pageSize = Math.max(1, Math.min(limit, 100));
+        com.example.demo.dao.ManagerSubmissionDao.SubmissionPage page =
+            managerSubmissionDao.getSubmissionsPage(actualManagerId, status, pageSize, cursor);
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("items", page.items);
+        result.put("nextCursor", page.nextCursor);
+        result.put("hasMore", page.nextCursor != null);
+        if (includeCounts) {
+            result.put("counts", managerSubmissionDao.countSubmissionsByStatus(actualManagerId));
+        }
+        
+        String message = i18nService.getMessage("operation.success", language);
+        return ResponseEntity.ok(ApiResponse.ok(message, result));
+    }
+
     @GetMapping("/user/{userId}")
     public ResponseEntity<ApiResponse<List<com.example.demo.model.TemplateSummary>>> getTemplatesByUserId(@PathVariable String userId,
                                                                                       @RequestHeader(value = "Accept-Language", required = false) String acceptLanguage) throws Exception {
@@ -156,18 +184,10 @@ public class ContentManager {
         
         // Determine the actual user ID to use for fetching templates
         // If user is an employee, show their manager's templates
-        String actualUserId = userId;
-        com.example.demo.model.User user = userDao.findById(userId);
-        if (user != null && "employee".equals(user.getRole()) && user.getCreatedBy() != null) {
-            actualUserId = user.getCreatedBy();
-        }
-        
-        List<ManualTemplate> templates = templateDao.getTemplatesByUserId(actualUserId);
+        String actualUserId = userDao.resolveManagerId(userId);
         
-        // Convert to lightweight DTO with only essential fields
-        List<com.example.demo.model.TemplateSummary> summaries = templates.stream()
-            .map(com.example.demo.model.TemplateSummary::fromManualTemplate)
-            .collect(java.util.stream.Collectors.toList());
+        // Only the summary fields are read from Firestore, not the scenes
+        List<com.example.demo.model.TemplateSummary> summaries = templateDao.getTemplateSummariesByUserId(actualUserId);
         
         String message = i18nService.getMessage("operation.success", language);
         return ResponseEntity.ok(ApiResponse.ok(message, summaries));
@@ -186,6 +206,33 @@ public class ContentManager {
         }
     }
 
+    /**
+     * VL analysis payloads of each scene; not part of GET /{templateId}
+     */
+    @GetMapping("/{templateId}/scene-analysis")
+    public ResponseEntity<ApiResponse<List<Map<String, Object>>>> getSceneAnalysis(@PathVariable String templateId,
+                                                                                 @RequestHeader(value = "Accept-Language", required = false) String acceptLanguage) throws Exception {
+        String language = i18nService.detectLanguageFromHeader(acceptLanguage);
+        ManualTemplate template = templateDao.getTemplate(templateId);
+        if (template == null) {
+            throw new NoSuchElementException("Template not found with ID: " + templateId);
+        }
+        templateDao.loadSceneAnalysis(template);
+
+        List<Map<String, Object>> scenes = new ArrayList<>();
+        if (template.getScenes() != null) {
+            for (Scene scene : template.getScenes()) {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("sceneNumber", scene.getSceneNumber());
+                entry.put("vlRawResponse", scene.getVlRawResponse());
+                entry.put("vlSceneAnalysis", scene.getVlSceneAnalysis());
+                scenes.add(entry);
+            }
+        }
+        String message = i18nService.getMessage("operation.success", language);
+        return ResponseEntity.ok(ApiResponse.ok(message, scenes));
+    }
+
     @PutMapping("/{templateId}")
     public ResponseEntity<ApiResponse<ManualTemplate>> updateTemplate(
             @PathVariable String templateId, 
@@ -264,10 +311,9 @@ public class ContentManager {
         
         if (creatorId != null) {
             try {
-                com.example.demo.model.User creator = userDao.findById(creatorId);
-                if (creator != null && "employee".equals(creator.getRole()) && creator.getCreatedBy() != null) {
-                    // If creator was an employee, template is in manager's created_Templates
-                    templateOwnerId = creator.getCreatedBy();
+                // If creator was an employee, template is in manager's created_Templates
+                templateOwnerId = userDao.resolveManagerId(creatorId);
+                if (!templateOwnerId.equals(creatorId)) {
                     log.info("Removing employee {} template {} from manager {}", creatorId, templateId, templateOwnerId);
                 }
             } catch (Exception e) {
@@ -710,19 +756,18 @@ public class ContentManager {
         
         // Determine who should own the template in created_Templates
         log.info("👤 Looking up user: {}", userId);
-        String templateOwnerId = userId;
-        com.example.demo.model.User user;
+        com.example.demo.dao.UserDao.UserPrincipal user;
         try {
-            user = userDao.findById(userId);
-            log.info("✅ User found: {} (role: {})", userId, user != null ? user.getRole() : "null");
+            user = userDao.findPrincipal(userId);
+            log.info("✅ User found: {} (role: {})", userId, user != null ? user.role : "null");
         } catch (Exception e) {
             log.error("❌ FAILED to find user {}: {} - {}", userId, e.getClass().getSimpleName(), e.getMessage(), e);
             throw e;
         }
         
-        if (user != null && "employee".equals(user.getRole()) && user.getCreatedBy() != null) {
-            // If creator is an employee, add to manager's created_Templates only
-            templateOwnerId = user.getCreatedBy();
+        // If creator is an employee, add to manager's created_Templates only
+        String templateOwnerId = user != null ? user.getManagerId() : userId;
+        if (!templateOwnerId.equals(userId)) {
             log.info("Employee {} template {} added to manager {}", userId, templateId, templateOwnerId);
         }
         
@@ -49,10 +49,8 @@ public class FolderController {
         
         // SIMPLIFIED: If user is employee, create folder under manager's account
         // This way folders are always owned by manager, employees just use them
-        String folderOwnerId = userId;
-        com.example.demo.model.User user = userDao.findById(userId);
-        if (user != null && "employee".equals(user.getRole()) && user.getCreatedBy() != null) {
-            folderOwnerId = user.getCreatedBy(); // Use manager's ID
+        String folderOwnerId = userDao.resolveManagerId(userId);
+        if (!folderOwnerId.equals(userId)) {
             log.info("Employee {} creating folder under manager {}", userId, folderOwnerId);
         }
         
@@ -76,11 +74,9 @@ public class FolderController {
         // SIMPLIFIED: If user is employee, query manager's folders
         // If user is manager, query their own folders
         // Folders are always owned by manager, employees just use them
-        String queryUserId = userId;
-        com.example.demo.model.User user = userDao.findById(userId);
+        String queryUserId = userDao.resolveManagerId(userId);
         
-        if (user != null && "employee".equals(user.getRole()) && user.getCreatedBy() != null) {
-            queryUserId = user.getCreatedBy(); // Query manager's folders
+        if (!queryUserId.equals(userId)) {
             log.info("Employee {} querying manager {} folders", userId, queryUserId);
         }
         
@@ -193,6 +189,9 @@ public class FolderController {
             try {
                 templateCascadeDeletionService.deleteTemplateAssetsAndDocs(template.getId());
                 log.info("Cascade deleted template: {}", template.getId());
+            } catch (com.example.demo.service.TemplateCascadeDeletionService.IncompleteDeletionException e) {
+                // Keep the template (and its folder) so the deletion can be re-run
+                throw e;
             } catch (Exception e) {
                 log.error("Failed to cascade delete template {}: {}", template.getId(), e.getMessage());
                 // Fallback to simple delete
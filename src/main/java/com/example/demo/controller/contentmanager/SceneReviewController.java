@@ -39,6 +39,21 @@ public class SceneReviewController {
     // REMOVED unused endpoints - frontend doesn't use /pending or /template/{templateId}
     
     
+    /**
+     * Live scene status changes for all of a manager's submissions (Server-Sent Events)
+     * GET /content-manager/scenes/events?managerId=...
+     */
+    @GetMapping(value = "/events", produces = org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<org.springframework.web.servlet.mvc.method.annotation.SseEmitter> streamManagerEvents(
+            @RequestParam String managerId) {
+        org.springframework.web.servlet.mvc.method.annotation.SseEmitter emitter =
+            submissionEventService.subscribeToManager(managerId);
+        if (emitter == null) {
+            return ResponseEntity.status(org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+    
     /**
      * Manual override for scene approval or rejection
      * POST /content-manager/scenes/{sceneId}/manual-override
@@ -59,10 +74,11 @@ public class SceneReviewController {
         boolean isApproval = feedback == null || feedback.isEmpty();
         
         // Simple approve or reject
+        com.example.demo.dao.SubmittedVideoDao.SceneProgressUpdate progress = null;
         if (isApproval) {
             submission.approve(reviewerId);
             // Use assignmentId (stored in templateId field) for composite video ID
-            updateSceneStatusInSubmittedVideos(submission.getTemplateId(), submission.getUserId(), 
+            progress = updateSceneStatusInSubmittedVideos(submission.getTemplateId(), submission.getUserId(), 
                 submission.getSceneNumber(), "approved");
         } else {
             submission.reject(reviewerId, feedback);
@@ -70,6 +86,9 @@ public class SceneReviewController {
         }
         
         sceneSubmissionDao.update(submission);
+        // Push to creator/manager event streams
+        submissionEventService.publishSceneUpdate(submission.getTemplateId(),
+            submission.getUserId() + "_" + submission.getTemplateId(), submission, progress);
         
         Map<String, Object> responseData = new HashMap<>();
         responseData.put("action", isApproval ? "approved" : "rejected");
@@ -83,74 +102,30 @@ public class SceneReviewController {
     
     /**
      * Update scene status in submittedVideos collection
+     * (transactional field-path update; progress counters move by this scene's change only)
      */
-    @SuppressWarnings("unchecked")
-    private void updateSceneStatusInSubmittedVideos(String assignmentId, String userId, int sceneNumber, String newStatus) throws Exception {
-            // Create composite video ID using assignmentId (not templateId!)
-            String compositeVideoId = userId + "_" + assignmentId;
-            
-            // Get the submitted video document
-            var videoDocRef = db.collection("submittedVideos").document(compositeVideoId);
-            var videoDoc = videoDocRef.get().get();
-            
-            if (videoDoc.exists()) {
-                Map<String, Object> videoData = videoDoc.getData();
-                Map<String, Object> scenes = (Map<String, Object>) videoData.get("scenes");
-                
-                if (scenes != null) {
-                    // Update the specific scene status
-                    Map<String, Object> sceneData = (Map<String, Object>) scenes.get(String.valueOf(sceneNumber));
-                    if (sceneData != null) {
-                        sceneData.put("status", newStatus);
-                        
-                        // Update the document
-                        Map<String, Object> updates = new HashMap<>();
-                        updates.put("scenes." + sceneNumber + ".status", newStatus);
-                        updates.put("lastUpdated", com.google.cloud.firestore.FieldValue.serverTimestamp());
-                        
-                        // Recalculate progress (only pending and approved now)
-                        int approvedCount = 0;
-                        int pendingCount = 0;
-                        
-                        for (Object sceneObj : scenes.values()) {
-                            if (sceneObj instanceof Map) {
-                                Map<String, Object> scene = (Map<String, Object>) sceneObj;
-                                String status = (String) scene.get("status");
-                                if ("approved".equals(status)) approvedCount++;
-                                else if ("pending".equals(status)) pendingCount++;
-                            }
-                        }
-                        
-                        // Get actual template scene count from assignment
-                        int templateTotalScenes = getTemplateTotalScenes(assignmentId);
-                        
-                        updates.put("progress", Map.of(
-                            "totalScenes", templateTotalScenes,
-                            "approved", approvedCount,
-                            "pending", pendingCount,
-                            "completionPercentage", templateTotalScenes > 0 ? (double) approvedCount / templateTotalScenes * 100 : 0
-                        ));
-                        
-                        // Update publishStatus if all template scenes are approved
-                        if (approvedCount == templateTotalScenes && templateTotalScenes > 0) {
-                            String currentPublishStatus = (String) videoData.get("publishStatus");
-                            if (!"approved".equals(currentPublishStatus) && !"published".equals(currentPublishStatus)) {
-                                updates.put("publishStatus", "approved");
-                                updates.put("approvedAt", com.google.cloud.firestore.FieldValue.serverTimestamp());
-                                System.out.println("✅ All scenes approved! Updated publishStatus to 'approved' for video: " + compositeVideoId);
-                                
-                                // Sync status to managerSubmissions
-                                syncStatusToManagerSubmissions(assignmentId, compositeVideoId, "approved");
-                            }
-                        }
-                        
-                        videoDocRef.update(updates);
-                        System.out.println("Updated scene " + sceneNumber + " status to '" + newStatus + "' in submittedVideos: " + compositeVideoId);
-                    }
-                }
-        } else {
+    private com.example.demo.dao.SubmittedVideoDao.SceneProgressUpdate updateSceneStatusInSubmittedVideos(String assignmentId, String userId, int sceneNumber, String newStatus) throws Exception {
+        // Create composite video ID using assignmentId (not templateId!)
+        String compositeVideoId = userId + "_" + assignmentId;
+        
+        // Get actual template scene count from assignment
+        int templateTotalScenes = getTemplateTotalScenes(assignmentId);
+        
+        com.example.demo.dao.SubmittedVideoDao.SceneProgressUpdate progress =
+            submittedVideoDao.updateSceneStatus(compositeVideoId, sceneNumber, newStatus, templateTotalScenes);
+        if (progress == null) {
             System.err.println("SubmittedVideo not found for update: " + compositeVideoId);
+            return null;
+        }
+        
+        if (progress.becameApproved) {
+            System.out.println("✅ All scenes approved! Updated publishStatus to 'approved' for video: " + compositeVideoId);
+            
+            // Sync status to managerSubmissions
+            syncStatusToManagerSubmissions(assignmentId, compositeVideoId, "approved");
         }
+        System.out.println("Updated scene " + sceneNumber + " status to '" + newStatus + "' in submittedVideos: " + compositeVideoId);
+        return progress;
     }
     
     /**
@@ -163,10 +138,7 @@ public class SceneReviewController {
                 // Resolve actual manager ID (if pushedBy is an employee, use their manager)
                 String managerId = assignment.getPushedBy();
                 try {
-                    com.example.demo.model.User pusher = userDao.findById(managerId);
-                    if (pusher != null && "employee".equals(pusher.getRole()) && pusher.getCreatedBy() != null) {
-                        managerId = pusher.getCreatedBy();
-                    }
+                    managerId = userDao.resolveManagerId(managerId);
                 } catch (Exception e) {
                     System.err.println("Failed to resolve manager ID: " + e.getMessage());
                 }
@@ -187,6 +159,12 @@ public class SceneReviewController {
     @Autowired
     private com.example.demo.dao.ManagerSubmissionDao managerSubmissionDao;
     
+    @Autowired
+    private com.example.demo.dao.SubmittedVideoDao submittedVideoDao;
+    
+    @Autowired
+    private com.example.demo.service.SubmissionEventService submissionEventService;
+    
     private int getTemplateTotalScenes(String assignmentId) throws Exception {
         // Get template from assignment snapshot
         com.example.demo.model.TemplateAssignment assignment = templateAssignmentDao.getAssignment(assignmentId);
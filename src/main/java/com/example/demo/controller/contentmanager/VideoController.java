@@ -97,26 +97,20 @@ public class VideoController {
     // These bypassed the scene-by-scene review workflow
     // Use scene manual override instead: /content-manager/scenes/{sceneId}/manual-override
 
-    @Autowired
-    private com.example.demo.dao.CompiledVideoDao compiledVideoDao;
-    
-    @Autowired
-    private com.example.demo.service.VideoCompilationService videoCompilationService;
-    
     @Autowired
     private com.example.demo.dao.TemplateAssignmentDao templateAssignmentDao;
     
     @Autowired
-    private com.example.demo.dao.ManagerSubmissionDao managerSubmissionDao;
-    
-    @Autowired(required = false)
-    private com.example.demo.service.AlibabaOssStorageService ossStorageService;
-    
-    @Autowired
-    private com.example.demo.dao.SceneSubmissionDao sceneSubmissionDao;
+    private com.example.demo.service.CompileJobService compileJobService;
     
+    /**
+     * Publish an approved video.
+     * Compilation (ffmpeg concat + subtitles + BGM) runs asynchronously on the compile
+     * worker pool; this returns the compile job ID immediately. Poll
+     * GET /content-manager/videos/compile-jobs/{jobId} for status and progress.
+     */
     @PostMapping("/{videoId}/publish")
-    public ResponseEntity<ApiResponse<String>> publishVideo(
+    public ResponseEntity<ApiResponse<java.util.Map<String, Object>>> publishVideo(
             @PathVariable String videoId, 
             @RequestParam String publisherId,
             @RequestParam(required = false, defaultValue = "white") String subtitleColor,
@@ -144,136 +138,57 @@ public class VideoController {
             throw new IllegalArgumentException("Assignment ID not found in submitted video");
         }
         
-        // Get the template from assignment for compilation
+        // Validate up front so the manager gets an immediate error instead of a failed job
         com.example.demo.model.TemplateAssignment assignment = templateAssignmentDao.getAssignment(assignmentId);
         if (assignment == null) {
             throw new IllegalArgumentException("Assignment not found: " + assignmentId);
         }
-        com.example.demo.model.ManualTemplate template = assignment.getTemplateSnapshot();
-        if (template == null) {
+        if (assignment.getTemplateSnapshot() == null) {
             throw new IllegalArgumentException("Template snapshot not found in assignment: " + assignmentId);
         }
         
-        // COMPILE VIDEO NOW - manager clicked publish (with customized subtitles!)
-        com.example.demo.service.SubtitleBurningService.SubtitleOptions subtitleOptions = 
-            new com.example.demo.service.SubtitleBurningService.SubtitleOptions();
-        
-        // Apply custom subtitle styling
-        subtitleOptions.textColor = subtitleColor;
-        subtitleOptions.fontSize = subtitleSize;
-        
-        // Map position to alignment
-        // Testing: 2 works for bottom-center, so use 2,5,8 but check if issue is elsewhere
-        if ("top".equalsIgnoreCase(subtitlePosition)) {
-            subtitleOptions.alignment = 8;  // Bottom-center in ASS (7,8,9 = bottom row)
-        } else if ("middle".equalsIgnoreCase(subtitlePosition) || "center".equalsIgnoreCase(subtitlePosition)) {
-            subtitleOptions.alignment = 5;  // Middle-center in ASS (4,5,6 = middle row)
-        } else if ("bottom".equalsIgnoreCase(subtitlePosition)) {
-            subtitleOptions.alignment = 2;  // Top-center in ASS (1,2,3 = top row) - THIS WORKS!
-        } else {
-            subtitleOptions.alignment = 2;  // Default: bottom
-        }
-        
-        log.info("Publishing video with subtitle options: color={}, size={}, position={} (alignment={})", 
-                 subtitleColor, subtitleSize, subtitlePosition, subtitleOptions.alignment);
-        
-        // Log template scenes for debugging
-        if (template.getScenes() != null) {
-            log.info("📋 Template has {} scenes for subtitle generation", template.getScenes().size());
-            for (int i = 0; i < template.getScenes().size(); i++) {
-                com.example.demo.model.Scene scene = template.getScenes().get(i);
-                int segmentCount = (scene.getSubtitleSegments() != null) ? scene.getSubtitleSegments().size() : 0;
-                log.info("  Scene {}: {} subtitle segments", i+1, segmentCount);
-                if (segmentCount > 0 && scene.getSubtitleSegments() != null) {
-                    for (com.example.demo.ai.subtitle.SubtitleSegment seg : scene.getSubtitleSegments()) {
-                        log.info("    - \"{}\" ({}ms - {}ms)", seg.getText(), seg.getStartTimeMs(), seg.getEndTimeMs());
-                    }
-                }
-            }
-        } else {
-            log.warn("⚠️ Template has NO scenes!");
-        }
+        // Enqueue compile job (with customized subtitles and optional BGM)
+        com.example.demo.model.CompileJob job = new com.example.demo.model.CompileJob(videoId, assignmentId, creatorId, publisherId);
+        job.setSubtitleColor(subtitleColor);
+        job.setSubtitleSize(subtitleSize);
+        job.setSubtitlePosition(subtitlePosition);
+        job.setBgmUrls(bgmUrls);
+        job.setBgmVolume(bgmVolume);
+        job = compileJobService.enqueue(job);
         
-        // Use assignmentId (not templateId) because submittedVideos uses assignmentId in composite key
-        String compiledVideoUrl;
-        if (bgmUrls != null && !bgmUrls.isEmpty()) {
-            log.info("Publishing video with {} BGM file(s) at volume {}", bgmUrls.size(), bgmVolume);
-            compiledVideoUrl = videoCompilationService.compileVideoWithBGMAndSubtitles(
-                assignmentId, creatorId, publisherId, bgmUrls, bgmVolume, subtitleOptions);
-        } else {
-            log.info("Publishing video without BGM");
-            compiledVideoUrl = videoCompilationService.compileVideoWithSubtitles(
-                assignmentId, creatorId, publisherId, subtitleOptions);
-        }
-        com.example.demo.model.CompiledVideo compiledVideo = new com.example.demo.model.CompiledVideo(assignmentId, creatorId, publisherId);
-        compiledVideo.setVideoUrl(compiledVideoUrl);
-        compiledVideo.setStatus("published");
-        compiledVideoDao.save(compiledVideo);
+        log.info("Publish of video {} queued as compile job {} ({})", videoId, job.getId(), job.getStatus());
         
-        // Update status to published
-        videoRef.update("publishStatus", "published", 
-                       "publishedAt", com.google.cloud.firestore.FieldValue.serverTimestamp(), 
-                       "publishedBy", publisherId,
-                       "compiledVideoUrl", compiledVideoUrl);
+        java.util.Map<String, Object> data = new java.util.HashMap<>();
+        data.put("jobId", job.getId());
+        data.put("status", job.getStatus());
+        data.put("progress", job.getProgress());
         
-        // Sync status to managerSubmissions
-        try {
-            com.example.demo.model.TemplateAssignment assignmentForSync = templateAssignmentDao.getAssignment(assignmentId);
-            if (assignmentForSync != null && assignmentForSync.getPushedBy() != null) {
-                // Resolve actual manager ID (if pushedBy is an employee, use their manager)
-                String managerId = assignmentForSync.getPushedBy();
-                try {
-                    com.example.demo.model.User pusher = userDao.findById(managerId);
-                    if (pusher != null && "employee".equals(pusher.getRole()) && pusher.getCreatedBy() != null) {
-                        managerId = pusher.getCreatedBy();
-                    }
-                } catch (Exception ex) {
-                    log.warn("Failed to resolve manager ID: {}", ex.getMessage());
-                }
-                managerSubmissionDao.updateSubmissionStatus(managerId, videoId, "published");
-                log.info("✅ Synced 'published' status to managerSubmissions for: {}", videoId);
-            }
-        } catch (Exception e) {
-            log.warn("Failed to sync published status to managerSubmissions: {}", e.getMessage());
-        }
-        
-        // Send notification to creator
-        com.google.cloud.firestore.DocumentReference userRef = db.collection("users").document(creatorId);
-        String notifId = java.util.UUID.randomUUID().toString();
-        java.util.Map<String, Object> notif = new java.util.HashMap<>();
-        notif.put("type", "video_published");
-        notif.put("message", "Your video has been published!");
-        notif.put("timestamp", System.currentTimeMillis());
-        notif.put("read", false);
-        userRef.update("notifications." + notifId, notif);
-        
-        // BGM DELETION: Clean up uploaded BGM files from OSS after compilation
-        // NOTE: Comment out this block if you want to reuse BGM files in the future
-        // Currently deleting to save storage costs since BGM is embedded in compiled video
-        if (bgmUrls != null && !bgmUrls.isEmpty() && ossStorageService != null) {
-            for (String bgmUrl : bgmUrls) {
-                try {
-                    boolean deleted = ossStorageService.deleteObjectByUrl(bgmUrl);
-                    log.info("[BGM-CLEANUP] Deleted BGM from OSS: {} (success: {})", bgmUrl, deleted);
-                } catch (Exception e) {
-                    log.warn("[BGM-CLEANUP] Failed to delete BGM: {} - {}", bgmUrl, e.getMessage());
-                }
-            }
+        String message = i18nService.getMessage("operation.success", language);
+        return ResponseEntity.ok(ApiResponse.ok(message, data));
+    }
+    
+    /**
+     * Compile job status: queued/running/done/failed with progress (0-100)
+     */
+    @GetMapping("/compile-jobs/{jobId}")
+    public ResponseEntity<ApiResponse<com.example.demo.model.CompileJob>> getCompileJob(@PathVariable String jobId) throws Exception {
+        com.example.demo.model.CompileJob job = compileJobService.getJob(jobId);
+        if (job == null) {
+            throw new NoSuchElementException("Compile job not found: " + jobId);
         }
-        
-        // SCENE VIDEO CLEANUP: Delete individual scene videos after compilation
-        // The compiled video is now the final product, individual scenes are no longer needed
-        // This saves storage costs and keeps the system clean
-        try {
-            sceneSubmissionDao.deleteScenesByAssignmentIdAndUserIdWithOssCleanup(assignmentId, creatorId);
-            log.info("[SCENE-CLEANUP] ✅ Cleaned up scene videos after compilation for assignment: {}", assignmentId);
-        } catch (Exception e) {
-            log.warn("[SCENE-CLEANUP] Failed to cleanup scene videos: {} - continuing anyway", e.getMessage());
-            // Don't fail the publish operation if cleanup fails
+        return ResponseEntity.ok(ApiResponse.ok("Compile job found", job));
+    }
+    
+    /**
+     * Latest compile job for a submitted video (lets the UI resume polling after a reload)
+     */
+    @GetMapping("/{videoId}/compile-job")
+    public ResponseEntity<ApiResponse<com.example.demo.model.CompileJob>> getLatestCompileJob(@PathVariable String videoId) throws Exception {
+        com.example.demo.model.CompileJob job = compileJobService.getLatestJobForVideo(videoId);
+        if (job == null) {
+            throw new NoSuchElementException("No compile job for video: " + videoId);
         }
-        
-        String message = i18nService.getMessage("operation.success", language);
-        return ResponseEntity.ok(ApiResponse.ok(message, "Video compiled and published successfully."));
+        return ResponseEntity.ok(ApiResponse.ok("Compile job found", job));
     }
 
     @PostMapping("/upload")
@@ -333,11 +248,9 @@ public class VideoController {
             
             // Determine who should own the template in created_Templates
             try {
-                String templateOwnerId = userId;
-                com.example.demo.model.User user = userDao.findById(userId);
-                if (user != null && "employee".equals(user.getRole()) && user.getCreatedBy() != null) {
-                    // If creator is an employee, add to manager's created_Templates only
-                    templateOwnerId = user.getCreatedBy();
+                // If creator is an employee, add to manager's created_Templates only
+                String templateOwnerId = userDao.resolveManagerId(userId);
+                if (!templateOwnerId.equals(userId)) {
                     System.out.println("Employee " + userId + " template " + savedTemplateId + " added to manager " + templateOwnerId);
                 }
                 // Add template to manager's created_Templates (or creator's if they are a manager)
@@ -0,0 +1,29 @@
+package com.example.demo.dao;
+
+import com.example.demo.model.CompileCacheEntry;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * DAO for the content-addressed compile cache
+ * Structure: compileCache/{cacheKey}
+ */
+public interface CompileCacheDao {
+
+    void save(CompileCacheEntry entry) throws ExecutionException, InterruptedException;
+    CompileCacheEntry findByKey(String cacheKey) throws ExecutionException, InterruptedException;
+    void delete(String cacheKey) throws ExecutionException, InterruptedException;
+
+    /**
+     * Entries built for any of the given submitted videos (current and superseded keys alike)
+     */
+    List<CompileCacheEntry> findByCompositeVideoIds(List<String> compositeVideoIds) throws ExecutionException, InterruptedException;
+
+    /**
+     * Delete the given entries in one bulk write
+     * @return number of entries deleted
+     */
+    int deleteAll(Collection<String> cacheKeys) throws InterruptedException;
+}
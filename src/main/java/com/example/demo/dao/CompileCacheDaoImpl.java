@@ -0,0 +1,70 @@
+package com.example.demo.dao;
+
+import com.example.demo.model.CompileCacheEntry;
+import com.google.cloud.firestore.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Firestore implementation of CompileCacheDao
+ */
+@Repository
+public class CompileCacheDaoImpl implements CompileCacheDao {
+
+    private static final String COLLECTION_NAME = "compileCache";
+    // Firestore's limit on whereIn values
+    private static final int MAX_IN_VALUES = 30;
+
+    @Autowired
+    private Firestore db;
+
+    @Override
+    public void save(CompileCacheEntry entry) throws ExecutionException, InterruptedException {
+        db.collection(COLLECTION_NAME).document(entry.getId()).set(entry).get();
+    }
+
+    @Override
+    public CompileCacheEntry findByKey(String cacheKey) throws ExecutionException, InterruptedException {
+        DocumentSnapshot document = db.collection(COLLECTION_NAME).document(cacheKey).get().get();
+        if (document.exists()) {
+            CompileCacheEntry entry = document.toObject(CompileCacheEntry.class);
+            entry.setId(document.getId());
+            return entry;
+        }
+        return null;
+    }
+
+    @Override
+    public void delete(String cacheKey) throws ExecutionException, InterruptedException {
+        db.collection(COLLECTION_NAME).document(cacheKey).delete().get();
+    }
+
+    @Override
+    public List<CompileCacheEntry> findByCompositeVideoIds(List<String> compositeVideoIds) throws ExecutionException, InterruptedException {
+        List<CompileCacheEntry> entries = new ArrayList<>();
+        for (int i = 0; i < compositeVideoIds.size(); i += MAX_IN_VALUES) {
+            List<String> chunk = compositeVideoIds.subList(i, Math.min(i + MAX_IN_VALUES, compositeVideoIds.size()));
+            Query query = db.collection(COLLECTION_NAME).whereIn("compositeVideoId", new ArrayList<>(chunk));
+            for (QueryDocumentSnapshot document : query.get().get().getDocuments()) {
+                CompileCacheEntry entry = document.toObject(CompileCacheEntry.class);
+                entry.setId(document.getId());
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public int deleteAll(Collection<String> cacheKeys) throws InterruptedException {
+        List<DocumentReference> refs = new ArrayList<>();
+        for (String cacheKey : cacheKeys) {
+            refs.add(db.collection(COLLECTION_NAME).document(cacheKey));
+        }
+        return FirestoreBulkDeletes.deleteAll(db, refs);
+    }
+}
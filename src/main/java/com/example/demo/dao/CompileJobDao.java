@@ -0,0 +1,66 @@
+package com.example.demo.dao;
+
+import com.example.demo.model.CompileJob;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * DAO for persistent compile jobs (asynchronous publish pipeline)
+ * Structure: compileJobs/{jobId}
+ */
+public interface CompileJobDao {
+
+    String save(CompileJob job) throws ExecutionException, InterruptedException;
+    CompileJob findById(String id) throws ExecutionException, InterruptedException;
+
+    /**
+     * Save the job unless its submitted video already has a queued or running job.
+     * Check and insert run in one transaction, so concurrent publishes of the same
+     * video produce a single job.
+     * @return the job that is now active for the video: the given one if it was saved, else the existing one
+     */
+    CompileJob saveIfNoneActive(CompileJob job) throws ExecutionException, InterruptedException;
+
+    /**
+     * Most recently created job for a submitted video, or null
+     */
+    CompileJob findLatestByVideoId(String videoId) throws ExecutionException, InterruptedException;
+
+    /**
+     * Jobs in the given status, oldest first
+     */
+    List<CompileJob> findByStatus(String status, int limit) throws ExecutionException, InterruptedException;
+
+    /**
+     * Atomically move a queued job to running for this worker.
+     * @return true if this worker won the claim
+     */
+    boolean claim(String jobId, String workerId) throws ExecutionException, InterruptedException;
+
+    void updateProgress(String jobId, int progress, String stage) throws ExecutionException, InterruptedException;
+
+    /**
+     * Bump updatedAt of a job this worker is running, so it is not mistaken for stalled
+     * @return false if the job is no longer running on this worker
+     */
+    boolean heartbeat(String jobId, String workerId) throws ExecutionException, InterruptedException;
+
+    /**
+     * Finish a job this worker is running. Nothing is written if the job was requeued or
+     * finished by someone else in the meantime.
+     * @return true if the job was marked
+     */
+    boolean markDone(String jobId, String workerId, String compiledVideoId, String compiledVideoUrl) throws ExecutionException, InterruptedException;
+    boolean markFailed(String jobId, String workerId, String error) throws ExecutionException, InterruptedException;
+
+    /**
+     * Put a stale running job back into the queue (e.g. its worker died mid-compile), or fail
+     * it. Applied only while the job is still running on staleWorkerId with the updatedAt the
+     * caller observed, i.e. nothing touched it since it was found stale.
+     * @return true if the job was changed
+     */
+    boolean requeueIfStale(String jobId, String staleWorkerId, Date observedUpdatedAt) throws ExecutionException, InterruptedException;
+    boolean failIfStale(String jobId, String staleWorkerId, Date observedUpdatedAt, String error) throws ExecutionException, InterruptedException;
+}
@@ -0,0 +1,231 @@
+package com.example.demo.dao;
+
+import com.example.demo.model.CompileJob;
+import com.google.cloud.firestore.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Firestore implementation of CompileJobDao
+ */
+@Repository
+public class CompileJobDaoImpl implements CompileJobDao {
+
+    private static final String COLLECTION_NAME = "compileJobs";
+    // compileJobLocks/{videoId} -> { jobId }: latest job per video, read and written transactionally on enqueue
+    private static final String LOCKS_COLLECTION = "compileJobLocks";
+
+    @Autowired
+    private Firestore db;
+
+    @Override
+    public String save(CompileJob job) throws ExecutionException, InterruptedException {
+        CollectionReference collection = db.collection(COLLECTION_NAME);
+        if (job.getId() == null) {
+            DocumentReference docRef = collection.document();
+            job.setId(docRef.getId());
+        }
+        job.setUpdatedAt(new Date());
+        // Wait for the write so the job is durable before the publish request returns
+        collection.document(job.getId()).set(job).get();
+        return job.getId();
+    }
+
+    @Override
+    public CompileJob findById(String id) throws ExecutionException, InterruptedException {
+        DocumentSnapshot document = db.collection(COLLECTION_NAME).document(id).get().get();
+        if (document.exists()) {
+            CompileJob job = document.toObject(CompileJob.class);
+            job.setId(document.getId());
+            return job;
+        }
+        return null;
+    }
+
+    @Override
+    public CompileJob saveIfNoneActive(CompileJob job) throws ExecutionException, InterruptedException {
+        CollectionReference collection = db.collection(COLLECTION_NAME);
+        DocumentReference lockRef = db.collection(LOCKS_COLLECTION).document(job.getVideoId());
+        if (job.getId() == null) {
+            job.setId(collection.document().getId());
+        }
+        return db.runTransaction(transaction -> {
+            DocumentSnapshot lock = transaction.get(lockRef).get();
+            String lockedJobId = lock.exists() ? lock.getString("jobId") : null;
+            if (lockedJobId != null) {
+                DocumentSnapshot locked = transaction.get(collection.document(lockedJobId)).get();
+                if (locked.exists() && isActive(locked.getString("status"))) {
+                    return toJob(locked);
+                }
+            } else {
+                // No lock yet: the video may still have a job enqueued before locks existed
+                Query query = collection.whereEqualTo("videoId", job.getVideoId());
+                for (QueryDocumentSnapshot document : transaction.get(query).get().getDocuments()) {
+                    if (isActive(document.getString("status"))) {
+                        return toJob(document);
+                    }
+                }
+            }
+            Date now = new Date();
+            job.setUpdatedAt(now);
+            transaction.set(collection.document(job.getId()), job);
+            Map<String, Object> lockData = new HashMap<>();
+            lockData.put("jobId", job.getId());
+            lockData.put("updatedAt", now);
+            transaction.set(lockRef, lockData);
+            return job;
+        }).get();
+    }
+
+    @Override
+    public CompileJob findLatestByVideoId(String videoId) throws ExecutionException, InterruptedException {
+        List<CompileJob> jobs = findByVideoId(videoId);
+        return jobs.isEmpty() ? null : jobs.get(0);
+    }
+
+    @Override
+    public List<CompileJob> findByStatus(String status, int limit) throws ExecutionException, InterruptedException {
+        // Single-field filter only (no composite index needed); sort oldest first in memory
+        Query query = db.collection(COLLECTION_NAME).whereEqualTo("status", status);
+        List<CompileJob> jobs = executeQuery(query);
+        jobs.sort(Comparator.comparing(CompileJob::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return jobs.size() > limit ? new ArrayList<>(jobs.subList(0, limit)) : jobs;
+    }
+
+    @Override
+    public boolean claim(String jobId, String workerId) throws ExecutionException, InterruptedException {
+        DocumentReference docRef = db.collection(COLLECTION_NAME).document(jobId);
+        return db.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(docRef).get();
+            if (!snapshot.exists() || !CompileJob.STATUS_QUEUED.equals(snapshot.getString("status"))) {
+                return false;
+            }
+            Date now = new Date();
+            Map<String, Object> updates = new HashMap<>();
+            updates.put("status", CompileJob.STATUS_RUNNING);
+            updates.put("stage", "starting");
+            updates.put("workerId", workerId);
+            updates.put("startedAt", now);
+            updates.put("updatedAt", now);
+            updates.put("attempts", FieldValue.increment(1));
+            transaction.update(docRef, updates);
+            return true;
+        }).get();
+    }
+
+    @Override
+    public void updateProgress(String jobId, int progress, String stage) throws ExecutionException, InterruptedException {
+        db.collection(COLLECTION_NAME).document(jobId)
+                .update("progress", progress, "stage", stage, "updatedAt", new Date())
+                .get();
+    }
+
+    @Override
+    public boolean heartbeat(String jobId, String workerId) throws ExecutionException, InterruptedException {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("updatedAt", new Date());
+        return updateIf(jobId, snapshot -> runningOn(snapshot, workerId), updates);
+    }
+
+    @Override
+    public boolean markDone(String jobId, String workerId, String compiledVideoId, String compiledVideoUrl) throws ExecutionException, InterruptedException {
+        Date now = new Date();
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("status", CompileJob.STATUS_DONE);
+        updates.put("progress", 100);
+        updates.put("stage", "done");
+        updates.put("compiledVideoId", compiledVideoId);
+        updates.put("compiledVideoUrl", compiledVideoUrl);
+        updates.put("updatedAt", now);
+        updates.put("finishedAt", now);
+        return updateIf(jobId, snapshot -> runningOn(snapshot, workerId), updates);
+    }
+
+    @Override
+    public boolean markFailed(String jobId, String workerId, String error) throws ExecutionException, InterruptedException {
+        return updateIf(jobId, snapshot -> runningOn(snapshot, workerId), failedUpdates(error));
+    }
+
+    @Override
+    public boolean requeueIfStale(String jobId, String staleWorkerId, Date observedUpdatedAt) throws ExecutionException, InterruptedException {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("status", CompileJob.STATUS_QUEUED);
+        updates.put("progress", 0);
+        updates.put("stage", "requeued");
+        updates.put("workerId", null);
+        updates.put("updatedAt", new Date());
+        return updateIf(jobId, snapshot -> unchangedSince(snapshot, staleWorkerId, observedUpdatedAt), updates);
+    }
+
+    @Override
+    public boolean failIfStale(String jobId, String staleWorkerId, Date observedUpdatedAt, String error) throws ExecutionException, InterruptedException {
+        return updateIf(jobId, snapshot -> unchangedSince(snapshot, staleWorkerId, observedUpdatedAt), failedUpdates(error));
+    }
+
+    private static Map<String, Object> failedUpdates(String error) {
+        Date now = new Date();
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("status", CompileJob.STATUS_FAILED);
+        updates.put("stage", "failed");
+        updates.put("error", error);
+        updates.put("updatedAt", now);
+        updates.put("finishedAt", now);
+        return updates;
+    }
+
+    private static boolean runningOn(DocumentSnapshot snapshot, String workerId) {
+        return CompileJob.STATUS_RUNNING.equals(snapshot.getString("status"))
+            && Objects.equals(workerId, snapshot.getString("workerId"));
+    }
+
+    private static boolean unchangedSince(DocumentSnapshot snapshot, String workerId, Date observedUpdatedAt) {
+        return runningOn(snapshot, workerId) && Objects.equals(observedUpdatedAt, snapshot.getDate("updatedAt"));
+    }
+
+    /**
+     * Apply updates in a transaction, only if the job document satisfies the condition
+     */
+    private boolean updateIf(String jobId, java.util.function.Predicate<DocumentSnapshot> condition, Map<String, Object> updates)
+            throws ExecutionException, InterruptedException {
+        DocumentReference docRef = db.collection(COLLECTION_NAME).document(jobId);
+        return db.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(docRef).get();
+            if (!snapshot.exists() || !condition.test(snapshot)) {
+                return false;
+            }
+            transaction.update(docRef, updates);
+            return true;
+        }).get();
+    }
+
+    // Newest first
+    private List<CompileJob> findByVideoId(String videoId) throws ExecutionException, InterruptedException {
+        Query query = db.collection(COLLECTION_NAME).whereEqualTo("videoId", videoId);
+        List<CompileJob> jobs = executeQuery(query);
+        jobs.sort(Comparator.comparing(CompileJob::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder())));
+        return jobs;
+    }
+
+    private static boolean isActive(String status) {
+        return CompileJob.STATUS_QUEUED.equals(status) || CompileJob.STATUS_RUNNING.equals(status);
+    }
+
+    private static CompileJob toJob(DocumentSnapshot document) {
+        CompileJob job = document.toObject(CompileJob.class);
+        job.setId(document.getId());
+        return job;
+    }
+
+    private List<CompileJob> executeQuery(Query query) throws ExecutionException, InterruptedException {
+        List<CompileJob> results = new ArrayList<>();
+        for (QueryDocumentSnapshot document : query.get().get().getDocuments()) {
+            CompileJob job = document.toObject(CompileJob.class);
+            job.setId(document.getId());
+            results.add(job);
+        }
+        return results;
+    }
+}
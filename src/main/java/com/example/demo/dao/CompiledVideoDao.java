@@ -9,6 +9,12 @@ import java.util.concurrent.ExecutionException;
 public interface CompiledVideoDao {
     
     String save(CompiledVideo compiledVideo) throws ExecutionException, InterruptedException;
+
+    /**
+     * Write a compiled video under its preset ID, unless a document with that ID exists
+     * @return false if it already existed (nothing is written)
+     */
+    boolean create(CompiledVideo compiledVideo) throws ExecutionException, InterruptedException;
     CompiledVideo findById(String id) throws ExecutionException, InterruptedException;
     CompiledVideo findByTemplateIdAndUserId(String templateId, String userId) throws ExecutionException, InterruptedException;
     
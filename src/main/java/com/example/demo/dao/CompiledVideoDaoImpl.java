@@ -34,6 +34,19 @@ public class CompiledVideoDaoImpl implements CompiledVideoDao {
         }
     }
     
+    @Override
+    public boolean create(CompiledVideo compiledVideo) throws ExecutionException, InterruptedException {
+        try {
+            db.collection(COLLECTION_NAME).document(compiledVideo.getId()).create(compiledVideo).get();
+            return true;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof com.google.api.gax.rpc.AlreadyExistsException) {
+                return false;
+            }
+            throw e;
+        }
+    }
+    
     @Override
     public CompiledVideo findById(String id) throws ExecutionException, InterruptedException {
         DocumentReference docRef = db.collection(COLLECTION_NAME).document(id);
@@ -69,7 +82,8 @@ public class CompiledVideoDaoImpl implements CompiledVideoDao {
         Query query = db.collection(COLLECTION_NAME)
                 .whereEqualTo("userId", userId)
                 .whereEqualTo("status", "completed");
-        return query.get().get().size();
+        // Server-side aggregation: no documents are downloaded
+        return (int) query.count().get().get().getCount();
     }
     
     @Override
@@ -77,6 +91,7 @@ public class CompiledVideoDaoImpl implements CompiledVideoDao {
         Query query = db.collection(COLLECTION_NAME)
                 .whereEqualTo("userId", userId)
                 .whereEqualTo("status", "published");
-        return query.get().get().size();
+        // Server-side aggregation: no documents are downloaded
+        return (int) query.count().get().get().getCount();
     }
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package com.example.demo.dao;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldMask;
+import com.google.cloud.firestore.Firestore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Batched multi-document reads (DAO layer, and controllers that read Firestore directly).
+ *
+ * Reads documents by ID with Firestore.getAll instead of one get() per document. IDs are
+ * de-duplicated and split into chunks of MAX_BATCH_SIZE. All chunks are issued
+ * concurrently, and results come back in the order of each ID's first occurrence in the
+ * input; a duplicated ID yields one snapshot.
+ */
+public final class FirestoreBatchReads {
+
+    public static final int MAX_BATCH_SIZE = 100;
+
+    private FirestoreBatchReads() {
+    }
+
+    /**
+     * Snapshots of the existing documents, in input order, one per distinct ID (missing, null
+     * and blank IDs are skipped)
+     */
+    public static List<DocumentSnapshot> getAll(Firestore db, CollectionReference collection, List<String> ids)
+            throws ExecutionException, InterruptedException {
+        return getAllMasked(db, collection, ids, null);
+    }
+
+    /**
+     * Like getAll, but only the fields in {@code mask} are transferred (null for whole documents)
+     */
+    public static List<DocumentSnapshot> getAllMasked(Firestore db, CollectionReference collection, List<String> ids, FieldMask mask)
+            throws ExecutionException, InterruptedException {
+        List<String> unique = new ArrayList<>();
+        for (String id : new LinkedHashSet<>(ids)) {
+            if (id != null && !id.isBlank()) {
+                unique.add(id);
+            }
+        }
+        if (unique.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<ApiFuture<List<DocumentSnapshot>>> batches = new ArrayList<>();
+        for (int i = 0; i < unique.size(); i += MAX_BATCH_SIZE) {
+            List<String> chunk = unique.subList(i, Math.min(i + MAX_BATCH_SIZE, unique.size()));
+            DocumentReference[] refs = new DocumentReference[chunk.size()];
+            for (int j = 0; j < chunk.size(); j++) {
+                refs[j] = collection.document(chunk.get(j));
+            }
+            batches.add(db.getAll(refs, mask));
+        }
+
+        Map<String, DocumentSnapshot> byId = new HashMap<>();
+        for (List<DocumentSnapshot> batch : ApiFutures.allAsList(batches).get()) {
+            for (DocumentSnapshot snapshot : batch) {
+                if (snapshot.exists()) {
+                    byId.put(snapshot.getId(), snapshot);
+                }
+            }
+        }
+
+        List<DocumentSnapshot> results = new ArrayList<>();
+        for (String id : unique) {
+            DocumentSnapshot snapshot = byId.get(id);
+            if (snapshot != null) {
+                results.add(snapshot);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Existing documents mapped to {@code type}, in input order
+     */
+    public static <T> List<T> getAll(Firestore db, CollectionReference collection, List<String> ids, Class<T> type)
+            throws ExecutionException, InterruptedException {
+        List<T> results = new ArrayList<>();
+        for (DocumentSnapshot snapshot : getAll(db, collection, ids)) {
+            results.add(snapshot.toObject(type));
+        }
+        return results;
+    }
+}
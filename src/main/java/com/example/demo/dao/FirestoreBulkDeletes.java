@@ -0,0 +1,94 @@
+package com.example.demo.dao;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.BulkWriter;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.WriteResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Bulk document deletes (DAO layer, cascade deletion).
+ *
+ * Deletes go through a BulkWriter, which sends them in parallel batches, throttles to
+ * Firestore's ramp-up limits and retries transient failures itself. Query deletes read
+ * only document IDs, PAGE_SIZE at a time. Documents already deleted are not matched
+ * again, so a run that was interrupted can simply be repeated.
+ */
+public final class FirestoreBulkDeletes {
+
+    public static final int PAGE_SIZE = 500;
+
+    private FirestoreBulkDeletes() {
+    }
+
+    /**
+     * Delete every document matched by {@code query}
+     * @return number of documents deleted
+     */
+    public static int deleteAll(Firestore db, Query query) throws ExecutionException, InterruptedException {
+        int deleted = 0;
+        int failed = 0;
+        while (true) {
+            List<DocumentReference> refs = new ArrayList<>();
+            for (QueryDocumentSnapshot doc : query.select(FieldPath.documentId()).limit(PAGE_SIZE).get().get().getDocuments()) {
+                refs.add(doc.getReference());
+            }
+            if (refs.isEmpty()) {
+                break;
+            }
+            int pageDeleted = deleteAll(db, refs);
+            deleted += pageDeleted;
+            if (refs.size() < PAGE_SIZE || pageDeleted == 0) {
+                // A short page was the last one; a page with no progress would repeat forever.
+                // Failures on earlier full pages are matched again and counted here.
+                failed = refs.size() - pageDeleted;
+                break;
+            }
+        }
+        if (failed > 0) {
+            throw new ExecutionException(new IllegalStateException(
+                "Bulk delete left " + failed + " documents (deleted " + deleted + "); re-run to resume"));
+        }
+        return deleted;
+    }
+
+    /**
+     * Delete the given documents (missing documents count as deleted)
+     * @return number of successful deletes
+     */
+    public static int deleteAll(Firestore db, Collection<DocumentReference> refs) throws InterruptedException {
+        if (refs.isEmpty()) {
+            return 0;
+        }
+        BulkWriter writer = db.bulkWriter();
+        List<ApiFuture<WriteResult>> writes = new ArrayList<>();
+        for (DocumentReference ref : refs) {
+            writes.add(writer.delete(ref));
+        }
+        try {
+            writer.close(); // Flushes and waits for every write, including retries
+        } catch (ExecutionException e) {
+            // Per-write failures are counted below
+            System.err.println("[BULK-DELETE] Bulk writer close failed: " + e.getCause());
+        }
+
+        int deleted = 0;
+        for (ApiFuture<WriteResult> write : writes) {
+            try {
+                write.get();
+                deleted++;
+            } catch (ExecutionException e) {
+                System.err.println("[BULK-DELETE] Failed to delete document: " + e.getCause());
+            }
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.demo.dao;
+
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldMask;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.ListenerRegistration;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache of single-document reads (templates, templateAssignments, and
+ * users for role/manager resolution only - see UserDao.findPrincipal).
+ *
+ * Users are read and cached as a projection of the principal fields: profile data and
+ * notifications never enter the cache, so they cannot be served stale from it.
+ *
+ * Snapshots are cached rather than mapped objects: DocumentSnapshot is immutable, and
+ * each DAO call still maps a fresh model object, so callers can keep mutating what
+ * they get back. Entries are evicted LRU past max-entries and expire after ttl-seconds.
+ *
+ * DAO writes invalidate their own entries. Writes made by other instances are only
+ * seen after the TTL, unless listener mode is enabled: each instance then listens to
+ * the cached collections and drops entries for every changed document. Listener mode
+ * streams the whole collection to every instance, so it is off by default.
+ */
+@Component
+public class FirestoreDocumentCache {
+
+    public static final String TEMPLATES = "templates";
+    public static final String TEMPLATE_ASSIGNMENTS = "templateAssignments";
+    public static final String USERS = "users";
+
+    // Collections cached as a projection; the rest are cached whole
+    private static final Map<String, FieldMask> PROJECTIONS =
+        Map.of(USERS, FieldMask.of("role", "createdBy", "groupId"));
+
+    @Autowired(required = false)
+    private Firestore db;
+
+    @Autowired(required = false)
+    private io.micrometer.core.instrument.MeterRegistry meterRegistry;
+
+    @Value("${cache.documents.max-entries:2000}")
+    private int maxEntries;
+
+    @Value("${cache.documents.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${cache.documents.listener.enabled:false}")
+    private boolean listenerEnabled;
+
+    private final Map<String, Region> regions = new LinkedHashMap<>();
+    private final List<ListenerRegistration> listeners = new ArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        for (String collection : new String[] { TEMPLATES, TEMPLATE_ASSIGNMENTS, USERS }) {
+            Region region = new Region();
+            regions.put(collection, region);
+
+            if (meterRegistry != null) {
+                io.micrometer.core.instrument.FunctionCounter.builder("cache.documents.hits", region, r -> r.hits.get())
+                    .tag("collection", collection).register(meterRegistry);
+                io.micrometer.core.instrument.FunctionCounter.builder("cache.documents.misses", region, r -> r.misses.get())
+                    .tag("collection", collection).register(meterRegistry);
+                io.micrometer.core.instrument.FunctionCounter.builder("cache.documents.evictions", region, r -> r.evictions.get())
+                    .tag("collection", collection).register(meterRegistry);
+                io.micrometer.core.instrument.Gauge.builder("cache.documents.size", region, Region::size)
+                    .tag("collection", collection).register(meterRegistry);
+            }
+
+            if (listenerEnabled && db != null) {
+                listeners.add(db.collection(collection).addSnapshotListener((snapshot, error) -> {
+                    if (error != null) {
+                        // The listener is dead after an error; fall back to TTL-only for this collection
+                        System.err.println("[CACHE] Listener failed for " + collection + ": " + error.getMessage());
+                        region.clear();
+                        return;
+                    }
+                    if (snapshot != null) {
+                        for (DocumentChange change : snapshot.getDocumentChanges()) {
+                            region.invalidate(change.getDocument().getId());
+                        }
+                    }
+                }));
+            }
+        }
+        System.out.println("[CACHE] Document cache: max " + maxEntries + " entries per collection, ttl "
+            + ttlSeconds + "s, listener " + (listenerEnabled && db != null ? "on" : "off"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ListenerRegistration listener : listeners) {
+            listener.remove();
+        }
+        listeners.clear();
+    }
+
+    /**
+     * Snapshot of collection/id, from the cache when fresh. Missing documents are not cached.
+     * For projected collections the snapshot only holds the projected fields.
+     */
+    public DocumentSnapshot get(String collection, String id) throws ExecutionException, InterruptedException {
+        Region region = regions.get(collection);
+        if (region == null) {
+            return db.collection(collection).document(id).get().get();
+        }
+
+        DocumentSnapshot cached = region.lookup(id);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = region.generation();
+        DocumentReference ref = db.collection(collection).document(id);
+        FieldMask projection = PROJECTIONS.get(collection);
+        DocumentSnapshot snapshot = projection != null
+            ? db.getAll(new DocumentReference[] { ref }, projection).get().get(0)
+            : ref.get().get();
+        if (snapshot.exists()) {
+            region.store(id, snapshot, generation);
+        }
+        return snapshot;
+    }
+
+    public void invalidate(String collection, String id) {
+        Region region = regions.get(collection);
+        if (region != null && id != null) {
+            region.invalidate(id);
+        }
+    }
+
+    public void invalidateAll(String collection) {
+        Region region = regions.get(collection);
+        if (region != null) {
+            region.clear();
+        }
+    }
+
+    public long getHits(String collection) {
+        Region region = regions.get(collection);
+        return region != null ? region.hits.get() : 0;
+    }
+
+    public long getMisses(String collection) {
+        Region region = regions.get(collection);
+        return region != null ? region.misses.get() : 0;
+    }
+
+    public int size(String collection) {
+        Region region = regions.get(collection);
+        return region != null ? region.size() : 0;
+    }
+
+    private static class Entry {
+        final DocumentSnapshot snapshot;
+        final long expiresAt;
+
+        Entry(DocumentSnapshot snapshot, long expiresAt) {
+            this.snapshot = snapshot;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * One collection's entries. A read that started before an invalidation of the same
+     * ID must not store what it read, so invalidations bump a per-region generation and
+     * store() drops results loaded under an older one.
+     */
+    private class Region {
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong evictions = new AtomicLong();
+        private long generation;
+
+        // Access-ordered LRU; guarded by its own monitor
+        private final Map<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > Math.max(1, maxEntries)) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        DocumentSnapshot lookup(String id) {
+            synchronized (entries) {
+                Entry entry = entries.get(id);
+                if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+                    hits.incrementAndGet();
+                    return entry.snapshot;
+                }
+                if (entry != null) {
+                    entries.remove(id);
+                    evictions.incrementAndGet();
+                }
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+
+        long generation() {
+            synchronized (entries) {
+                return generation;
+            }
+        }
+
+        void store(String id, DocumentSnapshot snapshot, long loadedAt) {
+            synchronized (entries) {
+                if (generation == loadedAt) {
+                    entries.put(id, new Entry(snapshot, System.currentTimeMillis() + ttlSeconds * 1000));
+                }
+            }
+        }
+
+        void invalidate(String id) {
+            synchronized (entries) {
+                generation++;
+                entries.remove(id);
+            }
+        }
+
+        void clear() {
+            synchronized (entries) {
+                generation++;
+                entries.clear();
+            }
+        }
+
+        int size() {
+            synchronized (entries) {
+                return entries.size();
+            }
+        }
+    }
+}
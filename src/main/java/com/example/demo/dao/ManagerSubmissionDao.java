@@ -22,6 +22,40 @@ public interface ManagerSubmissionDao {
      */
     List<Map<String, Object>> getSubmissions(String managerId);
     
+    /**
+     * One page of a manager's submissions, newest updatedAt first.
+     * 
+     * @param status status bucket (pending, approved, published, rejected) filtered
+     *               server-side, or null for all
+     * @param cursor nextCursor of the previous page, or null for the first page
+     */
+    SubmissionPage getSubmissionsPage(String managerId, String status, int limit, String cursor);
+    
+    /**
+     * Submission counts per status bucket, from count() aggregations
+     */
+    Map<String, Long> countSubmissionsByStatus(String managerId);
+    
+    /**
+     * Status buckets shown on the manager page, and the publishStatus values in each
+     */
+    Map<String, List<String>> STATUS_BUCKETS = Map.of(
+        "pending", List.of("pending"),
+        "approved", List.of("approved"),
+        "published", List.of("published", "downloaded"),
+        "rejected", List.of("rejected")
+    );
+    
+    class SubmissionPage {
+        public final List<Map<String, Object>> items;
+        public final String nextCursor;   // null on the last page
+        
+        public SubmissionPage(List<Map<String, Object>> items, String nextCursor) {
+            this.items = items;
+            this.nextCursor = nextCursor;
+        }
+    }
+    
     /**
      * Update submission status
      */
@@ -1,11 +1,15 @@
 package com.example.demo.dao;
 
+import com.google.cloud.firestore.AggregateQuerySnapshot;
+import com.google.cloud.firestore.FieldPath;
 import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
 import com.google.cloud.firestore.QueryDocumentSnapshot;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -68,6 +72,92 @@ public class ManagerSubmissionDaoImpl implements ManagerSubmissionDao {
         }
     }
 
+    @Override
+    public SubmissionPage getSubmissionsPage(String managerId, String status, int limit, String cursor) {
+        try {
+            Query query = db.collection(COLLECTION).document(managerId).collection(SUBCOLLECTION);
+            if (status != null) {
+                List<String> statuses = STATUS_BUCKETS.get(status);
+                if (statuses == null) {
+                    throw new IllegalArgumentException("Unknown status: " + status);
+                }
+                query = statuses.size() == 1
+                        ? query.whereEqualTo("publishStatus", statuses.get(0))
+                        : query.whereIn("publishStatus", statuses);
+            }
+            // Document ID breaks ties between equal updatedAt values so cursors are stable
+            query = query.orderBy("updatedAt", Query.Direction.DESCENDING)
+                    .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING)
+                    .limit(limit + 1);
+            if (cursor != null && !cursor.isEmpty()) {
+                Object[] position = decodeCursor(cursor);
+                query = query.startAfter(position[0], position[1]);
+            }
+
+            List<QueryDocumentSnapshot> documents = query.get().get().getDocuments();
+            List<Map<String, Object>> submissions = new ArrayList<>();
+            for (QueryDocumentSnapshot doc : documents.subList(0, Math.min(limit, documents.size()))) {
+                Map<String, Object> data = doc.getData();
+                data.put("id", doc.getId());
+                submissions.add(data);
+            }
+
+            String nextCursor = null;
+            if (documents.size() > limit) {
+                QueryDocumentSnapshot last = documents.get(limit - 1);
+                nextCursor = encodeCursor(last.getTimestamp("updatedAt"), last.getId());
+            }
+            return new SubmissionPage(submissions, nextCursor);
+
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Failed to get manager submissions page", e);
+        }
+    }
+
+    @Override
+    public Map<String, Long> countSubmissionsByStatus(String managerId) {
+        try {
+            Query submissions = db.collection(COLLECTION).document(managerId).collection(SUBCOLLECTION);
+            Map<String, com.google.api.core.ApiFuture<AggregateQuerySnapshot>> futures = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> bucket : STATUS_BUCKETS.entrySet()) {
+                Query query = bucket.getValue().size() == 1
+                        ? submissions.whereEqualTo("publishStatus", bucket.getValue().get(0))
+                        : submissions.whereIn("publishStatus", bucket.getValue());
+                futures.put(bucket.getKey(), query.count().get());
+            }
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (Map.Entry<String, com.google.api.core.ApiFuture<AggregateQuerySnapshot>> entry : futures.entrySet()) {
+                counts.put(entry.getKey(), entry.getValue().get().getCount());
+            }
+            return counts;
+
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Failed to count manager submissions", e);
+        }
+    }
+
+    /**
+     * Opaque page cursor: base64url of "seconds.nanos|documentId" of the last item
+     */
+    private String encodeCursor(com.google.cloud.Timestamp updatedAt, String documentId) {
+        String raw = updatedAt.getSeconds() + "." + updatedAt.getNanos() + "|" + documentId;
+        return java.util.Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+    }
+
+    private Object[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(java.util.Base64.getUrlDecoder().decode(cursor), java.nio.charset.StandardCharsets.UTF_8);
+            int bar = raw.indexOf('|');
+            String[] time = raw.substring(0, bar).split("\\.");
+            com.google.cloud.Timestamp updatedAt = com.google.cloud.Timestamp.ofTimeSecondsAndNanos(
+                    Long.parseLong(time[0]), Integer.parseInt(time[1]));
+            return new Object[] { updatedAt, raw.substring(bar + 1) };
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
     @Override
     public void updateSubmissionStatus(String managerId, String submissionId, String status) {
         try {
@@ -103,20 +193,12 @@ public class ManagerSubmissionDaoImpl implements ManagerSubmissionDao {
         try {
             System.out.println("[MANAGER-SUBMISSION] Deleting submissions for manager: " + managerId + ", assignment: " + assignmentId);
             
-            List<QueryDocumentSnapshot> documents = db.collection(COLLECTION)
+            int deleted = FirestoreBulkDeletes.deleteAll(db, db.collection(COLLECTION)
                     .document(managerId)
                     .collection(SUBCOLLECTION)
-                    .whereEqualTo("assignmentId", assignmentId)
-                    .get()
-                    .get()
-                    .getDocuments();
+                    .whereEqualTo("assignmentId", assignmentId));
 
-            System.out.println("[MANAGER-SUBMISSION] Found " + documents.size() + " submissions to delete");
-            
-            for (QueryDocumentSnapshot doc : documents) {
-                doc.getReference().delete().get();
-                System.out.println("[MANAGER-SUBMISSION] Deleted submission: " + doc.getId());
-            }
+            System.out.println("[MANAGER-SUBMISSION] Deleted " + deleted + " submissions");
 
         } catch (InterruptedException | ExecutionException e) {
             System.err.println("[MANAGER-SUBMISSION] Error deleting submissions: " + e.getMessage());
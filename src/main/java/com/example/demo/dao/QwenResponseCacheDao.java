@@ -0,0 +1,16 @@
+package com.example.demo.dao;
+
+import com.example.demo.model.QwenResponseCacheEntry;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * DAO for the persistent Qwen response cache
+ * Structure: qwenResponseCache/{cacheKey}
+ */
+public interface QwenResponseCacheDao {
+
+    void save(QwenResponseCacheEntry entry) throws ExecutionException, InterruptedException;
+    QwenResponseCacheEntry findByKey(String cacheKey) throws ExecutionException, InterruptedException;
+    void delete(String cacheKey) throws ExecutionException, InterruptedException;
+}
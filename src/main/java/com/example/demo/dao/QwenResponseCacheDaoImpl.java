@@ -0,0 +1,41 @@
+package com.example.demo.dao;
+
+import com.example.demo.model.QwenResponseCacheEntry;
+import com.google.cloud.firestore.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Firestore implementation of QwenResponseCacheDao
+ */
+@Repository
+public class QwenResponseCacheDaoImpl implements QwenResponseCacheDao {
+
+    private static final String COLLECTION_NAME = "qwenResponseCache";
+
+    @Autowired
+    private Firestore db;
+
+    @Override
+    public void save(QwenResponseCacheEntry entry) throws ExecutionException, InterruptedException {
+        db.collection(COLLECTION_NAME).document(entry.getId()).set(entry).get();
+    }
+
+    @Override
+    public QwenResponseCacheEntry findByKey(String cacheKey) throws ExecutionException, InterruptedException {
+        DocumentSnapshot document = db.collection(COLLECTION_NAME).document(cacheKey).get().get();
+        if (document.exists()) {
+            QwenResponseCacheEntry entry = document.toObject(QwenResponseCacheEntry.class);
+            entry.setId(document.getId());
+            return entry;
+        }
+        return null;
+    }
+
+    @Override
+    public void delete(String cacheKey) throws ExecutionException, InterruptedException {
+        db.collection(COLLECTION_NAME).document(cacheKey).delete().get();
+    }
+}
@@ -39,6 +39,26 @@ public interface SceneSubmissionDao {
     int countPendingScenesByTemplateIdAndUserId(String templateId, String userId) throws ExecutionException, InterruptedException;
     int countRejectedScenesByTemplateIdAndUserId(String templateId, String userId) throws ExecutionException, InterruptedException;
     
+    /**
+     * Total/approved/pending/rejected scene counts for a template/user pair, from server-side
+     * count() aggregations issued concurrently (one round trip, no documents downloaded)
+     */
+    SceneStatusCounts countScenesByStatus(String templateId, String userId) throws ExecutionException, InterruptedException;
+    
+    class SceneStatusCounts {
+        public final int total;
+        public final int approved;
+        public final int pending;
+        public final int rejected;
+        
+        public SceneStatusCounts(int total, int approved, int pending, int rejected) {
+            this.total = total;
+            this.approved = approved;
+            this.pending = pending;
+            this.rejected = rejected;
+        }
+    }
+    
     // Manager Review Queries
     List<SceneSubmission> findPendingSubmissionsForReview() throws ExecutionException, InterruptedException;
     List<SceneSubmission> findSubmissionsByReviewer(String reviewerId) throws ExecutionException, InterruptedException;
@@ -57,9 +77,9 @@ public interface SceneSubmissionDao {
     double getAverageSimilarityScore(String templateId) throws ExecutionException, InterruptedException;
     List<SceneSubmission> findTopPerformingScenes(String templateId, int limit) throws ExecutionException, InterruptedException;
     
-    // Bulk Operations
-    void deleteScenesByTemplateId(String templateId) throws ExecutionException, InterruptedException;
-    void deleteScenesByUserId(String userId) throws ExecutionException, InterruptedException;
+    // Bulk Operations (BulkWriter; safe to re-run after a partial failure) - return the number deleted
+    int deleteScenesByTemplateId(String templateId) throws ExecutionException, InterruptedException;
+    int deleteScenesByUserId(String userId) throws ExecutionException, InterruptedException;
     
     /**
      * Delete all scene submissions for an assignment with OSS cleanup
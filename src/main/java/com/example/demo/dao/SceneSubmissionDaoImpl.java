@@ -25,6 +25,9 @@ public class SceneSubmissionDaoImpl implements SceneSubmissionDao {
     @Autowired(required = false)
     private com.example.demo.service.AlibabaOssStorageService ossStorageService;
     
+    @Autowired(required = false)
+    private com.example.demo.service.MediaProbeService mediaProbeService;
+    
     @Override
     public String save(SceneSubmission sceneSubmission) throws ExecutionException, InterruptedException {
         CollectionReference collection = db.collection(COLLECTION_NAME);
@@ -148,28 +151,63 @@ public class SceneSubmissionDaoImpl implements SceneSubmissionDao {
         return executeQuery(query);
     }
     
+    // Counts use server-side count() aggregations: billed per 1000 index entries, no documents transferred.
+    // They keep the list queries' orderBy("sceneNumber"), which skips documents without a scene
+    // number, so counts match the lists and reuse their indexes
+    
     @Override
     public int countScenesByTemplateIdAndUserId(String templateId, String userId) throws ExecutionException, InterruptedException {
-        List<SceneSubmission> scenes = findByTemplateIdAndUserId(templateId, userId);
-        return scenes.size();
+        return (int) templateUserQuery(templateId, userId).count().get().get().getCount();
     }
     
     @Override
     public int countApprovedScenesByTemplateIdAndUserId(String templateId, String userId) throws ExecutionException, InterruptedException {
-        List<SceneSubmission> scenes = findApprovedScenesByTemplateIdAndUserId(templateId, userId);
-        return scenes.size();
+        return countScenesWithStatus(templateId, userId, "approved");
     }
     
     @Override
     public int countPendingScenesByTemplateIdAndUserId(String templateId, String userId) throws ExecutionException, InterruptedException {
-        List<SceneSubmission> scenes = findPendingScenesByTemplateIdAndUserId(templateId, userId);
-        return scenes.size();
+        return countScenesWithStatus(templateId, userId, "pending");
     }
     
     @Override
     public int countRejectedScenesByTemplateIdAndUserId(String templateId, String userId) throws ExecutionException, InterruptedException {
-        List<SceneSubmission> scenes = findRejectedScenesByTemplateIdAndUserId(templateId, userId);
-        return scenes.size();
+        return countScenesWithStatus(templateId, userId, "rejected");
+    }
+    
+    @Override
+    public SceneStatusCounts countScenesByStatus(String templateId, String userId) throws ExecutionException, InterruptedException {
+        List<ApiFuture<AggregateQuerySnapshot>> counts = Arrays.asList(
+            templateUserQuery(templateId, userId).count().get(),
+            templateUserQuery(templateId, userId, "approved").count().get(),
+            templateUserQuery(templateId, userId, "pending").count().get(),
+            templateUserQuery(templateId, userId, "rejected").count().get()
+        );
+        List<AggregateQuerySnapshot> results = com.google.api.core.ApiFutures.allAsList(counts).get();
+        return new SceneStatusCounts(
+            (int) results.get(0).getCount(),
+            (int) results.get(1).getCount(),
+            (int) results.get(2).getCount(),
+            (int) results.get(3).getCount());
+    }
+    
+    private Query templateUserQuery(String templateId, String userId) {
+        return db.collection(COLLECTION_NAME)
+                 .whereEqualTo("templateId", templateId)
+                 .whereEqualTo("userId", userId)
+                 .orderBy("sceneNumber");
+    }
+    
+    private Query templateUserQuery(String templateId, String userId, String status) {
+        return db.collection(COLLECTION_NAME)
+                 .whereEqualTo("templateId", templateId)
+                 .whereEqualTo("userId", userId)
+                 .whereEqualTo("status", status)
+                 .orderBy("sceneNumber");
+    }
+    
+    private int countScenesWithStatus(String templateId, String userId, String status) throws ExecutionException, InterruptedException {
+        return (int) templateUserQuery(templateId, userId, status).count().get().get().getCount();
     }
     
     @Override
@@ -259,29 +297,13 @@ public class SceneSubmissionDaoImpl implements SceneSubmissionDao {
     }
     
     @Override
-    public void deleteScenesByTemplateId(String templateId) throws ExecutionException, InterruptedException {
-        List<SceneSubmission> scenes = findByTemplateId(templateId);
-        WriteBatch batch = db.batch();
-        
-        for (SceneSubmission scene : scenes) {
-            DocumentReference docRef = db.collection(COLLECTION_NAME).document(scene.getId());
-            batch.delete(docRef);
-        }
-        
-        batch.commit().get();
+    public int deleteScenesByTemplateId(String templateId) throws ExecutionException, InterruptedException {
+        return FirestoreBulkDeletes.deleteAll(db, db.collection(COLLECTION_NAME).whereEqualTo("templateId", templateId));
     }
     
     @Override
-    public void deleteScenesByUserId(String userId) throws ExecutionException, InterruptedException {
-        List<SceneSubmission> scenes = findByUserId(userId);
-        WriteBatch batch = db.batch();
-        
-        for (SceneSubmission scene : scenes) {
-            DocumentReference docRef = db.collection(COLLECTION_NAME).document(scene.getId());
-            batch.delete(docRef);
-        }
-        
-        batch.commit().get();
+    public int deleteScenesByUserId(String userId) throws ExecutionException, InterruptedException {
+        return FirestoreBulkDeletes.deleteAll(db, db.collection(COLLECTION_NAME).whereEqualTo("userId", userId));
     }
     
     // Helper method to execute queries and convert results
@@ -305,44 +327,6 @@ public class SceneSubmissionDaoImpl implements SceneSubmissionDao {
             throw new IllegalStateException("AlibabaOssStorageService not available");
         }
         
-        // CRITICAL: Save multipart file to temp IMMEDIATELY using getInputStream()
-        // This avoids Tomcat temp file cleanup issues on ephemeral filesystems (Render)
-        // The multipart temp file can be deleted at any time, so we must copy it first
-        java.io.File tempInputFile = java.io.File.createTempFile("scene_upload_", ".mp4");
-        try (java.io.InputStream inputStream = file.getInputStream();
-             java.io.FileOutputStream outputStream = new java.io.FileOutputStream(tempInputFile)) {
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                outputStream.write(buffer, 0, bytesRead);
-            }
-        }
-        System.out.println("[SCENE-UPLOAD] Saved multipart to temp: " + tempInputFile.length() + " bytes");
-        
-        // Create a MultipartFile wrapper for the temp file
-        // NOTE: FFmpeg transcoding removed to avoid OOM on Render (512MB limit)
-        // Android/HarmonyOS mini-app uses wx.downloadFile() workaround for playback
-        final java.io.File savedTempFile = tempInputFile;
-        final String originalFilename = file.getOriginalFilename();
-        final String contentType = file.getContentType();
-        org.springframework.web.multipart.MultipartFile fileToUpload = new org.springframework.web.multipart.MultipartFile() {
-            @Override public String getName() { return "file"; }
-            @Override public String getOriginalFilename() { return originalFilename; }
-            @Override public String getContentType() { return contentType != null ? contentType : "video/mp4"; }
-            @Override public boolean isEmpty() { return savedTempFile.length() == 0; }
-            @Override public long getSize() { return savedTempFile.length(); }
-            @Override public byte[] getBytes() throws java.io.IOException {
-                return java.nio.file.Files.readAllBytes(savedTempFile.toPath());
-            }
-            @Override public java.io.InputStream getInputStream() throws java.io.IOException {
-                return new java.io.FileInputStream(savedTempFile);
-            }
-            @Override public void transferTo(java.io.File dest) throws java.io.IOException {
-                java.nio.file.Files.copy(savedTempFile.toPath(), dest.toPath(), 
-                    java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-            }
-        };
-        
         // Check for existing submission (resubmission case)
         SceneSubmission existingSubmission = null;
         try {
@@ -378,14 +362,29 @@ public class SceneSubmissionDaoImpl implements SceneSubmissionDao {
             }
         }
         
-        // Upload to OSS
+        // Stream to OSS; the multipart body is read once and the only local copy is kept
+        // for fingerprinting (avoids Tomcat temp file cleanup issues on Render)
         String sceneVideoId = UUID.randomUUID().toString();
-        com.example.demo.service.AlibabaOssStorageService.UploadResult uploadResult = 
-            ossStorageService.uploadVideoWithThumbnail(fileToUpload, userId, sceneVideoId);
-        
-        // Clean up temp file
-        if (tempInputFile != null && tempInputFile.exists()) {
-            tempInputFile.delete();
+        java.io.File localCopy = java.io.File.createTempFile("scene_upload_", ".mp4");
+        com.example.demo.service.AlibabaOssStorageService.UploadResult uploadResult;
+        com.example.demo.model.VideoFingerprint fingerprint = null;
+        try {
+            uploadResult = ossStorageService.uploadVideoWithThumbnail(file, userId, sceneVideoId, localCopy);
+            System.out.println("[SCENE-UPLOAD] Uploaded " + localCopy.length() + " bytes");
+            
+            // Fingerprint the streams once, while the file is local; the compiler uses it to
+            // decide between stream-copy concat and re-encoding without probing again
+            if (mediaProbeService != null) {
+                try {
+                    fingerprint = mediaProbeService.probeFingerprint(localCopy.getAbsolutePath());
+                    System.out.println("[SCENE-UPLOAD] " + fingerprint);
+                } catch (Exception e) {
+                    System.err.println("[SCENE-UPLOAD] Failed to fingerprint video: " + e.getMessage());
+                }
+            }
+        } finally {
+            // Clean up temp file
+            localCopy.delete();
         }
         
         // Create or update scene submission
@@ -399,6 +398,10 @@ public class SceneSubmissionDaoImpl implements SceneSubmissionDao {
             sceneSubmission.setOriginalFileName(file.getOriginalFilename());
             sceneSubmission.setFileSize(file.getSize());
             sceneSubmission.setFormat(getFileExtension(file.getOriginalFilename()));
+            sceneSubmission.setVideoFingerprint(fingerprint);
+            if (fingerprint != null && fingerprint.getDuration() != null) {
+                sceneSubmission.setDuration(fingerprint.getDuration());
+            }
             sceneSubmission.setSimilarityScore(-1.0);  // Reset for new AI analysis
             sceneSubmission.setAiSuggestions(Arrays.asList("AI分析进行中...", "请稍后查看结果"));
             sceneSubmission.setStatus("pending");  // Reset to pending
@@ -415,6 +418,10 @@ public class SceneSubmissionDaoImpl implements SceneSubmissionDao {
             sceneSubmission.setOriginalFileName(file.getOriginalFilename());
             sceneSubmission.setFileSize(file.getSize());
             sceneSubmission.setFormat(getFileExtension(file.getOriginalFilename()));
+            sceneSubmission.setVideoFingerprint(fingerprint);
+            if (fingerprint != null && fingerprint.getDuration() != null) {
+                sceneSubmission.setDuration(fingerprint.getDuration());
+            }
             sceneSubmission.setSimilarityScore(-1.0);
             sceneSubmission.setAiSuggestions(Arrays.asList("AI分析进行中...", "请稍后查看结果"));
             sceneSubmission.setStatus("pending");
@@ -0,0 +1,56 @@
+package com.example.demo.dao;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * DAO for scene progress on submitted videos
+ * Structure: submittedVideos/{userId}_{assignmentId}
+ *
+ * Scene entries are written by field path (scenes.N) and the progress block is adjusted
+ * with increments inside a transaction, so concurrent uploads and AI callbacks for the
+ * same video never overwrite each other's scenes.
+ */
+public interface SubmittedVideoDao {
+
+    /**
+     * Outcome of a scene progress update
+     */
+    class SceneProgressUpdate {
+        public final boolean created;       // The submittedVideos document was created by this update
+        public final int approved;
+        public final int pending;
+        public final int totalScenes;
+        public final boolean allApproved;
+        public final boolean becameApproved; // publishStatus moved to "approved" in this update
+
+        public SceneProgressUpdate(boolean created, int approved, int pending, int totalScenes,
+                                   boolean allApproved, boolean becameApproved) {
+            this.created = created;
+            this.approved = approved;
+            this.pending = pending;
+            this.totalScenes = totalScenes;
+            this.allApproved = allApproved;
+            this.becameApproved = becameApproved;
+        }
+    }
+
+    /**
+     * Record a (re)submitted scene, creating the submittedVideos document if needed
+     */
+    SceneProgressUpdate recordScene(String compositeVideoId, String assignmentId, String userId,
+                                    int sceneNumber, String sceneId, String status, int totalScenes)
+            throws ExecutionException, InterruptedException;
+
+    /**
+     * Change the status of an existing scene entry
+     * @return null if the document or scene entry does not exist
+     */
+    SceneProgressUpdate updateSceneStatus(String compositeVideoId, int sceneNumber, String status, int totalScenes)
+            throws ExecutionException, InterruptedException;
+
+    /**
+     * IDs of the submitted videos of the given assignments (IDs only, no document data is read)
+     */
+    List<String> findIdsByAssignmentIds(List<String> assignmentIds) throws ExecutionException, InterruptedException;
+}
@@ -0,0 +1,179 @@
+package com.example.demo.dao;
+
+import com.google.cloud.firestore.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Firestore implementation of SubmittedVideoDao
+ */
+@Repository
+public class SubmittedVideoDaoImpl implements SubmittedVideoDao {
+
+    private static final String COLLECTION_NAME = "submittedVideos";
+    // Firestore's limit on whereIn values
+    private static final int MAX_IN_VALUES = 30;
+
+    @Autowired
+    private Firestore db;
+
+    @Override
+    public SceneProgressUpdate recordScene(String compositeVideoId, String assignmentId, String userId,
+                                           int sceneNumber, String sceneId, String status, int totalScenes)
+            throws ExecutionException, InterruptedException {
+        DocumentReference docRef = db.collection(COLLECTION_NAME).document(compositeVideoId);
+        return db.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(docRef).get();
+
+            Map<String, Object> sceneData = new HashMap<>();
+            sceneData.put("sceneId", sceneId);
+            sceneData.put("status", status);
+
+            if (!snapshot.exists()) {
+                int approved = "approved".equals(status) ? 1 : 0;
+                int pending = "pending".equals(status) ? 1 : 0;
+
+                Map<String, Object> videoData = new HashMap<>();
+                videoData.put("videoId", compositeVideoId);
+                videoData.put("assignmentId", assignmentId);
+                videoData.put("uploadedBy", userId);
+                videoData.put("publishStatus", "pending");
+                videoData.put("createdAt", FieldValue.serverTimestamp());
+                videoData.put("lastUpdated", FieldValue.serverTimestamp());
+                Map<String, Object> scenes = new HashMap<>();
+                scenes.put(String.valueOf(sceneNumber), sceneData);
+                videoData.put("scenes", scenes);
+                videoData.put("progress", progressMap(totalScenes, approved, pending));
+                transaction.set(docRef, videoData);
+                return new SceneProgressUpdate(true, approved, pending, totalScenes, false, false);
+            }
+
+            return applySceneChange(transaction, docRef, snapshot, sceneNumber, sceneData, status, totalScenes, false);
+        }).get();
+    }
+
+    @Override
+    public SceneProgressUpdate updateSceneStatus(String compositeVideoId, int sceneNumber, String status, int totalScenes)
+            throws ExecutionException, InterruptedException {
+        DocumentReference docRef = db.collection(COLLECTION_NAME).document(compositeVideoId);
+        return db.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(docRef).get();
+            if (!snapshot.exists() || snapshot.get("scenes." + sceneNumber) == null) {
+                return null;
+            }
+            return applySceneChange(transaction, docRef, snapshot, sceneNumber, null, status, totalScenes, true);
+        }).get();
+    }
+
+    @Override
+    public List<String> findIdsByAssignmentIds(List<String> assignmentIds) throws ExecutionException, InterruptedException {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < assignmentIds.size(); i += MAX_IN_VALUES) {
+            List<String> chunk = assignmentIds.subList(i, Math.min(i + MAX_IN_VALUES, assignmentIds.size()));
+            Query query = db.collection(COLLECTION_NAME)
+                .whereIn("assignmentId", new ArrayList<>(chunk))
+                .select(FieldPath.documentId());
+            for (QueryDocumentSnapshot document : query.get().get().getDocuments()) {
+                ids.add(document.getId());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Write one scene entry by field path and move the progress counters by the change in
+     * that scene's status. Only scenes.N and the progress block of the snapshot are looked at.
+     *
+     * @param sceneData full scene entry to write, or null to update only its status
+     * @param keepPublished don't move a published/approved video back to approved
+     */
+    private SceneProgressUpdate applySceneChange(Transaction transaction, DocumentReference docRef, DocumentSnapshot snapshot,
+                                                 int sceneNumber, Map<String, Object> sceneData, String status,
+                                                 int totalScenes, boolean keepPublished) {
+        String sceneKey = String.valueOf(sceneNumber);
+        Object previousStatus = snapshot.get("scenes." + sceneKey + ".status");
+
+        int[] counts = readProgressCounts(snapshot);
+        int approvedDelta = ("approved".equals(status) ? 1 : 0) - ("approved".equals(previousStatus) ? 1 : 0);
+        int pendingDelta = ("pending".equals(status) ? 1 : 0) - ("pending".equals(previousStatus) ? 1 : 0);
+        int approved = counts[0] + approvedDelta;
+        int pending = counts[1] + pendingDelta;
+
+        Map<String, Object> updates = new HashMap<>();
+        if (sceneData != null) {
+            updates.put("scenes." + sceneKey, sceneData);
+        } else {
+            updates.put("scenes." + sceneKey + ".status", status);
+        }
+        updates.put("lastUpdated", FieldValue.serverTimestamp());
+        if (counts[2] == 1) {
+            // Counters were present: adjust them in place
+            updates.put("progress.approved", FieldValue.increment(approvedDelta));
+            updates.put("progress.pending", FieldValue.increment(pendingDelta));
+            updates.put("progress.totalScenes", totalScenes);
+            updates.put("progress.completionPercentage", completionPercentage(approved, totalScenes));
+        } else {
+            updates.put("progress", progressMap(totalScenes, approved, pending));
+        }
+
+        boolean allApproved = approved == totalScenes && totalScenes > 0;
+        boolean becameApproved = false;
+        if (allApproved) {
+            String publishStatus = snapshot.getString("publishStatus");
+            if (!keepPublished || (!"approved".equals(publishStatus) && !"published".equals(publishStatus))) {
+                updates.put("publishStatus", "approved");
+                updates.put("approvedAt", FieldValue.serverTimestamp());
+                becameApproved = !"approved".equals(publishStatus);
+            }
+        }
+
+        transaction.update(docRef, updates);
+        return new SceneProgressUpdate(false, approved, pending, totalScenes, allApproved, becameApproved);
+    }
+
+    /**
+     * {approved, pending, countersPresent}. Documents written before the counters were kept
+     * incrementally fall back to a one-off count over the scene map.
+     */
+    @SuppressWarnings("unchecked")
+    private int[] readProgressCounts(DocumentSnapshot snapshot) {
+        Object approved = snapshot.get("progress.approved");
+        Object pending = snapshot.get("progress.pending");
+        if (approved instanceof Number && pending instanceof Number) {
+            return new int[] { ((Number) approved).intValue(), ((Number) pending).intValue(), 1 };
+        }
+
+        int approvedCount = 0;
+        int pendingCount = 0;
+        Object scenes = snapshot.get("scenes");
+        if (scenes instanceof Map) {
+            for (Object sceneObj : ((Map<String, Object>) scenes).values()) {
+                if (sceneObj instanceof Map) {
+                    Object sceneStatus = ((Map<String, Object>) sceneObj).get("status");
+                    if ("approved".equals(sceneStatus)) approvedCount++;
+                    else if ("pending".equals(sceneStatus)) pendingCount++;
+                }
+            }
+        }
+        return new int[] { approvedCount, pendingCount, 0 };
+    }
+
+    private Map<String, Object> progressMap(int totalScenes, int approved, int pending) {
+        Map<String, Object> progress = new HashMap<>();
+        progress.put("totalScenes", totalScenes);
+        progress.put("approved", approved);
+        progress.put("pending", pending);
+        progress.put("completionPercentage", completionPercentage(approved, totalScenes));
+        return progress;
+    }
+
+    private double completionPercentage(int approved, int totalScenes) {
+        return totalScenes > 0 ? (double) approved / totalScenes * 100 : 0;
+    }
+}
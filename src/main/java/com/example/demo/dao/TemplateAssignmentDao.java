@@ -18,6 +18,11 @@ public interface TemplateAssignmentDao {
      */
     TemplateAssignment getAssignment(String assignmentId) throws Exception;
     
+    /**
+     * Get assignments by ID in batched reads, in input order (missing IDs are skipped)
+     */
+    List<TemplateAssignment> getAssignmentsByIds(List<String> assignmentIds) throws Exception;
+    
     /**
      * Get all assignments for a specific template
      */
@@ -21,6 +21,9 @@ public class TemplateAssignmentDaoImpl implements TemplateAssignmentDao {
     @Autowired
     private Firestore db;
     
+    @Autowired
+    private FirestoreDocumentCache documentCache;
+    
     @Autowired
     private ManagerSubmissionDao managerSubmissionDao;
     
@@ -48,13 +51,22 @@ public class TemplateAssignmentDaoImpl implements TemplateAssignmentDao {
     
     @Override
     public TemplateAssignment getAssignment(String assignmentId) throws Exception {
-        DocumentSnapshot doc = db.collection(COLLECTION_NAME).document(assignmentId).get().get();
+        DocumentSnapshot doc = documentCache.get(COLLECTION_NAME, assignmentId);
         if (!doc.exists()) {
             return null;
         }
         return mapToAssignment(doc);
     }
     
+    @Override
+    public List<TemplateAssignment> getAssignmentsByIds(List<String> assignmentIds) throws Exception {
+        List<TemplateAssignment> assignments = new ArrayList<>();
+        for (DocumentSnapshot doc : FirestoreBatchReads.getAll(db, db.collection(COLLECTION_NAME), assignmentIds)) {
+            assignments.add(mapToAssignment(doc));
+        }
+        return assignments;
+    }
+    
     @Override
     public List<TemplateAssignment> getAssignmentsByTemplate(String templateId) throws Exception {
         QuerySnapshot querySnapshot = db.collection(COLLECTION_NAME)
@@ -131,6 +143,7 @@ public class TemplateAssignmentDaoImpl implements TemplateAssignmentDao {
     public void updateAssignment(TemplateAssignment assignment) throws Exception {
         Map<String, Object> data = assignmentToMap(assignment);
         db.collection(COLLECTION_NAME).document(assignment.getId()).set(data).get();
+        documentCache.invalidate(COLLECTION_NAME, assignment.getId());
     }
     
     @Override
@@ -151,24 +164,14 @@ public class TemplateAssignmentDaoImpl implements TemplateAssignmentDao {
                 sceneSubmissionDao.findByTemplateId(assignmentId);
             System.out.println("[CASCADE] Found " + sceneSubmissions.size() + " scene submissions to delete");
             
-            for (com.example.demo.model.SceneSubmission sub : sceneSubmissions) {
-                // Delete video from OSS
-                if (sub.getVideoUrl() != null && ossStorageService != null) {
-                    try {
-                        ossStorageService.deleteObjectByUrl(sub.getVideoUrl());
-                        System.out.println("[CASCADE] Deleted scene video: " + sub.getVideoUrl());
-                    } catch (Exception e) {
-                        System.err.println("[CASCADE] Failed to delete scene video: " + e.getMessage());
-                    }
-                }
-                // Delete thumbnail from OSS
-                if (sub.getThumbnailUrl() != null && ossStorageService != null) {
-                    try {
-                        ossStorageService.deleteObjectByUrl(sub.getThumbnailUrl());
-                    } catch (Exception e) {
-                        System.err.println("[CASCADE] Failed to delete scene thumbnail: " + e.getMessage());
-                    }
+            if (ossStorageService != null) {
+                // Videos and thumbnails go out in batched DeleteObjects requests
+                List<String> urls = new ArrayList<>();
+                for (com.example.demo.model.SceneSubmission sub : sceneSubmissions) {
+                    urls.add(sub.getVideoUrl());
+                    urls.add(sub.getThumbnailUrl());
                 }
+                ossStorageService.deleteObjectsByUrl(urls);
             }
             
             // Delete sceneSubmissions docs
@@ -191,6 +194,7 @@ public class TemplateAssignmentDaoImpl implements TemplateAssignmentDao {
         
         // 3) Delete the assignment document
         db.collection(COLLECTION_NAME).document(assignmentId).delete().get();
+        documentCache.invalidate(COLLECTION_NAME, assignmentId);
         System.out.println("[CASCADE] Deleted assignment: " + assignmentId);
     }
     
@@ -214,16 +218,19 @@ public class TemplateAssignmentDaoImpl implements TemplateAssignmentDao {
             .get()
             .get();
         
-        // Delete each assignment and its related submissions
+        // Delete all assignment docs in one bulk write, then their related submissions
+        List<DocumentReference> refs = new ArrayList<>();
+        for (DocumentSnapshot doc : querySnapshot.getDocuments()) {
+            refs.add(doc.getReference());
+        }
+        FirestoreBulkDeletes.deleteAll(db, refs);
+        
         for (DocumentSnapshot doc : querySnapshot.getDocuments()) {
             String assignmentId = doc.getId();
-            String pushedBy = doc.getString("pushedBy");
+            documentCache.invalidate(COLLECTION_NAME, assignmentId);
             
             // Resolve actual manager ID (if pushedBy is an employee, use their manager)
-            String managerId = resolveManagerId(pushedBy);
-            
-            // Delete the assignment
-            doc.getReference().delete().get();
+            String managerId = resolveManagerId(doc.getString("pushedBy"));
             
             // Clean up related submissions from managerSubmissions
             if (managerId != null) {
@@ -245,10 +252,7 @@ public class TemplateAssignmentDaoImpl implements TemplateAssignmentDao {
     private String resolveManagerId(String userId) {
         if (userId == null) return null;
         try {
-            com.example.demo.model.User user = userDao.findById(userId);
-            if (user != null && "employee".equals(user.getRole()) && user.getCreatedBy() != null) {
-                return user.getCreatedBy();
-            }
+            return userDao.resolveManagerId(userId);
         } catch (Exception e) {
             System.err.println("[CASCADE] Failed to resolve manager ID for " + userId + ": " + e.getMessage());
         }
@@ -18,6 +18,15 @@ public interface TemplateDao {
     ManualTemplate getTemplate(String templateId) throws ExecutionException, InterruptedException;
 
     List<ManualTemplate> getTemplatesByUserId(String userId) throws ExecutionException, InterruptedException;
+
+    // List view of a user's templates: reads only id, title and folder (field-masked)
+    List<com.example.demo.model.TemplateSummary> getTemplateSummariesByUserId(String userId) throws ExecutionException, InterruptedException;
+
+    /**
+     * Fill in the per-scene VL payloads (vlRawResponse, vlSceneAnalysis), which are kept out of
+     * the template document. Scenes that already carry them (older documents) are left as is.
+     */
+    void loadSceneAnalysis(ManualTemplate template) throws ExecutionException, InterruptedException;
     List<ManualTemplate> getAllTemplates() throws ExecutionException, InterruptedException;
     
     // Get templates assigned to a specific group
@@ -16,6 +16,19 @@ public class TemplateDaoImpl implements TemplateDao {
 
     @Autowired(required = false)
     private Firestore db;
+
+    @Autowired
+    private FirestoreDocumentCache documentCache;
+
+    @Autowired(required = false)
+    private io.micrometer.core.instrument.MeterRegistry meterRegistry;
+
+    // Per-scene VL payloads, kept out of the template document (and every assignment snapshot of it)
+    private static final String SCENE_ANALYSIS = "sceneAnalysis";
+
+    // Only used to estimate serialized template size; ObjectMapper is thread-safe
+    private static final com.fasterxml.jackson.databind.ObjectMapper SIZE_MAPPER =
+        new com.fasterxml.jackson.databind.ObjectMapper().findAndRegisterModules();
     
     private void checkFirestore() {
         if (db == null) {
@@ -48,6 +61,7 @@ public class TemplateDaoImpl implements TemplateDao {
         // Save the template
         ApiFuture<WriteResult> result = docRef.set(template);
         result.get(); // Wait for write to complete
+        saveSceneAnalysis(template);
 
         // NOTE: User's created_Templates field is updated separately via UserDao.addCreatedTemplate()
         // This avoids duplicate logic and potential conflicts
@@ -58,11 +72,9 @@ public class TemplateDaoImpl implements TemplateDao {
     @Override
     public ManualTemplate getTemplate(String id) throws ExecutionException, InterruptedException {
         checkFirestore();
-        DocumentReference docRef = db.collection("templates").document(id);
-        ApiFuture<DocumentSnapshot> future = docRef.get();
-        DocumentSnapshot document = future.get();
+        DocumentSnapshot document = documentCache.get(FirestoreDocumentCache.TEMPLATES, id);
         if (document.exists()) {
-            return document.toObject(ManualTemplate.class);
+            return toTemplate(document);
         } else {
             return null;
         }
@@ -81,30 +93,214 @@ public class TemplateDaoImpl implements TemplateDao {
                     templateIds.add((String) key);
                 }
             }
-            // Batch fetch templates from templates collection using whereIn (10 at a time)
-            List<ManualTemplate> templatesBatch = new ArrayList<>();
-            for (int i = 0; i < templateIds.size(); i += 10) {
-                List<String> batchIds = templateIds.subList(i, Math.min(i + 10, templateIds.size()));
-                Query query = db.collection("templates").whereIn(FieldPath.documentId(), batchIds);
-                List<QueryDocumentSnapshot> docs = query.get().get().getDocuments();
-                for (QueryDocumentSnapshot doc : docs) {
-                    ManualTemplate template = doc.toObject(ManualTemplate.class);
-                    templatesBatch.add(template);
-                }
-            }
-            templates.addAll(templatesBatch);
+            // Batch fetch templates from templates collection (concurrent getAll batches)
+            templates.addAll(FirestoreBatchReads.getAll(db, db.collection("templates"), templateIds, ManualTemplate.class));
         }
         return templates;
     }
 
+    @Override
+    public List<com.example.demo.model.TemplateSummary> getTemplateSummariesByUserId(String userId) throws ExecutionException, InterruptedException {
+        checkFirestore();
+        DocumentSnapshot userSnap = db.collection("users").document(userId).get().get();
+        List<com.example.demo.model.TemplateSummary> summaries = new ArrayList<>();
+        if (userSnap.exists() && userSnap.get("created_Templates") instanceof Map<?, ?>) {
+            List<String> templateIds = new ArrayList<>();
+            for (Object key : ((Map<?, ?>) userSnap.get("created_Templates")).keySet()) {
+                templateIds.add((String) key);
+            }
+            // Field mask: scenes (and everything else) stay on the server
+            FieldMask mask = FieldMask.of("templateTitle", "folderId");
+            for (DocumentSnapshot doc : FirestoreBatchReads.getAllMasked(db, db.collection("templates"), templateIds, mask)) {
+                summaries.add(new com.example.demo.model.TemplateSummary(
+                    doc.getId(), doc.getString("templateTitle"), doc.getString("folderId")));
+            }
+        }
+        return summaries;
+    }
+
+    @Override
+    public void loadSceneAnalysis(ManualTemplate template) throws ExecutionException, InterruptedException {
+        checkFirestore();
+        if (template == null || template.getId() == null || template.getScenes() == null) {
+            return;
+        }
+        Map<String, DocumentSnapshot> byScene = new java.util.HashMap<>();
+        for (DocumentSnapshot doc : db.collection("templates").document(template.getId())
+                .collection(SCENE_ANALYSIS).get().get().getDocuments()) {
+            byScene.put(doc.getId(), doc);
+        }
+        for (com.example.demo.model.Scene scene : template.getScenes()) {
+            DocumentSnapshot doc = byScene.get(String.valueOf(scene.getSceneNumber()));
+            if (doc == null) {
+                continue;
+            }
+            String storedKeyframe = doc.getString("keyframeUrl");
+            if (storedKeyframe != null && scene.getKeyframeUrl() != null
+                    && !withoutQuery(storedKeyframe).equals(withoutQuery(scene.getKeyframeUrl()))) {
+                // Written for a different scene that had this number before a renumbering
+                continue;
+            }
+            if (scene.getVlRawResponse() == null) {
+                scene.setVlRawResponse(doc.getString("vlRawResponse"));
+            }
+            if (scene.getVlSceneAnalysis() == null) {
+                scene.setVlSceneAnalysis(doc.getString("vlSceneAnalysis"));
+            }
+        }
+    }
+
+    /**
+     * Write the scenes' VL payloads to templates/{id}/sceneAnalysis/{sceneNumber}. Scenes
+     * without payloads (e.g. edits sent back by the UI) leave their stored entry alone;
+     * entries for scene numbers the template no longer has are deleted. Also records the
+     * template document size with and without the payloads.
+     */
+    private void saveSceneAnalysis(ManualTemplate template) throws ExecutionException, InterruptedException {
+        if (template.getScenes() == null) {
+            return;
+        }
+        CollectionReference analysisRef = db.collection("templates").document(template.getId()).collection(SCENE_ANALYSIS);
+        WriteBatch batch = db.batch();
+        int writes = 0;
+        long payloadBytes = 0;
+        java.util.Set<String> sceneIds = new java.util.HashSet<>();
+        for (com.example.demo.model.Scene scene : template.getScenes()) {
+            sceneIds.add(String.valueOf(scene.getSceneNumber()));
+        }
+        int pruned = 0;
+        for (DocumentReference stored : analysisRef.listDocuments()) {
+            if (!sceneIds.contains(stored.getId())) {
+                batch.delete(stored);
+                pruned++;
+            }
+        }
+        for (com.example.demo.model.Scene scene : template.getScenes()) {
+            if (scene.getVlRawResponse() == null && scene.getVlSceneAnalysis() == null) {
+                continue;
+            }
+            Map<String, Object> data = new java.util.HashMap<>();
+            data.put("sceneNumber", scene.getSceneNumber());
+            // Identifies the scene the payload belongs to if scenes are later renumbered
+            data.put("keyframeUrl", scene.getKeyframeUrl());
+            if (scene.getVlRawResponse() != null) {
+                data.put("vlRawResponse", scene.getVlRawResponse());
+                payloadBytes += utf8Length(scene.getVlRawResponse());
+            }
+            if (scene.getVlSceneAnalysis() != null) {
+                data.put("vlSceneAnalysis", scene.getVlSceneAnalysis());
+                payloadBytes += utf8Length(scene.getVlSceneAnalysis());
+            }
+            batch.set(analysisRef.document(String.valueOf(scene.getSceneNumber())), data, SetOptions.merge());
+            writes++;
+        }
+        if (writes + pruned > 0) {
+            batch.commit().get();
+        }
+
+        long documentBytes = estimateDocumentBytes(template) - payloadBytes;
+        if (meterRegistry != null) {
+            meterRegistry.summary("template.document.bytes").record(documentBytes);
+            if (payloadBytes > 0) {
+                meterRegistry.summary("template.scene_analysis.bytes").record(payloadBytes);
+            }
+        }
+        if (payloadBytes > 0) {
+            System.out.println("[TEMPLATE] " + template.getId() + ": document ~" + documentBytes / 1024 + " KB, "
+                + payloadBytes / 1024 + " KB of VL payloads moved to " + writes + " sceneAnalysis docs (was ~"
+                + (documentBytes + payloadBytes) / 1024 + " KB inline)");
+        }
+    }
+
+    /**
+     * Map a template document, keeping VL payloads that older documents still carry inline
+     * in scenes[]. Scene excludes those properties from mapping in both directions, so they
+     * are copied from the raw snapshot.
+     */
+    private ManualTemplate toTemplate(DocumentSnapshot document) {
+        ManualTemplate template = document.toObject(ManualTemplate.class);
+        if (template != null) {
+            restoreInlineSceneAnalysis(document, template);
+        }
+        return template;
+    }
+
+    /**
+     * @return number of scenes that had an inline payload
+     */
+    private static int restoreInlineSceneAnalysis(DocumentSnapshot document, ManualTemplate template) {
+        Object rawScenes = document.get("scenes");
+        if (!(rawScenes instanceof List) || template.getScenes() == null) {
+            return 0;
+        }
+        List<?> raw = (List<?>) rawScenes;
+        int restored = 0;
+        for (int i = 0; i < raw.size() && i < template.getScenes().size(); i++) {
+            if (!(raw.get(i) instanceof Map)) {
+                continue;
+            }
+            Map<?, ?> rawScene = (Map<?, ?>) raw.get(i);
+            com.example.demo.model.Scene scene = template.getScenes().get(i);
+            boolean inline = false;
+            if (rawScene.get("vlRawResponse") instanceof String) {
+                scene.setVlRawResponse((String) rawScene.get("vlRawResponse"));
+                inline = true;
+            }
+            if (rawScene.get("vlSceneAnalysis") instanceof String) {
+                scene.setVlSceneAnalysis((String) rawScene.get("vlSceneAnalysis"));
+                inline = true;
+            }
+            if (inline) {
+                restored++;
+            }
+        }
+        return restored;
+    }
+
+    /**
+     * Before a template document is overwritten, copy any VL payloads it still holds inline
+     * into sceneAnalysis; the set() that follows drops the inline copies. The template being
+     * saved may not carry them (e.g. edits sent back by the UI).
+     */
+    private void migrateInlineSceneAnalysis(DocumentReference docRef) throws ExecutionException, InterruptedException {
+        DocumentSnapshot stored = docRef.get().get();
+        if (!stored.exists()) {
+            return;
+        }
+        ManualTemplate legacy = stored.toObject(ManualTemplate.class);
+        if (legacy == null || restoreInlineSceneAnalysis(stored, legacy) == 0) {
+            return;
+        }
+        legacy.setId(docRef.getId());
+        System.out.println("[TEMPLATE] " + docRef.getId() + ": migrating inline VL payloads to " + SCENE_ANALYSIS);
+        saveSceneAnalysis(legacy);
+    }
+
+    private long estimateDocumentBytes(ManualTemplate template) {
+        try {
+            return SIZE_MAPPER.writeValueAsBytes(template).length;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    // Signed URLs of the same object differ only in their query string
+    private static String withoutQuery(String url) {
+        int q = url.indexOf('?');
+        return q >= 0 ? url.substring(0, q) : url;
+    }
+
+    private static long utf8Length(String value) {
+        return value.getBytes(java.nio.charset.StandardCharsets.UTF_8).length;
+    }
+
     @Override
     public List<ManualTemplate> getAllTemplates() throws ExecutionException, InterruptedException {
         ApiFuture<QuerySnapshot> future = db.collection("templates").get();
         List<QueryDocumentSnapshot> documents = future.get().getDocuments();
         List<ManualTemplate> templates = new ArrayList<>();
         for (QueryDocumentSnapshot document : documents) {
-            ManualTemplate template = document.toObject(ManualTemplate.class);
-            templates.add(template);
+            templates.add(toTemplate(document));
         }
         return templates;
     }
@@ -116,8 +312,11 @@ public class TemplateDaoImpl implements TemplateDao {
         }
         manualTemplate.setId(templateId); // Ensure object has the correct ID
         DocumentReference docRef = db.collection("templates").document(templateId);
+        migrateInlineSceneAnalysis(docRef);
         ApiFuture<WriteResult> result = docRef.set(manualTemplate);
         result.get(); // Wait for write to complete
+        saveSceneAnalysis(manualTemplate);
+        documentCache.invalidate(FirestoreDocumentCache.TEMPLATES, templateId);
         return true;
     }
 
@@ -141,18 +340,8 @@ public class TemplateDaoImpl implements TemplateDao {
             return new ArrayList<>();
         }
         
-        // Fetch all templates by their IDs
-        List<ManualTemplate> templates = new ArrayList<>();
-        for (String templateId : templateIds) {
-            ManualTemplate template = getTemplate(templateId);
-            if (template != null) {
-                templates.add(template);
-            } else {
-                System.out.println("DEBUG: Template " + templateId + " not found");
-            }
-        }
-        
-        return templates;
+        // Fetch all templates by their IDs in batched reads (input order preserved)
+        return FirestoreBatchReads.getAll(db, db.collection("templates"), templateIds, ManualTemplate.class);
     }
     
     @Override
@@ -174,52 +363,9 @@ public class TemplateDaoImpl implements TemplateDao {
             return new ArrayList<>();
         }
         
-        // Fetch templates in parallel for better performance
+        // Fetch templates in batched reads (input order preserved)
         List<Map<String, Object>> summaries = new ArrayList<>();
-        CollectionReference templatesRef = db.collection("templates");
-        
-        // Create parallel futures for all template reads
-        List<ApiFuture<DocumentSnapshot>> templateFutures = new ArrayList<>();
-        for (String templateId : templateIds) {
-            templateFutures.add(templatesRef.document(templateId).get());
-        }
-        
-        // Wait for all template reads to complete
-        List<DocumentSnapshot> templateDocs = com.google.api.core.ApiFutures.allAsList(templateFutures).get();
-        
-        // Collect video IDs for parallel thumbnail fetch
-        List<String> videoIds = new ArrayList<>();
-        for (DocumentSnapshot templateDoc : templateDocs) {
-            if (templateDoc.exists()) {
-                String videoId = templateDoc.getString("videoId");
-                if (videoId != null && !videoId.isEmpty()) {
-                    videoIds.add(videoId);
-                } else {
-                    videoIds.add(null); // Placeholder to maintain index alignment
-                }
-            }
-        }
-        
-        // Fetch all videos in parallel
-        List<ApiFuture<DocumentSnapshot>> videoFutures = new ArrayList<>();
-        CollectionReference videosRef = db.collection("exampleVideos");
-        for (String videoId : videoIds) {
-            if (videoId != null) {
-                videoFutures.add(videosRef.document(videoId).get());
-            } else {
-                videoFutures.add(null); // Placeholder
-            }
-        }
-        
-        // Wait for all video reads (handle nulls)
-        List<DocumentSnapshot> videoDocs = new ArrayList<>();
-        for (ApiFuture<DocumentSnapshot> future : videoFutures) {
-            if (future != null) {
-                videoDocs.add(future.get());
-            } else {
-                videoDocs.add(null);
-            }
-        }
+        List<DocumentSnapshot> templateDocs = FirestoreBatchReads.getAll(db, db.collection("templates"), templateIds);
         
         // Process all results
         for (int i = 0; i < templateDocs.size(); i++) {
@@ -275,7 +421,9 @@ public class TemplateDaoImpl implements TemplateDao {
             throw new IllegalArgumentException("Template ID must not be null or empty for delete.");
         }
         try {
+            FirestoreBulkDeletes.deleteAll(db, db.collection("templates").document(id).collection(SCENE_ANALYSIS));
             db.collection("templates").document(id).delete().get(); // Wait until delete completes
+            documentCache.invalidate(FirestoreDocumentCache.TEMPLATES, id);
             return true; // Successful deletion
         } catch (Exception e) {
             e.printStackTrace();
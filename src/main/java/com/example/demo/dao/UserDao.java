@@ -1,13 +1,52 @@
 package com.example.demo.dao;
 
+import com.example.demo.constants.UserRole;
 import com.example.demo.model.User;
 
 public interface UserDao {
+
+    /**
+     * The fields permission checks and manager resolution need, read as a projection
+     * through the document cache (invalidated by save/delete, otherwise expires on TTL).
+     * Use findById when the full, current user document is needed.
+     */
+    class UserPrincipal {
+        public final String id;
+        public final String role;
+        public final String createdBy;  // Manager who created this employee account
+        public final String groupId;
+
+        public UserPrincipal(String id, String role, String createdBy, String groupId) {
+            this.id = id;
+            this.role = role;
+            this.createdBy = createdBy;
+            this.groupId = groupId;
+        }
+
+        public boolean isContentManager() {
+            return UserRole.isContentManager(role);
+        }
+
+        public boolean isEmployee() {
+            return UserRole.isEmployee(role);
+        }
+
+        /**
+         * Employees act on behalf of the manager that created them
+         */
+        public String getManagerId() {
+            return isEmployee() && createdBy != null ? createdBy : id;
+        }
+    }
+
     User findByUsername(String username);
     User findByEmail(String email);
     User findByEmailAndRole(String email, String role);
     User findByPhone(String phone);
     User findById(String id);
+    UserPrincipal findPrincipal(String id);
+    // Effective manager ID: an employee's createdBy, otherwise the ID itself (unknown users included)
+    String resolveManagerId(String userId);
     void save(User user);
 
     // Content Manager: manage created_Templates
@@ -13,6 +13,9 @@ public class UserDaoImpl implements UserDao {
     @Autowired
     private Firestore db;
     
+    @Autowired
+    private FirestoreDocumentCache documentCache;
+    
     private static final String COLLECTION_NAME = "users";
 
 
@@ -91,12 +94,36 @@ public class UserDaoImpl implements UserDao {
         }
     }
 
+    @Override
+    public UserPrincipal findPrincipal(String id) {
+        if (id == null || id.isEmpty()) {
+            return null;
+        }
+        try {
+            DocumentSnapshot document = documentCache.get(FirestoreDocumentCache.USERS, id);
+            if (!document.exists()) {
+                return null;
+            }
+            return new UserPrincipal(id, document.getString("role"), document.getString("createdBy"),
+                document.getString("groupId"));
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Failed to fetch user by id", e);
+        }
+    }
+
+    @Override
+    public String resolveManagerId(String userId) {
+        UserPrincipal principal = findPrincipal(userId);
+        return principal != null ? principal.getManagerId() : userId;
+    }
+
     @Override
     public void save(User user) {
         try {
             DocumentReference docRef = db.collection("users").document(user.getId());
             ApiFuture<WriteResult> result = docRef.set(user);
             result.get(); // Wait for write to complete
+            documentCache.invalidate(FirestoreDocumentCache.USERS, user.getId());
         } catch (InterruptedException | ExecutionException e) {
             throw new RuntimeException("Failed to save user", e);
         }
@@ -222,6 +249,7 @@ public class UserDaoImpl implements UserDao {
             DocumentReference docRef = db.collection(COLLECTION_NAME).document(user.getId());
             ApiFuture<WriteResult> result = docRef.set(user);
             result.get(); // Wait for write to complete
+            documentCache.invalidate(FirestoreDocumentCache.USERS, user.getId());
             
             return user.getId();
         } catch (InterruptedException | ExecutionException e) {
@@ -288,6 +316,7 @@ public class UserDaoImpl implements UserDao {
             DocumentReference docRef = db.collection(COLLECTION_NAME).document(userId);
             ApiFuture<WriteResult> result = docRef.delete();
             result.get(); // Wait for delete to complete
+            documentCache.invalidate(FirestoreDocumentCache.USERS, userId);
         } catch (InterruptedException | ExecutionException e) {
             throw new RuntimeException("Failed to delete user", e);
         }
@@ -6,9 +6,11 @@ import java.util.concurrent.ExecutionException;
 public interface VideoDao {
     Video saveVideo(Video video) throws ExecutionException, InterruptedException;
     Video getVideoById(String videoId) throws ExecutionException, InterruptedException;
+    java.util.List<Video> getVideosByIds(java.util.List<String> videoIds) throws ExecutionException, InterruptedException;
     void updateVideo(Video video) throws ExecutionException, InterruptedException;
     Video saveVideoWithTemplate(Video video, String templateId) throws ExecutionException, InterruptedException;
     boolean deleteVideoById(String videoId) throws ExecutionException, InterruptedException;
+    int deleteVideosByIds(java.util.Collection<String> videoIds) throws ExecutionException, InterruptedException;
     
     // Storage operations
     Video uploadAndSaveVideo(org.springframework.web.multipart.MultipartFile file, String userId, String videoId) throws Exception;
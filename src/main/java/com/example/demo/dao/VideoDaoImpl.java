@@ -17,12 +17,18 @@ public class VideoDaoImpl implements VideoDao {
     @Autowired(required = false)
     private Firestore db;
     
+    @Autowired
+    private FirestoreDocumentCache documentCache;
+    
     @Autowired(required = false)
     private com.example.demo.service.AlibabaOssStorageService ossStorageService;
     
     @Autowired(required = false)
     private com.example.demo.service.CloudTranscodingService cloudTranscodingService;
     
+    @Autowired(required = false)
+    private com.example.demo.service.MediaProbeService mediaProbeService;
+    
     private void checkFirestore() {
         if (db == null) {
             throw new IllegalStateException("Firestore is not available in development mode. Please configure Firebase credentials or use a different data source.");
@@ -67,6 +73,47 @@ public class VideoDaoImpl implements VideoDao {
         return null;
     }
 
+    /**
+     * Batched getVideoById: exampleVideos first, then submittedVideos for the rest.
+     * Returns the videos found, in input order
+     */
+    @Override
+    public java.util.List<Video> getVideosByIds(java.util.List<String> videoIds) throws ExecutionException, InterruptedException {
+        checkFirestore();
+        java.util.Map<String, Video> found = new java.util.HashMap<>();
+        for (DocumentSnapshot doc : FirestoreBatchReads.getAll(db, db.collection("exampleVideos"), videoIds)) {
+            found.put(doc.getId(), toVideo(doc));
+        }
+        java.util.List<String> missing = new java.util.ArrayList<>();
+        for (String videoId : videoIds) {
+            if (videoId != null && !found.containsKey(videoId)) {
+                missing.add(videoId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (DocumentSnapshot doc : FirestoreBatchReads.getAll(db, db.collection("submittedVideos"), missing)) {
+                found.put(doc.getId(), toVideo(doc));
+            }
+        }
+        
+        java.util.List<Video> videos = new java.util.ArrayList<>();
+        for (String videoId : videoIds) {
+            Video video = videoId != null ? found.get(videoId) : null;
+            if (video != null) {
+                videos.add(video);
+            }
+        }
+        return videos;
+    }
+
+    private Video toVideo(DocumentSnapshot doc) {
+        Video video = doc.toObject(Video.class);
+        if (video.getId() == null) {
+            video.setId(doc.getId());
+        }
+        return video;
+    }
+
     @Override
     public void updateVideo(Video video) throws ExecutionException, InterruptedException {
         DocumentReference docRef = db.collection("exampleVideos").document(video.getId());
@@ -96,6 +143,7 @@ public class VideoDaoImpl implements VideoDao {
                 ManualTemplate template = templateDocument.toObject(ManualTemplate.class);
                 template.setVideoId(videoId);
                 templateRef.set(template).get();
+                documentCache.invalidate(FirestoreDocumentCache.TEMPLATES, templateId);
             }
         }
         
@@ -115,6 +163,18 @@ public class VideoDaoImpl implements VideoDao {
         }
     }
     
+    @Override
+    public int deleteVideosByIds(java.util.Collection<String> videoIds) throws ExecutionException, InterruptedException {
+        checkFirestore();
+        java.util.Set<DocumentReference> refs = new java.util.LinkedHashSet<>();
+        for (String videoId : videoIds) {
+            if (videoId != null && !videoId.isBlank()) {
+                refs.add(db.collection("exampleVideos").document(videoId));
+            }
+        }
+        return FirestoreBulkDeletes.deleteAll(db, refs);
+    }
+    
     @Override
     public Video uploadAndSaveVideo(org.springframework.web.multipart.MultipartFile file, String userId, String videoId) throws Exception {
         if (ossStorageService == null) {
@@ -126,50 +186,18 @@ public class VideoDaoImpl implements VideoDao {
             System.out.println("[VIDEO-UPLOAD] Starting upload for videoId: " + videoId);
             System.out.println("[VIDEO-UPLOAD] File: " + file.getOriginalFilename() + ", Size: " + file.getSize() + " bytes");
             
-            // CRITICAL: Save multipart file to temp IMMEDIATELY using getInputStream()
-            // This avoids Tomcat temp file cleanup issues on ephemeral filesystems (Render)
-            java.io.File tempInputFile = java.io.File.createTempFile("video_upload_", ".mp4");
-            try (java.io.InputStream inputStream = file.getInputStream();
-                 java.io.FileOutputStream outputStream = new java.io.FileOutputStream(tempInputFile)) {
-                byte[] buffer = new byte[8192];
-                int bytesRead;
-                while ((bytesRead = inputStream.read(buffer)) != -1) {
-                    outputStream.write(buffer, 0, bytesRead);
-                }
-            }
-            System.out.println("[VIDEO-UPLOAD] Saved multipart to temp: " + tempInputFile.length() + " bytes");
-            
-            // Create a MultipartFile wrapper for the temp file
-            // NOTE: FFmpeg transcoding removed to avoid OOM on Render (512MB limit)
-            // Android/HarmonyOS mini-app uses wx.downloadFile() workaround for playback
-            final java.io.File savedTempFile = tempInputFile;
-            final String originalFilename = file.getOriginalFilename();
-            final String contentType = file.getContentType();
-            org.springframework.web.multipart.MultipartFile fileToUpload = new org.springframework.web.multipart.MultipartFile() {
-                @Override public String getName() { return "file"; }
-                @Override public String getOriginalFilename() { return originalFilename; }
-                @Override public String getContentType() { return contentType != null ? contentType : "video/mp4"; }
-                @Override public boolean isEmpty() { return savedTempFile.length() == 0; }
-                @Override public long getSize() { return savedTempFile.length(); }
-                @Override public byte[] getBytes() throws java.io.IOException {
-                    return java.nio.file.Files.readAllBytes(savedTempFile.toPath());
-                }
-                @Override public java.io.InputStream getInputStream() throws java.io.IOException {
-                    return new java.io.FileInputStream(savedTempFile);
-                }
-                @Override public void transferTo(java.io.File dest) throws java.io.IOException {
-                    java.nio.file.Files.copy(savedTempFile.toPath(), dest.toPath(), 
-                        java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                }
-            };
-            
-            com.example.demo.service.AlibabaOssStorageService.UploadResult uploadResult = 
-                ossStorageService.uploadVideoWithThumbnail(fileToUpload, userId, videoId);
-            System.out.println("[VIDEO-UPLOAD] ✅ Upload complete: " + uploadResult.videoUrl);
-            
-            // Clean up temp file
-            if (tempInputFile != null && tempInputFile.exists()) {
-                tempInputFile.delete();
+            // Stream to OSS; the multipart body is read once and the only local copy is kept
+            // for duration extraction (avoids Tomcat temp file cleanup issues on Render)
+            java.io.File localCopy = java.io.File.createTempFile("video_upload_", ".mp4");
+            com.example.demo.service.AlibabaOssStorageService.UploadResult uploadResult;
+            long durationSeconds = 0;
+            try {
+                uploadResult = ossStorageService.uploadVideoWithThumbnail(file, userId, videoId, localCopy);
+                System.out.println("[VIDEO-UPLOAD] ✅ Upload complete: " + uploadResult.videoUrl);
+                durationSeconds = probeDurationSeconds(uploadResult.videoUrl, localCopy);
+            } finally {
+                // Clean up temp file
+                localCopy.delete();
             }
             
             // Cloud transcoding for WeChat Android compatibility (template videos)
@@ -194,43 +222,6 @@ public class VideoDaoImpl implements VideoDao {
                 }
             }
             
-            // Now extract duration from the uploaded video using centralized OSS download
-            long durationSeconds = 0;
-            java.io.File tempFile = null;
-            try {
-                System.out.println("[VIDEO-DURATION] Downloading video for duration extraction...");
-                // Download video temporarily for duration extraction using centralized method
-                tempFile = ossStorageService.downloadToTempFile(uploadResult.videoUrl, "video_duration_", ".mp4");
-                
-                // Use FFprobe to get duration
-                ProcessBuilder pb = new ProcessBuilder(
-                    "ffprobe", "-v", "error", "-show_entries", "format=duration",
-                    "-of", "default=noprint_wrappers=1:nokey=1", tempFile.getAbsolutePath()
-                );
-                Process process = pb.start();
-                java.io.BufferedReader reader = new java.io.BufferedReader(
-                    new java.io.InputStreamReader(process.getInputStream())
-                );
-                String durationStr = reader.readLine();
-                int exitCode = process.waitFor();
-                
-                if (exitCode == 0 && durationStr != null && !durationStr.isEmpty()) {
-                    durationSeconds = (long) Double.parseDouble(durationStr);
-                    System.out.println("[VIDEO-DURATION] ✅ Extracted duration: " + durationSeconds + " seconds");
-                } else {
-                    System.err.println("[VIDEO-DURATION] ⚠️ FFprobe failed or returned empty (exit code: " + exitCode + ")");
-                }
-            } catch (Exception e) {
-                System.err.println("[VIDEO-DURATION] ❌ Failed to extract duration: " + e.getMessage());
-                e.printStackTrace();
-                // Continue without duration
-            } finally {
-                if (tempFile != null && tempFile.exists()) {
-                    boolean deleted = tempFile.delete();
-                    System.out.println("[VIDEO-DURATION] Temp file deleted: " + deleted);
-                }
-            }
-            
             // Create and save video object
             Video video = new Video();
             video.setId(videoId);
@@ -252,6 +243,24 @@ public class VideoDaoImpl implements VideoDao {
         }
     }
     
+    /**
+     * Read the duration from the local upload copy (0 if FFprobe fails)
+     */
+    private long probeDurationSeconds(String videoUrl, java.io.File videoFile) {
+        if (mediaProbeService == null) {
+            return 0;
+        }
+        try {
+            long durationSeconds = (long) mediaProbeService.getDurationSeconds(videoUrl, videoFile);
+            System.out.println("[VIDEO-DURATION] ✅ Extracted duration: " + durationSeconds + " seconds");
+            return durationSeconds;
+        } catch (Exception e) {
+            System.err.println("[VIDEO-DURATION] ❌ Failed to extract duration: " + e.getMessage());
+            // Continue without duration
+            return 0;
+        }
+    }
+    
     @Override
     public String getSignedUrl(String videoUrl) throws Exception {
         if (ossStorageService == null || videoUrl == null) {
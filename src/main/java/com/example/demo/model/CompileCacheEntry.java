@@ -0,0 +1,49 @@
+package com.example.demo.model;
+
+import com.example.demo.ai.subtitle.SubtitleSegment;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Content-addressed compile cache entry.
+ *
+ * Holds the normalized, concatenated scenes (no subtitles, no BGM) of one approved scene
+ * set, plus what the overlay pass needs without the individual scene files: scene
+ * durations and the ASR-aligned subtitle segments.
+ * Document id = cache key (hash of the ordered scene video URLs and their update times).
+ */
+public class CompileCacheEntry {
+    private String id;                              // Cache key
+    private String compositeVideoId;                // submittedVideos document it was built for
+    private String intermediateUrl;                 // OSS URL of the concatenated intermediate
+    private List<Double> sceneDurations;            // Seconds, in scene order
+    private List<SubtitleSegment> subtitleSegments; // ASR-aligned, offsets relative to the intermediate
+    private String subtitleSourceHash;              // Hash of the template script the segments were aligned to
+    private Date createdAt;
+
+    public CompileCacheEntry() {
+        this.createdAt = new Date();
+    }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getCompositeVideoId() { return compositeVideoId; }
+    public void setCompositeVideoId(String compositeVideoId) { this.compositeVideoId = compositeVideoId; }
+
+    public String getIntermediateUrl() { return intermediateUrl; }
+    public void setIntermediateUrl(String intermediateUrl) { this.intermediateUrl = intermediateUrl; }
+
+    public List<Double> getSceneDurations() { return sceneDurations; }
+    public void setSceneDurations(List<Double> sceneDurations) { this.sceneDurations = sceneDurations; }
+
+    public List<SubtitleSegment> getSubtitleSegments() { return subtitleSegments; }
+    public void setSubtitleSegments(List<SubtitleSegment> subtitleSegments) { this.subtitleSegments = subtitleSegments; }
+
+    public String getSubtitleSourceHash() { return subtitleSourceHash; }
+    public void setSubtitleSourceHash(String subtitleSourceHash) { this.subtitleSourceHash = subtitleSourceHash; }
+
+    public Date getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
+}
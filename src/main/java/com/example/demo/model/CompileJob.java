@@ -0,0 +1,134 @@
+package com.example.demo.model;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Persistent compile job for the asynchronous publish pipeline.
+ * Stored in the compileJobs collection next to compiledVideos; the manager's
+ * publish request only enqueues a job and polls its status/progress.
+ */
+public class CompileJob {
+    private String id;
+    private String videoId;                     // submittedVideos composite ID (userId_assignmentId)
+    private String assignmentId;
+    private String creatorId;                   // uploadedBy of the submitted video
+    private String publisherId;                 // Manager who clicked publish
+    private String status;                      // "queued", "running", "done", "failed"
+    private int progress;                       // 0-100
+    private String stage;                       // Human readable step of the current status
+    private String error;
+    private int attempts;
+    private String workerId;                    // Instance currently running the job
+
+    // Publish options captured at enqueue time
+    private String subtitleColor;
+    private Integer subtitleSize;
+    private String subtitlePosition;
+    private List<String> bgmUrls;
+    private Double bgmVolume;
+
+    // Result
+    private String compiledVideoId;
+    private String compiledVideoUrl;
+
+    private Date createdAt;
+    private Date startedAt;
+    private Date updatedAt;
+    private Date finishedAt;
+
+    public CompileJob() {
+        this.status = STATUS_QUEUED;
+        this.progress = 0;
+        this.stage = "queued";
+        this.createdAt = new Date();
+        this.updatedAt = new Date();
+    }
+
+    public CompileJob(String videoId, String assignmentId, String creatorId, String publisherId) {
+        this();
+        this.videoId = videoId;
+        this.assignmentId = assignmentId;
+        this.creatorId = creatorId;
+        this.publisherId = publisherId;
+    }
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getVideoId() { return videoId; }
+    public void setVideoId(String videoId) { this.videoId = videoId; }
+
+    public String getAssignmentId() { return assignmentId; }
+    public void setAssignmentId(String assignmentId) { this.assignmentId = assignmentId; }
+
+    public String getCreatorId() { return creatorId; }
+    public void setCreatorId(String creatorId) { this.creatorId = creatorId; }
+
+    public String getPublisherId() { return publisherId; }
+    public void setPublisherId(String publisherId) { this.publisherId = publisherId; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public int getProgress() { return progress; }
+    public void setProgress(int progress) { this.progress = progress; }
+
+    public String getStage() { return stage; }
+    public void setStage(String stage) { this.stage = stage; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public String getWorkerId() { return workerId; }
+    public void setWorkerId(String workerId) { this.workerId = workerId; }
+
+    public String getSubtitleColor() { return subtitleColor; }
+    public void setSubtitleColor(String subtitleColor) { this.subtitleColor = subtitleColor; }
+
+    public Integer getSubtitleSize() { return subtitleSize; }
+    public void setSubtitleSize(Integer subtitleSize) { this.subtitleSize = subtitleSize; }
+
+    public String getSubtitlePosition() { return subtitlePosition; }
+    public void setSubtitlePosition(String subtitlePosition) { this.subtitlePosition = subtitlePosition; }
+
+    public List<String> getBgmUrls() { return bgmUrls; }
+    public void setBgmUrls(List<String> bgmUrls) { this.bgmUrls = bgmUrls; }
+
+    public Double getBgmVolume() { return bgmVolume; }
+    public void setBgmVolume(Double bgmVolume) { this.bgmVolume = bgmVolume; }
+
+    public String getCompiledVideoId() { return compiledVideoId; }
+    public void setCompiledVideoId(String compiledVideoId) { this.compiledVideoId = compiledVideoId; }
+
+    public String getCompiledVideoUrl() { return compiledVideoUrl; }
+    public void setCompiledVideoUrl(String compiledVideoUrl) { this.compiledVideoUrl = compiledVideoUrl; }
+
+    public Date getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
+
+    public Date getStartedAt() { return startedAt; }
+    public void setStartedAt(Date startedAt) { this.startedAt = startedAt; }
+
+    public Date getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Date updatedAt) { this.updatedAt = updatedAt; }
+
+    public Date getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(Date finishedAt) { this.finishedAt = finishedAt; }
+
+    // Status constants
+    public static final String STATUS_QUEUED = "queued";
+    public static final String STATUS_RUNNING = "running";
+    public static final String STATUS_DONE = "done";
+    public static final String STATUS_FAILED = "failed";
+
+    @Override
+    public String toString() {
+        return String.format("CompileJob{id='%s', videoId='%s', status='%s', progress=%d}",
+                           id, videoId, status, progress);
+    }
+}
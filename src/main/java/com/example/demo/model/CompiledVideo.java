@@ -13,6 +13,8 @@ public class CompiledVideo {
     private String status;                      // "completed", "published" 
     private Date createdAt;
     private String compiledBy;
+    private String compileJobId;                // CompileJob that produced this video
+    private String compileCacheKey;             // compileCache entry (approved scene set) it was built from
     
     public CompiledVideo() {
         this.status = "completed";
@@ -47,4 +49,10 @@ public class CompiledVideo {
     
     public String getCompiledBy() { return compiledBy; }
     public void setCompiledBy(String compiledBy) { this.compiledBy = compiledBy; }
+    
+    public String getCompileJobId() { return compileJobId; }
+    public void setCompileJobId(String compileJobId) { this.compileJobId = compileJobId; }
+    
+    public String getCompileCacheKey() { return compileCacheKey; }
+    public void setCompileCacheKey(String compileCacheKey) { this.compileCacheKey = compileCacheKey; }
 }
\ No newline at end of file
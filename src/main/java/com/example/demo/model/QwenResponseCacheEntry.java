@@ -0,0 +1,38 @@
+package com.example.demo.model;
+
+import java.util.Date;
+
+/**
+ * Persisted Qwen chat completion response.
+ * Document id = cache key (SHA-256 of the canonical request JSON: model, messages, images).
+ */
+public class QwenResponseCacheEntry {
+    private String id;          // Cache key
+    private String operation;   // Caller operation, for inspection only
+    private String model;
+    private String body;        // Raw response body
+    private Date createdAt;
+    private Date expiresAt;     // Also usable as a Firestore TTL policy field
+
+    public QwenResponseCacheEntry() {
+        this.createdAt = new Date();
+    }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getOperation() { return operation; }
+    public void setOperation(String operation) { this.operation = operation; }
+
+    public String getModel() { return model; }
+    public void setModel(String model) { this.model = model; }
+
+    public String getBody() { return body; }
+    public void setBody(String body) { this.body = body; }
+
+    public Date getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
+
+    public Date getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(Date expiresAt) { this.expiresAt = expiresAt; }
+}
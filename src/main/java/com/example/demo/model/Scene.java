@@ -34,6 +34,10 @@ public class Scene {
     private String shortLabelZh;  // Chinese short label for the dominant object
     
     // VL Analysis Output (for comparison and reasoning)
+    // Not written to the template document (or assignment snapshots): TemplateDao stores them in
+    // templates/{id}/sceneAnalysis/{sceneNumber} and loads them on demand (loadSceneAnalysis).
+    // @Exclude also skips them on read, so TemplateDao copies payloads that older template
+    // documents still carry inline from the raw snapshot, and moves them on the next update.
     private String vlRawResponse;  // Complete raw VL API response (JSON string)
     private String vlSceneAnalysis;  // Detailed scene analysis from VL (for video comparison)
     
@@ -255,6 +259,7 @@ public class Scene {
         this.shortLabelZh = shortLabelZh;
     }
     
+    @com.google.cloud.firestore.annotation.Exclude
     public String getVlRawResponse() {
         return vlRawResponse;
     }
@@ -263,6 +268,7 @@ public class Scene {
         this.vlRawResponse = vlRawResponse;
     }
     
+    @com.google.cloud.firestore.annotation.Exclude
     public String getVlSceneAnalysis() {
         return vlSceneAnalysis;
     }
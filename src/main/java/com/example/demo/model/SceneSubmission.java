@@ -34,6 +34,7 @@ public class SceneSubmission {
     private Long fileSize;                      // File size in bytes
     private String resolution;                  // Video resolution (e.g., "1080p", "720p")
     private String format;                      // Video format (e.g., "mp4", "mov")
+    private VideoFingerprint videoFingerprint;  // Codec/resolution/fps/rotation, probed once at upload
     
     // Resubmission Tracking
     private int resubmissionCount;              // Number of times resubmitted
@@ -127,6 +128,9 @@ public class SceneSubmission {
     public String getFormat() { return format; }
     public void setFormat(String format) { this.format = format; }
     
+    public VideoFingerprint getVideoFingerprint() { return videoFingerprint; }
+    public void setVideoFingerprint(VideoFingerprint videoFingerprint) { this.videoFingerprint = videoFingerprint; }
+    
     public int getResubmissionCount() { return resubmissionCount; }
     public void setResubmissionCount(int resubmissionCount) { this.resubmissionCount = resubmissionCount; }
     
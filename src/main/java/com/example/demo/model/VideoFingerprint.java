@@ -0,0 +1,91 @@
+package com.example.demo.model;
+
+import java.util.Objects;
+
+/**
+ * Stream parameters of an uploaded video, captured once with ffprobe.
+ *
+ * Segments can only be joined by the concat demuxer with stream copy when these
+ * match, so the compiler compares fingerprints before deciding whether to decode.
+ */
+public class VideoFingerprint {
+    private String videoCodec;      // e.g. "h264", "hevc"
+    private String profile;         // e.g. "High"
+    private String pixelFormat;     // e.g. "yuv420p"
+    private int width;              // Coded width (before rotation)
+    private int height;             // Coded height (before rotation)
+    private String frameRate;       // r_frame_rate, e.g. "30/1"
+    private int rotation;           // Display rotation in degrees (0, 90, 180, 270)
+    private boolean hasAudio;
+    private String audioCodec;      // e.g. "aac"
+    private int audioSampleRate;
+    private int audioChannels;
+    private Double duration;        // Seconds
+
+    public VideoFingerprint() {
+    }
+
+    public String getVideoCodec() { return videoCodec; }
+    public void setVideoCodec(String videoCodec) { this.videoCodec = videoCodec; }
+
+    public String getProfile() { return profile; }
+    public void setProfile(String profile) { this.profile = profile; }
+
+    public String getPixelFormat() { return pixelFormat; }
+    public void setPixelFormat(String pixelFormat) { this.pixelFormat = pixelFormat; }
+
+    public int getWidth() { return width; }
+    public void setWidth(int width) { this.width = width; }
+
+    public int getHeight() { return height; }
+    public void setHeight(int height) { this.height = height; }
+
+    public String getFrameRate() { return frameRate; }
+    public void setFrameRate(String frameRate) { this.frameRate = frameRate; }
+
+    public int getRotation() { return rotation; }
+    public void setRotation(int rotation) { this.rotation = rotation; }
+
+    public boolean isHasAudio() { return hasAudio; }
+    public void setHasAudio(boolean hasAudio) { this.hasAudio = hasAudio; }
+
+    public String getAudioCodec() { return audioCodec; }
+    public void setAudioCodec(String audioCodec) { this.audioCodec = audioCodec; }
+
+    public int getAudioSampleRate() { return audioSampleRate; }
+    public void setAudioSampleRate(int audioSampleRate) { this.audioSampleRate = audioSampleRate; }
+
+    public int getAudioChannels() { return audioChannels; }
+    public void setAudioChannels(int audioChannels) { this.audioChannels = audioChannels; }
+
+    public Double getDuration() { return duration; }
+    public void setDuration(Double duration) { this.duration = duration; }
+
+    /**
+     * Everything that must be equal for a stream-copy concat - excluded from Firestore
+     */
+    @com.google.cloud.firestore.annotation.Exclude
+    public String getConcatKey() {
+        return String.join("|",
+            String.valueOf(videoCodec), String.valueOf(profile), String.valueOf(pixelFormat),
+            width + "x" + height, String.valueOf(frameRate), String.valueOf(rotation),
+            hasAudio ? audioCodec + "/" + audioSampleRate + "/" + audioChannels : "noaudio");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof VideoFingerprint)) return false;
+        return getConcatKey().equals(((VideoFingerprint) o).getConcatKey());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getConcatKey());
+    }
+
+    @Override
+    public String toString() {
+        return "VideoFingerprint{" + getConcatKey() + "}";
+    }
+}
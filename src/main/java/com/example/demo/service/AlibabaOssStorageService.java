@@ -46,8 +46,57 @@ public class AlibabaOssStorageService {
     @Value("${alibaba.oss.endpoint:oss-ap-southeast-1.aliyuncs.com}")
     private String endpoint;
     
+    // OSS DeleteObjects accepts at most 1000 keys per request
+    private static final int DELETE_BATCH_SIZE = 1000;
+    
+    // Max concurrent object downloads across all batch downloads on this instance
+    @Value("${alibaba.oss.download.parallelism:4}")
+    private int downloadParallelism;
+    
     private OSS ossClient;
     
+    private java.util.concurrent.ExecutorService downloadExecutor;
+    
+    // Multipart upload part size and max parts buffered/in flight per upload
+    @Value("${alibaba.oss.upload.part-size-bytes:5242880}")
+    private int uploadPartSizeBytes;
+    
+    @Value("${alibaba.oss.upload.part-parallelism:3}")
+    private int uploadPartParallelism;
+    
+    // Shared upload pool (single puts and multipart parts); sized once, not per upload
+    @Value("${alibaba.oss.upload.parallelism:4}")
+    private int uploadParallelism;
+    
+    @Value("${alibaba.oss.upload.queue-capacity:256}")
+    private int uploadQueueCapacity;
+    
+    // Files at or above this size use resumable multipart uploads
+    @Value("${alibaba.oss.upload.multipart-threshold-bytes:16777216}")
+    private long multipartThresholdBytes;
+    
+    // Where multipart upload IDs are checkpointed so an upload can resume after a restart
+    @Value("${alibaba.oss.upload.checkpoint-dir:${java.io.tmpdir}/oss-upload-checkpoints}")
+    private String checkpointDir;
+    
+    // Checkpoints older than this are aborted and removed at startup, even if their file is still there
+    @Value("${alibaba.oss.upload.checkpoint-max-age-hours:24}")
+    private long checkpointMaxAgeHours;
+    
+    // Bucket lifecycle rule for abandoned multipart uploads; 0 leaves the bucket config alone
+    @Value("${alibaba.oss.upload.abort-incomplete-after-days:0}")
+    private int abortIncompleteAfterDays;
+    
+    private java.util.concurrent.ThreadPoolExecutor uploadExecutor;
+    
+    private final java.util.concurrent.atomic.AtomicLong uploadInFlightBytes = new java.util.concurrent.atomic.AtomicLong();
+    
+    @org.springframework.beans.factory.annotation.Autowired(required = false)
+    private io.micrometer.core.instrument.MeterRegistry meterRegistry;
+    
+    private final java.util.concurrent.atomic.AtomicLong localCopies = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.atomic.AtomicLong localCopyBytes = new java.util.concurrent.atomic.AtomicLong();
+    
     @PostConstruct
     public void init() {
         if (accessKeyId == null || accessKeyId.isEmpty() || 
@@ -91,11 +140,48 @@ public class AlibabaOssStorageService {
             throw new IllegalStateException("Failed to connect to OSS: " + e.getMessage(), e);
         }
         
+        java.util.concurrent.atomic.AtomicInteger threadCount = new java.util.concurrent.atomic.AtomicInteger();
+        this.downloadExecutor = java.util.concurrent.Executors.newFixedThreadPool(Math.max(1, downloadParallelism), r -> {
+            Thread t = new Thread(r, "oss-download-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        java.util.concurrent.atomic.AtomicInteger uploadThreadCount = new java.util.concurrent.atomic.AtomicInteger();
+        int uploadThreads = Math.max(1, uploadParallelism);
+        this.uploadExecutor = new java.util.concurrent.ThreadPoolExecutor(
+            uploadThreads, uploadThreads, 60L, TimeUnit.SECONDS,
+            new java.util.concurrent.LinkedBlockingQueue<>(Math.max(1, uploadQueueCapacity)),
+            r -> {
+                Thread t = new Thread(r, "oss-upload-" + uploadThreadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        
+        if (meterRegistry != null) {
+            io.micrometer.core.instrument.Gauge.builder("oss.upload.queue.depth", uploadExecutor, e -> e.getQueue().size())
+                .register(meterRegistry);
+            io.micrometer.core.instrument.Gauge.builder("oss.upload.active", uploadExecutor, e -> e.getActiveCount())
+                .register(meterRegistry);
+            io.micrometer.core.instrument.Gauge.builder("oss.upload.inflight.bytes", uploadInFlightBytes, java.util.concurrent.atomic.AtomicLong::get)
+                .register(meterRegistry);
+        }
+        System.out.println("Upload pool: " + uploadThreads + " threads, multipart >= " + multipartThresholdBytes + " bytes");
+        if (abortIncompleteAfterDays > 0) {
+            ensureIncompleteUploadLifecycleRule();
+        }
+        cleanupStaleCheckpoints();
+        
         System.out.println("========================================");
     }
     
     @PreDestroy
     public void cleanup() {
+        if (downloadExecutor != null) {
+            downloadExecutor.shutdownNow();
+        }
+        if (uploadExecutor != null) {
+            uploadExecutor.shutdownNow();
+        }
         if (ossClient != null) {
             ossClient.shutdown();
         }
@@ -113,74 +199,62 @@ public class AlibabaOssStorageService {
     
     /**
      * Upload video with thumbnail (matches Firebase interface)
+     * The local copy written on the way through is deleted afterwards.
+     */
+    public UploadResult uploadVideoWithThumbnail(MultipartFile file, String userId, String videoId) 
+            throws IOException, InterruptedException {
+        java.io.File localCopy = java.io.File.createTempFile("upload-", ".mp4");
+        try {
+            return uploadVideoWithThumbnail(file, userId, videoId, localCopy);
+        } finally {
+            localCopy.delete();
+        }
+    }
+    
+    /**
+     * Upload video with thumbnail in a single pass over the request body.
+     * 
+     * The multipart stream is read once and tee'd: every chunk goes to {@code localCopy}
+     * (the only full-file copy on disk) and into an OSS multipart upload whose parts are
+     * sent in parallel. Thumbnail extraction starts from the local copy as soon as the
+     * stream ends, while the last parts are still uploading.
      * 
      * NOTE: Uses getInputStream() instead of transferTo() to avoid Tomcat temp file issues
      * on ephemeral filesystems like Render. The temp file can be cleaned up before
      * transferTo() completes, causing FileNotFoundException.
+     * 
+     * @param localCopy File that receives the local copy; left in place for the caller
+     *                  (probing, fingerprinting) and deleted by the caller
      */
-    public UploadResult uploadVideoWithThumbnail(MultipartFile file, String userId, String videoId) 
+    public UploadResult uploadVideoWithThumbnail(MultipartFile file, String userId, String videoId, java.io.File localCopy)
             throws IOException, InterruptedException {
         
-        java.io.File tempVideo = null;
         java.io.File tempThumb = null;
         
         try {
-            // Save video to temp file using getInputStream() - more reliable than transferTo()
-            // transferTo() relies on Tomcat temp files which can be cleaned up on ephemeral filesystems
-            tempVideo = java.io.File.createTempFile("upload-", ".mp4");
-            System.out.println("[OSS] Saving video to temp file: " + tempVideo.getAbsolutePath());
-            
-            try (java.io.InputStream inputStream = file.getInputStream();
-                 java.io.FileOutputStream outputStream = new java.io.FileOutputStream(tempVideo)) {
-                byte[] buffer = new byte[8192];
-                int bytesRead;
-                long totalBytes = 0;
-                while ((bytesRead = inputStream.read(buffer)) != -1) {
-                    outputStream.write(buffer, 0, bytesRead);
-                    totalBytes += bytesRead;
-                }
-                System.out.println("[OSS] Video saved to temp file, size: " + totalBytes + " bytes");
-            }
-            
-            // Upload video from temp file
             String videoObjectKey = String.format("videos/%s/%s/%s", userId, videoId, file.getOriginalFilename());
-            System.out.println("[OSS] Uploading video to OSS: " + videoObjectKey);
-            String videoUrl = uploadFile(tempVideo, videoObjectKey, file.getContentType());
+            System.out.println("[OSS] Streaming video to OSS: " + videoObjectKey);
             
-            System.out.println("[OSS] ✅ Uploaded video to: " + videoUrl);
+            StreamingUpload upload;
+            try (java.io.InputStream inputStream = file.getInputStream()) {
+                upload = startStreamingUpload(inputStream, videoObjectKey, file.getContentType(), localCopy);
+            }
             
-            // Extract thumbnail using FFmpeg
+            // Extract thumbnail using FFmpeg while the remaining parts finish uploading
             String thumbObjectKey = String.format("videos/%s/%s/thumbnail.jpg", userId, videoId);
             tempThumb = java.io.File.createTempFile("thumb-", ".jpg");
-            
             System.out.println("[OSS] Extracting thumbnail with FFmpeg...");
-            ProcessBuilder pb = new ProcessBuilder(
-                "ffmpeg", "-y", "-ss", "1", "-i", tempVideo.getAbsolutePath(), 
-                "-frames:v", "1", tempThumb.getAbsolutePath()
-            );
-            pb.redirectErrorStream(true);
-            Process proc = pb.start();
-            
-            // Capture FFmpeg output for debugging
-            java.io.BufferedReader reader = new java.io.BufferedReader(
-                new java.io.InputStreamReader(proc.getInputStream())
-            );
-            String line;
-            StringBuilder ffmpegOutput = new StringBuilder();
-            while ((line = reader.readLine()) != null) {
-                ffmpegOutput.append(line).append("\n");
-            }
-            
-            int exitCode = proc.waitFor();
-            
-            if (exitCode != 0) {
-                System.err.println("[OSS] ❌ FFmpeg failed with exit code: " + exitCode);
-                System.err.println("[OSS] FFmpeg output:\n" + ffmpegOutput.toString());
-                throw new IOException("Failed to extract thumbnail with FFmpeg (exit code: " + exitCode + ")");
+            try {
+                extractThumbnail(localCopy, tempThumb);
+            } catch (IOException | InterruptedException e) {
+                upload.abort();
+                throw e;
             }
-            
             System.out.println("[OSS] ✅ Thumbnail extracted successfully");
             
+            String videoUrl = upload.complete();
+            System.out.println("[OSS] ✅ Uploaded video to: " + videoUrl);
+            
             // Upload thumbnail
             System.out.println("[OSS] Uploading thumbnail to OSS: " + thumbObjectKey);
             String thumbnailUrl = uploadFile(tempThumb, thumbObjectKey, "image/jpeg");
@@ -194,11 +268,6 @@ public class AlibabaOssStorageService {
             e.printStackTrace();
             throw e;
         } finally {
-            // Clean up temp files
-            if (tempVideo != null && tempVideo.exists()) {
-                boolean deleted = tempVideo.delete();
-                System.out.println("[OSS] Temp video deleted: " + deleted);
-            }
             if (tempThumb != null && tempThumb.exists()) {
                 boolean deleted = tempThumb.delete();
                 System.out.println("[OSS] Temp thumbnail deleted: " + deleted);
@@ -206,6 +275,208 @@ public class AlibabaOssStorageService {
         }
     }
     
+    private void extractThumbnail(java.io.File video, java.io.File thumb) throws IOException, InterruptedException {
+        ProcessBuilder pb = new ProcessBuilder(
+            "ffmpeg", "-y", "-ss", "1", "-i", video.getAbsolutePath(), 
+            "-frames:v", "1", thumb.getAbsolutePath()
+        );
+        pb.redirectErrorStream(true);
+        Process proc = pb.start();
+        
+        // Capture FFmpeg output for debugging
+        StringBuilder ffmpegOutput = new StringBuilder();
+        try (java.io.BufferedReader reader = new java.io.BufferedReader(
+                new java.io.InputStreamReader(proc.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                ffmpegOutput.append(line).append("\n");
+            }
+        }
+        
+        int exitCode = proc.waitFor();
+        if (exitCode != 0) {
+            System.err.println("[OSS] ❌ FFmpeg failed with exit code: " + exitCode);
+            System.err.println("[OSS] FFmpeg output:\n" + ffmpegOutput.toString());
+            throw new IOException("Failed to extract thumbnail with FFmpeg (exit code: " + exitCode + ")");
+        }
+    }
+    
+    /**
+     * An upload whose body has been fully read; parts may still be in flight
+     */
+    private interface StreamingUpload {
+        String complete() throws IOException;
+        
+        default void abort() {
+        }
+    }
+    
+    /**
+     * Read {@code in} once, writing it to {@code localCopy} and to OSS.
+     * 
+     * Bodies smaller than one part go out as a single put. Larger bodies use a multipart
+     * upload: each part is buffered in memory and sent on the part pool, with at most
+     * alibaba.oss.upload.part-parallelism parts buffered at once so memory stays bounded
+     * even when OSS is slower than the client. Returns once the body has been read.
+     */
+    private StreamingUpload startStreamingUpload(java.io.InputStream in, String objectKey, String contentType,
+                                                 java.io.File localCopy) throws IOException {
+        int partSize = Math.max(100 * 1024, uploadPartSizeBytes);
+        long startTime = System.currentTimeMillis();
+        
+        try (java.io.OutputStream local = new java.io.BufferedOutputStream(new java.io.FileOutputStream(localCopy))) {
+            byte[] first = in.readNBytes(partSize);
+            local.write(first);
+            if (first.length < partSize) {
+                // Small body: single put from memory
+                local.flush();
+                recordLocalCopy(first.length);
+                String url = uploadFile(new java.io.ByteArrayInputStream(first), objectKey, contentType);
+                return () -> url;
+            }
+            
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentType(contentType);
+            com.aliyun.oss.model.InitiateMultipartUploadRequest initRequest =
+                new com.aliyun.oss.model.InitiateMultipartUploadRequest(bucketName, objectKey, metadata);
+            String uploadId = ossClient.initiateMultipartUpload(initRequest).getUploadId();
+            System.out.println("[OSS-UPLOAD] Multipart upload started: " + objectKey + " (uploadId=" + uploadId + ", partSize=" + partSize + ")");
+            
+            java.util.concurrent.Semaphore buffered = new java.util.concurrent.Semaphore(Math.max(1, uploadPartParallelism));
+            List<java.util.concurrent.Future<com.aliyun.oss.model.PartETag>> parts = new ArrayList<>();
+            long total = 0;
+            byte[] chunk = first;
+            try {
+                while (chunk.length > 0) {
+                    total += chunk.length;
+                    buffered.acquire();
+                    final byte[] body = chunk;
+                    final int partNumber = parts.size() + 1;
+                    parts.add(uploadExecutor.submit(() -> {
+                        try {
+                            return uploadPart(objectKey, uploadId, partNumber, body);
+                        } finally {
+                            buffered.release();
+                        }
+                    }));
+                    chunk = in.readNBytes(partSize);
+                    local.write(chunk);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abortMultipart(objectKey, uploadId, parts);
+                throw new IOException("Upload interrupted", e);
+            } catch (IOException | RuntimeException e) {
+                abortMultipart(objectKey, uploadId, parts);
+                throw e;
+            }
+            local.flush();
+            recordLocalCopy(total);
+            final long totalBytes = total;
+            
+            return new StreamingUpload() {
+                @Override
+                public void abort() {
+                    abortMultipart(objectKey, uploadId, parts);
+                }
+                
+                @Override
+                public String complete() throws IOException {
+                    List<com.aliyun.oss.model.PartETag> etags = new ArrayList<>();
+                    try {
+                        for (java.util.concurrent.Future<com.aliyun.oss.model.PartETag> part : parts) {
+                            etags.add(part.get());
+                        }
+                        ossClient.completeMultipartUpload(new com.aliyun.oss.model.CompleteMultipartUploadRequest(
+                            bucketName, objectKey, uploadId, etags));
+                    } catch (Exception e) {
+                        abortMultipart(objectKey, uploadId, parts);
+                        Throwable cause = e instanceof java.util.concurrent.ExecutionException ? e.getCause() : e;
+                        if (e instanceof InterruptedException) {
+                            Thread.currentThread().interrupt();
+                        }
+                        throw new IOException("OSS multipart upload failed: " + cause.getMessage(), cause);
+                    }
+                    long duration = System.currentTimeMillis() - startTime;
+                    System.out.println("[OSS-UPLOAD] ✅ Multipart upload successful: " + parts.size() + " parts, "
+                        + totalBytes + " bytes in " + duration + "ms");
+                    return String.format("https://%s.%s/%s", bucketName, endpoint, objectKey);
+                }
+            };
+        }
+    }
+    
+    /**
+     * Upload one buffered part, retried on its own like uploadFilePartWithRetry
+     */
+    private com.aliyun.oss.model.PartETag uploadPart(String objectKey, String uploadId, int partNumber, byte[] body)
+            throws IOException {
+        int maxAttempts = 3;
+        long delay = 1000;
+        for (int attempt = 1; ; attempt++) {
+            com.aliyun.oss.model.UploadPartRequest partRequest = new com.aliyun.oss.model.UploadPartRequest();
+            partRequest.setBucketName(bucketName);
+            partRequest.setKey(objectKey);
+            partRequest.setUploadId(uploadId);
+            partRequest.setPartNumber(partNumber);
+            partRequest.setPartSize(body.length);
+            partRequest.setInputStream(new java.io.ByteArrayInputStream(body));
+            uploadInFlightBytes.addAndGet(body.length);
+            try {
+                com.aliyun.oss.model.PartETag etag = ossClient.uploadPart(partRequest).getPartETag();
+                recordUploadedBytes(body.length);
+                return etag;
+            } catch (Exception e) {
+                if (attempt >= maxAttempts || !isRetryableError(e)) {
+                    throw new IOException("Part " + partNumber + " failed: " + e.getMessage(), e);
+                }
+                System.err.println("[OSS-UPLOAD] Part " + partNumber + " failed (attempt " + attempt + "/" + maxAttempts
+                    + "), retrying: " + e.getMessage());
+                if (meterRegistry != null) {
+                    meterRegistry.counter("oss.upload.part.retries").increment();
+                }
+            } finally {
+                uploadInFlightBytes.addAndGet(-body.length);
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Upload interrupted", ie);
+            }
+            delay *= 2;
+        }
+    }
+    
+    private void abortMultipart(String objectKey, String uploadId,
+                                List<java.util.concurrent.Future<com.aliyun.oss.model.PartETag>> parts) {
+        for (java.util.concurrent.Future<com.aliyun.oss.model.PartETag> part : parts) {
+            part.cancel(true);
+        }
+        try {
+            ossClient.abortMultipartUpload(new com.aliyun.oss.model.AbortMultipartUploadRequest(bucketName, objectKey, uploadId));
+            System.err.println("[OSS-UPLOAD] Aborted multipart upload: " + objectKey);
+        } catch (Exception e) {
+            System.err.println("[OSS-UPLOAD] Failed to abort multipart upload " + uploadId + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Count a full-file copy written to local disk (uploads and downloads), so the
+     * number of disk round trips per upload is visible (oss.local.copies / oss.local.copy.bytes)
+     */
+    private void recordLocalCopy(long bytes) {
+        localCopies.incrementAndGet();
+        localCopyBytes.addAndGet(bytes);
+        if (meterRegistry != null) {
+            meterRegistry.counter("oss.local.copies").increment();
+            meterRegistry.counter("oss.local.copy.bytes").increment(bytes);
+        }
+    }
+    
+    public long getLocalCopies() { return localCopies.get(); }
+    public long getLocalCopyBytes() { return localCopyBytes.get(); }
+    
     /**
      * Upload file from InputStream
      */
@@ -253,60 +524,34 @@ public class AlibabaOssStorageService {
 
     /**
      * Upload file from File object with timeout protection and retry logic
+     * 
+     * Small files go out as a single put on the shared upload pool. Files at or above
+     * alibaba.oss.upload.multipart-threshold-bytes use a resumable multipart upload: each
+     * attempt lists the parts OSS already has and only sends the missing ones, so a retry
+     * (or a call after a JVM restart, via the checkpointed upload ID) never re-sends the
+     * whole object.
      */
     public String uploadFile(java.io.File file, String objectKey, String contentType) throws IOException {
         int maxRetries = 3;
         int retryDelay = 2000; // 2 seconds
-        int uploadTimeoutSeconds = 90; // 90 second hard timeout per attempt
+        boolean multipart = file.length() >= multipartThresholdBytes;
         
         for (int attempt = 1; attempt <= maxRetries; attempt++) {
             try {
-                System.out.println("[OSS-UPLOAD] Starting upload (attempt " + attempt + "/" + maxRetries + "): " + objectKey);
+                System.out.println("[OSS-UPLOAD] Starting " + (multipart ? "multipart " : "") + "upload (attempt " + attempt + "/" + maxRetries + "): " + objectKey);
                 System.out.println("[OSS-UPLOAD] File size: " + file.length() + " bytes");
-                System.out.println("[OSS-UPLOAD] Bucket: " + bucketName + ", Endpoint: " + endpoint);
-                
-                ObjectMetadata metadata = new ObjectMetadata();
-                metadata.setContentType(contentType);
-                metadata.setContentLength(file.length());
-                
-                PutObjectRequest putRequest = new PutObjectRequest(bucketName, objectKey, file, metadata);
                 
-                System.out.println("[OSS-UPLOAD] Calling ossClient.putObject() with " + uploadTimeoutSeconds + "s timeout...");
                 long startTime = System.currentTimeMillis();
-                
-                // Use ExecutorService for hard timeout - prevents indefinite hanging
-                java.util.concurrent.ExecutorService executor = java.util.concurrent.Executors.newSingleThreadExecutor();
-                java.util.concurrent.Future<com.aliyun.oss.model.PutObjectResult> future = executor.submit(() -> {
-                    return ossClient.putObject(putRequest);
-                });
-                
-                com.aliyun.oss.model.PutObjectResult result;
-                try {
-                    result = future.get(uploadTimeoutSeconds, java.util.concurrent.TimeUnit.SECONDS);
-                } catch (java.util.concurrent.TimeoutException e) {
-                    future.cancel(true);
-                    executor.shutdownNow();
-                    throw new IOException("OSS upload timed out after " + uploadTimeoutSeconds + " seconds");
-                } catch (java.util.concurrent.ExecutionException e) {
-                    executor.shutdownNow();
-                    throw new IOException("OSS upload failed: " + e.getCause().getMessage(), e.getCause());
-                } catch (InterruptedException e) {
-                    future.cancel(true);
-                    executor.shutdownNow();
-                    Thread.currentThread().interrupt();
-                    throw new IOException("OSS upload interrupted", e);
-                } finally {
-                    executor.shutdown();
+                if (multipart) {
+                    uploadFileMultipart(file, objectKey, contentType);
+                } else {
+                    putFile(file, objectKey, contentType);
                 }
-                
                 long duration = System.currentTimeMillis() - startTime;
+                recordUploadTime(multipart ? "multipart" : "put", duration);
                 
-                // Log request ID and ETag
-                String requestId = result.getRequestId();
-                String etag = result.getETag();
-                System.out.println("[OSS-UPLOAD] ✅ Upload successful in " + duration + "ms");
-                System.out.println("[OSS-UPLOAD] Request ID: " + requestId);
-                System.out.println("[OSS-UPLOAD] ETag: " + etag);
+                System.out.println("[OSS-UPLOAD] ✅ Upload successful in " + duration + "ms ("
+                    + String.format("%.1f", file.length() / 1024.0 / 1024.0 / Math.max(0.001, duration / 1000.0)) + " MB/s)");
                 
                 String url = String.format("https://%s.%s/%s", bucketName, endpoint, objectKey);
                 System.out.println("[OSS-UPLOAD] URL: " + url);
@@ -319,8 +564,9 @@ public class AlibabaOssStorageService {
                 System.err.println("[OSS-UPLOAD] Retryable: " + isRetryable);
                 
                 // Try to extract request ID from exception
-                if (e instanceof com.aliyun.oss.OSSException) {
-                    com.aliyun.oss.OSSException ossEx = (com.aliyun.oss.OSSException) e;
+                Throwable cause = e.getCause() instanceof com.aliyun.oss.OSSException ? e.getCause() : e;
+                if (cause instanceof com.aliyun.oss.OSSException) {
+                    com.aliyun.oss.OSSException ossEx = (com.aliyun.oss.OSSException) cause;
                     System.err.println("[OSS-UPLOAD] Request ID: " + ossEx.getRequestId());
                     System.err.println("[OSS-UPLOAD] Error Code: " + ossEx.getErrorCode());
                     System.err.println("[OSS-UPLOAD] Host ID: " + ossEx.getHostId());
@@ -339,8 +585,11 @@ public class AlibabaOssStorageService {
                     continue;
                 }
                 
-                // No more retries or non-retryable error
+                // No more retries or non-retryable error: don't leave uploaded parts behind (they are billed)
                 e.printStackTrace();
+                if (multipart) {
+                    abortCheckpointedUpload(objectKey);
+                }
                 throw new IOException("OSS upload failed after " + attempt + " attempts: " + e.getMessage(), e);
             }
         }
@@ -348,6 +597,375 @@ public class AlibabaOssStorageService {
         throw new IOException("OSS upload failed after " + maxRetries + " attempts");
     }
     
+    /**
+     * Single put on the shared upload pool with a 90 second hard timeout - prevents indefinite hanging
+     */
+    private void putFile(java.io.File file, String objectKey, String contentType) throws IOException {
+        int uploadTimeoutSeconds = 90;
+        
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentType(contentType);
+        metadata.setContentLength(file.length());
+        PutObjectRequest putRequest = new PutObjectRequest(bucketName, objectKey, file, metadata);
+        
+        java.util.concurrent.Future<com.aliyun.oss.model.PutObjectResult> future = uploadExecutor.submit(() -> {
+            uploadInFlightBytes.addAndGet(file.length());
+            try {
+                com.aliyun.oss.model.PutObjectResult result = ossClient.putObject(putRequest);
+                recordUploadedBytes(file.length());
+                return result;
+            } finally {
+                uploadInFlightBytes.addAndGet(-file.length());
+            }
+        });
+        
+        com.aliyun.oss.model.PutObjectResult result = awaitUpload(future, uploadTimeoutSeconds);
+        System.out.println("[OSS-UPLOAD] Request ID: " + result.getRequestId() + ", ETag: " + result.getETag());
+    }
+    
+    /**
+     * Resumable multipart upload of a local file.
+     * 
+     * The upload ID is checkpointed under alibaba.oss.upload.checkpoint-dir, keyed by object
+     * key and validated against the file's size and modification time. Parts already on OSS
+     * (per ListParts) are skipped; the rest go to the shared pool, at most
+     * alibaba.oss.upload.part-parallelism at a time, each retried on its own. On failure the
+     * upload is left open and checkpointed so the next attempt resumes it; uploadFile aborts
+     * it once it gives up.
+     * 
+     * Resuming after a restart needs the same file, unchanged, at the same path. Most callers
+     * (compile outputs, extracted audio, keyframes) upload temp files that are deleted when the
+     * call ends or lost with the process, so for them the checkpoint only serves the retries
+     * within one uploadFile call; the checkpoints they leave behind are swept at startup.
+     */
+    private void uploadFileMultipart(java.io.File file, String objectKey, String contentType) throws IOException {
+        int partTimeoutSeconds = 90;
+        long fileLength = file.length();
+        // OSS allows at most 10000 parts
+        long partSize = Math.max(Math.max(100 * 1024, uploadPartSizeBytes), (fileLength + 9999) / 10000);
+        int partCount = (int) ((fileLength + partSize - 1) / partSize);
+        
+        java.io.File checkpointFile = checkpointFile(objectKey);
+        String uploadId = readCheckpoint(checkpointFile, file, partSize);
+        java.util.Map<Integer, com.aliyun.oss.model.PartETag> done = new java.util.TreeMap<>();
+        if (uploadId != null) {
+            try {
+                done.putAll(listUploadedParts(objectKey, uploadId, partSize));
+                System.out.println("[OSS-UPLOAD] Resuming multipart upload " + uploadId + ": "
+                    + done.size() + "/" + partCount + " parts already uploaded");
+            } catch (com.aliyun.oss.OSSException e) {
+                // NoSuchUpload - the upload was completed, aborted or expired
+                System.out.println("[OSS-UPLOAD] Checkpointed upload " + uploadId + " no longer exists: " + e.getErrorCode());
+                uploadId = null;
+            }
+        }
+        if (uploadId == null) {
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentType(contentType);
+            uploadId = ossClient.initiateMultipartUpload(
+                new com.aliyun.oss.model.InitiateMultipartUploadRequest(bucketName, objectKey, metadata)).getUploadId();
+            writeCheckpoint(checkpointFile, objectKey, uploadId, file, partSize);
+            System.out.println("[OSS-UPLOAD] Multipart upload started: " + objectKey + " (uploadId=" + uploadId
+                + ", " + partCount + " parts of " + partSize + " bytes)");
+        }
+        
+        final String activeUploadId = uploadId;
+        java.util.concurrent.Semaphore window = new java.util.concurrent.Semaphore(Math.max(1, uploadPartParallelism));
+        java.util.Map<Integer, java.util.concurrent.Future<com.aliyun.oss.model.PartETag>> pending = new java.util.TreeMap<>();
+        try {
+            for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+                if (done.containsKey(partNumber)) {
+                    continue;
+                }
+                window.acquire();
+                final int number = partNumber;
+                final long offset = (partNumber - 1) * partSize;
+                final long size = Math.min(partSize, fileLength - offset);
+                try {
+                    pending.put(partNumber, uploadExecutor.submit(() -> {
+                        try {
+                            return uploadFilePartWithRetry(file, objectKey, activeUploadId, number, offset, size);
+                        } finally {
+                            window.release();
+                        }
+                    }));
+                } catch (java.util.concurrent.RejectedExecutionException e) {
+                    window.release();
+                    throw e;
+                }
+            }
+            for (java.util.Map.Entry<Integer, java.util.concurrent.Future<com.aliyun.oss.model.PartETag>> entry : pending.entrySet()) {
+                done.put(entry.getKey(), awaitUpload(entry.getValue(), partTimeoutSeconds * 3));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Upload interrupted", e);
+        } finally {
+            for (java.util.concurrent.Future<com.aliyun.oss.model.PartETag> future : pending.values()) {
+                future.cancel(true);
+            }
+        }
+        
+        ossClient.completeMultipartUpload(new com.aliyun.oss.model.CompleteMultipartUploadRequest(
+            bucketName, objectKey, activeUploadId, new ArrayList<>(done.values())));
+        checkpointFile.delete();
+    }
+    
+    private com.aliyun.oss.model.PartETag uploadFilePartWithRetry(java.io.File file, String objectKey, String uploadId,
+                                                                   int partNumber, long offset, long size) throws IOException {
+        int maxAttempts = 3;
+        long delay = 1000;
+        for (int attempt = 1; ; attempt++) {
+            try (InputStream in = new java.io.FileInputStream(file)) {
+                in.skipNBytes(offset);
+                com.aliyun.oss.model.UploadPartRequest partRequest = new com.aliyun.oss.model.UploadPartRequest();
+                partRequest.setBucketName(bucketName);
+                partRequest.setKey(objectKey);
+                partRequest.setUploadId(uploadId);
+                partRequest.setPartNumber(partNumber);
+                partRequest.setPartSize(size);
+                partRequest.setInputStream(in);
+                uploadInFlightBytes.addAndGet(size);
+                try {
+                    com.aliyun.oss.model.PartETag etag = ossClient.uploadPart(partRequest).getPartETag();
+                    recordUploadedBytes(size);
+                    return etag;
+                } finally {
+                    uploadInFlightBytes.addAndGet(-size);
+                }
+            } catch (Exception e) {
+                if (attempt >= maxAttempts || !isRetryableError(e)) {
+                    throw new IOException("Part " + partNumber + " failed: " + e.getMessage(), e);
+                }
+                System.err.println("[OSS-UPLOAD] Part " + partNumber + " failed (attempt " + attempt + "/" + maxAttempts
+                    + "), retrying: " + e.getMessage());
+                if (meterRegistry != null) {
+                    meterRegistry.counter("oss.upload.part.retries").increment();
+                }
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Upload interrupted", ie);
+                }
+                delay *= 2;
+            }
+        }
+    }
+    
+    /**
+     * Parts OSS already holds for an upload (the checkpoint pins the part size, so numbers line up)
+     */
+    private java.util.Map<Integer, com.aliyun.oss.model.PartETag> listUploadedParts(String objectKey, String uploadId, long partSize) {
+        java.util.Map<Integer, com.aliyun.oss.model.PartETag> parts = new java.util.TreeMap<>();
+        com.aliyun.oss.model.ListPartsRequest listRequest = new com.aliyun.oss.model.ListPartsRequest(bucketName, objectKey, uploadId);
+        listRequest.setMaxParts(1000);
+        com.aliyun.oss.model.PartListing listing;
+        do {
+            listing = ossClient.listParts(listRequest);
+            for (com.aliyun.oss.model.PartSummary part : listing.getParts()) {
+                parts.put(part.getPartNumber(), new com.aliyun.oss.model.PartETag(part.getPartNumber(), part.getETag()));
+            }
+            listRequest.setPartNumberMarker(listing.getNextPartNumberMarker());
+        } while (listing.isTruncated());
+        return parts;
+    }
+    
+    private java.io.File checkpointFile(String objectKey) {
+        String name = java.util.UUID.nameUUIDFromBytes(
+            (bucketName + "/" + objectKey).getBytes(java.nio.charset.StandardCharsets.UTF_8)) + ".ckpt";
+        return new java.io.File(checkpointDir, name);
+    }
+    
+    /**
+     * Upload ID from a checkpoint written for this exact file, or null. A stale checkpoint
+     * (file changed since) has its upload aborted so the orphaned parts are not billed.
+     */
+    private String readCheckpoint(java.io.File checkpointFile, java.io.File file, long partSize) {
+        if (!checkpointFile.exists()) {
+            return null;
+        }
+        java.util.Properties checkpoint = new java.util.Properties();
+        try (InputStream in = new java.io.FileInputStream(checkpointFile)) {
+            checkpoint.load(in);
+        } catch (IOException e) {
+            System.err.println("[OSS-UPLOAD] Unreadable checkpoint " + checkpointFile + ": " + e.getMessage());
+            checkpointFile.delete();
+            return null;
+        }
+        boolean sameFile = String.valueOf(file.length()).equals(checkpoint.getProperty("fileLength"))
+            && String.valueOf(file.lastModified()).equals(checkpoint.getProperty("lastModified"))
+            && String.valueOf(partSize).equals(checkpoint.getProperty("partSize"));
+        if (sameFile) {
+            return checkpoint.getProperty("uploadId");
+        }
+        abortStaleCheckpoint(checkpointFile, checkpoint);
+        return null;
+    }
+    
+    /**
+     * Abort and remove checkpoints that can never be resumed: their source file is gone or has
+     * changed (typically a temp file from before a restart), or they are older than
+     * alibaba.oss.upload.checkpoint-max-age-hours
+     */
+    private void cleanupStaleCheckpoints() {
+        java.io.File[] checkpointFiles = new java.io.File(checkpointDir).listFiles((dir, name) -> name.endsWith(".ckpt"));
+        if (checkpointFiles == null) {
+            return;
+        }
+        long maxAgeMillis = TimeUnit.HOURS.toMillis(Math.max(1, checkpointMaxAgeHours));
+        int removed = 0;
+        for (java.io.File checkpointFile : checkpointFiles) {
+            java.util.Properties checkpoint = new java.util.Properties();
+            try (InputStream in = new java.io.FileInputStream(checkpointFile)) {
+                checkpoint.load(in);
+            } catch (IOException e) {
+                System.err.println("[OSS-UPLOAD] Unreadable checkpoint " + checkpointFile + ": " + e.getMessage());
+                checkpointFile.delete();
+                removed++;
+                continue;
+            }
+            String filePath = checkpoint.getProperty("filePath");
+            java.io.File source = filePath != null ? new java.io.File(filePath) : null;
+            boolean resumable = source != null && source.isFile()
+                && String.valueOf(source.length()).equals(checkpoint.getProperty("fileLength"))
+                && String.valueOf(source.lastModified()).equals(checkpoint.getProperty("lastModified"))
+                && System.currentTimeMillis() - checkpointFile.lastModified() < maxAgeMillis;
+            if (!resumable) {
+                abortStaleCheckpoint(checkpointFile, checkpoint);
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            System.out.println("Removed " + removed + " stale multipart upload checkpoint(s) from " + checkpointDir);
+        }
+    }
+    
+    private void abortStaleCheckpoint(java.io.File checkpointFile, java.util.Properties checkpoint) {
+        String uploadId = checkpoint.getProperty("uploadId");
+        String objectKey = checkpoint.getProperty("objectKey");
+        if (uploadId != null && objectKey != null) {
+            try {
+                ossClient.abortMultipartUpload(new com.aliyun.oss.model.AbortMultipartUploadRequest(bucketName, objectKey, uploadId));
+            } catch (Exception e) {
+                // Left to the bucket's incomplete-upload lifecycle rule
+                System.err.println("[OSS-UPLOAD] Failed to abort stale upload " + uploadId + ": " + e.getMessage());
+            }
+        }
+        checkpointFile.delete();
+    }
+    
+    /**
+     * Abort the checkpointed multipart upload for an object (if any) and drop the checkpoint
+     */
+    private void abortCheckpointedUpload(String objectKey) {
+        java.io.File checkpointFile = checkpointFile(objectKey);
+        if (!checkpointFile.exists()) {
+            return;
+        }
+        java.util.Properties checkpoint = new java.util.Properties();
+        try (InputStream in = new java.io.FileInputStream(checkpointFile)) {
+            checkpoint.load(in);
+            String uploadId = checkpoint.getProperty("uploadId");
+            if (uploadId != null) {
+                ossClient.abortMultipartUpload(new com.aliyun.oss.model.AbortMultipartUploadRequest(bucketName, objectKey, uploadId));
+                System.err.println("[OSS-UPLOAD] Aborted multipart upload " + uploadId + ": " + objectKey);
+            }
+        } catch (Exception e) {
+            // Left to the bucket's incomplete-upload lifecycle rule
+            System.err.println("[OSS-UPLOAD] Failed to abort multipart upload for " + objectKey + ": " + e.getMessage());
+        }
+        checkpointFile.delete();
+    }
+    
+    /**
+     * Add a bucket lifecycle rule that aborts multipart uploads left incomplete for
+     * alibaba.oss.upload.abort-incomplete-after-days, catching uploads this instance never got
+     * to abort (crashes, lost checkpoints). Existing rules are kept.
+     */
+    private void ensureIncompleteUploadLifecycleRule() {
+        String ruleId = "abort-incomplete-multipart-uploads";
+        try {
+            List<com.aliyun.oss.model.LifecycleRule> rules = new ArrayList<>();
+            try {
+                rules.addAll(ossClient.getBucketLifecycle(bucketName));
+            } catch (com.aliyun.oss.OSSException e) {
+                if (!"NoSuchLifecycle".equals(e.getErrorCode())) {
+                    throw e;
+                }
+            }
+            for (com.aliyun.oss.model.LifecycleRule rule : rules) {
+                if (ruleId.equals(rule.getId()) || rule.hasAbortMultipartUpload()) {
+                    return;
+                }
+            }
+            com.aliyun.oss.model.LifecycleRule rule = new com.aliyun.oss.model.LifecycleRule(
+                ruleId, "", com.aliyun.oss.model.LifecycleRule.RuleStatus.Enabled);
+            rule.setAbortMultipartUpload(new com.aliyun.oss.model.LifecycleRule.AbortMultipartUpload(abortIncompleteAfterDays));
+            rules.add(rule);
+            com.aliyun.oss.model.SetBucketLifecycleRequest request = new com.aliyun.oss.model.SetBucketLifecycleRequest(bucketName);
+            request.setLifecycleRules(rules);
+            ossClient.setBucketLifecycle(request);
+            System.out.println("Lifecycle rule added: abort incomplete multipart uploads after " + abortIncompleteAfterDays + " days");
+        } catch (Exception e) {
+            System.err.println("[OSS] Failed to set incomplete-upload lifecycle rule: " + e.getMessage());
+        }
+    }
+    
+    private void writeCheckpoint(java.io.File checkpointFile, String objectKey, String uploadId, java.io.File file, long partSize) {
+        java.util.Properties checkpoint = new java.util.Properties();
+        checkpoint.setProperty("objectKey", objectKey);
+        checkpoint.setProperty("uploadId", uploadId);
+        checkpoint.setProperty("filePath", file.getAbsolutePath());
+        checkpoint.setProperty("fileLength", String.valueOf(file.length()));
+        checkpoint.setProperty("lastModified", String.valueOf(file.lastModified()));
+        checkpoint.setProperty("partSize", String.valueOf(partSize));
+        checkpointFile.getParentFile().mkdirs();
+        try (java.io.OutputStream out = new java.io.FileOutputStream(checkpointFile)) {
+            checkpoint.store(out, "OSS multipart upload checkpoint");
+        } catch (IOException e) {
+            // Not fatal: the upload still works, it just cannot resume after a restart
+            System.err.println("[OSS-UPLOAD] Failed to write checkpoint " + checkpointFile + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Wait for an upload task with a hard timeout, unwrapping the task's failure
+     */
+    private <T> T awaitUpload(java.util.concurrent.Future<T> future, int timeoutSeconds) throws IOException {
+        try {
+            return future.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (java.util.concurrent.TimeoutException e) {
+            future.cancel(true);
+            throw new IOException("OSS upload timed out after " + timeoutSeconds + " seconds");
+        } catch (java.util.concurrent.ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("OSS upload failed: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("OSS upload interrupted", e);
+        }
+    }
+    
+    private void recordUploadedBytes(long bytes) {
+        if (meterRegistry != null) {
+            meterRegistry.counter("oss.upload.bytes").increment(bytes);
+        }
+    }
+    
+    private void recordUploadTime(String mode, long millis) {
+        if (meterRegistry != null) {
+            meterRegistry.timer("oss.upload.duration", "mode", mode).record(millis, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    public long getUploadInFlightBytes() { return uploadInFlightBytes.get(); }
+    public int getUploadQueueDepth() { return uploadExecutor != null ? uploadExecutor.getQueue().size() : 0; }
+    
     /**
      * Check if an error is retryable (network issues, timeouts, etc.)
      */
@@ -365,7 +983,8 @@ public class AlibabaOssStorageService {
                lowerMessage.contains("timed out after") ||  // Our custom timeout wrapper
                lowerMessage.contains("connection refused") ||
                lowerMessage.contains("unable to execute http request") ||
-               (e instanceof com.aliyun.oss.ClientException);
+               (e instanceof com.aliyun.oss.ClientException) ||
+               (e.getCause() instanceof com.aliyun.oss.ClientException);
     }
     
     /**
@@ -419,6 +1038,13 @@ public class AlibabaOssStorageService {
         }
     }
     
+    /**
+     * Object key of a URL in this bucket (signed or not), null for anything else
+     */
+    public String getObjectKey(String ossUrl) {
+        return parseObjectKeyFromUrl(ossUrl);
+    }
+    
     /**
      * Parse object key from OSS URL
      * Format: https://xpectra.oss-cn-shanghai.aliyuncs.com/path/to/object
@@ -464,28 +1090,109 @@ public class AlibabaOssStorageService {
     }
     
     /**
-     * Delete all objects with prefix
+     * Delete many objects by URL using multi-object DeleteObjects requests (up to
+     * DELETE_BATCH_SIZE keys per request, batches in parallel). Null URLs and URLs
+     * outside this bucket are skipped.
+     * @return number of objects deleted (keys that no longer exist count as deleted)
+     */
+    public int deleteObjectsByUrl(java.util.Collection<String> ossUrls) {
+        java.util.LinkedHashSet<String> keys = new java.util.LinkedHashSet<>();
+        for (String ossUrl : ossUrls) {
+            String objectKey = parseObjectKeyFromUrl(ossUrl);
+            if (objectKey != null && !objectKey.isEmpty()) {
+                keys.add(objectKey);
+            }
+        }
+        List<java.util.concurrent.Future<Integer>> batches = new ArrayList<>();
+        List<String> keyList = new ArrayList<>(keys);
+        for (int i = 0; i < keyList.size(); i += DELETE_BATCH_SIZE) {
+            batches.add(submitDeleteBatch(keyList.subList(i, Math.min(i + DELETE_BATCH_SIZE, keyList.size()))));
+        }
+        int deleted = awaitDeleteBatches(batches);
+        System.out.println("[OSS] Batch-deleted " + deleted + "/" + keyList.size() + " objects");
+        return deleted;
+    }
+    
+    /**
+     * Delete all objects with prefix. Walks every listing page; each page is deleted with
+     * one DeleteObjects request while the next page is listed. Objects already deleted by
+     * an interrupted run are simply not listed again, so a re-run resumes.
      */
     public int deleteByPrefix(String prefix) {
-        int deleted = 0;
+        if (prefix == null) return 0;
+        List<java.util.concurrent.Future<Integer>> batches = new ArrayList<>();
+        int listed = 0;
         try {
-            if (prefix == null) return 0;
-            
-            var objectListing = ossClient.listObjects(bucketName, prefix);
-            var objects = objectListing.getObjectSummaries();
-            
-            for (var object : objects) {
+            String marker = null;
+            com.aliyun.oss.model.ObjectListing listing;
+            do {
+                listing = ossClient.listObjects(
+                    new com.aliyun.oss.model.ListObjectsRequest(bucketName, prefix, marker, null, DELETE_BATCH_SIZE));
+                List<String> keys = new ArrayList<>();
+                for (var object : listing.getObjectSummaries()) {
+                    keys.add(object.getKey());
+                }
+                if (!keys.isEmpty()) {
+                    batches.add(submitDeleteBatch(keys));
+                    listed += keys.size();
+                }
+                marker = listing.getNextMarker();
+            } while (listing.isTruncated() && marker != null);
+        } catch (Exception e) {
+            System.err.println("[OSS] Failed to list objects by prefix: " + prefix + " - " + e.getMessage());
+        }
+        int deleted = awaitDeleteBatches(batches);
+        System.out.println("[OSS] Deleted " + deleted + "/" + listed + " objects with prefix: " + prefix);
+        return deleted;
+    }
+    
+    private java.util.concurrent.Future<Integer> submitDeleteBatch(List<String> keys) {
+        List<String> batch = new ArrayList<>(keys);
+        // Short control-plane requests: run on the download pool rather than a pool of their own
+        return downloadExecutor.submit(() -> deleteObjectsBatch(batch));
+    }
+    
+    private int deleteObjectsBatch(List<String> keys) {
+        long delay = 1000;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                com.aliyun.oss.model.DeleteObjectsRequest request = new com.aliyun.oss.model.DeleteObjectsRequest(bucketName);
+                request.setKeys(keys);
+                request.setQuiet(false); // Verbose: the response lists every deleted key
+                com.aliyun.oss.model.DeleteObjectsResult result = ossClient.deleteObjects(request);
+                int deleted = result.getDeletedObjects() != null ? result.getDeletedObjects().size() : 0;
+                if (deleted < keys.size()) {
+                    System.err.println("[OSS] Batch delete removed " + deleted + " of " + keys.size() + " objects");
+                }
+                return deleted;
+            } catch (Exception e) {
+                if (attempt >= 3 || !isRetryableError(e)) {
+                    System.err.println("[OSS] Batch delete of " + keys.size() + " objects failed: " + e.getMessage());
+                    return 0;
+                }
+                System.err.println("[OSS] Batch delete attempt " + attempt + " failed, retrying in " + delay + "ms: " + e.getMessage());
                 try {
-                    ossClient.deleteObject(bucketName, object.getKey());
-                    deleted++;
-                } catch (Exception e) {
-                    System.err.println("[OSS] Failed to delete: " + object.getKey() + " - " + e.getMessage());
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return 0;
                 }
+                delay *= 2;
+            }
+        }
+    }
+    
+    private int awaitDeleteBatches(List<java.util.concurrent.Future<Integer>> batches) {
+        int deleted = 0;
+        for (java.util.concurrent.Future<Integer> batch : batches) {
+            try {
+                deleted += batch.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (java.util.concurrent.ExecutionException e) {
+                System.err.println("[OSS] Batch delete failed: " + e.getCause());
             }
-            
-            System.out.println("[OSS] Deleted " + deleted + " objects with prefix: " + prefix);
-        } catch (Exception e) {
-            System.err.println("[OSS] Failed to list/delete by prefix: " + prefix + " - " + e.getMessage());
         }
         return deleted;
     }
@@ -556,6 +1263,13 @@ public class AlibabaOssStorageService {
      * @return Local temp file
      */
     public java.io.File downloadToTempFile(String ossUrl, String prefix, String suffix) throws IOException {
+        return downloadToTempFile(ossUrl, prefix, suffix, null);
+    }
+    
+    /**
+     * Download OSS file to a temp file in the given directory (null = system temp dir)
+     */
+    public java.io.File downloadToTempFile(String ossUrl, String prefix, String suffix, java.io.File dir) throws IOException {
         // Check if URL is already signed (has query parameters)
         String signedUrl;
         if (ossUrl.contains("?x-oss-")) {
@@ -567,18 +1281,18 @@ public class AlibabaOssStorageService {
             signedUrl = generateSignedUrl(ossUrl, 2, TimeUnit.HOURS);
         }
         
-        java.io.File tempFile = java.io.File.createTempFile(prefix, suffix);
+        java.io.File tempFile = java.io.File.createTempFile(prefix, suffix, dir);
         
         System.out.println("[OSS] Downloading " + ossUrl + " to " + tempFile.getAbsolutePath());
         
         try (java.io.InputStream in = new java.net.URL(signedUrl).openStream();
              java.io.FileOutputStream out = new java.io.FileOutputStream(tempFile)) {
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            while ((bytesRead = in.read(buffer)) != -1) {
-                out.write(buffer, 0, bytesRead);
-            }
+            in.transferTo(out);
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
         }
+        recordLocalCopy(tempFile.length());
         
         System.out.println("[OSS] Downloaded successfully");
         return tempFile;
@@ -594,16 +1308,91 @@ public class AlibabaOssStorageService {
      * @return List of local temp files (same order as input URLs)
      */
     public List<java.io.File> downloadMultipleToTempFiles(List<String> ossUrls, String prefix, String suffix) throws IOException {
-        List<java.io.File> tempFiles = new ArrayList<>();
+        return downloadMultipleToTempFiles(ossUrls, prefix, suffix, null).files;
+    }
+    
+    /**
+     * Result of a parallel batch download
+     */
+    public static class DownloadBatch {
+        public final List<java.io.File> files;
+        public final long bytes;
+        // Wall time of the whole batch
+        public final long wallMillis;
+        // Sum of the individual downloads = what a sequential fetch would have cost
+        public final long sequentialMillis;
+        
+        public DownloadBatch(List<java.io.File> files, long bytes, long wallMillis, long sequentialMillis) {
+            this.files = files;
+            this.bytes = bytes;
+            this.wallMillis = wallMillis;
+            this.sequentialMillis = sequentialMillis;
+        }
+        
+        public long savedMillis() {
+            return Math.max(0, sequentialMillis - wallMillis);
+        }
+    }
+    
+    /**
+     * Download multiple OSS files concurrently into one scratch directory.
+     * Concurrency is bounded by the shared download pool (alibaba.oss.download.parallelism).
+     * If any download fails, the files already fetched are deleted and the error is rethrown.
+     * 
+     * @param dir Scratch directory (null = system temp dir)
+     * @return Files in the same order as the input URLs, plus timing for metrics
+     */
+    public DownloadBatch downloadMultipleToTempFiles(List<String> ossUrls, String prefix, String suffix, java.io.File dir) throws IOException {
+        long start = System.nanoTime();
+        List<java.util.concurrent.Future<long[]>> timings = new ArrayList<>();
+        java.io.File[] files = new java.io.File[ossUrls.size()];
         
         for (int i = 0; i < ossUrls.size(); i++) {
-            String url = ossUrls.get(i);
-            java.io.File tempFile = downloadToTempFile(url, prefix + i + "-", suffix);
-            tempFiles.add(tempFile);
+            final int index = i;
+            final String url = ossUrls.get(i);
+            timings.add(downloadExecutor.submit(() -> {
+                long t0 = System.nanoTime();
+                java.io.File tempFile = downloadToTempFile(url, prefix + index + "-", suffix, dir);
+                files[index] = tempFile;
+                return new long[] { TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0), tempFile.length() };
+            }));
         }
         
-        System.out.println("[OSS] Downloaded " + tempFiles.size() + " files");
-        return tempFiles;
+        long sequentialMillis = 0;
+        long bytes = 0;
+        IOException failure = null;
+        for (java.util.concurrent.Future<long[]> timing : timings) {
+            try {
+                long[] t = timing.get();
+                sequentialMillis += t[0];
+                bytes += t[1];
+            } catch (java.util.concurrent.ExecutionException e) {
+                if (failure == null) {
+                    Throwable cause = e.getCause();
+                    failure = cause instanceof IOException ? (IOException) cause
+                        : new IOException("Download failed: " + cause.getMessage(), cause);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (failure == null) {
+                    failure = new IOException("Interrupted while downloading", e);
+                }
+            }
+        }
+        if (failure != null) {
+            for (java.util.concurrent.Future<long[]> timing : timings) {
+                timing.cancel(true);
+            }
+            for (java.io.File f : files) {
+                if (f != null) f.delete();
+            }
+            throw failure;
+        }
+        
+        long wallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.out.println("[OSS] Downloaded " + files.length + " files (" + bytes + " bytes) in " + wallMillis
+            + "ms, sequential estimate " + sequentialMillis + "ms");
+        return new DownloadBatch(java.util.Arrays.asList(files), bytes, wallMillis, sequentialMillis);
     }
     
     /**
@@ -613,6 +1402,16 @@ public class AlibabaOssStorageService {
      * @return byte array of file content
      */
     public byte[] downloadToByteArray(String ossUrl) throws IOException {
+        String objectKey = parseObjectKeyFromUrl(ossUrl);
+        if (objectKey != null) {
+            // Straight through the SDK client (pooled connections), no URL signing
+            try (com.aliyun.oss.model.OSSObject object = ossClient.getObject(bucketName, objectKey);
+                 java.io.InputStream in = object.getObjectContent()) {
+                return in.readAllBytes();
+            } catch (RuntimeException e) { // OSSException / ClientException
+                throw new IOException("OSS download failed for " + objectKey + ": " + e.getMessage(), e);
+            }
+        }
         String signedUrl = generateSignedUrl(ossUrl, 2, TimeUnit.HOURS);
         
         try (java.io.InputStream in = new java.net.URL(signedUrl).openStream();
@@ -0,0 +1,430 @@
+package com.example.demo.service;
+
+import com.example.demo.dao.CompileJobDao;
+import com.example.demo.dao.CompiledVideoDao;
+import com.example.demo.dao.ManagerSubmissionDao;
+import com.example.demo.dao.SceneSubmissionDao;
+import com.example.demo.dao.TemplateAssignmentDao;
+import com.example.demo.dao.UserDao;
+import com.example.demo.model.CompileJob;
+import com.example.demo.model.CompiledVideo;
+import com.example.demo.model.ManualTemplate;
+import com.example.demo.model.TemplateAssignment;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous publish pipeline.
+ *
+ * Publish requests are persisted as CompileJob documents (Firestore is the queue) and
+ * executed by a small bounded worker pool, so an ffmpeg re-encode never runs inside the
+ * HTTP request. The pool size caps how many compiles share this instance's CPU/memory;
+ * jobs that do not fit the in-memory queue stay "queued" and are picked up by the poller.
+ *
+ * A worker bumps its job's updatedAt every heartbeat-seconds while the job runs, so only
+ * jobs whose worker died go stale and are requeued. Publishing is idempotent per job: the
+ * compiled video is stored under the job ID, and a run that finds it skips the compile.
+ */
+@Service
+public class CompileJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(CompileJobService.class);
+
+    @Value("${compile.jobs.max-concurrent:1}")
+    private int maxConcurrent;
+
+    @Value("${compile.jobs.queue-capacity:20}")
+    private int queueCapacity;
+
+    @Value("${compile.jobs.max-attempts:2}")
+    private int maxAttempts;
+
+    @Value("${compile.jobs.stale-after-minutes:30}")
+    private long staleAfterMinutes;
+
+    @Value("${compile.jobs.heartbeat-seconds:30}")
+    private long heartbeatSeconds;
+
+    @Autowired
+    private CompileJobDao compileJobDao;
+
+    @Autowired
+    private CompiledVideoDao compiledVideoDao;
+
+    @Autowired
+    private VideoCompilationService videoCompilationService;
+
+    @Autowired
+    private TemplateAssignmentDao templateAssignmentDao;
+
+    @Autowired
+    private ManagerSubmissionDao managerSubmissionDao;
+
+    @Autowired
+    private SceneSubmissionDao sceneSubmissionDao;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired(required = false)
+    private AlibabaOssStorageService ossStorageService;
+
+    @Autowired
+    private Firestore db;
+
+    private final String workerId = UUID.randomUUID().toString();
+    private final Set<String> localJobs = ConcurrentHashMap.newKeySet();
+    private ThreadPoolExecutor executor;
+    private ScheduledExecutorService heartbeats;
+
+    @PostConstruct
+    public void init() {
+        int workers = Math.max(1, maxConcurrent);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+            workers, workers, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+            r -> {
+                Thread t = new Thread(r, "compile-worker-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            },
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "compile-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        log.info("[COMPILE-JOB] Worker pool started: workers={}, queueCapacity={}, workerId={}", workers, queueCapacity, workerId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            // Jobs still queued in memory remain "queued" in Firestore and are picked up after restart
+            executor.shutdownNow();
+        }
+        if (heartbeats != null) {
+            heartbeats.shutdownNow();
+        }
+    }
+
+    /**
+     * Persist a publish request and hand it to the worker pool.
+     * If the video already has a queued/running job, that job is returned instead.
+     */
+    public CompileJob enqueue(CompileJob job) throws ExecutionException, InterruptedException {
+        CompileJob active = compileJobDao.saveIfNoneActive(job);
+        if (active != job) {
+            log.info("[COMPILE-JOB] Video {} already has active job {} ({})", job.getVideoId(), active.getId(), active.getStatus());
+            return active;
+        }
+
+        log.info("[COMPILE-JOB] Enqueued job {} for video {}", job.getId(), job.getVideoId());
+        dispatch(job.getId());
+        return job;
+    }
+
+    public CompileJob getJob(String jobId) throws ExecutionException, InterruptedException {
+        return compileJobDao.findById(jobId);
+    }
+
+    public CompileJob getLatestJobForVideo(String videoId) throws ExecutionException, InterruptedException {
+        return compileJobDao.findLatestByVideoId(videoId);
+    }
+
+    /**
+     * Poll Firestore for queued jobs (overflow, other instances, restarts) and
+     * requeue running jobs whose worker stopped reporting progress.
+     */
+    @Scheduled(fixedDelayString = "${compile.jobs.poll-interval-ms:15000}", initialDelay = 10000)
+    public void pollQueuedJobs() {
+        try {
+            recoverStaleJobs();
+
+            int freeSlots = executor.getQueue().remainingCapacity();
+            if (freeSlots <= 0) {
+                return;
+            }
+            for (CompileJob job : compileJobDao.findByStatus(CompileJob.STATUS_QUEUED, freeSlots)) {
+                if (!dispatch(job.getId())) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("[COMPILE-JOB] Failed to poll queued jobs: {}", e.getMessage());
+        }
+    }
+
+    private void recoverStaleJobs() throws ExecutionException, InterruptedException {
+        long staleBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(staleAfterMinutes);
+        for (CompileJob job : compileJobDao.findByStatus(CompileJob.STATUS_RUNNING, 50)) {
+            if (localJobs.contains(job.getId())) continue;
+            if (job.getUpdatedAt() != null && job.getUpdatedAt().getTime() > staleBefore) continue;
+
+            // Conditional on the state observed here: a job that finished or sent a heartbeat
+            // since the query is left alone
+            if (job.getAttempts() >= maxAttempts) {
+                if (compileJobDao.failIfStale(job.getId(), job.getWorkerId(), job.getUpdatedAt(), "Compile worker stopped responding")) {
+                    log.warn("[COMPILE-JOB] Job {} stalled after {} attempts, marked failed", job.getId(), job.getAttempts());
+                }
+            } else if (compileJobDao.requeueIfStale(job.getId(), job.getWorkerId(), job.getUpdatedAt())) {
+                log.warn("[COMPILE-JOB] Job {} stalled on worker {}, requeued", job.getId(), job.getWorkerId());
+            }
+        }
+    }
+
+    /**
+     * Submit a job ID to the local pool. Returns false when the pool queue is full;
+     * the job then stays queued in Firestore until the next poll.
+     */
+    private boolean dispatch(String jobId) {
+        if (!localJobs.add(jobId)) {
+            return true;  // Already queued or running on this instance
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    runJob(jobId);
+                } finally {
+                    localJobs.remove(jobId);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            localJobs.remove(jobId);
+            log.info("[COMPILE-JOB] Worker queue full, job {} stays queued", jobId);
+            return false;
+        }
+    }
+
+    private void runJob(String jobId) {
+        CompileJob job;
+        try {
+            if (!compileJobDao.claim(jobId, workerId)) {
+                return;  // Claimed by another instance or no longer queued
+            }
+            job = compileJobDao.findById(jobId);
+        } catch (Exception e) {
+            log.warn("[COMPILE-JOB] Failed to claim job {}: {}", jobId, e.getMessage());
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        long interval = Math.max(1, heartbeatSeconds);
+        ScheduledFuture<?> heartbeat = heartbeats.scheduleAtFixedRate(() -> heartbeat(jobId), interval, interval, TimeUnit.SECONDS);
+        try {
+            log.info("[COMPILE-JOB] Running job {} for video {} (attempt {})", jobId, job.getVideoId(), job.getAttempts());
+            CompiledVideo compiledVideo = publish(job);
+            if (compileJobDao.markDone(jobId, workerId, compiledVideo.getId(), compiledVideo.getVideoUrl())) {
+                log.info("[COMPILE-JOB] ✅ Job {} done in {}ms", jobId, System.currentTimeMillis() - startTime);
+            } else {
+                log.warn("[COMPILE-JOB] Job {} finished here but is no longer ours; status left as is", jobId);
+            }
+        } catch (Exception e) {
+            log.error("[COMPILE-JOB] ❌ Job {} failed: {}", jobId, e.getMessage(), e);
+            try {
+                compileJobDao.markFailed(jobId, workerId, e.getMessage());
+            } catch (Exception markError) {
+                log.error("[COMPILE-JOB] Failed to mark job {} as failed: {}", jobId, markError.getMessage());
+            }
+        } finally {
+            heartbeat.cancel(false);
+        }
+    }
+
+    private void heartbeat(String jobId) {
+        try {
+            if (!compileJobDao.heartbeat(jobId, workerId)) {
+                log.warn("[COMPILE-JOB] Job {} is no longer running on this worker", jobId);
+            }
+        } catch (Exception e) {
+            log.warn("[COMPILE-JOB] Heartbeat for job {} failed: {}", jobId, e.getMessage());
+        }
+    }
+
+    /**
+     * Compile the submitted video and finish publishing it (records, status sync,
+     * notification, cleanup). Runs on a compile worker thread.
+     */
+    private CompiledVideo publish(CompileJob job) throws Exception {
+        String videoId = job.getVideoId();
+        String assignmentId = job.getAssignmentId();
+        String creatorId = job.getCreatorId();
+        String publisherId = job.getPublisherId();
+        List<String> bgmUrls = job.getBgmUrls();
+        double bgmVolume = job.getBgmVolume() != null ? job.getBgmVolume() : 0.3;
+
+        progress(job, 10, "loading template");
+        TemplateAssignment assignment = templateAssignmentDao.getAssignment(assignmentId);
+        if (assignment == null) {
+            throw new IllegalArgumentException("Assignment not found: " + assignmentId);
+        }
+        ManualTemplate template = assignment.getTemplateSnapshot();
+        if (template == null) {
+            throw new IllegalArgumentException("Template snapshot not found in assignment: " + assignmentId);
+        }
+        log.info("📋 Template has {} scenes for subtitle generation",
+                 template.getScenes() != null ? template.getScenes().size() : 0);
+
+        SubtitleBurningService.SubtitleOptions subtitleOptions = buildSubtitleOptions(job);
+        log.info("Publishing video with subtitle options: color={}, size={}, position={} (alignment={})",
+                 job.getSubtitleColor(), job.getSubtitleSize(), job.getSubtitlePosition(), subtitleOptions.alignment);
+
+        // The compiled video is stored under the job ID: a rerun of a job that already got
+        // that far (worker died after saving) finishes publishing without compiling again
+        CompiledVideo compiledVideo = compiledVideoDao.findById(job.getId());
+        boolean firstRun = compiledVideo == null;
+        if (firstRun) {
+            // Use assignmentId (not templateId) because submittedVideos uses assignmentId in composite key
+            progress(job, 20, "compiling");
+            String compiledVideoUrl;
+            if (bgmUrls != null && !bgmUrls.isEmpty()) {
+                log.info("Publishing video with {} BGM file(s) at volume {}", bgmUrls.size(), bgmVolume);
+                compiledVideoUrl = videoCompilationService.compileVideoWithBGMAndSubtitles(
+                    assignmentId, creatorId, publisherId, bgmUrls, bgmVolume, subtitleOptions);
+            } else {
+                log.info("Publishing video without BGM");
+                compiledVideoUrl = videoCompilationService.compileVideoWithSubtitles(
+                    assignmentId, creatorId, publisherId, subtitleOptions);
+            }
+
+            progress(job, 85, "saving");
+            compiledVideo = new CompiledVideo(assignmentId, creatorId, publisherId);
+            compiledVideo.setId(job.getId());
+            compiledVideo.setVideoUrl(compiledVideoUrl);
+            compiledVideo.setStatus("published");
+            compiledVideo.setCompileJobId(job.getId());
+            compiledVideo.setCompileCacheKey(videoCompilationService.getCompileCacheKey(assignmentId, creatorId));
+            if (!compiledVideoDao.create(compiledVideo)) {
+                // A concurrent run of the same job saved first; publish its result
+                compiledVideo = compiledVideoDao.findById(job.getId());
+                firstRun = false;
+            }
+        }
+        if (!firstRun) {
+            log.info("[COMPILE-JOB] Job {} already produced compiled video {}, finishing publish", job.getId(), compiledVideo.getVideoUrl());
+        }
+        String compiledVideoUrl = compiledVideo.getVideoUrl();
+
+        // Update status to published
+        DocumentReference videoRef = db.collection("submittedVideos").document(videoId);
+        videoRef.update("publishStatus", "published",
+                       "publishedAt", FieldValue.serverTimestamp(),
+                       "publishedBy", publisherId,
+                       "compiledVideoUrl", compiledVideoUrl).get();
+
+        syncManagerSubmission(assignment, videoId);
+        if (firstRun) {
+            notifyCreator(creatorId);
+        }
+
+        progress(job, 95, "cleanup");
+        cleanupAfterPublish(assignmentId, creatorId, bgmUrls);
+
+        return compiledVideo;
+    }
+
+    /**
+     * Map publish request styling to ASS subtitle options
+     */
+    private SubtitleBurningService.SubtitleOptions buildSubtitleOptions(CompileJob job) {
+        SubtitleBurningService.SubtitleOptions subtitleOptions = new SubtitleBurningService.SubtitleOptions();
+        if (job.getSubtitleColor() != null) subtitleOptions.textColor = job.getSubtitleColor();
+        if (job.getSubtitleSize() != null) subtitleOptions.fontSize = job.getSubtitleSize();
+
+        // Map position to alignment
+        // Testing: 2 works for bottom-center, so use 2,5,8 but check if issue is elsewhere
+        String subtitlePosition = job.getSubtitlePosition();
+        if ("top".equalsIgnoreCase(subtitlePosition)) {
+            subtitleOptions.alignment = 8;  // Bottom-center in ASS (7,8,9 = bottom row)
+        } else if ("middle".equalsIgnoreCase(subtitlePosition) || "center".equalsIgnoreCase(subtitlePosition)) {
+            subtitleOptions.alignment = 5;  // Middle-center in ASS (4,5,6 = middle row)
+        } else {
+            subtitleOptions.alignment = 2;  // Default: bottom (Top-center in ASS (1,2,3 = top row) - THIS WORKS!)
+        }
+        return subtitleOptions;
+    }
+
+    private void syncManagerSubmission(TemplateAssignment assignment, String videoId) {
+        try {
+            if (assignment.getPushedBy() != null) {
+                // Resolve actual manager ID (if pushedBy is an employee, use their manager)
+                String managerId = assignment.getPushedBy();
+                try {
+                    managerId = userDao.resolveManagerId(managerId);
+                } catch (Exception ex) {
+                    log.warn("Failed to resolve manager ID: {}", ex.getMessage());
+                }
+                managerSubmissionDao.updateSubmissionStatus(managerId, videoId, "published");
+                log.info("✅ Synced 'published' status to managerSubmissions for: {}", videoId);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to sync published status to managerSubmissions: {}", e.getMessage());
+        }
+    }
+
+    private void notifyCreator(String creatorId) {
+        try {
+            DocumentReference userRef = db.collection("users").document(creatorId);
+            String notifId = UUID.randomUUID().toString();
+            Map<String, Object> notif = new HashMap<>();
+            notif.put("type", "video_published");
+            notif.put("message", "Your video has been published!");
+            notif.put("timestamp", System.currentTimeMillis());
+            notif.put("read", false);
+            userRef.update("notifications." + notifId, notif);
+        } catch (Exception e) {
+            log.warn("Failed to notify creator {}: {}", creatorId, e.getMessage());
+        }
+    }
+
+    private void cleanupAfterPublish(String assignmentId, String creatorId, List<String> bgmUrls) {
+        // BGM DELETION: Clean up uploaded BGM files from OSS after compilation
+        // NOTE: Comment out this block if you want to reuse BGM files in the future
+        // Currently deleting to save storage costs since BGM is embedded in compiled video
+        if (bgmUrls != null && !bgmUrls.isEmpty() && ossStorageService != null) {
+            for (String bgmUrl : bgmUrls) {
+                try {
+                    boolean deleted = ossStorageService.deleteObjectByUrl(bgmUrl);
+                    log.info("[BGM-CLEANUP] Deleted BGM from OSS: {} (success: {})", bgmUrl, deleted);
+                } catch (Exception e) {
+                    log.warn("[BGM-CLEANUP] Failed to delete BGM: {} - {}", bgmUrl, e.getMessage());
+                }
+            }
+        }
+
+        // SCENE VIDEO CLEANUP: Delete individual scene videos after compilation
+        // The compiled video is now the final product, individual scenes are no longer needed
+        try {
+            sceneSubmissionDao.deleteScenesByAssignmentIdAndUserIdWithOssCleanup(assignmentId, creatorId);
+            log.info("[SCENE-CLEANUP] ✅ Cleaned up scene videos after compilation for assignment: {}", assignmentId);
+        } catch (Exception e) {
+            log.warn("[SCENE-CLEANUP] Failed to cleanup scene videos: {} - continuing anyway", e.getMessage());
+        }
+    }
+
+    private void progress(CompileJob job, int progress, String stage) {
+        job.setProgress(progress);
+        job.setStage(stage);
+        try {
+            compileJobDao.updateProgress(job.getId(), progress, stage);
+        } catch (Exception e) {
+            log.warn("[COMPILE-JOB] Failed to update progress for job {}: {}", job.getId(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keyframe images as base64 data URLs for Qwen VL requests, cached in memory.
+ *
+ * One template scene is sent to VL several times (region labeling, guidance, bounding
+ * boxes, every creator comparison), so each image is downloaded and encoded once and
+ * reused. Entries are keyed by OSS object key (URL without signature for other hosts),
+ * evicted LRU past max-bytes / max-entries, and expire after ttl-minutes.
+ *
+ * Images whose longer edge exceeds max-edge-px are downscaled and re-encoded as JPEG
+ * before encoding; VL models resize large inputs anyway, so this mostly saves upload
+ * time and request size.
+ */
+@Service
+public class KeyframeImageCache {
+
+    @Autowired(required = false)
+    private AlibabaOssStorageService storageService;
+
+    @Autowired(required = false)
+    private io.micrometer.core.instrument.MeterRegistry meterRegistry;
+
+    @Value("${ai.image-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${ai.image-cache.max-entries:500}")
+    private int maxEntries;
+
+    @Value("${ai.image-cache.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    @Value("${ai.image-cache.downscale.enabled:true}")
+    private boolean downscaleEnabled;
+
+    @Value("${ai.image-cache.max-edge-px:1280}")
+    private int maxEdgePx;
+
+    @Value("${ai.image-cache.jpeg-quality:0.85}")
+    private float jpegQuality;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+    private long totalBytes; // guarded by entries
+
+    // Access-ordered LRU; guarded by its own monitor
+    private final Map<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    private static class Entry {
+        final String dataUrl;
+        final long expiresAt;
+
+        Entry(String dataUrl, long expiresAt) {
+            this.dataUrl = dataUrl;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (meterRegistry != null) {
+            io.micrometer.core.instrument.FunctionCounter.builder("ai.image_cache.hits", hits, AtomicLong::get)
+                .register(meterRegistry);
+            io.micrometer.core.instrument.FunctionCounter.builder("ai.image_cache.misses", misses, AtomicLong::get)
+                .register(meterRegistry);
+            io.micrometer.core.instrument.FunctionCounter.builder("ai.image_cache.downscale.bytes_saved", bytesSaved, AtomicLong::get)
+                .register(meterRegistry);
+            io.micrometer.core.instrument.Gauge.builder("ai.image_cache.bytes", this, KeyframeImageCache::getTotalBytes)
+                .register(meterRegistry);
+        }
+    }
+
+    /**
+     * data:image/jpeg;base64,... for the image, or the URL itself if it can't be downloaded
+     * (the model then fetches it, as before)
+     */
+    public String toDataUrl(String imageUrl) {
+        if (imageUrl == null || imageUrl.isBlank() || imageUrl.startsWith("data:")) {
+            return imageUrl;
+        }
+        String key = cacheKey(imageUrl);
+        String cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        try {
+            byte[] original = download(imageUrl);
+            byte[] payload = downscaleEnabled ? downscale(original) : original;
+            if (payload.length < original.length) {
+                bytesSaved.addAndGet(original.length - payload.length);
+            }
+            String dataUrl = "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(payload);
+            store(key, dataUrl);
+            return dataUrl;
+        } catch (Exception e) {
+            System.err.println("[IMAGE-CACHE] Could not embed " + key + ": " + e.getMessage());
+            return imageUrl;
+        }
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    public long getTotalBytes() {
+        synchronized (entries) {
+            return totalBytes;
+        }
+    }
+
+    private String lookup(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+                hits.incrementAndGet();
+                return entry.dataUrl;
+            }
+            if (entry != null) {
+                entries.remove(key);
+                totalBytes -= entry.dataUrl.length();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    private void store(String key, String dataUrl) {
+        long size = dataUrl.length(); // base64 is ASCII: one byte per char
+        if (size > maxBytes) {
+            return;
+        }
+        synchronized (entries) {
+            Entry previous = entries.put(key, new Entry(dataUrl, System.currentTimeMillis() + ttlMinutes * 60_000));
+            if (previous != null) {
+                totalBytes -= previous.dataUrl.length();
+            }
+            totalBytes += size;
+            Iterator<Entry> eldest = entries.values().iterator();
+            while ((totalBytes > maxBytes || entries.size() > Math.max(1, maxEntries)) && eldest.hasNext()) {
+                totalBytes -= eldest.next().dataUrl.length();
+                eldest.remove();
+            }
+        }
+    }
+
+    private byte[] download(String imageUrl) throws IOException {
+        if (storageService != null && storageService.getObjectKey(imageUrl) != null) {
+            return storageService.downloadToByteArray(imageUrl);
+        }
+        java.net.HttpURLConnection conn = (java.net.HttpURLConnection) new java.net.URL(imageUrl).openConnection();
+        conn.setRequestMethod("GET");
+        conn.setConnectTimeout(5000);
+        conn.setReadTimeout(15000);
+        try (InputStream in = conn.getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Scale to max-edge-px on the longer side and re-encode as JPEG; images that are
+     * already small enough (or unreadable) are returned unchanged
+     */
+    private byte[] downscale(byte[] original) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(original));
+        if (image == null) {
+            return original;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int longEdge = Math.max(width, height);
+        if (maxEdgePx <= 0 || longEdge <= maxEdgePx) {
+            return original;
+        }
+
+        double scale = (double) maxEdgePx / longEdge;
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            g.dispose();
+        }
+
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            return original;
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(Math.max(0.1f, Math.min(1f, jpegQuality)));
+            writer.write(null, new IIOImage(scaled, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        byte[] result = out.toByteArray();
+        return result.length < original.length ? result : original;
+    }
+
+    private String cacheKey(String imageUrl) {
+        String objectKey = storageService != null ? storageService.getObjectKey(imageUrl) : null;
+        if (objectKey != null) {
+            return objectKey;
+        }
+        int q = imageUrl.indexOf('?');
+        return q >= 0 ? imageUrl.substring(0, q) : imageUrl;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.demo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ffprobe wrapper with an in-memory duration cache.
+ *
+ * Each asset (scene video, BGM track) is probed once and remembered across publishes.
+ * Cache keys are the OSS object URL without signature query parameters; when a local
+ * copy is probed its byte length is appended so a re-uploaded object under the same
+ * key is never served a stale duration.
+ */
+@Service
+public class MediaProbeService {
+
+    @Value("${ffprobe.path:ffprobe}")
+    private String ffprobePath;
+
+    @Value("${media.probe.cache.max-entries:2000}")
+    private int maxEntries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // Access-ordered LRU; guarded by its own monitor
+    private final Map<String, Double> durationCache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Double> eldest) {
+            return size() > Math.max(1, maxEntries);
+        }
+    };
+
+    /**
+     * Duration of a downloaded copy of an OSS object, cached by object key + file size
+     */
+    public double getDurationSeconds(String objectUrl, java.io.File localFile) throws Exception {
+        String key = cacheKey(objectUrl) + "@" + localFile.length();
+        Double cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+        double duration = probeDurationSeconds(localFile.getAbsolutePath());
+        store(key, duration);
+        return duration;
+    }
+
+    /**
+     * Duration of an OSS object probed over a (signed) URL, cached by object key
+     */
+    public double getDurationSeconds(String objectUrl, String probeUrl) throws Exception {
+        String key = cacheKey(objectUrl);
+        Double cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+        double duration = probeDurationSeconds(probeUrl);
+        store(key, duration);
+        return duration;
+    }
+
+    /**
+     * Uncached probe (for objects that are overwritten in place, e.g. compiled outputs)
+     */
+    public double probeDurationSeconds(String target) throws Exception {
+        ProcessBuilder pb = new ProcessBuilder(
+            ffprobePath, "-v", "error", "-show_entries", "format=duration",
+            "-of", "default=noprint_wrappers=1:nokey=1", target
+        );
+        Process proc = pb.start();
+        String durationStr;
+        try (java.io.BufferedReader reader = new java.io.BufferedReader(
+                new java.io.InputStreamReader(proc.getInputStream()))) {
+            durationStr = reader.readLine();
+        }
+        proc.waitFor();
+        if (durationStr == null || durationStr.isBlank()) {
+            throw new RuntimeException("ffprobe returned no duration for: " + target);
+        }
+        return Double.parseDouble(durationStr.trim());
+    }
+
+    /**
+     * Stream fingerprint (codec, resolution, fps, rotation, audio layout) of a local file or URL.
+     * Uncached: callers store the result on the owning document.
+     */
+    public com.example.demo.model.VideoFingerprint probeFingerprint(String target) throws Exception {
+        ProcessBuilder pb = new ProcessBuilder(
+            ffprobePath, "-v", "error", "-show_streams", "-show_format", "-of", "json", target
+        );
+        Process proc = pb.start();
+        byte[] json;
+        try (java.io.InputStream in = proc.getInputStream()) {
+            json = in.readAllBytes();
+        }
+        int code = proc.waitFor();
+        if (code != 0 || json.length == 0) {
+            throw new RuntimeException("ffprobe failed (code=" + code + ") for: " + target);
+        }
+
+        com.fasterxml.jackson.databind.JsonNode root = new com.fasterxml.jackson.databind.ObjectMapper().readTree(json);
+        com.example.demo.model.VideoFingerprint fp = new com.example.demo.model.VideoFingerprint();
+        boolean hasVideo = false;
+        for (com.fasterxml.jackson.databind.JsonNode stream : root.path("streams")) {
+            String type = stream.path("codec_type").asText();
+            if ("video".equals(type) && !hasVideo && stream.path("disposition").path("attached_pic").asInt(0) == 0) {
+                hasVideo = true;
+                fp.setVideoCodec(stream.path("codec_name").asText(null));
+                fp.setProfile(stream.path("profile").asText(null));
+                fp.setPixelFormat(stream.path("pix_fmt").asText(null));
+                fp.setWidth(stream.path("width").asInt());
+                fp.setHeight(stream.path("height").asInt());
+                fp.setFrameRate(stream.path("r_frame_rate").asText(null));
+                fp.setRotation(readRotation(stream));
+            } else if ("audio".equals(type) && !fp.isHasAudio()) {
+                fp.setHasAudio(true);
+                fp.setAudioCodec(stream.path("codec_name").asText(null));
+                fp.setAudioSampleRate(stream.path("sample_rate").asInt());
+                fp.setAudioChannels(stream.path("channels").asInt());
+            }
+        }
+        if (!hasVideo) {
+            throw new RuntimeException("ffprobe found no video stream in: " + target);
+        }
+        String duration = root.path("format").path("duration").asText(null);
+        if (duration != null && !duration.isBlank()) {
+            fp.setDuration(Double.parseDouble(duration));
+        }
+        return fp;
+    }
+
+    /**
+     * Rotation from the display matrix side data (newer ffmpeg) or the legacy rotate tag,
+     * normalized to 0/90/180/270
+     */
+    private static int readRotation(com.fasterxml.jackson.databind.JsonNode stream) {
+        int rotation = stream.path("tags").path("rotate").asInt(0);
+        for (com.fasterxml.jackson.databind.JsonNode sideData : stream.path("side_data_list")) {
+            if (sideData.has("rotation")) {
+                // Display matrix rotation is counter-clockwise; rotate tag is clockwise
+                rotation = -sideData.path("rotation").asInt();
+            }
+        }
+        return ((rotation % 360) + 360) % 360;
+    }
+
+    public void invalidate(String objectUrl) {
+        String prefix = cacheKey(objectUrl);
+        synchronized (durationCache) {
+            durationCache.keySet().removeIf(k -> k.equals(prefix) || k.startsWith(prefix + "@"));
+        }
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    public int size() {
+        synchronized (durationCache) {
+            return durationCache.size();
+        }
+    }
+
+    private Double lookup(String key) {
+        Double cached;
+        synchronized (durationCache) {
+            cached = durationCache.get(key);
+        }
+        if (cached != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return cached;
+    }
+
+    private void store(String key, double duration) {
+        synchronized (durationCache) {
+            durationCache.put(key, duration);
+        }
+    }
+
+    private static String cacheKey(String objectUrl) {
+        int q = objectUrl.indexOf('?');
+        return q >= 0 ? objectUrl.substring(0, q) : objectUrl;
+    }
+}
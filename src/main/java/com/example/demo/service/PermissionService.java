@@ -3,7 +3,6 @@ package com.example.demo.service;
 import com.example.demo.constants.UserRole;
 import com.example.demo.dao.UserDao;
 import com.example.demo.model.ManualTemplate;
-import com.example.demo.model.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,6 +13,9 @@ import java.time.temporal.ChronoUnit;
 
 /**
  * Permission service for role-based access control (RBAC)
+ *
+ * Roles come from UserDao.findPrincipal, which is cached, so checks on a request path
+ * normally cost no Firestore read.
  */
 @Service
 public class PermissionService {
@@ -31,13 +33,13 @@ public class PermissionService {
      * - Employees can only delete their own templates within 2 days
      */
     public boolean canDeleteTemplate(String userId, ManualTemplate template) {
-        User user = userDao.findById(userId);
+        UserDao.UserPrincipal user = userDao.findPrincipal(userId);
         if (user == null) {
             log.warn("User not found: {}", userId);
             return false;
         }
         
-        String role = user.getRole();
+        String role = user.role;
         
         // Content managers can delete any template
         if (UserRole.isContentManager(role)) {
@@ -79,12 +81,12 @@ public class PermissionService {
      * Get reason why user cannot delete template (for UI display)
      */
     public String getDeleteDeniedReason(String userId, ManualTemplate template) {
-        User user = userDao.findById(userId);
+        UserDao.UserPrincipal user = userDao.findPrincipal(userId);
         if (user == null) {
             return "用户不存在";
         }
         
-        String role = user.getRole();
+        String role = user.role;
         
         if (UserRole.isEmployee(role)) {
             if (!userId.equals(template.getUserId())) {
@@ -114,13 +116,13 @@ public class PermissionService {
      * - Employees cannot delete folders
      */
     public boolean canDeleteFolder(String userId) {
-        User user = userDao.findById(userId);
+        UserDao.UserPrincipal user = userDao.findPrincipal(userId);
         if (user == null) {
             log.warn("User not found: {}", userId);
             return false;
         }
         
-        String role = user.getRole();
+        String role = user.role;
         boolean canDelete = UserRole.isContentManager(role);
         
         log.info("User {} {} delete folders (role: {})", 
@@ -136,12 +138,12 @@ public class PermissionService {
      * - Only content managers can manage groups
      */
     public boolean canManageGroups(String userId) {
-        User user = userDao.findById(userId);
+        UserDao.UserPrincipal user = userDao.findPrincipal(userId);
         if (user == null) {
             return false;
         }
         
-        String role = user.getRole();
+        String role = user.role;
         boolean canManage = UserRole.isContentManager(role);
         
         log.info("User {} {} manage groups (role: {})", 
@@ -157,12 +159,12 @@ public class PermissionService {
      * - Only content managers can create employee accounts
      */
     public boolean canCreateEmployees(String userId) {
-        User user = userDao.findById(userId);
+        UserDao.UserPrincipal user = userDao.findPrincipal(userId);
         if (user == null) {
             return false;
         }
         
-        String role = user.getRole();
+        String role = user.role;
         boolean canCreate = UserRole.isContentManager(role);
         
         log.info("User {} {} create employees (role: {})", 
@@ -178,12 +180,12 @@ public class PermissionService {
      * - Both content managers and employees can create templates
      */
     public boolean canCreateTemplates(String userId) {
-        User user = userDao.findById(userId);
+        UserDao.UserPrincipal user = userDao.findPrincipal(userId);
         if (user == null) {
             return false;
         }
         
-        String role = user.getRole();
+        String role = user.role;
         return UserRole.isContentManager(role) || UserRole.isEmployee(role);
     }
     
@@ -194,12 +196,12 @@ public class PermissionService {
      * - Both content managers and employees can push templates
      */
     public boolean canPushTemplates(String userId) {
-        User user = userDao.findById(userId);
+        UserDao.UserPrincipal user = userDao.findPrincipal(userId);
         if (user == null) {
             return false;
         }
         
-        String role = user.getRole();
+        String role = user.role;
         return UserRole.isContentManager(role) || UserRole.isEmployee(role);
     }
     
@@ -207,12 +209,12 @@ public class PermissionService {
      * Check if user is content manager
      */
     public boolean isContentManager(String userId) {
-        User user = userDao.findById(userId);
+        UserDao.UserPrincipal user = userDao.findPrincipal(userId);
         if (user == null) {
             return false;
         }
         
-        String role = user.getRole();
+        String role = user.role;
         return UserRole.isContentManager(role);
     }
     
@@ -220,11 +222,11 @@ public class PermissionService {
      * Check if user is employee
      */
     public boolean isEmployee(String userId) {
-        User user = userDao.findById(userId);
+        UserDao.UserPrincipal user = userDao.findPrincipal(userId);
         if (user == null) {
             return false;
         }
         
-        return UserRole.isEmployee(user.getRole());
+        return UserRole.isEmployee(user.role);
     }
 }
@@ -1,13 +1,12 @@
 package com.example.demo.service;
 
+import com.example.demo.ai.services.QwenChatClient;
 import com.example.demo.ai.subtitle.SubtitleSegment;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.core.type.TypeReference;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -23,25 +22,14 @@ public class ScriptLineSegmentationService {
     
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ScriptLineSegmentationService.class);
     
-    private final RestTemplate restTemplate;
+    private final QwenChatClient qwenChatClient;
     private final ObjectMapper objectMapper;
     
-    @Value("${AI_QWEN_ENDPOINT:${qwen.api.base:}}")
-    private String qwenApiBase;
-    
-    @Value("${AI_QWEN_API_KEY:${qwen.api.key:}}")
-    private String qwenApiKey;
-    
     @Value("${AI_QWEN_MODEL:${qwen.model:qwen-plus}}")
     private String qwenModel;
     
-    public ScriptLineSegmentationService() {
-        // Configure RestTemplate with timeouts (same as QwenVLPlusLabeler)
-        org.springframework.http.client.SimpleClientHttpRequestFactory factory = 
-            new org.springframework.http.client.SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(10000);  // 10 seconds connect timeout
-        factory.setReadTimeout(60000);     // 60 seconds read timeout
-        this.restTemplate = new RestTemplate(factory);
+    public ScriptLineSegmentationService(QwenChatClient qwenChatClient) {
+        this.qwenChatClient = qwenChatClient;
         this.objectMapper = new ObjectMapper();
     }
     
@@ -119,8 +107,8 @@ public class ScriptLineSegmentationService {
     private List<Map<String, Object>> callQwenForSegmentation(String scriptLine, int videoDurationSeconds) {
         try {
             // Check if Qwen is configured
-            if (qwenApiKey == null || qwenApiKey.isBlank() || qwenApiBase == null || qwenApiBase.isBlank()) {
-                log.warn("Qwen API not configured (apiKey or endpoint missing), skipping AI segmentation");
+            if (!qwenChatClient.isConfigured()) {
+                log.warn("Qwen API not configured (apiKey missing), skipping AI segmentation");
                 return null;
             }
             
@@ -172,41 +160,33 @@ public class ScriptLineSegmentationService {
             request.put("messages", messages);
             
             // Make API call
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + qwenApiKey);
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
-            
-            String endpoint = normalizeChatEndpoint(qwenApiBase);
-            log.info("Calling Qwen API at: {}", endpoint);
-            
-            ResponseEntity<String> response = restTemplate.exchange(
-                endpoint,
-                HttpMethod.POST,
-                entity,
-                String.class
-            );
+            log.info("Calling Qwen API at: {}", qwenChatClient.getEndpoint());
+            QwenChatClient.ChatResponse response = qwenChatClient.chat("scriptSegmentation", request, true);
             
-            if (!response.getStatusCode().is2xxSuccessful()) {
-                log.error("Qwen API returned non-success status: {}", response.getStatusCodeValue());
+            if (!response.isSuccessful()) {
+                log.error("Qwen API returned non-success status: {}", response.status);
                 return null;
             }
             
-            String responseBody = response.getBody();
-            if (responseBody == null || responseBody.isBlank()) {
+            if (response.body == null || response.body.isBlank()) {
                 log.error("Qwen API returned empty response");
                 return null;
             }
             
-            // Extract content from response
-            String contentStr = extractContent(responseBody);
+            String contentStr = response.content;
             if (contentStr == null || contentStr.isBlank()) {
                 log.error("Failed to extract content from Qwen response");
                 return null;
             }
             
             // Parse JSON response
-            Map<String, Object> result = objectMapper.readValue(contentStr, new TypeReference<Map<String, Object>>() {});
+            Map<String, Object> result;
+            try {
+                result = objectMapper.readValue(contentStr, new TypeReference<Map<String, Object>>() {});
+            } catch (Exception parseEx) {
+                qwenChatClient.evictCached(request);
+                throw parseEx;
+            }
             
             @SuppressWarnings("unchecked")
             List<Map<String, Object>> segments = (List<Map<String, Object>>) result.get("segments");
@@ -293,69 +273,6 @@ public class ScriptLineSegmentationService {
         return segments;
     }
     
-    /**
-     * Normalize Qwen API endpoint to chat completion format
-     */
-    private String normalizeChatEndpoint(String base) {
-        if (base == null || base.isBlank()) {
-            return "https://dashscope.aliyuncs.com/compatible-mode/v1/chat/completions";
-        }
-        base = base.trim();
-        if (base.endsWith("/chat/completions")) {
-            return base;
-        }
-        if (base.endsWith("/")) {
-            return base + "chat/completions";
-        }
-        return base + "/chat/completions";
-    }
-    
-    /**
-     * Extract content from Qwen API response and strip markdown formatting
-     */
-    private String extractContent(String responseBody) {
-        try {
-            Map<String, Object> response = objectMapper.readValue(responseBody, new TypeReference<Map<String, Object>>() {});
-            
-            @SuppressWarnings("unchecked")
-            List<Map<String, Object>> choices = (List<Map<String, Object>>) response.get("choices");
-            
-            if (choices == null || choices.isEmpty()) {
-                return null;
-            }
-            
-            @SuppressWarnings("unchecked")
-            Map<String, Object> message = (Map<String, Object>) choices.get(0).get("message");
-            
-            if (message == null) {
-                return null;
-            }
-            
-            Object content = message.get("content");
-            if (content == null) {
-                return null;
-            }
-            
-            String contentStr = content.toString().trim();
-            
-            // Strip markdown code blocks if present (```json ... ``` or ``` ... ```)
-            if (contentStr.startsWith("```")) {
-                // Remove opening ```json or ```
-                contentStr = contentStr.replaceFirst("^```(?:json)?\\s*", "");
-                // Remove closing ```
-                contentStr = contentStr.replaceFirst("```\\s*$", "");
-                contentStr = contentStr.trim();
-                log.debug("Stripped markdown code blocks from Qwen response");
-            }
-            
-            return contentStr;
-            
-        } catch (Exception e) {
-            log.error("Failed to extract content from response: {}", e.getMessage());
-            return null;
-        }
-    }
-    
     /**
      * Split text into segments based on punctuation and max length
      * Creates smaller segments suitable for KTV-style display
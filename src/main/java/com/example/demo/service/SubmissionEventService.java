@@ -0,0 +1,309 @@
+package com.example.demo.service;
+
+import com.example.demo.dao.SubmittedVideoDao;
+import com.example.demo.dao.TemplateAssignmentDao;
+import com.example.demo.dao.UserDao;
+import com.example.demo.model.SceneSubmission;
+import com.example.demo.model.TemplateAssignment;
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.ListenerRegistration;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-Sent Events for scene status and progress changes.
+ *
+ * Clients subscribe per composite video (creator: userId_assignmentId) or per manager,
+ * instead of polling the submitted-video and scene endpoints. Events are published
+ * in-process by the upload, AI comparison and review paths. With
+ * sse.firestore-listeners.enabled, each topic with subscribers also holds a Firestore
+ * snapshot listener so changes written by other instances reach them too.
+ *
+ * Every connection gets a comment heartbeat so idle proxies don't close it, and the number
+ * of open connections per instance is capped.
+ */
+@Service
+public class SubmissionEventService {
+
+    private static final Logger log = LoggerFactory.getLogger(SubmissionEventService.class);
+
+    @Autowired
+    private Firestore db;
+
+    @Autowired
+    private TemplateAssignmentDao templateAssignmentDao;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired(required = false)
+    private io.micrometer.core.instrument.MeterRegistry meterRegistry;
+
+    @Value("${sse.max-connections:500}")
+    private int maxConnections;
+
+    // Clients reconnect after this (EventSource does so automatically)
+    @Value("${sse.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${sse.firestore-listeners.enabled:false}")
+    private boolean firestoreListenersEnabled;
+
+    private final Map<String, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final Map<String, ListenerRegistration> listeners = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        if (meterRegistry != null) {
+            io.micrometer.core.instrument.Gauge.builder("sse.connections", connections, AtomicInteger::get)
+                .register(meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        listeners.values().forEach(ListenerRegistration::remove);
+        listeners.clear();
+        subscribers.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+        subscribers.clear();
+    }
+
+    /**
+     * Subscribe to one composite video. The current progress is sent straight away.
+     * @return null when the connection cap is reached
+     */
+    public SseEmitter subscribeToVideo(String compositeVideoId) {
+        SseEmitter emitter = register(videoTopic(compositeVideoId));
+        if (emitter != null) {
+            try {
+                DocumentSnapshot doc = db.collection("submittedVideos").document(compositeVideoId).get().get();
+                send(emitter, "progress", doc.exists() ? progressEvent(doc) : Map.of("compositeVideoId", compositeVideoId));
+            } catch (Exception e) {
+                log.warn("Failed to send initial progress for {}: {}", compositeVideoId, e.getMessage());
+            }
+        }
+        return emitter;
+    }
+
+    /**
+     * Subscribe to every submission of a manager (employees are mapped to their manager)
+     * @return null when the connection cap is reached
+     */
+    public SseEmitter subscribeToManager(String managerId) {
+        return register(managerTopic(userDao.resolveManagerId(managerId)));
+    }
+
+    /**
+     * A scene was uploaded, scored or reviewed
+     * @param progress counters after the change, or null if the change didn't move them
+     */
+    public void publishSceneUpdate(String assignmentId, String compositeVideoId, SceneSubmission scene,
+                                   SubmittedVideoDao.SceneProgressUpdate progress) {
+        String videoTopic = videoTopic(compositeVideoId);
+        boolean hasVideoSubscribers = subscribers.containsKey(videoTopic);
+        boolean hasManagerSubscribers = subscribers.keySet().stream().anyMatch(t -> t.startsWith("manager:"));
+        if (!hasVideoSubscribers && !hasManagerSubscribers) {
+            return;
+        }
+
+        Map<String, Object> event = new HashMap<>();
+        event.put("compositeVideoId", compositeVideoId);
+        event.put("assignmentId", assignmentId);
+        event.put("sceneId", scene.getId());
+        event.put("sceneNumber", scene.getSceneNumber());
+        event.put("status", scene.getStatus());
+        event.put("similarityScore", scene.getSimilarityScore());
+        event.put("aiSuggestions", scene.getAiSuggestions());
+        if (progress != null) {
+            Map<String, Object> progressData = new HashMap<>();
+            progressData.put("approved", progress.approved);
+            progressData.put("pending", progress.pending);
+            progressData.put("totalScenes", progress.totalScenes);
+            progressData.put("allApproved", progress.allApproved);
+            event.put("progress", progressData);
+        }
+
+        broadcast(videoTopic, "scene", event);
+        if (hasManagerSubscribers) {
+            String managerId = resolveManagerForAssignment(assignmentId);
+            if (managerId != null) {
+                broadcast(managerTopic(managerId), "scene", event);
+            }
+        }
+    }
+
+    /**
+     * Comment line on every open connection; also drops connections that have gone away
+     */
+    @Scheduled(fixedDelayString = "${sse.heartbeat-interval-ms:15000}", initialDelay = 15000)
+    public void heartbeat() {
+        subscribers.forEach((topic, emitters) -> {
+            for (SseEmitter emitter : emitters) {
+                try {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                } catch (Exception e) {
+                    remove(topic, emitter);
+                }
+            }
+        });
+    }
+
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    private SseEmitter register(String topic) {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            log.warn("SSE connection limit ({}) reached, rejecting subscription to {}", maxConnections, topic);
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        subscribers.compute(topic, (t, emitters) -> {
+            if (emitters == null) {
+                emitters = new CopyOnWriteArrayList<>();
+                startListener(t);
+            }
+            emitters.add(emitter);
+            return emitters;
+        });
+        emitter.onCompletion(() -> remove(topic, emitter));
+        emitter.onTimeout(() -> remove(topic, emitter));
+        emitter.onError(e -> remove(topic, emitter));
+        return emitter;
+    }
+
+    private void remove(String topic, SseEmitter emitter) {
+        boolean[] removed = new boolean[1];
+        subscribers.computeIfPresent(topic, (t, emitters) -> {
+            // Completion, timeout and error callbacks can all fire for one emitter
+            removed[0] = emitters.remove(emitter);
+            if (!emitters.isEmpty()) {
+                return emitters;
+            }
+            ListenerRegistration listener = listeners.remove(t);
+            if (listener != null) {
+                listener.remove();
+            }
+            return null;
+        });
+        if (removed[0]) {
+            connections.decrementAndGet();
+        }
+    }
+
+    private void broadcast(String topic, String eventName, Map<String, Object> data) {
+        List<SseEmitter> emitters = subscribers.get(topic);
+        if (emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            if (!send(emitter, eventName, data)) {
+                remove(topic, emitter);
+            }
+        }
+    }
+
+    private boolean send(SseEmitter emitter, String eventName, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(eventName).data(data));
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Firestore listener for a topic's first subscriber (listener mode only)
+     */
+    private void startListener(String topic) {
+        if (!firestoreListenersEnabled) {
+            return;
+        }
+        ListenerRegistration registration;
+        if (topic.startsWith("video:")) {
+            String compositeVideoId = topic.substring("video:".length());
+            registration = db.collection("submittedVideos").document(compositeVideoId)
+                .addSnapshotListener((snapshot, error) -> {
+                    if (error == null && snapshot != null && snapshot.exists()) {
+                        broadcast(topic, "progress", progressEvent(snapshot));
+                    }
+                });
+        } else {
+            String managerId = topic.substring("manager:".length());
+            registration = db.collection("managerSubmissions").document(managerId).collection("submissions")
+                .whereGreaterThan("updatedAt", com.google.cloud.Timestamp.now())
+                .addSnapshotListener((snapshot, error) -> {
+                    if (error != null || snapshot == null) {
+                        return;
+                    }
+                    for (DocumentChange change : snapshot.getDocumentChanges()) {
+                        if (change.getType() != DocumentChange.Type.REMOVED) {
+                            Map<String, Object> event = new HashMap<>();
+                            event.put("submissionId", change.getDocument().getId());
+                            event.put("assignmentId", change.getDocument().getString("assignmentId"));
+                            event.put("publishStatus", change.getDocument().getString("publishStatus"));
+                            broadcast(topic, "submission", event);
+                        }
+                    }
+                });
+        }
+        listeners.put(topic, registration);
+    }
+
+    private Map<String, Object> progressEvent(DocumentSnapshot doc) {
+        Map<String, Object> event = new HashMap<>();
+        event.put("compositeVideoId", doc.getId());
+        event.put("publishStatus", doc.getString("publishStatus"));
+        event.put("progress", doc.get("progress"));
+        Map<String, Object> sceneStatuses = new HashMap<>();
+        Object scenes = doc.get("scenes");
+        if (scenes instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) scenes).entrySet()) {
+                if (entry.getValue() instanceof Map) {
+                    sceneStatuses.put(String.valueOf(entry.getKey()), ((Map<?, ?>) entry.getValue()).get("status"));
+                }
+            }
+        }
+        event.put("sceneStatuses", sceneStatuses);
+        return event;
+    }
+
+    private String resolveManagerForAssignment(String assignmentId) {
+        try {
+            TemplateAssignment assignment = templateAssignmentDao.getAssignment(assignmentId);
+            if (assignment == null || assignment.getPushedBy() == null) {
+                return null;
+            }
+            return userDao.resolveManagerId(assignment.getPushedBy());
+        } catch (Exception e) {
+            log.warn("Failed to resolve manager for assignment {}: {}", assignmentId, e.getMessage());
+            return null;
+        }
+    }
+
+    private static String videoTopic(String compositeVideoId) {
+        return "video:" + compositeVideoId;
+    }
+
+    private static String managerTopic(String managerId) {
+        return "manager:" + managerId;
+    }
+}
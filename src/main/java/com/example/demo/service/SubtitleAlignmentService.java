@@ -1,17 +1,15 @@
 package com.example.demo.service;
 
+import com.example.demo.ai.services.QwenChatClient;
 import com.example.demo.ai.subtitle.ASRSubtitleExtractor;
 import com.example.demo.ai.subtitle.SubtitleSegment;
 import com.example.demo.model.Scene;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -42,24 +40,14 @@ public class SubtitleAlignmentService {
     @Autowired
     private AlibabaOssStorageService ossStorageService;
     
-    private final RestTemplate restTemplate;
+    private final QwenChatClient qwenChatClient;
     private final ObjectMapper objectMapper;
     
-    @Value("${AI_QWEN_ENDPOINT:${qwen.api.base:}}")
-    private String qwenApiBase;
-    
-    @Value("${AI_QWEN_API_KEY:${qwen.api.key:}}")
-    private String qwenApiKey;
-    
     @Value("${AI_QWEN_MODEL:${qwen.model:qwen-plus}}")
     private String qwenModel;
     
-    public SubtitleAlignmentService() {
-        org.springframework.http.client.SimpleClientHttpRequestFactory factory = 
-            new org.springframework.http.client.SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(10000);
-        factory.setReadTimeout(60000);
-        this.restTemplate = new RestTemplate(factory);
+    public SubtitleAlignmentService(QwenChatClient qwenChatClient) {
+        this.qwenChatClient = qwenChatClient;
         this.objectMapper = new ObjectMapper();
     }
     
@@ -169,7 +157,7 @@ public class SubtitleAlignmentService {
      * Call Qwen API for text alignment
      */
     private String callQwenAPI(String prompt) throws Exception {
-        if (qwenApiKey == null || qwenApiKey.isBlank()) {
+        if (!qwenChatClient.isConfigured()) {
             throw new IllegalStateException("Qwen API key not configured");
         }
         
@@ -190,27 +178,14 @@ public class SubtitleAlignmentService {
         messages.add(message);
         request.put("messages", messages);
         
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("Authorization", "Bearer " + qwenApiKey);
-        
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
-        
-        String endpoint = normalizeChatEndpoint(qwenApiBase);
-        log.info("Calling Qwen API at: {}", endpoint);
+        log.info("Calling Qwen API at: {}", qwenChatClient.getEndpoint());
+        QwenChatClient.ChatResponse response = qwenChatClient.chat("subtitleAlignment", request);
         
-        ResponseEntity<String> response = restTemplate.exchange(
-            endpoint,
-            HttpMethod.POST,
-            entity,
-            String.class
-        );
-        
-        if (!response.getStatusCode().is2xxSuccessful()) {
-            throw new RuntimeException("Qwen API returned: " + response.getStatusCodeValue());
+        if (!response.isSuccessful()) {
+            throw new RuntimeException("Qwen API returned: " + response.status);
         }
         
-        return extractContent(response.getBody());
+        return response.content;
     }
     
     /**
@@ -299,51 +274,4 @@ public class SubtitleAlignmentService {
         
         return segments;
     }
-    
-    /**
-     * Normalize Qwen API endpoint
-     */
-    private String normalizeChatEndpoint(String base) {
-        if (base == null || base.isBlank()) {
-            return "https://dashscope.aliyuncs.com/compatible-mode/v1/chat/completions";
-        }
-        base = base.trim();
-        if (base.endsWith("/chat/completions")) {
-            return base;
-        }
-        if (base.endsWith("/")) {
-            return base + "chat/completions";
-        }
-        return base + "/chat/completions";
-    }
-    
-    /**
-     * Extract content from Qwen API response
-     */
-    private String extractContent(String responseBody) {
-        try {
-            Map<String, Object> response = objectMapper.readValue(responseBody, new TypeReference<Map<String, Object>>() {});
-            
-            @SuppressWarnings("unchecked")
-            List<Map<String, Object>> choices = (List<Map<String, Object>>) response.get("choices");
-            
-            if (choices == null || choices.isEmpty()) {
-                return null;
-            }
-            
-            @SuppressWarnings("unchecked")
-            Map<String, Object> message = (Map<String, Object>) choices.get(0).get("message");
-            
-            if (message == null) {
-                return null;
-            }
-            
-            Object content = message.get("content");
-            return content != null ? content.toString().trim() : null;
-            
-        } catch (Exception e) {
-            log.error("Failed to extract content: {}", e.getMessage());
-            return null;
-        }
-    }
 }
@@ -1,25 +1,49 @@
 package com.example.demo.service;
 
+import com.example.demo.dao.CompileCacheDao;
 import com.example.demo.dao.TemplateDao;
 import com.example.demo.dao.SceneSubmissionDao;
+import com.example.demo.dao.SubmittedVideoDao;
 import com.example.demo.dao.VideoDao;
+import com.example.demo.model.CompileCacheEntry;
 import com.example.demo.model.ManualTemplate;
 import com.example.demo.model.Scene;
 import com.example.demo.model.SceneSubmission;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Template cascade deletion.
+ *
+ * Runs in three phases: collect every asset URL and document the template owns, delete all
+ * storage objects with batched DeleteObjects requests, then delete the Firestore documents
+ * with BulkWriter (scene submissions, example videos, compile cache entries and
+ * assignments in parallel). The template document goes last, so a deletion that fails
+ * part-way can be re-run and picks up whatever is left. If any storage object could not be
+ * deleted, no document is touched: the documents are the only record of those object URLs.
+ */
 @Service
 public class TemplateCascadeDeletionService {
 
     @Autowired private TemplateDao templateDao;
     @Autowired private SceneSubmissionDao sceneSubmissionDao;
     @Autowired private VideoDao videoDao;
+    @Autowired private SubmittedVideoDao submittedVideoDao;
+    @Autowired private CompileCacheDao compileCacheDao;
     @Autowired(required = false) private com.example.demo.service.AlibabaOssStorageService storageService;
     @Autowired(required = false) private com.example.demo.dao.TemplateAssignmentDao templateAssignmentDao;
 
@@ -30,107 +54,208 @@ public class TemplateCascadeDeletionService {
     @Value("${deletion.hardDelete.storage.enabled:true}")
     private boolean hardDeleteStorage;
 
-    public void deleteTemplateAssetsAndDocs(String templateId) throws Exception {
+    // Blocking Firestore deletes run here rather than on the common fork-join pool
+    private ExecutorService deletionExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        deletionExecutor = Executors.newFixedThreadPool(3, r -> {
+            Thread t = new Thread(r, "cascade-delete-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (deletionExecutor != null) {
+            deletionExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Storage deletion was partial; the template and its documents were left in place so
+     * the deletion can be re-run
+     */
+    public static class IncompleteDeletionException extends IllegalStateException {
+        public IncompleteDeletionException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * What a cascade deletion removed
+     */
+    public static class DeletionReport {
+        public final String templateId;
+        public final int objectsRequested;
+        public final int objectsDeleted;
+        public final int sceneSubmissionsDeleted;
+        public final int exampleVideosDeleted;
+        public final long elapsedMs;
+
+        public DeletionReport(String templateId, int objectsRequested, int objectsDeleted,
+                              int sceneSubmissionsDeleted, int exampleVideosDeleted, long elapsedMs) {
+            this.templateId = templateId;
+            this.objectsRequested = objectsRequested;
+            this.objectsDeleted = objectsDeleted;
+            this.sceneSubmissionsDeleted = sceneSubmissionsDeleted;
+            this.exampleVideosDeleted = exampleVideosDeleted;
+            this.elapsedMs = elapsedMs;
+        }
+
+        @Override
+        public String toString() {
+            return "template " + templateId + ": storage " + objectsDeleted + "/" + objectsRequested
+                + " objects, " + sceneSubmissionsDeleted + " scene submissions, "
+                + exampleVideosDeleted + " example videos in " + elapsedMs + "ms";
+        }
+    }
+
+    public DeletionReport deleteTemplateAssetsAndDocs(String templateId) throws Exception {
+        long start = System.currentTimeMillis();
         if (!cascadeEnabled) {
             // Fallback to legacy: just delete template doc
             boolean ok = templateDao.deleteTemplate(templateId);
             if (!ok) throw new NoSuchElementException("Template not found: " + templateId);
-            return;
+            return new DeletionReport(templateId, 0, 0, 0, 0, System.currentTimeMillis() - start);
         }
 
         ManualTemplate tpl = templateDao.getTemplate(templateId);
         if (tpl == null) throw new NoSuchElementException("Template not found: " + templateId);
 
-        // 1) Storage first
-        if (hardDeleteStorage && storageService != null) {
-            // 1a) Template-level example video (AI templates only)
-            try {
-                String videoId = tpl.getVideoId();
-                if (videoId != null && !videoId.isBlank()) {
-                    var video = videoDao.getVideoById(videoId);
-                    if (video != null) {
-                        storageService.deleteObjectByUrl(video.getUrl());
-                        storageService.deleteObjectByUrl(video.getThumbnailUrl());
-                        try {
-                            boolean removed = videoDao.deleteVideoById(videoId);
-                            if (!removed) System.err.println("[CASCADE] Template example video doc not found or not removed: " + videoId);
-                        } catch (Exception ignore) {}
-                    }
+        // 1) Collect everything the template owns
+        // Example videos: the template-level one (AI templates) and one per scene (manual templates)
+        Set<String> exampleVideoIds = new LinkedHashSet<>();
+        if (tpl.getVideoId() != null && !tpl.getVideoId().isBlank()) {
+            exampleVideoIds.add(tpl.getVideoId());
+        }
+        List<String> objectUrls = new ArrayList<>();
+        List<String> compileCacheKeys = new ArrayList<>();
+        if (tpl.getScenes() != null) {
+            for (Scene s : tpl.getScenes()) {
+                if (s.getVideoId() != null && !s.getVideoId().isBlank()) {
+                    exampleVideoIds.add(s.getVideoId());
                 }
-            } catch (Exception e) {
-                System.err.println("[CASCADE] Template example video delete warn: " + e);
+                objectUrls.add(s.getKeyframeUrl());
             }
-            
-            // 1a-2) Scene-level example videos (Manual templates)
-            // Manual templates have one example video per scene
+        }
+
+        boolean deleteStorage = hardDeleteStorage && storageService != null;
+        if (hardDeleteStorage && storageService == null) {
+            System.err.println("[CASCADE] Storage hard-delete enabled but AlibabaOssStorageService unavailable; skipping storage deletion.");
+        }
+        if (deleteStorage) {
             try {
-                if (tpl.getScenes() != null) {
-                    for (Scene s : tpl.getScenes()) {
-                        String sceneVideoId = s.getVideoId();
-                        if (sceneVideoId != null && !sceneVideoId.isBlank()) {
-                            var sceneVideo = videoDao.getVideoById(sceneVideoId);
-                            if (sceneVideo != null) {
-                                storageService.deleteObjectByUrl(sceneVideo.getUrl());
-                                storageService.deleteObjectByUrl(sceneVideo.getThumbnailUrl());
-                                try {
-                                    boolean removed = videoDao.deleteVideoById(sceneVideoId);
-                                    if (!removed) System.err.println("[CASCADE] Scene example video doc not found or not removed: " + sceneVideoId);
-                                } catch (Exception ignore) {}
-                            }
-                        }
-                    }
+                // One batched read for all example videos instead of one per scene
+                for (var video : videoDao.getVideosByIds(new ArrayList<>(exampleVideoIds))) {
+                    objectUrls.add(video.getUrl());
+                    objectUrls.add(video.getThumbnailUrl());
                 }
             } catch (Exception e) {
-                System.err.println("[CASCADE] Scene example videos delete warn: " + e);
+                System.err.println("[CASCADE] Example video lookup warn: " + e);
             }
-
-            // 1b) Keyframes from template scenes
             try {
-                if (tpl.getScenes() != null) {
-                    for (Scene s : tpl.getScenes()) {
-                        if (s.getKeyframeUrl() != null && !s.getKeyframeUrl().isBlank()) {
-                            storageService.deleteObjectByUrl(s.getKeyframeUrl());
-                        }
-                    }
+                for (SceneSubmission sub : sceneSubmissionDao.findByTemplateId(templateId)) {
+                    objectUrls.add(sub.getVideoUrl());
+                    objectUrls.add(sub.getThumbnailUrl());
                 }
             } catch (Exception e) {
-                System.err.println("[CASCADE] Keyframes delete warn: " + e);
+                System.err.println("[CASCADE] Submission assets lookup warn: " + e);
             }
-
-            // 1c) Scene submissions assets
+            // Compile cache intermediates of the creators' submitted videos: the assignments
+            // go away with the template, so these can never be republished from again
             try {
-                List<SceneSubmission> subs = sceneSubmissionDao.findByTemplateId(templateId);
-                for (SceneSubmission sub : subs) {
-                    storageService.deleteObjectByUrl(sub.getVideoUrl());
-                    storageService.deleteObjectByUrl(sub.getThumbnailUrl());
+                if (templateAssignmentDao != null) {
+                    List<String> assignmentIds = new ArrayList<>();
+                    for (var assignment : templateAssignmentDao.getAssignmentsByTemplate(templateId)) {
+                        assignmentIds.add(assignment.getId());
+                    }
+                    List<String> videoIds = submittedVideoDao.findIdsByAssignmentIds(assignmentIds);
+                    for (CompileCacheEntry entry : compileCacheDao.findByCompositeVideoIds(videoIds)) {
+                        compileCacheKeys.add(entry.getId());
+                        objectUrls.add(entry.getIntermediateUrl());
+                    }
                 }
             } catch (Exception e) {
-                System.err.println("[CASCADE] Submission assets delete warn: " + e);
+                System.err.println("[CASCADE] Compile cache lookup warn: " + e);
             }
-        } else if (hardDeleteStorage && storageService == null) {
-            System.err.println("[CASCADE] Storage hard-delete enabled but AlibabaOssStorageService unavailable; skipping storage deletion.");
         }
 
-        // 2) Firestore docs
-        // 2a) sceneSubmissions
-        try {
-            sceneSubmissionDao.deleteScenesByTemplateId(templateId);
-        } catch (ExecutionException | InterruptedException e) {
-            throw e;
+        // 2) Storage first, so documents still point at anything that failed to delete
+        int objectsRequested = 0;
+        int objectsDeleted = 0;
+        if (deleteStorage) {
+            objectUrls.removeIf(url -> url == null || url.isBlank());
+            objectsRequested = objectUrls.size();
+            objectsDeleted = storageService.deleteObjectsByUrl(objectUrls);
+            System.out.println("[CASCADE] Template " + templateId + ": deleted " + objectsDeleted + "/"
+                + objectsRequested + " storage objects (" + (System.currentTimeMillis() - start) + "ms)");
+            if (objectsDeleted < objectsRequested) {
+                throw new IncompleteDeletionException("Deleted only " + objectsDeleted + "/" + objectsRequested
+                    + " storage objects of template " + templateId + "; documents kept, re-run to resume");
+            }
         }
 
-        // 2b) remove template assignments (this also deletes managerSubmissions via TemplateAssignmentDaoImpl)
+        // 3) Firestore docs, in parallel
+        // Assignment removal also deletes managerSubmissions via TemplateAssignmentDaoImpl
         // NOTE: submittedVideos are NOT deleted so content creators can still download their compiled work
-        try {
-            if (templateAssignmentDao != null) {
-                templateAssignmentDao.deleteAssignmentsByTemplate(templateId);
+        CompletableFuture<Integer> submissions = CompletableFuture.supplyAsync(() -> {
+            try {
+                return sceneSubmissionDao.deleteScenesByTemplateId(templateId);
+            } catch (Exception e) {
+                throw new java.util.concurrent.CompletionException(e);
             }
-        } catch (Exception e) {
-            System.err.println("[CASCADE] Template assignments delete warn: " + e);
+        }, deletionExecutor);
+        CompletableFuture<Integer> exampleVideos = CompletableFuture.supplyAsync(() -> {
+            if (!deleteStorage) {
+                return 0; // Keep video docs while their objects are kept
+            }
+            try {
+                return videoDao.deleteVideosByIds(exampleVideoIds);
+            } catch (Exception e) {
+                System.err.println("[CASCADE] Example video docs delete warn: " + e);
+                return 0;
+            }
+        }, deletionExecutor);
+        CompletableFuture<Void> compileCache = CompletableFuture.runAsync(() -> {
+            try {
+                int deleted = compileCacheDao.deleteAll(compileCacheKeys);
+                if (deleted > 0) {
+                    System.out.println("[CASCADE] Template " + templateId + ": deleted " + deleted + " compile cache entries");
+                }
+            } catch (Exception e) {
+                System.err.println("[CASCADE] Compile cache delete warn: " + e);
+            }
+        }, deletionExecutor);
+        CompletableFuture<Void> assignments = CompletableFuture.runAsync(() -> {
+            try {
+                if (templateAssignmentDao != null) {
+                    templateAssignmentDao.deleteAssignmentsByTemplate(templateId);
+                }
+            } catch (Exception e) {
+                System.err.println("[CASCADE] Template assignments delete warn: " + e);
+            }
+        }, deletionExecutor);
+
+        int sceneSubmissionsDeleted;
+        try {
+            sceneSubmissionsDeleted = submissions.get();
+        } catch (ExecutionException e) {
+            // Template doc is kept so the deletion can be retried
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            CompletableFuture.allOf(exampleVideos, compileCache, assignments).exceptionally(t -> null).join();
         }
 
-        // 2d) delete template doc
+        // 4) delete template doc
         boolean ok = templateDao.deleteTemplate(templateId);
         if (!ok) throw new NoSuchElementException("Template not found on delete: " + templateId);
+
+        DeletionReport report = new DeletionReport(templateId, objectsRequested, objectsDeleted,
+            sceneSubmissionsDeleted, exampleVideos.join(), System.currentTimeMillis() - start);
+        System.out.println("[CASCADE] Deleted " + report);
+        return report;
     }
 }
@@ -48,4 +48,12 @@ public interface VideoCompilationService {
      * @return URL of compiled video
      */
     String compileVideoWithBGMAndSubtitles(String templateId, String userId, String compiledBy, List<String> bgmUrls, double bgmVolume, SubtitleBurningService.SubtitleOptions subtitleOptions);
+    
+    /**
+     * Compile cache key (approved scene set) the last compile of this video was built from
+     * @param templateId Template ID
+     * @param userId User ID
+     * @return cache key, or null if the video was never compiled with the cache
+     */
+    String getCompileCacheKey(String templateId, String userId);
 }
\ No newline at end of file
@@ -1,15 +1,22 @@
 package com.example.demo.service;
 
+import com.example.demo.dao.CompileCacheDao;
 import com.example.demo.dao.SceneSubmissionDao;
+import com.example.demo.model.CompileCacheEntry;
 import com.google.cloud.firestore.DocumentSnapshot;
 import com.google.cloud.firestore.Firestore;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
 
 /**
- * Video compilation implementation using GCS compose or ffmpeg fallback
+ * Video compilation implementation.
+ *
+ * Every variant (plain, BGM, subtitles, BGM + subtitles) goes through one compile planner
+ * that builds a single ffmpeg run: concat demuxer input, one filter_complex graph for
+ * rotation/subtitles/BGM mix, one output, one upload.
  */
 @Service
 public class VideoCompilationServiceImpl implements VideoCompilationService {
@@ -23,373 +30,82 @@ public class VideoCompilationServiceImpl implements VideoCompilationService {
     @Autowired
     private SceneSubmissionDao sceneSubmissionDao;
 
+    @Autowired
+    private MediaProbeService mediaProbeService;
+
+    @Autowired
+    private SubtitleBurningService subtitleBurningService;
+
+    @Autowired
+    private com.example.demo.dao.TemplateDao templateDao;
+
+    @Autowired
+    private com.example.demo.dao.TemplateAssignmentDao templateAssignmentDao;
+
+    @Autowired(required = false)
+    private SubtitleAlignmentService subtitleAlignmentService;
+
+    @Autowired(required = false)
+    private io.micrometer.core.instrument.MeterRegistry meterRegistry;
+
+    // When true, BGM/subtitle variants also write the plain concat (compiled.mp4) as a
+    // second output of the same ffmpeg run and upload it. Off by default: nobody reads it.
+    @Value("${compile.upload-intermediate:false}")
+    private boolean uploadIntermediate;
+
+    @Autowired
+    private CompileCacheDao compileCacheDao;
+
+    // Reuse the concatenated scenes across republishes of the same approved scene set
+    @Value("${compile.cache.enabled:true}")
+    private boolean compileCacheEnabled;
+
+    // A hung ffmpeg is killed after this long instead of holding a compile worker forever
+    @Value("${compile.ffmpeg.timeout-minutes:60}")
+    private long ffmpegTimeoutMinutes;
+
     // GcsFileResolver removed - now using OSS signed URLs directly
 
     @Override
     public String compileVideo(String templateId, String userId, String compiledBy) {
         try {
-            String compositeVideoId = userId + "_" + templateId;
-            DocumentSnapshot videoSnap = db.collection("submittedVideos").document(compositeVideoId).get().get();
-            if (!videoSnap.exists()) {
-                throw new NoSuchElementException("submittedVideos not found: " + compositeVideoId);
-            }
-
-            // Gather sceneIds in numeric order from submittedVideos.scenes
-            Map<String, Object> scenesMap = (Map<String, Object>) videoSnap.get("scenes");
-            if (scenesMap == null || scenesMap.isEmpty()) {
-                throw new IllegalStateException("No scenes to compile for: " + compositeVideoId);
-            }
-            List<Integer> sceneNumbers = new ArrayList<>();
-            for (String key : scenesMap.keySet()) {
-                try { sceneNumbers.add(Integer.parseInt(key)); } catch (NumberFormatException ignore) {}
-            }
-            Collections.sort(sceneNumbers);
-
-            List<String> sourceUrls = new ArrayList<>();
-            for (Integer num : sceneNumbers) {
-                Object val = scenesMap.get(String.valueOf(num));
-                if (val instanceof Map) {
-                    String sceneId = (String) ((Map<String, Object>) val).get("sceneId");
-                    if (sceneId != null) {
-                        var sub = sceneSubmissionDao.findById(sceneId);
-                        if (sub != null && sub.getVideoUrl() != null) {
-                            sourceUrls.add(sub.getVideoUrl());
-                        }
-                    }
-                }
-            }
-            if (sourceUrls.isEmpty()) {
-                throw new IllegalStateException("No source scene videos with URLs for: " + compositeVideoId);
-            }
-
-            String destObject = String.format("videos/%s/%s/compiled.mp4", userId, compositeVideoId);
-
-            // Important: Do NOT use GCS compose for MP4 videos.
-            // MP4 containers have a single moov/metadata atom; byte-wise composition creates an invalid file
-            // that most players will only play the first segment of. Always use ffmpeg to concat properly.
-            return ffmpegConcatAndUpload(sourceUrls, destObject);
+            CompileRequest request = newRequest(templateId, userId);
+            request.destObject = String.format("videos/%s/%s/compiled.mp4", userId, request.compositeVideoId);
+            return runCompile(request);
         } catch (Exception e) {
             throw new RuntimeException("Failed to compile video: " + e.getMessage(), e);
         }
     }
 
-    // TODO: Add subtitle burning to compiled video
-    // 
-    // Steps to implement:
-    // 1. Fetch template to get all scenes with subtitleSegments
-    // 2. Generate SRT file from subtitleSegments (use SubtitleSegment.toSrt())
-    // 3. Add FFmpeg subtitle filter: -vf "subtitles=subtitles.srt:force_style='FontSize=24,PrimaryColour=&HFFFFFF&'"
-    // 4. Consider: Make subtitle burning optional (manager toggle in UI?)
-    //
-    // Example FFmpeg command with subtitles:
-    // ffmpeg -f concat -i list.txt -vf "subtitles=subtitles.srt" -c:a copy output.mp4
-    //
-    // Benefits:
-    // - Final video has burned-in subtitles for social media
-    // - Viewers can read along with the video
-    // - Better accessibility
-    private String ffmpegConcatAndUpload(List<String> sourceUrls, String destObject) throws Exception {
-        // Generate signed URLs for OSS videos to avoid 403s
-        List<String> signedUrls = new ArrayList<>();
-        java.io.File listFile = null;
-        try {
-            for (String url : sourceUrls) {
-                // Generate signed URL for OSS video (2 hours expiration)
-                String signedUrl = ossStorageService.generateSignedUrl(url, 2, java.util.concurrent.TimeUnit.HOURS);
-                signedUrls.add(signedUrl);
-            }
-            // Create concat list file for ffmpeg with signed URLs
-            listFile = java.io.File.createTempFile("concat-", ".txt");
-            try (java.io.PrintWriter pw = new java.io.PrintWriter(listFile, java.nio.charset.StandardCharsets.UTF_8)) {
-                for (String signedUrl : signedUrls) {
-                    pw.println("file '" + signedUrl + "'");
-                }
-            }
-            // Run ffmpeg concat demuxer
-            java.io.File outFile = java.io.File.createTempFile("compiled-", ".mp4");
-            ProcessBuilder pb = new ProcessBuilder(
-                    "ffmpeg", "-y", "-f", "concat", "-safe", "0", "-i", listFile.getAbsolutePath(),
-                    "-c", "copy", outFile.getAbsolutePath()
-            );
-            Process p = pb.start();
-            int code = p.waitFor();
-            if (code != 0) {
-                // Retry with re-encode to handle mismatched codecs/parameters
-                System.err.println("[Compile] ffmpeg stream-copy concat failed (code=" + code + "), retrying with re-encode...");
-                outFile.delete();
-                outFile = java.io.File.createTempFile("compiled-", ".mp4");
-                ProcessBuilder pbReencode = new ProcessBuilder(
-                        "ffmpeg", "-y", "-f", "concat", "-safe", "0", "-i", listFile.getAbsolutePath(),
-                        "-c:v", "libx264", "-preset", "veryfast", "-crf", "23",
-                        "-c:a", "aac", "-b:a", "192k",
-                        "-movflags", "+faststart",
-                        outFile.getAbsolutePath()
-                );
-                Process p2 = pbReencode.start();
-                int code2 = p2.waitFor();
-                if (code2 != 0) {
-                    throw new RuntimeException("ffmpeg concat (re-encode) failed with exit code " + code2);
-                }
-            }
-            if (ossStorageService == null) {
-                throw new IllegalStateException("AlibabaOssStorageService not available for upload");
-            }
-            String url = ossStorageService.uploadFile(outFile, destObject, "video/mp4");
-            outFile.delete();
-            return url;
-        } finally {
-            // Clean up temp files
-            if (listFile != null) try { listFile.delete(); } catch (Exception ignored) {}
-        }
-    }
-    
     @Override
     public String compileVideoWithBGM(String templateId, String userId, String compiledBy, List<String> bgmUrls, double bgmVolume) {
+        // If no BGM specified, compile the plain video
+        if (bgmUrls == null || bgmUrls.isEmpty()) {
+            return compileVideo(templateId, userId, compiledBy);
+        }
         try {
-            // First compile video without BGM
-            String videoUrl = compileVideo(templateId, userId, compiledBy);
-            
-            // If no BGM specified, return video as-is
-            if (bgmUrls == null || bgmUrls.isEmpty()) {
-                return videoUrl;
-            }
-            
-            // Generate signed URLs for video and BGM files
-            String videoSignedUrl = ossStorageService.generateSignedUrl(videoUrl, 2, java.util.concurrent.TimeUnit.HOURS);
-            
-            List<String> bgmSignedUrls = new ArrayList<>();
-            for (String bgmUrl : bgmUrls) {
-                String bgmSignedUrl = ossStorageService.generateSignedUrl(bgmUrl, 2, java.util.concurrent.TimeUnit.HOURS);
-                bgmSignedUrls.add(bgmSignedUrl);
-            }
-            
-            try {
-                
-                // Get video duration using signed URL
-                double videoDuration = getVideoDurationFromUrl(videoSignedUrl);
-                
-                // Create BGM concat file (loop if needed) using signed URLs
-                java.io.File bgmConcatFile = createBGMConcatFileFromUrls(bgmSignedUrls, videoDuration);
-                
-                // Mix video with BGM
-                java.io.File outputFile = java.io.File.createTempFile("compiled-bgm-", ".mp4");
-                
-                try {
-                    mixVideoWithBGMFromUrl(videoSignedUrl, bgmConcatFile, outputFile, bgmVolume);
-                    
-                    // Upload final video
-                    String compositeVideoId = userId + "_" + templateId;
-                    String destObject = String.format("videos/%s/%s/compiled_bgm.mp4", userId, compositeVideoId);
-                    
-                    return ossStorageService.uploadFile(outputFile, destObject, "video/mp4");
-                        
-                } finally {
-                    outputFile.delete();
-                    bgmConcatFile.delete();
-                }
-                
-            } finally {
-                // No cleanup needed for signed URLs
+            CompileRequest request = newRequest(templateId, userId);
+            request.bgmUrls = bgmUrls;
+            request.bgmVolume = bgmVolume;
+            request.destObject = String.format("videos/%s/%s/compiled_bgm.mp4", userId, request.compositeVideoId);
+            if (uploadIntermediate) {
+                request.intermediateObject = String.format("videos/%s/%s/compiled.mp4", userId, request.compositeVideoId);
             }
-            
+            return runCompile(request);
         } catch (Exception e) {
             throw new RuntimeException("Failed to compile video with BGM: " + e.getMessage(), e);
         }
     }
-    
-    /**
-     * Get video duration in seconds from URL
-     */
-    private double getVideoDurationFromUrl(String videoUrl) throws Exception {
-        ProcessBuilder pb = new ProcessBuilder(
-            "ffprobe", "-v", "error", "-show_entries", "format=duration",
-            "-of", "default=noprint_wrappers=1:nokey=1", videoUrl
-        );
-        Process proc = pb.start();
-        java.io.BufferedReader reader = new java.io.BufferedReader(
-            new java.io.InputStreamReader(proc.getInputStream())
-        );
-        String durationStr = reader.readLine();
-        proc.waitFor();
-        return Double.parseDouble(durationStr);
-    }
-    
-    /**
-     * Get video duration in seconds from local file
-     */
-    private double getVideoDurationFromFile(java.io.File videoFile) throws Exception {
-        ProcessBuilder pb = new ProcessBuilder(
-            "ffprobe", "-v", "error", "-show_entries", "format=duration",
-            "-of", "default=noprint_wrappers=1:nokey=1", videoFile.getAbsolutePath()
-        );
-        Process proc = pb.start();
-        java.io.BufferedReader reader = new java.io.BufferedReader(
-            new java.io.InputStreamReader(proc.getInputStream())
-        );
-        String durationStr = reader.readLine();
-        proc.waitFor();
-        return Double.parseDouble(durationStr);
-    }
-    
-    /**
-     * Create concatenated BGM file that loops to match video duration using signed URLs
-     */
-    private java.io.File createBGMConcatFileFromUrls(List<String> bgmUrls, double videoDuration) throws Exception {
-        System.out.println("[BGM] Starting BGM concatenation for " + bgmUrls.size() + " file(s)");
-        
-        // Download BGM files locally first
-        List<java.io.File> localBgmFiles;
-        try {
-            System.out.println("[BGM] Downloading BGM files...");
-            localBgmFiles = ossStorageService.downloadMultipleToTempFiles(bgmUrls, "bgm-", ".mp3");
-            System.out.println("[BGM] Successfully downloaded " + localBgmFiles.size() + " BGM file(s)");
-        } catch (Exception e) {
-            System.err.println("[BGM] Failed to download BGM files: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Failed to download BGM files: " + e.getMessage(), e);
-        }
-        
-        // Calculate total BGM duration
-        double totalBGMDuration = 0;
-        for (java.io.File bgmFile : localBgmFiles) {
-            totalBGMDuration += getVideoDurationFromFile(bgmFile);
-        }
-        
-        // Create concat list with looping using local file paths
-        java.io.File concatList = java.io.File.createTempFile("bgm-concat-", ".txt");
-        try (java.io.PrintWriter pw = new java.io.PrintWriter(concatList, java.nio.charset.StandardCharsets.UTF_8)) {
-            double currentDuration = 0;
-            while (currentDuration < videoDuration) {
-                for (java.io.File bgmFile : localBgmFiles) {
-                    // Use absolute path and escape single quotes
-                    String path = bgmFile.getAbsolutePath().replace("'", "'\\''");
-                    pw.println("file '" + path + "'");
-                    currentDuration += getVideoDurationFromFile(bgmFile);
-                    if (currentDuration >= videoDuration) break;
-                }
-            }
-        }
-        
-        // Concatenate BGM files
-        System.out.println("[BGM] Creating concatenated BGM file (target duration: " + videoDuration + "s)");
-        java.io.File concatenatedBGM = java.io.File.createTempFile("bgm-full-", ".mp3");
-        ProcessBuilder pb = new ProcessBuilder(
-            "ffmpeg", "-y", "-f", "concat", "-safe", "0", "-i", concatList.getAbsolutePath(),
-            "-t", String.valueOf(videoDuration), // Trim to video duration
-            "-c", "copy", concatenatedBGM.getAbsolutePath()
-        );
-        pb.redirectErrorStream(true);
-        Process proc = pb.start();
-        
-        // Capture FFmpeg output
-        StringBuilder ffmpegOutput = new StringBuilder();
-        try (java.io.BufferedReader reader = new java.io.BufferedReader(
-                new java.io.InputStreamReader(proc.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                ffmpegOutput.append(line).append("\n");
-            }
-        }
-        
-        int exitCode = proc.waitFor();
-        
-        // Clean up
-        concatList.delete();
-        for (java.io.File bgmFile : localBgmFiles) {
-            bgmFile.delete();
-        }
-        
-        if (exitCode != 0) {
-            System.err.println("[BGM] FFmpeg concatenation failed with exit code " + exitCode);
-            System.err.println("[BGM] FFmpeg output:\n" + ffmpegOutput.toString());
-            throw new RuntimeException("Failed to concatenate BGM files. FFmpeg exit code: " + exitCode);
-        }
-        
-        System.out.println("[BGM] Successfully created concatenated BGM file: " + concatenatedBGM.getAbsolutePath());
-        
-        return concatenatedBGM;
-    }
-    
-    /**
-     * Mix video with background music using signed URL
-     */
-    private void mixVideoWithBGMFromUrl(String videoUrl, java.io.File bgmFile, java.io.File outputFile, double bgmVolume) throws Exception {
-        // Use FFmpeg to mix video with BGM
-        // -filter_complex "[1:a]volume=<volume>[a1];[0:a][a1]amix=inputs=2:duration=shortest[aout]"
-        ProcessBuilder pb = new ProcessBuilder(
-            "ffmpeg", "-y",
-            "-i", videoUrl,
-            "-i", bgmFile.getAbsolutePath(),
-            "-filter_complex", String.format("[1:a]volume=%.2f[a1];[0:a][a1]amix=inputs=2:duration=shortest[aout]", bgmVolume),
-            "-map", "0:v",
-            "-map", "[aout]",
-            "-c:v", "copy",
-            "-c:a", "aac",
-            "-b:a", "192k",
-            outputFile.getAbsolutePath()
-        );
-        
-        Process proc = pb.start();
-        int exitCode = proc.waitFor();
-        
-        if (exitCode != 0) {
-            throw new RuntimeException("Failed to mix video with BGM");
-        }
-    }
-    
-    @Autowired
-    private SubtitleBurningService subtitleBurningService;
-    
-    @Autowired
-    private com.example.demo.dao.TemplateDao templateDao;
-    
-    @Autowired
-    private com.example.demo.dao.TemplateAssignmentDao templateAssignmentDao;
-    
-    @Autowired(required = false)
-    private SubtitleAlignmentService subtitleAlignmentService;
-    
+
     @Override
     public String compileVideoWithSubtitles(String templateId, String userId, String compiledBy, SubtitleBurningService.SubtitleOptions subtitleOptions) {
         return compileVideoWithBGMAndSubtitles(templateId, userId, compiledBy, null, 0.0, subtitleOptions);
     }
-    
+
     @Override
     public String compileVideoWithBGMAndSubtitles(String templateId, String userId, String compiledBy, List<String> bgmUrls, double bgmVolume, SubtitleBurningService.SubtitleOptions subtitleOptions) {
         try {
-            String compositeVideoId = userId + "_" + templateId;
-            DocumentSnapshot videoSnap = db.collection("submittedVideos").document(compositeVideoId).get().get();
-            if (!videoSnap.exists()) {
-                throw new NoSuchElementException("submittedVideos not found: " + compositeVideoId);
-            }
-
-            // Gather sceneIds in numeric order from submittedVideos.scenes
-            Map<String, Object> scenesMap = (Map<String, Object>) videoSnap.get("scenes");
-            if (scenesMap == null || scenesMap.isEmpty()) {
-                throw new IllegalStateException("No scenes to compile for: " + compositeVideoId);
-            }
-            List<Integer> sceneNumbers = new ArrayList<>();
-            for (String key : scenesMap.keySet()) {
-                try { sceneNumbers.add(Integer.parseInt(key)); } catch (NumberFormatException ignore) {}
-            }
-            Collections.sort(sceneNumbers);
-
-            List<String> sourceUrls = new ArrayList<>();
-            for (Integer num : sceneNumbers) {
-                Object val = scenesMap.get(String.valueOf(num));
-                if (val instanceof Map) {
-                    String sceneId = (String) ((Map<String, Object>) val).get("sceneId");
-                    if (sceneId != null) {
-                        var sub = sceneSubmissionDao.findById(sceneId);
-                        if (sub != null && sub.getVideoUrl() != null) {
-                            sourceUrls.add(sub.getVideoUrl());
-                        }
-                    }
-                }
-            }
-            if (sourceUrls.isEmpty()) {
-                throw new IllegalStateException("No source scene videos with URLs for: " + compositeVideoId);
-            }
+            CompileRequest request = newRequest(templateId, userId);
 
             // Get template from assignment snapshot (templateId is actually assignmentId)
             com.example.demo.model.TemplateAssignment assignment = templateAssignmentDao.getAssignment(templateId);
@@ -400,284 +116,969 @@ public class VideoCompilationServiceImpl implements VideoCompilationService {
             if (template == null) {
                 throw new NoSuchElementException("Template snapshot not found in assignment: " + templateId);
             }
-            
+
             // Get video format from template (e.g., "1080p 16:9" or "1080p 9:16")
-            String videoFormat = template.getVideoFormat();
-            System.out.println("[Compile] 📐 Template video format: " + videoFormat);
-            
-            String destObject = String.format("videos/%s/%s/compiled_subtitled.mp4", userId, compositeVideoId);
-            
+            request.videoFormat = template.getVideoFormat();
+            System.out.println("[Compile] 📐 Template video format: " + request.videoFormat);
+
+            request.scenes = template.getScenes();
+            request.subtitleOptions = subtitleOptions;
+            request.bgmUrls = bgmUrls;
+            request.bgmVolume = bgmVolume;
+            request.destObject = String.format("videos/%s/%s/compiled_subtitled.mp4", userId, request.compositeVideoId);
+            if (uploadIntermediate) {
+                request.intermediateObject = String.format("videos/%s/%s/compiled.mp4", userId, request.compositeVideoId);
+            }
+
             // Compile with subtitles and optional BGM
-            return ffmpegConcatWithSubtitlesAndBGM(sourceUrls, template.getScenes(), bgmUrls, bgmVolume, subtitleOptions, videoFormat, destObject);
-            
+            return runCompile(request);
+
         } catch (Exception e) {
             throw new RuntimeException("Failed to compile video with subtitles: " + e.getMessage(), e);
         }
     }
-    
+
     /**
-     * Concatenate videos with subtitles and optional BGM
+     * One compile variant: what goes into the graph and where the output goes
      */
-    private String ffmpegConcatWithSubtitlesAndBGM(
-        List<String> sourceUrls, 
-        List<com.example.demo.model.Scene> scenes,
-        List<String> bgmUrls,
-        double bgmVolume,
-        SubtitleBurningService.SubtitleOptions subtitleOptions,
-        String videoFormat,
-        String destObject
-    ) throws Exception {
-        
-        // Download videos locally first (more reliable than using signed URLs in concat)
-        // Using centralized OSS service for all downloads
-        List<java.io.File> localVideoFiles = null;
-        
-        java.io.File listFile = null;
+    private static class CompileRequest {
+        String userId;
+        String compositeVideoId;
+        // Compile cache key of the approved scene set; the key recorded on submittedVideos
+        // by the previous compile (may be the same)
+        String cacheKey;
+        String previousCacheKey;
+        List<String> sourceUrls;
+        // Parallel to sourceUrls; null entries for scenes uploaded before fingerprinting
+        List<com.example.demo.model.VideoFingerprint> sourceFingerprints;
+        List<com.example.demo.model.Scene> scenes;
+        SubtitleBurningService.SubtitleOptions subtitleOptions;
+        List<String> bgmUrls;
+        double bgmVolume;
+        String videoFormat;
+        String destObject;
+        // Non-null only when the plain concat was explicitly asked for
+        String intermediateObject;
+
+        boolean wantsSubtitles() {
+            return subtitleOptions != null && scenes != null && !scenes.isEmpty();
+        }
+
+        boolean wantsBgm() {
+            return bgmUrls != null && !bgmUrls.isEmpty();
+        }
+
+        // If format is "16:9" (landscape), force rotation from portrait to landscape
+        boolean needsRotation() {
+            return videoFormat != null && videoFormat.contains("16:9");
+        }
+    }
+
+    private CompileRequest newRequest(String templateId, String userId) throws Exception {
+        CompileRequest request = new CompileRequest();
+        request.userId = userId;
+        request.compositeVideoId = userId + "_" + templateId;
+        loadSceneSources(request);
+        return request;
+    }
+
+    /**
+     * Scene video URLs (and upload-time fingerprints) of a submittedVideos document, in scene-number order,
+     * plus the compile cache key of that scene set.
+     *
+     * Scene videos are deleted after a publish; a republish then only has the cache key
+     * recorded on submittedVideos and must be served from the compile cache.
+     */
+    private void loadSceneSources(CompileRequest request) throws Exception {
+        String compositeVideoId = request.compositeVideoId;
+        DocumentSnapshot videoSnap = db.collection("submittedVideos").document(compositeVideoId).get().get();
+        if (!videoSnap.exists()) {
+            throw new NoSuchElementException("submittedVideos not found: " + compositeVideoId);
+        }
+
+        request.previousCacheKey = videoSnap.getString("compileCacheKey");
+
+        // Gather sceneIds in numeric order from submittedVideos.scenes
+        Map<String, Object> scenesMap = (Map<String, Object>) videoSnap.get("scenes");
+        if (scenesMap == null || scenesMap.isEmpty()) {
+            throw new IllegalStateException("No scenes to compile for: " + compositeVideoId);
+        }
+        List<Integer> sceneNumbers = new ArrayList<>();
+        for (String key : scenesMap.keySet()) {
+            try { sceneNumbers.add(Integer.parseInt(key)); } catch (NumberFormatException ignore) {}
+        }
+        Collections.sort(sceneNumbers);
+
+        List<String> sourceUrls = new ArrayList<>();
+        List<com.example.demo.model.VideoFingerprint> fingerprints = new ArrayList<>();
+        StringBuilder keySource = new StringBuilder();
+        for (Integer num : sceneNumbers) {
+            Object val = scenesMap.get(String.valueOf(num));
+            if (val instanceof Map) {
+                String sceneId = (String) ((Map<String, Object>) val).get("sceneId");
+                if (sceneId != null) {
+                    var sub = sceneSubmissionDao.findById(sceneId);
+                    if (sub != null && sub.getVideoUrl() != null) {
+                        sourceUrls.add(sub.getVideoUrl());
+                        fingerprints.add(sub.getVideoFingerprint());
+                        Date updatedAt = sub.getLastUpdatedAt() != null ? sub.getLastUpdatedAt() : sub.getSubmittedAt();
+                        keySource.append(sub.getVideoUrl()).append('@')
+                                 .append(updatedAt != null ? updatedAt.getTime() : 0).append('\n');
+                    }
+                }
+            }
+        }
+        request.sourceUrls = sourceUrls;
+        request.sourceFingerprints = fingerprints;
+        if (!sourceUrls.isEmpty()) {
+            request.cacheKey = sha256Hex(keySource.toString());
+        } else if (compileCacheEnabled && request.previousCacheKey != null) {
+            request.cacheKey = request.previousCacheKey;
+        } else {
+            throw new IllegalStateException("No source scene videos with URLs for: " + compositeVideoId);
+        }
+    }
+
+    @Override
+    public String getCompileCacheKey(String templateId, String userId) {
+        try {
+            DocumentSnapshot videoSnap = db.collection("submittedVideos").document(userId + "_" + templateId).get().get();
+            return videoSnap.exists() ? videoSnap.getString("compileCacheKey") : null;
+        } catch (Exception e) {
+            System.err.println("[Compile] Failed to read compile cache key: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static String sha256Hex(String value) {
+        try {
+            byte[] digest = java.security.MessageDigest.getInstance("SHA-256")
+                .digest(value.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Compile planner: prepares the concatenated scenes (from the compile cache, or by
+     * downloading and joining the scene videos), subtitles and the BGM loop, then runs ffmpeg
+     * once over a single filter_complex graph and uploads the single output.
+     *
+     * Important: Do NOT use GCS/OSS compose for MP4 videos.
+     * MP4 containers have a single moov/metadata atom; byte-wise composition creates an invalid file
+     * that most players will only play the first segment of. Always use ffmpeg to concat properly.
+     */
+    private String runCompile(CompileRequest request) throws Exception {
+        if (ossStorageService == null) {
+            throw new IllegalStateException("AlibabaOssStorageService not available for upload");
+        }
+
+        CompileCacheEntry cached = lookupCompileCache(request);
+        if (cached == null && request.sourceUrls.isEmpty()) {
+            throw new IllegalStateException("No source scene videos and no compile cache entry for: " + request.compositeVideoId);
+        }
+
+        java.io.File scratchDir = null;
         java.io.File srtFile = null;
-        java.io.File bgmFile = null;
+        BgmLoopPlan bgmPlan = null;
         java.io.File outFile = null;
-        
+        java.io.File intermediateFile = null;
+
         try {
-            // Download all scene videos using centralized OSS service
-            localVideoFiles = ossStorageService.downloadMultipleToTempFiles(sourceUrls, "scene-", ".mp4");
-            
-            // Create concat list file with local paths
-            listFile = java.io.File.createTempFile("concat-", ".txt");
-            try (java.io.PrintWriter pw = new java.io.PrintWriter(listFile, java.nio.charset.StandardCharsets.UTF_8)) {
-                for (java.io.File videoFile : localVideoFiles) {
-                    // Use absolute path and escape single quotes
-                    String path = videoFile.getAbsolutePath().replace("'", "'\\''");
-                    pw.println("file '" + path + "'");
+            scratchDir = java.nio.file.Files.createTempDirectory("compile-" + request.compositeVideoId + "-").toFile();
+
+            CompileInputs inputs = cached != null
+                ? prepareFromCache(request, cached, scratchDir)
+                : prepareFromScenes(request, scratchDir);
+
+            // Generate SRT file from the aligned subtitle segments
+            String srtPath = null;
+            if (inputs.subtitleSegments != null && !inputs.subtitleSegments.isEmpty()) {
+                srtPath = generateSrtFromSegments(inputs.subtitleSegments);
+                srtFile = new java.io.File(srtPath);
+            } else if (request.subtitleOptions != null) {
+                System.out.println("[Compile] ⚠️ No SRT file generated: no subtitle segments");
+            }
+
+            if (request.wantsBgm()) {
+                // Total video duration from the scene durations
+                double videoDuration = 0;
+                for (Double sceneDuration : inputs.sceneDurations) {
+                    videoDuration += sceneDuration;
                 }
+
+                // Loop BGM inside the graph (inputs start at 1)
+                bgmPlan = planBgmLoop(request.bgmUrls, 1, videoDuration, request.bgmVolume);
             }
-            
-            // Generate SRT file using ASR-aligned subtitles
-            String srtPath = null;
-            if (subtitleOptions != null && scenes != null && !scenes.isEmpty()) {
-                System.out.println("[Compile] 📋 Generating ASR-aligned subtitles from " + scenes.size() + " scenes");
-                
-                // Use ASR alignment service to get accurate timing from user's recorded videos
-                List<com.example.demo.ai.subtitle.SubtitleSegment> allAlignedSegments = new ArrayList<>();
-                long cumulativeTimeMs = 0;
-                
-                for (int i = 0; i < scenes.size() && i < localVideoFiles.size(); i++) {
-                    com.example.demo.model.Scene scene = scenes.get(i);
-                    java.io.File videoFile = localVideoFiles.get(i);
-                    
-                    System.out.println("[Compile]   Scene " + (i+1) + ": Running ASR alignment...");
-                    
-                    if (subtitleAlignmentService != null && scene.getScriptLine() != null && !scene.getScriptLine().isEmpty()) {
-                        try {
-                            // Run ASR alignment: combines template scriptLine (words) with ASR (timing)
-                            List<com.example.demo.ai.subtitle.SubtitleSegment> alignedSegments = 
-                                subtitleAlignmentService.generateAlignedSubtitles(scene, videoFile.getAbsolutePath(), cumulativeTimeMs);
-                            
-                            allAlignedSegments.addAll(alignedSegments);
-                            System.out.println("[Compile]     ✅ Got " + alignedSegments.size() + " aligned segments");
-                        } catch (Exception e) {
-                            System.err.println("[Compile]     ⚠️ ASR alignment failed, using template segments: " + e.getMessage());
-                            // Fallback to template subtitleSegments with time offset
-                            if (scene.getSubtitleSegments() != null) {
-                                for (com.example.demo.ai.subtitle.SubtitleSegment seg : scene.getSubtitleSegments()) {
-                                    allAlignedSegments.add(new com.example.demo.ai.subtitle.SubtitleSegment(
-                                        seg.getStartTimeMs() + cumulativeTimeMs,
-                                        seg.getEndTimeMs() + cumulativeTimeMs,
-                                        seg.getText(),
-                                        seg.getConfidence()
-                                    ));
-                                }
-                            }
-                        }
-                    } else {
-                        // No ASR service or no scriptLine, use template subtitleSegments
-                        System.out.println("[Compile]     Using template segments (no scriptLine or ASR unavailable)");
-                        if (scene.getSubtitleSegments() != null) {
-                            for (com.example.demo.ai.subtitle.SubtitleSegment seg : scene.getSubtitleSegments()) {
-                                allAlignedSegments.add(new com.example.demo.ai.subtitle.SubtitleSegment(
-                                    seg.getStartTimeMs() + cumulativeTimeMs,
-                                    seg.getEndTimeMs() + cumulativeTimeMs,
-                                    seg.getText(),
-                                    seg.getConfidence()
-                                ));
-                            }
-                        }
+
+            if (request.needsRotation()) {
+                System.out.println("[Compile] 🔄 Template requires 16:9 landscape format, will apply rotation");
+            }
+
+            outFile = java.io.File.createTempFile("compiled-", ".mp4", scratchDir);
+            // The plain concat is written on a cache miss (to seed the cache) or when asked for explicitly
+            boolean seedCache = cached == null && compileCacheEnabled;
+            if (seedCache || (cached == null && request.intermediateObject != null)) {
+                intermediateFile = java.io.File.createTempFile("compiled-concat-", ".mp4", scratchDir);
+            }
+
+            // Only a graph that leaves the video stream untouched can stream-copy it
+            boolean videoFiltered = request.needsRotation() || srtPath != null;
+            boolean usesStreamCopy = !inputs.forceReencode && (!videoFiltered || intermediateFile != null);
+
+            int code = runCompilePasses(request, inputs.videoInputArgs, srtPath, bgmPlan, outFile, intermediateFile, inputs.forceReencode);
+            if (code != 0 && usesStreamCopy) {
+                // Safety net only: the fingerprint check predicted a clean stream copy
+                System.err.println("[Compile] ffmpeg stream-copy compile failed (code=" + code + "), retrying with re-encode...");
+                code = runCompilePasses(request, inputs.videoInputArgs, srtPath, bgmPlan, outFile, intermediateFile, true);
+            }
+            if (code != 0) {
+                throw new RuntimeException("ffmpeg compilation failed with exit code " + code);
+            }
+
+            System.out.println("[Compile] ✅ FFmpeg completed successfully");
+
+            if (intermediateFile != null && request.intermediateObject != null) {
+                String intermediateUrl = ossStorageService.uploadFile(intermediateFile, request.intermediateObject, "video/mp4");
+                System.out.println("[Compile] Intermediate concat uploaded: " + intermediateUrl);
+            }
+            if (seedCache) {
+                storeCompileCache(request, intermediateFile, inputs);
+            }
+            String url = ossStorageService.uploadFile(outFile, request.destObject, "video/mp4");
+            System.out.println("[Compile] ✅ Compiled video uploaded: " + url);
+
+            rememberCompileCacheKey(request);
+            return url;
+
+        } finally {
+            // Clean up temp files
+            if (srtFile != null) try { srtFile.delete(); } catch (Exception ignored) {}
+            if (bgmPlan != null) bgmPlan.cleanup();
+            // Downloaded, normalized and output files all live in the scratch directory
+            if (scratchDir != null) {
+                java.io.File[] leftovers = scratchDir.listFiles();
+                if (leftovers != null) {
+                    for (java.io.File f : leftovers) {
+                        try { f.delete(); } catch (Exception ignored) {}
                     }
-                    
-                    // Add this scene's duration to cumulative time
-                    cumulativeTimeMs += (long)(getVideoDurationFromFile(videoFile) * 1000);
                 }
-                
-                // Generate SRT from aligned segments
-                if (!allAlignedSegments.isEmpty()) {
-                    srtPath = generateSrtFromSegments(allAlignedSegments);
-                    srtFile = new java.io.File(srtPath);
-                    System.out.println("[Compile] ✅ Generated ASR-aligned SRT file: " + srtPath + " with " + allAlignedSegments.size() + " segments");
+                try { scratchDir.delete(); } catch (Exception ignored) {}
+            }
+        }
+    }
+
+    /**
+     * What the final graph reads: video input args for input 0, scene durations and the
+     * aligned subtitle segments
+     */
+    private static class CompileInputs {
+        List<String> videoInputArgs;
+        List<Double> sceneDurations = new ArrayList<>();
+        List<com.example.demo.ai.subtitle.SubtitleSegment> subtitleSegments;
+        boolean forceReencode;
+    }
+
+    /**
+     * Cache miss: pre-fetch the scenes, pick the concat strategy and align subtitles
+     */
+    private CompileInputs prepareFromScenes(CompileRequest request, java.io.File scratchDir) throws Exception {
+        CompileInputs inputs = new CompileInputs();
+
+        // Pre-fetch all scenes in parallel into the per-compile scratch directory, so ffmpeg
+        // reads local files instead of opening one remote HTTPS segment after another
+        AlibabaOssStorageService.DownloadBatch prefetch =
+            ossStorageService.downloadMultipleToTempFiles(request.sourceUrls, "scene-", ".mp4", scratchDir);
+        List<java.io.File> localVideoFiles = prefetch.files;
+        recordPrefetch(prefetch);
+
+        // Decide upfront whether the segments can be stream-copied, from the upload-time
+        // fingerprints (scenes uploaded before fingerprinting are probed locally now)
+        List<com.example.demo.model.VideoFingerprint> fingerprints = new ArrayList<>();
+        for (int i = 0; i < localVideoFiles.size(); i++) {
+            com.example.demo.model.VideoFingerprint fp = request.sourceFingerprints.get(i);
+            if (fp == null) {
+                try {
+                    fp = mediaProbeService.probeFingerprint(localVideoFiles.get(i).getAbsolutePath());
+                } catch (Exception e) {
+                    System.err.println("[Compile] ⚠️ Could not fingerprint scene " + (i + 1) + ": " + e.getMessage());
                 }
-            } else {
-                System.out.println("[Compile] ⚠️ No SRT file generated:");
-                System.out.println("[Compile]   - subtitleOptions: " + (subtitleOptions != null ? "present" : "null"));
-                System.out.println("[Compile]   - scenes: " + (scenes != null ? scenes.size() + " scenes" : "null"));
-            }
-            
-            // Detect if videos need rotation based on template videoFormat
-            // If format is "16:9" (landscape), force rotation from portrait to landscape
-            boolean needsRotation = videoFormat != null && videoFormat.contains("16:9");
-            if (needsRotation) {
-                System.out.println("[Compile] 🔄 Template requires 16:9 landscape format, will apply rotation");
-            } else {
-                System.out.println("[Compile] 📐 Template format: " + videoFormat + ", no rotation needed");
-            }
-            
-            // Build FFmpeg command
-            List<String> ffmpegCmd = new ArrayList<>();
-            ffmpegCmd.add("ffmpeg");
-            ffmpegCmd.add("-noautorotate"); // Prevent auto-rotation, we'll handle it manually
-            ffmpegCmd.add("-y");
-            ffmpegCmd.add("-f");
-            ffmpegCmd.add("concat");
-            ffmpegCmd.add("-safe");
-            ffmpegCmd.add("0");
-            ffmpegCmd.add("-i");
-            ffmpegCmd.add(listFile.getAbsolutePath());
-            
-            // Add BGM input if specified
-            if (bgmUrls != null && !bgmUrls.isEmpty()) {
-                // Get video duration from local files
-                double videoDuration = 0;
-                for (java.io.File videoFile : localVideoFiles) {
-                    videoDuration += getVideoDurationFromFile(videoFile);
+            }
+            fingerprints.add(fp);
+        }
+        ConcatPlan concatPlan = planConcat(fingerprints);
+        System.out.println("[Compile] 🧬 Concat strategy: " + concatPlan.strategy
+            + (concatPlan.mismatched.isEmpty() ? "" : " (mismatched scenes " + concatPlan.mismatched + " vs " + concatPlan.target + ")"));
+
+        List<java.io.File> concatFiles = new ArrayList<>(localVideoFiles);
+        if (concatPlan.strategy == ConcatStrategy.NORMALIZE_MISMATCHED) {
+            // Re-encode only the odd segments to the majority parameters; the rest stay untouched
+            for (int i : concatPlan.mismatched) {
+                java.io.File normalized = java.io.File.createTempFile("normalized-" + i + "-", ".mp4", scratchDir);
+                int normalizeCode = runFfmpeg(planNormalizeCommand(localVideoFiles.get(i), concatPlan.target, normalized));
+                if (normalizeCode != 0) {
+                    System.err.println("[Compile] Normalizing scene " + (i + 1) + " failed, falling back to full re-encode");
+                    concatPlan.strategy = ConcatStrategy.FULL_REENCODE;
+                    break;
                 }
-                
-                // Generate signed URLs for BGM
-                List<String> bgmSignedUrls = new ArrayList<>();
-                for (String bgmUrl : bgmUrls) {
-                    bgmSignedUrls.add(ossStorageService.generateSignedUrl(bgmUrl, 2, java.util.concurrent.TimeUnit.HOURS));
+                concatFiles.set(i, normalized);
+            }
+        }
+        inputs.forceReencode = concatPlan.strategy == ConcatStrategy.FULL_REENCODE;
+
+        // Scene durations for subtitle offsets, the BGM target length and the cache entry:
+        // from the fingerprint when present, else probed once (cached by object key across publishes)
+        for (int i = 0; i < localVideoFiles.size(); i++) {
+            com.example.demo.model.VideoFingerprint fp = fingerprints.get(i);
+            inputs.sceneDurations.add(fp != null && fp.getDuration() != null ? fp.getDuration()
+                : mediaProbeService.getDurationSeconds(request.sourceUrls.get(i), localVideoFiles.get(i)));
+        }
+
+        // Create concat list file with local paths
+        java.io.File listFile = java.io.File.createTempFile("concat-", ".txt", scratchDir);
+        try (java.io.PrintWriter pw = new java.io.PrintWriter(listFile, java.nio.charset.StandardCharsets.UTF_8)) {
+            for (java.io.File videoFile : concatFiles) {
+                // Use absolute path and escape single quotes
+                String path = videoFile.getAbsolutePath().replace("'", "'\\''");
+                pw.println("file '" + path + "'");
+            }
+        }
+        inputs.videoInputArgs = List.of("-f", "concat", "-safe", "0", "-i", listFile.getAbsolutePath());
+
+        if (request.wantsSubtitles()) {
+            inputs.subtitleSegments = alignSubtitles(request.scenes, localVideoFiles, inputs.sceneDurations);
+        }
+        return inputs;
+    }
+
+    /**
+     * Cache hit: only the concatenated intermediate is downloaded; the compile is just the
+     * subtitle/BGM overlay pass
+     */
+    private CompileInputs prepareFromCache(CompileRequest request, CompileCacheEntry cached, java.io.File scratchDir) throws Exception {
+        System.out.println("[Compile] ♻️ Compile cache hit " + cached.getId() + ", reusing concatenated scenes");
+        CompileInputs inputs = new CompileInputs();
+        java.io.File intermediate = ossStorageService.downloadToTempFile(cached.getIntermediateUrl(), "cached-concat-", ".mp4", scratchDir);
+        inputs.videoInputArgs = List.of("-i", intermediate.getAbsolutePath());
+        if (cached.getSceneDurations() != null) {
+            inputs.sceneDurations.addAll(cached.getSceneDurations());
+        }
+
+        if (request.wantsSubtitles()) {
+            if (cached.getSubtitleSegments() != null && subtitleSourceHash(request.scenes).equals(cached.getSubtitleSourceHash())) {
+                inputs.subtitleSegments = cached.getSubtitleSegments();
+            } else {
+                // Template script changed since the entry was built and the scene files may be
+                // gone: use the template segments offset by the cached scene durations
+                System.out.println("[Compile] Template script changed, using template subtitle segments");
+                inputs.subtitleSegments = new ArrayList<>();
+                long offsetMs = 0;
+                for (int i = 0; i < request.scenes.size() && i < inputs.sceneDurations.size(); i++) {
+                    addTemplateSegments(request.scenes.get(i), offsetMs, inputs.subtitleSegments);
+                    offsetMs += (long) (inputs.sceneDurations.get(i) * 1000);
                 }
-                
-                // Create BGM concat file
-                bgmFile = createBGMConcatFileFromUrls(bgmSignedUrls, videoDuration);
-                ffmpegCmd.add("-i");
-                ffmpegCmd.add(bgmFile.getAbsolutePath());
-            }
-            
-            // Build filter complex
-            StringBuilder filterComplex = new StringBuilder();
-            boolean hasFilters = false;
-            String videoLabel = "[0:v]";
-            
-            // Add rotation filter if needed (portrait to landscape)
-            if (needsRotation) {
-                System.out.println("[Compile] 🔄 Applying rotation: portrait → landscape");
-                filterComplex.append("[0:v]transpose=2[vrot]"); // transpose=2 rotates 90° counter-clockwise (270° clockwise)
-                videoLabel = "[vrot]";
-                hasFilters = true;
-            }
-            
-            // Add subtitle filter if SRT exists
-            if (srtPath != null) {
-                if (hasFilters) filterComplex.append(";");
-                String subtitleFilter = subtitleBurningService.buildSubtitleFilter(srtPath, subtitleOptions);
-                System.out.println("[Compile] 📝 Subtitle filter: " + subtitleFilter);
-                filterComplex.append(videoLabel).append(subtitleFilter).append("[v]");
-                videoLabel = "[v]";
-                hasFilters = true;
-            }
-            
-            // Add audio mixing if BGM exists
-            if (bgmFile != null) {
-                if (hasFilters) filterComplex.append(";");
-                filterComplex.append(String.format("[1:a]volume=%.2f[a1];[0:a][a1]amix=inputs=2:duration=shortest[a]", bgmVolume));
-                hasFilters = true;
-            }
-            
-            // Add filter complex if we have any filters
-            if (hasFilters) {
-                ffmpegCmd.add("-filter_complex");
-                ffmpegCmd.add(filterComplex.toString());
-                
-                // Map outputs
-                ffmpegCmd.add("-map");
-                ffmpegCmd.add(videoLabel);
-                
-                if (bgmFile != null) {
-                    ffmpegCmd.add("-map");
-                    ffmpegCmd.add("[a]");
-                } else {
-                    ffmpegCmd.add("-map");
-                    ffmpegCmd.add("0:a");
+            }
+        }
+        return inputs;
+    }
+
+    private CompileCacheEntry lookupCompileCache(CompileRequest request) {
+        if (!compileCacheEnabled || request.cacheKey == null) {
+            return null;
+        }
+        try {
+            CompileCacheEntry entry = compileCacheDao.findByKey(request.cacheKey);
+            if (entry != null && entry.getIntermediateUrl() != null) {
+                return entry;
+            }
+        } catch (Exception e) {
+            System.err.println("[Compile] Compile cache lookup failed: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Upload the concatenated intermediate and record it under the cache key. The entry the
+     * previous compile of this video recorded is dropped when the scene set changed.
+     */
+    private void storeCompileCache(CompileRequest request, java.io.File intermediateFile, CompileInputs inputs) {
+        try {
+            String objectKey = compileCacheObject(request, request.cacheKey);
+            String intermediateUrl = ossStorageService.uploadFile(intermediateFile, objectKey, "video/mp4");
+
+            CompileCacheEntry entry = new CompileCacheEntry();
+            entry.setId(request.cacheKey);
+            entry.setCompositeVideoId(request.compositeVideoId);
+            entry.setIntermediateUrl(intermediateUrl);
+            entry.setSceneDurations(inputs.sceneDurations);
+            if (inputs.subtitleSegments != null) {
+                entry.setSubtitleSegments(inputs.subtitleSegments);
+                entry.setSubtitleSourceHash(subtitleSourceHash(request.scenes));
+            }
+            compileCacheDao.save(entry);
+            System.out.println("[Compile] Compile cache entry stored: " + request.cacheKey);
+        } catch (Exception e) {
+            // The compile itself succeeded; a missing cache entry only costs the next republish
+            System.err.println("[Compile] Failed to store compile cache entry: " + e.getMessage());
+            return;
+        }
+
+        String previous = request.previousCacheKey;
+        if (previous != null && !previous.equals(request.cacheKey)) {
+            try {
+                ossStorageService.deleteObjectByUrl(compileCacheObject(request, previous));
+                compileCacheDao.delete(previous);
+                System.out.println("[Compile] Invalidated previous compile cache entry: " + previous);
+            } catch (Exception e) {
+                System.err.println("[Compile] Failed to invalidate compile cache entry " + previous + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Record the scene set this video was compiled from on submittedVideos, so a later
+     * republish finds the cache entry even after the scene videos are cleaned up
+     */
+    private void rememberCompileCacheKey(CompileRequest request) {
+        if (request.cacheKey == null || request.cacheKey.equals(request.previousCacheKey)) {
+            return;
+        }
+        try {
+            db.collection("submittedVideos").document(request.compositeVideoId)
+              .update("compileCacheKey", request.cacheKey).get();
+        } catch (Exception e) {
+            System.err.println("[Compile] Failed to record compile cache key: " + e.getMessage());
+        }
+    }
+
+    private static String compileCacheObject(CompileRequest request, String cacheKey) {
+        return String.format("videos/%s/%s/cache/%s.mp4", request.userId, request.compositeVideoId, cacheKey);
+    }
+
+    /**
+     * Hash of what subtitle alignment depends on besides the scene videos
+     */
+    private static String subtitleSourceHash(List<com.example.demo.model.Scene> scenes) {
+        StringBuilder source = new StringBuilder();
+        for (com.example.demo.model.Scene scene : scenes) {
+            source.append(scene.getScriptLine()).append('\u0001');
+            if (scene.getSubtitleSegments() != null) {
+                for (com.example.demo.ai.subtitle.SubtitleSegment seg : scene.getSubtitleSegments()) {
+                    source.append(seg.getStartTimeMs()).append(':').append(seg.getEndTimeMs())
+                          .append(':').append(seg.getText()).append('\u0002');
                 }
-                
-                // Encoding settings (optimized for speed on limited resources)
-                ffmpegCmd.add("-c:v");
-                ffmpegCmd.add("libx264");
-                ffmpegCmd.add("-preset");
-                ffmpegCmd.add("ultrafast");  // Changed from veryfast to ultrafast
-                ffmpegCmd.add("-crf");
-                ffmpegCmd.add("28");  // Changed from 23 to 28 (lower quality but faster)
-                ffmpegCmd.add("-c:a");
-                ffmpegCmd.add("aac");
-                ffmpegCmd.add("-b:a");
-                ffmpegCmd.add("192k");
+            }
+            source.append('\n');
+        }
+        return sha256Hex(source.toString());
+    }
+
+    private enum ConcatStrategy { STREAM_COPY, NORMALIZE_MISMATCHED, FULL_REENCODE }
+
+    /**
+     * How the scene segments get joined, decided before ffmpeg runs
+     */
+    private static class ConcatPlan {
+        ConcatStrategy strategy;
+        // Majority fingerprint the other segments are compared against
+        com.example.demo.model.VideoFingerprint target;
+        // Indexes of segments that differ from the target
+        final List<Integer> mismatched = new ArrayList<>();
+    }
+
+    /**
+     * Compare segment fingerprints against the most common one.
+     *
+     * All equal                          -> STREAM_COPY (video never decoded unless the graph filters it)
+     * A few differ, fixable by x264      -> NORMALIZE_MISMATCHED (re-encode only those segments)
+     * Unknown / rotation or audio layout
+     * differs / non-H.264 target         -> FULL_REENCODE
+     */
+    private static ConcatPlan planConcat(List<com.example.demo.model.VideoFingerprint> fingerprints) {
+        ConcatPlan plan = new ConcatPlan();
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (com.example.demo.model.VideoFingerprint fp : fingerprints) {
+            if (fp == null) {
+                plan.strategy = ConcatStrategy.FULL_REENCODE;
+                return plan;
+            }
+            counts.merge(fp.getConcatKey(), 1, Integer::sum);
+        }
+        String targetKey = null;
+        for (Map.Entry<String, Integer> e : counts.entrySet()) {
+            if (targetKey == null || e.getValue() > counts.get(targetKey)) {
+                targetKey = e.getKey();
+            }
+        }
+        for (int i = 0; i < fingerprints.size(); i++) {
+            com.example.demo.model.VideoFingerprint fp = fingerprints.get(i);
+            if (fp.getConcatKey().equals(targetKey)) {
+                if (plan.target == null) plan.target = fp;
             } else {
-                // No filters, just copy
-                ffmpegCmd.add("-c");
-                ffmpegCmd.add("copy");
+                plan.mismatched.add(i);
+            }
+        }
+        if (plan.mismatched.isEmpty()) {
+            plan.strategy = ConcatStrategy.STREAM_COPY;
+            return plan;
+        }
+
+        com.example.demo.model.VideoFingerprint target = plan.target;
+        boolean normalizable = "h264".equals(target.getVideoCodec())
+            && (!target.isHasAudio() || "aac".equals(target.getAudioCodec()));
+        for (int i : plan.mismatched) {
+            com.example.demo.model.VideoFingerprint fp = fingerprints.get(i);
+            if (fp.getRotation() != target.getRotation() || fp.isHasAudio() != target.isHasAudio()) {
+                normalizable = false;
             }
-            
-            // Output file
-            outFile = java.io.File.createTempFile("compiled-", ".mp4");
+        }
+        plan.strategy = normalizable ? ConcatStrategy.NORMALIZE_MISMATCHED : ConcatStrategy.FULL_REENCODE;
+        return plan;
+    }
+
+    /**
+     * Re-encode one segment to the target's codec parameters so it can be stream-copy
+     * concatenated with the others. Rotation is kept as metadata (no autorotate).
+     */
+    private static List<String> planNormalizeCommand(java.io.File input,
+                                                     com.example.demo.model.VideoFingerprint target,
+                                                     java.io.File output) {
+        List<String> cmd = new ArrayList<>();
+        cmd.add("ffmpeg");
+        cmd.add("-noautorotate");
+        cmd.add("-y");
+        cmd.add("-i");
+        cmd.add(input.getAbsolutePath());
+        StringBuilder vf = new StringBuilder();
+        vf.append("scale=").append(target.getWidth()).append(":").append(target.getHeight())
+          .append(":force_original_aspect_ratio=decrease,pad=").append(target.getWidth()).append(":")
+          .append(target.getHeight()).append(":(ow-iw)/2:(oh-ih)/2,setsar=1");
+        if (target.getFrameRate() != null) {
+            vf.append(",fps=").append(target.getFrameRate());
+        }
+        if (target.getPixelFormat() != null) {
+            vf.append(",format=").append(target.getPixelFormat());
+        }
+        cmd.add("-vf");
+        cmd.add(vf.toString());
+        addVideoEncodeArgs(cmd, "veryfast", "23");
+        String profile = x264Profile(target.getProfile());
+        if (profile != null) {
+            cmd.add("-profile:v");
+            cmd.add(profile);
+        }
+        if (target.getRotation() != 0) {
+            cmd.add("-metadata:s:v:0");
+            cmd.add("rotate=" + target.getRotation());
+        }
+        if (target.isHasAudio()) {
+            cmd.add("-c:a");
+            cmd.add("aac");
+            cmd.add("-ar");
+            cmd.add(String.valueOf(target.getAudioSampleRate()));
+            cmd.add("-ac");
+            cmd.add(String.valueOf(target.getAudioChannels()));
+        } else {
+            cmd.add("-an");
+        }
+        cmd.add("-movflags");
+        cmd.add("+faststart");
+        cmd.add(output.getAbsolutePath());
+        return cmd;
+    }
+
+    private static String x264Profile(String ffprobeProfile) {
+        if (ffprobeProfile == null) return null;
+        String p = ffprobeProfile.toLowerCase(Locale.ROOT);
+        if (p.contains("baseline")) return "baseline";
+        if (p.equals("main")) return "main";
+        if (p.equals("high")) return "high";
+        return null;
+    }
+
+    /**
+     * Report the scene pre-fetch: wall time, and time saved versus fetching the same
+     * scenes one after another (compile.prefetch.wall / compile.prefetch.saved)
+     */
+    private void recordPrefetch(AlibabaOssStorageService.DownloadBatch prefetch) {
+        System.out.println("[Compile] ⬇️ Pre-fetched " + prefetch.files.size() + " scenes (" + prefetch.bytes
+            + " bytes) in " + prefetch.wallMillis + "ms, saved ~" + prefetch.savedMillis() + "ms vs sequential");
+        if (meterRegistry == null) {
+            return;
+        }
+        meterRegistry.timer("compile.prefetch.wall")
+            .record(prefetch.wallMillis, java.util.concurrent.TimeUnit.MILLISECONDS);
+        meterRegistry.timer("compile.prefetch.saved")
+            .record(prefetch.savedMillis(), java.util.concurrent.TimeUnit.MILLISECONDS);
+        meterRegistry.counter("compile.prefetch.bytes").increment(prefetch.bytes);
+    }
+
+    /**
+     * Run the compile. A re-encoded concat that is also kept as an intermediate is encoded
+     * once: the intermediate is written first and the overlay pass then reads it, as on a
+     * cache hit, stream-copying its video unless the graph rotates or subtitles it.
+     * @return ffmpeg exit code of the last pass run
+     */
+    private int runCompilePasses(
+        CompileRequest request,
+        List<String> videoInputArgs,
+        String srtPath,
+        BgmLoopPlan bgmPlan,
+        java.io.File outFile,
+        java.io.File intermediateFile,
+        boolean forceReencode
+    ) throws Exception {
+        if (!forceReencode || intermediateFile == null) {
+            return runFfmpeg(planCompileCommand(request, videoInputArgs, srtPath, bgmPlan, outFile, intermediateFile, forceReencode));
+        }
+        int code = runFfmpeg(planConcatCommand(request, videoInputArgs, intermediateFile));
+        if (code != 0) {
+            return code;
+        }
+        return runFfmpeg(planCompileCommand(request, List.of("-i", intermediateFile.getAbsolutePath()),
+            srtPath, bgmPlan, outFile, null, false));
+    }
+
+    /**
+     * Plain re-encoded concat of input 0, no filters
+     */
+    private List<String> planConcatCommand(CompileRequest request, List<String> videoInputArgs, java.io.File intermediateFile) {
+        List<String> ffmpegCmd = new ArrayList<>();
+        ffmpegCmd.add("ffmpeg");
+        if (request.videoFormat != null) {
+            ffmpegCmd.add("-noautorotate");
+        }
+        ffmpegCmd.add("-y");
+        ffmpegCmd.addAll(videoInputArgs);
+        ffmpegCmd.add("-map");
+        ffmpegCmd.add("0:v");
+        ffmpegCmd.add("-map");
+        ffmpegCmd.add("0:a?");
+        addVideoEncodeArgs(ffmpegCmd, "veryfast", "23");
+        ffmpegCmd.add("-c:a");
+        ffmpegCmd.add("aac");
+        ffmpegCmd.add("-b:a");
+        ffmpegCmd.add("192k");
+        ffmpegCmd.add("-movflags");
+        ffmpegCmd.add("+faststart");
+        ffmpegCmd.add(intermediateFile.getAbsolutePath());
+        return ffmpegCmd;
+    }
+
+    /**
+     * Build the single ffmpeg command for a compile.
+     *
+     * Input 0 is the concat list, inputs 1..n the BGM plan. The graph chains
+     * [0:v] -> transpose -> subtitles -> [v] and [0:a] + [bgm] -> amix -> [a]; streams with
+     * no filters are stream-copied. An optional second output stream-copies the plain concat
+     * (callers never combine it with forceReencode, see runCompilePasses).
+     *
+     * @param forceReencode re-encode every stream (fallback for mismatched scene codecs)
+     */
+    private List<String> planCompileCommand(
+        CompileRequest request,
+        List<String> videoInputArgs,
+        String srtPath,
+        BgmLoopPlan bgmPlan,
+        java.io.File outFile,
+        java.io.File intermediateFile,
+        boolean forceReencode
+    ) {
+        List<String> ffmpegCmd = new ArrayList<>();
+        ffmpegCmd.add("ffmpeg");
+        if (request.videoFormat != null) {
+            ffmpegCmd.add("-noautorotate"); // Prevent auto-rotation, template format drives it
+        }
+        ffmpegCmd.add("-y");
+        ffmpegCmd.addAll(videoInputArgs);
+        if (bgmPlan != null) {
+            ffmpegCmd.addAll(bgmPlan.inputArgs);
+        }
+
+        // Build filter complex
+        List<String> graph = new ArrayList<>();
+        String videoLabel = "0:v";
+        String audioLabel = "0:a?";
+
+        if (request.needsRotation()) {
+            graph.add("[0:v]transpose=2[vrot]"); // transpose=2 rotates 90° counter-clockwise (270° clockwise)
+            videoLabel = "[vrot]";
+        }
+        if (srtPath != null) {
+            String subtitleFilter = subtitleBurningService.buildSubtitleFilter(srtPath, request.subtitleOptions);
+            System.out.println("[Compile] 📝 Subtitle filter: " + subtitleFilter);
+            String in = videoLabel.startsWith("[") ? videoLabel : "[" + videoLabel + "]";
+            graph.add(in + subtitleFilter + "[v]");
+            videoLabel = "[v]";
+        }
+        if (bgmPlan != null) {
+            graph.add(bgmPlan.filter);
+            graph.add("[0:a][bgm]amix=inputs=2:duration=shortest[a]");
+            audioLabel = "[a]";
+        }
+        boolean videoFiltered = !"0:v".equals(videoLabel);
+
+        if (!graph.isEmpty()) {
+            ffmpegCmd.add("-filter_complex");
+            ffmpegCmd.add(String.join(";", graph));
+        }
+
+        // Main output
+        ffmpegCmd.add("-map");
+        ffmpegCmd.add(videoLabel);
+        ffmpegCmd.add("-map");
+        ffmpegCmd.add(audioLabel);
+        if (videoFiltered) {
+            // Encoding settings (optimized for speed on limited resources)
+            addVideoEncodeArgs(ffmpegCmd, "ultrafast", "28");
+        } else if (forceReencode) {
+            addVideoEncodeArgs(ffmpegCmd, "veryfast", "23");
+        } else {
+            ffmpegCmd.add("-c:v");
+            ffmpegCmd.add("copy");
+        }
+        if (bgmPlan != null || videoFiltered || forceReencode) {
+            ffmpegCmd.add("-c:a");
+            ffmpegCmd.add("aac");
+            ffmpegCmd.add("-b:a");
+            ffmpegCmd.add("192k");
+        } else {
+            ffmpegCmd.add("-c:a");
+            ffmpegCmd.add("copy");
+        }
+        ffmpegCmd.add("-movflags");
+        ffmpegCmd.add("+faststart");
+        ffmpegCmd.add(outFile.getAbsolutePath());
+
+        // Optional plain concat, stream-copied from the same demuxed input (no second read pass);
+        // a re-encoded concat goes through planConcatCommand instead
+        if (intermediateFile != null) {
+            ffmpegCmd.add("-map");
+            ffmpegCmd.add("0:v");
+            ffmpegCmd.add("-map");
+            ffmpegCmd.add("0:a?");
+            ffmpegCmd.add("-c");
+            ffmpegCmd.add("copy");
             ffmpegCmd.add("-movflags");
             ffmpegCmd.add("+faststart");
-            ffmpegCmd.add(outFile.getAbsolutePath());
-            
-            // Execute FFmpeg
-            System.out.println("[Compile] FFmpeg command: " + String.join(" ", ffmpegCmd));
-            ProcessBuilder pb = new ProcessBuilder(ffmpegCmd);
-            pb.redirectErrorStream(true); // Merge stderr into stdout
-            Process p = pb.start();
-            
-            // Capture output for debugging
-            StringBuilder output = new StringBuilder();
+            ffmpegCmd.add(intermediateFile.getAbsolutePath());
+        }
+        return ffmpegCmd;
+    }
+
+    private static void addVideoEncodeArgs(List<String> ffmpegCmd, String preset, String crf) {
+        ffmpegCmd.add("-c:v");
+        ffmpegCmd.add("libx264");
+        ffmpegCmd.add("-preset");
+        ffmpegCmd.add(preset);
+        ffmpegCmd.add("-crf");
+        ffmpegCmd.add(crf);
+    }
+
+    /**
+     * Run ffmpeg, draining its output so it never blocks on a full pipe
+     * @return exit code
+     */
+    private int runFfmpeg(List<String> ffmpegCmd) throws Exception {
+        System.out.println("[Compile] FFmpeg command: " + String.join(" ", ffmpegCmd));
+        ProcessBuilder pb = new ProcessBuilder(ffmpegCmd);
+        pb.redirectErrorStream(true); // Merge stderr into stdout
+        Process p = pb.start();
+
+        // Capture output for debugging, on its own thread so the wait below can time out
+        StringBuffer output = new StringBuffer();
+        Thread drain = new Thread(() -> {
             try (java.io.BufferedReader reader = new java.io.BufferedReader(
                     new java.io.InputStreamReader(p.getInputStream()))) {
                 String line;
                 while ((line = reader.readLine()) != null) {
                     output.append(line).append("\n");
                 }
+            } catch (java.io.IOException ignored) {
+                // Stream closed when the process is killed
             }
-            
-            int code = p.waitFor();
-            
-            if (code != 0) {
-                System.err.println("[Compile] FFmpeg failed with exit code " + code);
-                System.err.println("[Compile] FFmpeg output:\n" + output.toString());
-                throw new RuntimeException("ffmpeg compilation failed with exit code " + code + ". Output: " + output.toString());
+        }, "ffmpeg-output");
+        drain.setDaemon(true);
+        drain.start();
+
+        try {
+            if (!p.waitFor(ffmpegTimeoutMinutes, java.util.concurrent.TimeUnit.MINUTES)) {
+                p.destroyForcibly();
+                throw new java.util.concurrent.TimeoutException("ffmpeg did not finish within " + ffmpegTimeoutMinutes + " minutes");
             }
-            
-            System.out.println("[Compile] ✅ FFmpeg completed successfully");
-            
-            // Upload to OSS
-            if (ossStorageService == null) {
-                throw new IllegalStateException("AlibabaOssStorageService not available for upload");
-            }
-            String url = ossStorageService.uploadFile(outFile, destObject, "video/mp4");
-            System.out.println("[Compile] ✅ Compiled video with subtitles uploaded: " + url);
-            
-            return url;
-            
-        } finally {
-            // Clean up temp files
-            if (listFile != null) try { listFile.delete(); } catch (Exception ignored) {}
-            if (srtFile != null) try { srtFile.delete(); } catch (Exception ignored) {}
-            if (bgmFile != null) try { bgmFile.delete(); } catch (Exception ignored) {}
-            if (outFile != null) try { outFile.delete(); } catch (Exception ignored) {}
-            // Clean up downloaded video files
-            for (java.io.File videoFile : localVideoFiles) {
-                try { videoFile.delete(); } catch (Exception ignored) {}
+        } catch (InterruptedException e) {
+            p.destroyForcibly();
+            throw e;
+        }
+        drain.join();
+        int code = p.exitValue();
+        if (code != 0) {
+            System.err.println("[Compile] FFmpeg failed with exit code " + code);
+            System.err.println("[Compile] FFmpeg output:\n" + output);
+        }
+        return code;
+    }
+
+    /**
+     * Subtitle segments for the whole compiled video using ASR-aligned subtitles.
+     * Falls back to the template's subtitleSegments per scene.
+     */
+    private List<com.example.demo.ai.subtitle.SubtitleSegment> alignSubtitles(
+        List<com.example.demo.model.Scene> scenes,
+        List<java.io.File> localVideoFiles,
+        List<Double> sceneDurations
+    ) throws Exception {
+        System.out.println("[Compile] 📋 Generating ASR-aligned subtitles from " + scenes.size() + " scenes");
+
+        // Use ASR alignment service to get accurate timing from user's recorded videos
+        List<com.example.demo.ai.subtitle.SubtitleSegment> allAlignedSegments = new ArrayList<>();
+        long cumulativeTimeMs = 0;
+
+        for (int i = 0; i < scenes.size() && i < localVideoFiles.size(); i++) {
+            com.example.demo.model.Scene scene = scenes.get(i);
+            java.io.File videoFile = localVideoFiles.get(i);
+
+            System.out.println("[Compile]   Scene " + (i+1) + ": Running ASR alignment...");
+
+            if (subtitleAlignmentService != null && scene.getScriptLine() != null && !scene.getScriptLine().isEmpty()) {
+                try {
+                    // Run ASR alignment: combines template scriptLine (words) with ASR (timing)
+                    List<com.example.demo.ai.subtitle.SubtitleSegment> alignedSegments =
+                        subtitleAlignmentService.generateAlignedSubtitles(scene, videoFile.getAbsolutePath(), cumulativeTimeMs);
+
+                    allAlignedSegments.addAll(alignedSegments);
+                    System.out.println("[Compile]     ✅ Got " + alignedSegments.size() + " aligned segments");
+                } catch (Exception e) {
+                    System.err.println("[Compile]     ⚠️ ASR alignment failed, using template segments: " + e.getMessage());
+                    // Fallback to template subtitleSegments with time offset
+                    addTemplateSegments(scene, cumulativeTimeMs, allAlignedSegments);
+                }
+            } else {
+                // No ASR service or no scriptLine, use template subtitleSegments
+                System.out.println("[Compile]     Using template segments (no scriptLine or ASR unavailable)");
+                addTemplateSegments(scene, cumulativeTimeMs, allAlignedSegments);
             }
+
+            // Add this scene's duration to cumulative time
+            cumulativeTimeMs += (long)(sceneDurations.get(i) * 1000);
+        }
+
+        System.out.println("[Compile] ✅ Aligned " + allAlignedSegments.size() + " subtitle segments");
+        return allAlignedSegments;
+    }
+
+    private static void addTemplateSegments(
+        com.example.demo.model.Scene scene,
+        long offsetMs,
+        List<com.example.demo.ai.subtitle.SubtitleSegment> out
+    ) {
+        if (scene.getSubtitleSegments() == null) {
+            return;
+        }
+        for (com.example.demo.ai.subtitle.SubtitleSegment seg : scene.getSubtitleSegments()) {
+            out.add(new com.example.demo.ai.subtitle.SubtitleSegment(
+                seg.getStartTimeMs() + offsetMs,
+                seg.getEndTimeMs() + offsetMs,
+                seg.getText(),
+                seg.getConfidence()
+            ));
+        }
+    }
+
+    /**
+     * BGM inputs plus a filter_complex fragment that loops the BGM playlist to cover the
+     * video and applies volume. The fragment's output label is [bgm].
+     * Replaces the old concat list + materialized bgm-full-*.mp3 intermediate.
+     */
+    private static class BgmLoopPlan {
+        final List<java.io.File> localFiles;
+        final List<String> inputArgs = new ArrayList<>();
+        String filter;
+
+        BgmLoopPlan(List<java.io.File> localFiles) {
+            this.localFiles = localFiles;
+        }
+
+        void cleanup() {
+            for (java.io.File f : localFiles) {
+                try { f.delete(); } catch (Exception ignored) {}
+            }
+        }
+    }
+
+    // Common format so multiple BGM tracks can be joined by the concat filter
+    private static final String BGM_FORMAT = "aformat=sample_fmts=fltp:sample_rates=44100:channel_layouts=stereo";
+    private static final int BGM_SAMPLE_RATE = 44100;
+
+    /**
+     * Plan BGM looping for a video of the given duration.
+     *
+     * Single track:  -stream_loop -1 -i bgm.mp3  ->  [k:a]atrim,volume[bgm]  (no ffprobe at all)
+     * Multiple:      -i a.mp3 -i b.mp3  ->  concat -> aloop (size = playlist samples) -> atrim,volume[bgm]
+     *                playlist duration comes from the media-probe cache (one ffprobe per track, ever)
+     *
+     * @param bgmUrls OSS URLs of BGM tracks
+     * @param firstInputIndex ffmpeg input index of the first BGM input
+     */
+    private BgmLoopPlan planBgmLoop(List<String> bgmUrls, int firstInputIndex, double videoDuration, double bgmVolume) throws Exception {
+        System.out.println("[BGM] Planning BGM loop for " + bgmUrls.size() + " file(s), target duration: " + videoDuration + "s");
+
+        // Download BGM files locally first
+        List<java.io.File> localBgmFiles;
+        try {
+            System.out.println("[BGM] Downloading BGM files...");
+            localBgmFiles = ossStorageService.downloadMultipleToTempFiles(bgmUrls, "bgm-", ".mp3");
+            System.out.println("[BGM] Successfully downloaded " + localBgmFiles.size() + " BGM file(s)");
+        } catch (Exception e) {
+            System.err.println("[BGM] Failed to download BGM files: " + e.getMessage());
+            e.printStackTrace();
+            throw new RuntimeException("Failed to download BGM files: " + e.getMessage(), e);
+        }
+
+        BgmLoopPlan plan = new BgmLoopPlan(localBgmFiles);
+        String trimAndVolume = String.format(Locale.ROOT, "atrim=duration=%.3f,asetpts=PTS-STARTPTS,volume=%.2f",
+            videoDuration, bgmVolume);
+
+        if (localBgmFiles.size() == 1) {
+            plan.inputArgs.add("-stream_loop");
+            plan.inputArgs.add("-1");
+            plan.inputArgs.add("-i");
+            plan.inputArgs.add(localBgmFiles.get(0).getAbsolutePath());
+            plan.filter = "[" + firstInputIndex + ":a]" + trimAndVolume + "[bgm]";
+            return plan;
+        }
+
+        double playlistDuration = 0;
+        StringBuilder filter = new StringBuilder();
+        StringBuilder concatInputs = new StringBuilder();
+        for (int i = 0; i < localBgmFiles.size(); i++) {
+            java.io.File bgmFile = localBgmFiles.get(i);
+            playlistDuration += mediaProbeService.getDurationSeconds(bgmUrls.get(i), bgmFile);
+            plan.inputArgs.add("-i");
+            plan.inputArgs.add(bgmFile.getAbsolutePath());
+            filter.append("[").append(firstInputIndex + i).append(":a]").append(BGM_FORMAT)
+                  .append("[bgm").append(i).append("];");
+            concatInputs.append("[bgm").append(i).append("]");
         }
+        filter.append(concatInputs).append("concat=n=").append(localBgmFiles.size()).append(":v=0:a=1");
+        if (playlistDuration < videoDuration) {
+            // Loop the whole playlist; aloop size is in samples of the normalized stream
+            long loopSamples = (long) Math.ceil(playlistDuration * BGM_SAMPLE_RATE);
+            filter.append(",aloop=loop=-1:size=").append(loopSamples);
+        }
+        filter.append(",").append(trimAndVolume).append("[bgm]");
+        plan.filter = filter.toString();
+
+        System.out.println("[BGM] Playlist duration: " + playlistDuration + "s (probe cache hits="
+            + mediaProbeService.getHits() + ", misses=" + mediaProbeService.getMisses() + ")");
+        return plan;
     }
-    
+
     /**
      * Generate SRT file from a list of subtitle segments
      * Used for ASR-aligned subtitles
@@ -685,7 +1086,7 @@ public class VideoCompilationServiceImpl implements VideoCompilationService {
     private String generateSrtFromSegments(List<com.example.demo.ai.subtitle.SubtitleSegment> segments) throws Exception {
         java.io.File srtFile = java.io.File.createTempFile("subtitles_aligned_", ".srt");
         srtFile.deleteOnExit();
-        
+
         try (java.io.FileWriter writer = new java.io.FileWriter(srtFile)) {
             int sequenceNumber = 1;
             for (com.example.demo.ai.subtitle.SubtitleSegment segment : segments) {
@@ -694,7 +1095,7 @@ public class VideoCompilationServiceImpl implements VideoCompilationService {
                 sequenceNumber++;
             }
         }
-        
+
         System.out.println("[Compile] Generated SRT with " + segments.size() + " segments: " + srtFile.getAbsolutePath());
         return srtFile.getAbsolutePath();
     }
@@ -0,0 +1,302 @@
+package com.example.demo.dao;
+
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Concurrent scene uploads and reviews against one submittedVideos document.
+ *
+ * Firestore is replaced by a single in-memory document with optimistic transactions: a
+ * transaction whose document changed between its read and its commit is retried, as the
+ * real client does on contention. Field-path updates and FieldValue.increment are applied
+ * the way the server applies them.
+ */
+class SubmittedVideoDaoImplTest {
+
+    private static final String VIDEO_ID = "user1_assignment1";
+    private static final int SCENES = 24;
+    private static final int THREADS = 12;
+
+    private final InMemoryDocument document = new InMemoryDocument();
+    private final AtomicInteger transactionRetries = new AtomicInteger();
+    private SubmittedVideoDaoImpl dao;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        Firestore db = mock(Firestore.class);
+        CollectionReference collection = mock(CollectionReference.class);
+        DocumentReference docRef = mock(DocumentReference.class);
+        when(db.collection("submittedVideos")).thenReturn(collection);
+        when(collection.document(anyString())).thenReturn(docRef);
+        when(db.runTransaction(any(Transaction.Function.class)))
+            .thenAnswer(invocation -> runTransaction(docRef, invocation.getArgument(0)));
+
+        dao = new SubmittedVideoDaoImpl();
+        ReflectionTestUtils.setField(dao, "db", db);
+    }
+
+    @Test
+    void concurrentUploadsKeepEverySceneAndCount() throws Exception {
+        List<SubmittedVideoDao.SceneProgressUpdate> results = runConcurrently(SCENES, scene ->
+            dao.recordScene(VIDEO_ID, "assignment1", "user1", scene, "scene-" + scene, "pending", SCENES));
+
+        assertEquals(SCENES, document.scenes().size());
+        assertEquals(0, document.number("progress.approved"));
+        assertEquals(SCENES, document.number("progress.pending"));
+        assertEquals(1, results.stream().filter(r -> r.created).count(), "document created exactly once");
+        assertTrue(transactionRetries.get() > 0, "test should produce contention");
+    }
+
+    @Test
+    void concurrentReviewsAndResubmissionsConverge() throws Exception {
+        runConcurrently(SCENES, scene ->
+            dao.recordScene(VIDEO_ID, "assignment1", "user1", scene, "scene-" + scene, "pending", SCENES));
+
+        // Reject the first half, then resubmit and approve everything, all at once
+        runConcurrently(SCENES / 2, scene -> dao.updateSceneStatus(VIDEO_ID, scene, "rejected", SCENES));
+        assertEquals(SCENES / 2, document.number("progress.pending"));
+
+        List<SubmittedVideoDao.SceneProgressUpdate> results = runConcurrently(SCENES * 2, i -> {
+            int scene = i <= SCENES ? i : i - SCENES;
+            if (i <= SCENES / 2) {
+                return dao.recordScene(VIDEO_ID, "assignment1", "user1", scene, "scene-" + scene + "-v2", "pending", SCENES);
+            }
+            return dao.updateSceneStatus(VIDEO_ID, scene, "approved", SCENES);
+        });
+        // Resubmissions may land after their approval; approve whatever is still pending
+        for (int scene = 1; scene <= SCENES; scene++) {
+            if (!"approved".equals(document.get("scenes." + scene + ".status"))) {
+                results.add(dao.updateSceneStatus(VIDEO_ID, scene, "approved", SCENES));
+            }
+        }
+
+        assertEquals(SCENES, document.scenes().size());
+        assertEquals(SCENES, document.number("progress.approved"));
+        assertEquals(0, document.number("progress.pending"));
+        assertEquals(100, document.number("progress.completionPercentage"));
+        assertEquals("approved", document.get("publishStatus"));
+        assertEquals(1, results.stream().filter(r -> r != null && r.becameApproved).count(),
+            "approval reported exactly once");
+    }
+
+    private interface SceneCall {
+        SubmittedVideoDao.SceneProgressUpdate run(int index) throws Exception;
+    }
+
+    /**
+     * Run calls 1..count from THREADS threads, released together
+     */
+    private List<SubmittedVideoDao.SceneProgressUpdate> runConcurrently(int count, SceneCall call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<SubmittedVideoDao.SceneProgressUpdate>> futures = new ArrayList<>();
+            for (int i = 1; i <= count; i++) {
+                final int index = i;
+                Callable<SubmittedVideoDao.SceneProgressUpdate> task = () -> {
+                    start.await();
+                    return call.run(index);
+                };
+                futures.add(executor.submit(task));
+            }
+            start.countDown();
+            List<SubmittedVideoDao.SceneProgressUpdate> results = new ArrayList<>();
+            for (Future<SubmittedVideoDao.SceneProgressUpdate> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Optimistic transaction: read a copy, run the function, commit only if nobody wrote in between
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Object runTransaction(DocumentReference docRef, Transaction.Function<T> function) throws Exception {
+        for (int attempt = 1; attempt <= 1000; attempt++) {
+            InMemoryDocument.Snapshot read = document.read();
+            List<Map<String, Object>> updates = new ArrayList<>();
+            Map<String, Object>[] replacement = new Map[1];
+
+            Transaction transaction = mock(Transaction.class);
+            DocumentSnapshot snapshot = read.toMockSnapshot();
+            when(transaction.get(docRef)).thenReturn(ApiFutures.immediateFuture(snapshot));
+            when(transaction.set(eq(docRef), anyMap())).thenAnswer(invocation -> {
+                replacement[0] = invocation.getArgument(1);
+                return transaction;
+            });
+            when(transaction.update(eq(docRef), anyMap())).thenAnswer(invocation -> {
+                updates.add(invocation.getArgument(1));
+                return transaction;
+            });
+
+            T result = function.updateCallback(transaction);
+            Thread.yield(); // Widen the read-commit window
+            if (document.commit(read.version, replacement[0], updates)) {
+                return ApiFutures.immediateFuture(result);
+            }
+            transactionRetries.incrementAndGet();
+        }
+        throw new IllegalStateException("Transaction did not commit");
+    }
+
+    /**
+     * One Firestore document: nested maps plus a version bumped on every commit
+     */
+    private static class InMemoryDocument {
+        private Map<String, Object> data; // null while the document doesn't exist
+        private long version;
+
+        static class Snapshot {
+            final Map<String, Object> data;
+            final long version;
+
+            Snapshot(Map<String, Object> data, long version) {
+                this.data = data;
+                this.version = version;
+            }
+
+            DocumentSnapshot toMockSnapshot() {
+                DocumentSnapshot snapshot = mock(DocumentSnapshot.class);
+                when(snapshot.exists()).thenReturn(data != null);
+                when(snapshot.get(anyString())).thenAnswer(invocation -> resolve(data, invocation.getArgument(0)));
+                when(snapshot.getString(anyString())).thenAnswer(invocation -> {
+                    Object value = resolve(data, invocation.getArgument(0));
+                    return value instanceof String ? value : null;
+                });
+                return snapshot;
+            }
+        }
+
+        synchronized Snapshot read() {
+            return new Snapshot(data != null ? deepCopy(data) : null, version);
+        }
+
+        synchronized boolean commit(long readVersion, Map<String, Object> replacement, List<Map<String, Object>> updates) {
+            if (version != readVersion) {
+                return false;
+            }
+            if (replacement != null) {
+                data = new HashMap<>();
+                replacement.forEach((key, value) -> data.put(key, applyValue(null, value)));
+            }
+            for (Map<String, Object> update : updates) {
+                assertNotNull(data, "update of a missing document");
+                for (Map.Entry<String, Object> field : update.entrySet()) {
+                    setPath(field.getKey(), field.getValue());
+                }
+            }
+            version++;
+            return true;
+        }
+
+        synchronized Object get(String path) {
+            return resolve(data, path);
+        }
+
+        synchronized int number(String path) {
+            Object value = resolve(data, path);
+            assertTrue(value instanceof Number, path + " should be a number but was " + value);
+            return ((Number) value).intValue();
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized Map<String, Object> scenes() {
+            return (Map<String, Object>) resolve(data, "scenes");
+        }
+
+        @SuppressWarnings("unchecked")
+        private void setPath(String path, Object value) {
+            String[] parts = path.split("\\.");
+            Map<String, Object> target = data;
+            for (int i = 0; i < parts.length - 1; i++) {
+                Object child = target.get(parts[i]);
+                if (!(child instanceof Map)) {
+                    child = new HashMap<String, Object>();
+                    target.put(parts[i], child);
+                }
+                target = (Map<String, Object>) child;
+            }
+            String leaf = parts[parts.length - 1];
+            target.put(leaf, applyValue(target.get(leaf), value));
+        }
+
+        /**
+         * Server-side meaning of a written value (sentinels resolved, maps copied)
+         */
+        @SuppressWarnings("unchecked")
+        private static Object applyValue(Object current, Object value) {
+            if (value instanceof FieldValue) {
+                if (value.equals(FieldValue.serverTimestamp())) {
+                    return new Date();
+                }
+                for (long delta = -SCENES; delta <= SCENES; delta++) {
+                    if (value.equals(FieldValue.increment(delta))) {
+                        long base = current instanceof Number ? ((Number) current).longValue() : 0;
+                        return base + delta;
+                    }
+                }
+                throw new IllegalArgumentException("Unsupported field value " + value);
+            }
+            if (value instanceof Map) {
+                Map<String, Object> copy = new HashMap<>();
+                ((Map<String, Object>) value).forEach((key, nested) -> copy.put(key, applyValue(null, nested)));
+                return copy;
+            }
+            return value;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Object resolve(Map<String, Object> data, String path) {
+            Object current = data;
+            for (String part : path.split("\\.")) {
+                if (!(current instanceof Map)) {
+                    return null;
+                }
+                current = ((Map<String, Object>) current).get(part);
+            }
+            return current;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Map<String, Object> deepCopy(Map<String, Object> source) {
+            Map<String, Object> copy = new HashMap<>();
+            source.forEach((key, value) -> copy.put(key, value instanceof Map ? deepCopy((Map<String, Object>) value) : value));
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.demo.dao;
+
+import com.example.demo.model.ManualTemplate;
+import com.example.demo.model.Scene;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.SetOptions;
+import com.google.cloud.firestore.WriteBatch;
+import com.google.cloud.firestore.WriteResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Template documents written before the VL payloads moved to sceneAnalysis still carry
+ * vlRawResponse / vlSceneAnalysis inline in scenes[].
+ *
+ * Scene excludes both properties from Firestore mapping, so the mocked snapshot maps to
+ * scenes without them (as the real CustomClassMapper does) while its raw "scenes" field
+ * still holds them.
+ */
+class TemplateDaoImplTest {
+
+    private static final String TEMPLATE_ID = "template1";
+    private static final int SCENES = 3;
+
+    private final Map<String, Map<String, Object>> sceneAnalysisWrites = new HashMap<>();
+    private Firestore db;
+    private DocumentReference templateRef;
+    private WriteBatch batch;
+    private TemplateDaoImpl dao;
+
+    @BeforeEach
+    void setUp() {
+        db = mock(Firestore.class);
+        CollectionReference templates = mock(CollectionReference.class);
+        templateRef = mock(DocumentReference.class);
+        CollectionReference analysisRef = mock(CollectionReference.class);
+        batch = mock(WriteBatch.class);
+        DocumentSnapshot legacy = legacySnapshot();
+
+        when(db.collection("templates")).thenReturn(templates);
+        when(templates.document(TEMPLATE_ID)).thenReturn(templateRef);
+        when(templateRef.getId()).thenReturn(TEMPLATE_ID);
+        when(templateRef.get()).thenReturn(ApiFutures.immediateFuture(legacy));
+        when(templateRef.set(any(ManualTemplate.class))).thenReturn(ApiFutures.immediateFuture(mock(WriteResult.class)));
+        when(templateRef.collection("sceneAnalysis")).thenReturn(analysisRef);
+        when(analysisRef.listDocuments()).thenReturn(new ArrayList<>());
+        when(analysisRef.document(anyString())).thenAnswer(invocation -> {
+            DocumentReference ref = mock(DocumentReference.class);
+            when(ref.getId()).thenReturn(invocation.getArgument(0));
+            return ref;
+        });
+        when(db.batch()).thenReturn(batch);
+        when(batch.set(any(DocumentReference.class), anyMap(), any(SetOptions.class))).thenAnswer(invocation -> {
+            DocumentReference ref = invocation.getArgument(0);
+            sceneAnalysisWrites.put(ref.getId(), invocation.getArgument(1));
+            return batch;
+        });
+        when(batch.commit()).thenReturn(ApiFutures.immediateFuture(new ArrayList<>()));
+
+        FirestoreDocumentCache documentCache = mock(FirestoreDocumentCache.class);
+        try {
+            when(documentCache.get(FirestoreDocumentCache.TEMPLATES, TEMPLATE_ID)).thenReturn(legacy);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+
+        dao = new TemplateDaoImpl();
+        ReflectionTestUtils.setField(dao, "db", db);
+        ReflectionTestUtils.setField(dao, "documentCache", documentCache);
+    }
+
+    @Test
+    void getTemplateKeepsLegacyInlinePayloads() throws Exception {
+        ManualTemplate template = dao.getTemplate(TEMPLATE_ID);
+
+        for (int i = 0; i < SCENES; i++) {
+            assertEquals(rawResponse(i + 1), template.getScenes().get(i).getVlRawResponse());
+            assertEquals(sceneAnalysis(i + 1), template.getScenes().get(i).getVlSceneAnalysis());
+        }
+    }
+
+    @Test
+    void updateMovesLegacyPayloadsBeforeOverwritingTheDocument() throws Exception {
+        // An edit sent back by the UI: same scenes, no VL payloads
+        ManualTemplate edited = mappedTemplate();
+        edited.setTemplateTitle("Edited");
+
+        dao.updateTemplate(TEMPLATE_ID, edited);
+
+        assertEquals(SCENES, sceneAnalysisWrites.size());
+        for (int scene = 1; scene <= SCENES; scene++) {
+            Map<String, Object> written = sceneAnalysisWrites.get(String.valueOf(scene));
+            assertEquals(rawResponse(scene), written.get("vlRawResponse"));
+            assertEquals(sceneAnalysis(scene), written.get("vlSceneAnalysis"));
+            assertEquals(keyframe(scene), written.get("keyframeUrl"));
+        }
+        assertNull(edited.getScenes().get(0).getVlRawResponse(), "the caller's template is left as sent");
+
+        InOrder order = inOrder(batch, templateRef);
+        order.verify(batch).commit();
+        order.verify(templateRef).set(edited);
+    }
+
+    /**
+     * What the mapper yields for a legacy document: every field except the excluded payloads
+     */
+    private static ManualTemplate mappedTemplate() {
+        ManualTemplate template = new ManualTemplate();
+        template.setId(TEMPLATE_ID);
+        template.setTemplateTitle("Legacy");
+        List<Scene> scenes = new ArrayList<>();
+        for (int scene = 1; scene <= SCENES; scene++) {
+            Scene s = new Scene();
+            s.setSceneNumber(scene);
+            s.setKeyframeUrl(keyframe(scene));
+            scenes.add(s);
+        }
+        template.setScenes(scenes);
+        return template;
+    }
+
+    private static DocumentSnapshot legacySnapshot() {
+        List<Map<String, Object>> rawScenes = new ArrayList<>();
+        for (int scene = 1; scene <= SCENES; scene++) {
+            Map<String, Object> raw = new HashMap<>();
+            raw.put("sceneNumber", (long) scene);
+            raw.put("keyframeUrl", keyframe(scene));
+            raw.put("vlRawResponse", rawResponse(scene));
+            raw.put("vlSceneAnalysis", sceneAnalysis(scene));
+            rawScenes.add(raw);
+        }
+        DocumentSnapshot snapshot = mock(DocumentSnapshot.class);
+        when(snapshot.exists()).thenReturn(true);
+        when(snapshot.getId()).thenReturn(TEMPLATE_ID);
+        when(snapshot.get("scenes")).thenReturn(rawScenes);
+        when(snapshot.toObject(ManualTemplate.class)).thenAnswer(invocation -> mappedTemplate());
+        return snapshot;
+    }
+
+    private static String keyframe(int scene) {
+        return "https://bucket.oss-cn-shanghai.aliyuncs.com/keyframes/" + TEMPLATE_ID + "/" + scene + ".jpg";
+    }
+
+    private static String rawResponse(int scene) {
+        return "{\"choices\":[{\"message\":{\"content\":\"scene " + scene + "\"}}]}";
+    }
+
+    private static String sceneAnalysis(int scene) {
+        return "Scene " + scene + ": product close-up on a white table";
+    }
+}